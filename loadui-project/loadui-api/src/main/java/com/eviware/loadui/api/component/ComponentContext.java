@@ -233,11 +233,13 @@ public interface ComponentContext extends Labeled.Mutable, MutableTerminalHolder
 
 	/**
 	 * If set to true, then calls to the "onTerminal..."-methods on the
-	 * BehaviorProvider will be called directly in the event thread, without the
-	 * overhead of allocating a separate Thread. These methods must then not
-	 * block, returning as quickly as possible to prevent the application from
-	 * becoming unresponsive. This should only be set to true if you know what
-	 * you are doing. With great power comes great responsibility!
+	 * BehaviorProvider will be made directly on the thread sending the message,
+	 * without the overhead of handing it to a separate Thread, unless another
+	 * event is already being handled and setThreadSafe hasn't been set. These
+	 * methods must then not block, returning as quickly as possible to prevent
+	 * the application from becoming unresponsive. This should only be set to
+	 * true if you know what you are doing. With great power comes great
+	 * responsibility!
 	 * 
 	 * @param nonBlocking
 	 *           True if and only if the BehaviorProvider is guaranteed to not
@@ -245,6 +247,17 @@ public interface ComponentContext extends Labeled.Mutable, MutableTerminalHolder
 	 */
 	public void setNonBlocking( boolean nonBlocking );
 
+	/**
+	 * If set to true, the "onTerminal..."-methods on the BehaviorProvider may
+	 * be called from several threads at once. By default they are called one
+	 * at a time, in the order the events arrived.
+	 * 
+	 * @param threadSafe
+	 *           True if and only if the BehaviorProvider handles concurrent
+	 *           calls of its "onTerminal..."-methods.
+	 */
+	public void setThreadSafe( boolean threadSafe );
+
 	/**
 	 * Sets the URL of the web page which is used to display help information
 	 * about the component.
@@ -330,6 +343,15 @@ public interface ComponentContext extends Labeled.Mutable, MutableTerminalHolder
 	 */
 	public boolean isController();
 
+	/**
+	 * Gets a TriggerScheduler for scheduling the triggers of the Component on
+	 * the shared high resolution timer. Any tasks still scheduled when the
+	 * Component is released are cancelled.
+	 * 
+	 * @return
+	 */
+	public TriggerScheduler getTriggerScheduler();
+
 	/**
 	 * Adds (or gets existing) a StatisticVariable.Mutable to the Component, with
 	 * the given name, and attaches StatisticsWriters of the given types.
@@ -0,0 +1,121 @@
+/*
+ * Copyright 2013 SmartBear Software
+ * 
+ * Licensed under the EUPL, Version 1.1 or - as soon they will be approved by the European Commission - subsequent
+ * versions of the EUPL (the "Licence");
+ * You may not use this work except in compliance with the Licence.
+ * You may obtain a copy of the Licence at:
+ * 
+ * http://ec.europa.eu/idabc/eupl
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the Licence is
+ * distributed on an "AS IS" basis, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the Licence for the specific language governing permissions and limitations
+ * under the Licence.
+ */
+package com.eviware.loadui.api.component;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Schedules recurring or delayed tasks, such as the triggers of a generator,
+ * on a shared high resolution timer. The timer hands the tasks of a component
+ * to its executor, so a task which blocks only delays itself. Each task is run
+ * one call at a time.
+ * 
+ * A recurring task is paced from its previous deadline rather than from the
+ * time it actually ran. If the timer falls behind, every missed deadline is
+ * still fired, in a batch, so that the rate of the task is preserved.
+ */
+public interface TriggerScheduler
+{
+	/**
+	 * Runs a task once, after the given delay.
+	 * 
+	 * @param task
+	 * @param delay
+	 * @param unit
+	 * @return A Handle which can be used to cancel the task.
+	 */
+	public Handle schedule( Runnable task, long delay, TimeUnit unit );
+
+	/**
+	 * Runs a task repeatedly, at a fixed rate.
+	 * 
+	 * @param task
+	 * @param initialDelay
+	 * @param period
+	 * @param unit
+	 * @return A Handle which can be used to cancel the task.
+	 */
+	public Handle scheduleAtFixedRate( Runnable task, long initialDelay, long period, TimeUnit unit );
+
+	/**
+	 * Runs a task repeatedly, with the time between two runs given by a Delays
+	 * instance, which is asked for the next delay each time the task has run.
+	 * 
+	 * @param task
+	 * @param initialDelay
+	 * @param delays
+	 * @param unit
+	 *           The unit used both for the initial delay and for the values
+	 *           returned by delays.
+	 * @return A Handle which can be used to cancel the task.
+	 */
+	public Handle scheduleWithDelays( Runnable task, long initialDelay, Delays delays, TimeUnit unit );
+
+	/**
+	 * Cancels every task which has been scheduled using this TriggerScheduler.
+	 */
+	public void cancelAll();
+
+	/**
+	 * Gets the current scheduling lag, that is how far behind the timer
+	 * currently is in firing due tasks.
+	 * 
+	 * @param unit
+	 * @return
+	 */
+	public long getLag( TimeUnit unit );
+
+	/**
+	 * Gets the resolution of the timer.
+	 * 
+	 * @param unit
+	 * @return
+	 */
+	public long getTickDuration( TimeUnit unit );
+
+	/**
+	 * Provides the delays between the runs of a task scheduled using
+	 * scheduleWithDelays.
+	 */
+	public interface Delays
+	{
+		/**
+		 * Gets the delay until the next run of the task. A negative value stops
+		 * the task.
+		 * 
+		 * @return
+		 */
+		public long next();
+	}
+
+	/**
+	 * A task which has been scheduled.
+	 */
+	public interface Handle
+	{
+		/**
+		 * Cancels the task, preventing any further runs of it.
+		 * 
+		 * @return True if the task was cancelled by this call, false if it was
+		 *         already cancelled or done.
+		 */
+		public boolean cancel();
+
+		public boolean isCancelled();
+
+		public boolean isDone();
+	}
+}
@@ -0,0 +1,57 @@
+/*
+ * Copyright 2013 SmartBear Software
+ * 
+ * Licensed under the EUPL, Version 1.1 or - as soon they will be approved by the European Commission - subsequent
+ * versions of the EUPL (the "Licence");
+ * You may not use this work except in compliance with the Licence.
+ * You may obtain a copy of the Licence at:
+ * 
+ * http://ec.europa.eu/idabc/eupl
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the Licence is
+ * distributed on an "AS IS" basis, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the Licence for the specific language governing permissions and limitations
+ * under the Licence.
+ */
+package com.eviware.loadui.api.statistics;
+
+import com.eviware.loadui.api.statistics.store.Entry;
+
+/**
+ * Holds the running state of an aggregation, allowing Entries to be aggregated
+ * one at a time rather than being buffered until the result is needed.
+ * 
+ * Not thread safe.
+ */
+public interface EntryAccumulator
+{
+	/**
+	 * Adds an Entry to the aggregation.
+	 * 
+	 * @param entry
+	 */
+	public void add( Entry entry );
+
+	/**
+	 * Adds the state of another EntryAccumulator, created by the same
+	 * IncrementalEntryAggregator, to this one.
+	 * 
+	 * @param other
+	 */
+	public void merge( EntryAccumulator other );
+
+	/**
+	 * Returns true if no Entries have been added.
+	 * 
+	 * @return
+	 */
+	public boolean isEmpty();
+
+	/**
+	 * Gets the aggregated Entry of everything added so far, or null if there is
+	 * none.
+	 * 
+	 * @return
+	 */
+	public Entry getResult();
+}
@@ -19,6 +19,10 @@ import java.util.Set;
 
 import com.eviware.loadui.api.statistics.store.Entry;
 
+/**
+ * Aggregates Entries of a Track. Implement IncrementalEntryAggregator to avoid
+ * having the Entries buffered until aggregation.
+ */
 public interface EntryAggregator
 {
 	/**
@@ -0,0 +1,34 @@
+/*
+ * Copyright 2013 SmartBear Software
+ * 
+ * Licensed under the EUPL, Version 1.1 or - as soon they will be approved by the European Commission - subsequent
+ * versions of the EUPL (the "Licence");
+ * You may not use this work except in compliance with the Licence.
+ * You may obtain a copy of the Licence at:
+ * 
+ * http://ec.europa.eu/idabc/eupl
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the Licence is
+ * distributed on an "AS IS" basis, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the Licence for the specific language governing permissions and limitations
+ * under the Licence.
+ */
+package com.eviware.loadui.api.statistics;
+
+/**
+ * An EntryAggregator which can aggregate Entries as they arrive, holding a
+ * constant amount of state for each aggregation.
+ */
+public interface IncrementalEntryAggregator extends EntryAggregator
+{
+	/**
+	 * Creates a new, empty EntryAccumulator.
+	 * 
+	 * @param parallel
+	 *           True if the aggregated Entries are from different sources for
+	 *           the same period of time, false if they are from consecutive
+	 *           periods of time.
+	 * @return
+	 */
+	public EntryAccumulator createAccumulator( boolean parallel );
+}
@@ -101,6 +101,25 @@ public interface Statistic<T extends Number> extends ListenableValue<T>, Labeled
 	@CheckForNull
 	public DataPoint<T> getLatestPoint( int interpolationLevel );
 
+	/**
+	 * Gets the value of this Statistic summarized over the whole of the given
+	 * Execution, as stored when the Execution was stopped.
+	 * 
+	 * @param execution
+	 *           The Execution to read the summary from.
+	 * @return The summarized value, or null if no summary was stored.
+	 */
+	@CheckForNull
+	public T getSummaryValue( Execution execution );
+
+	/**
+	 * execution defaults to the current Execution.
+	 * 
+	 * @see getSummaryValue(Execution)
+	 */
+	@CheckForNull
+	public T getSummaryValue();
+
 	/**
 	 * A Descriptor stored information about a Statistic, and gives a way to
 	 * resolve the Statistic;
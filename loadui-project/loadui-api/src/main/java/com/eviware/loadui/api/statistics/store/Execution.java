@@ -150,6 +150,17 @@ public interface Execution extends Labeled.Mutable, EventFirer, AttributeHolder,
 	 */
 	public long getLength();
 
+	/**
+	 * Gets an Entry summarizing the whole Execution for a Track and source,
+	 * aggregated from all of its Entries when the Execution was stopped. Returns
+	 * null if there is no summary, for instance for a running Execution.
+	 * 
+	 * @param trackId
+	 * @param source
+	 * @return
+	 */
+	public Entry getSummaryEntry( String trackId, String source );
+
 	/**
 	 * Returns a File-object containing the Summary report (serialized
 	 * JasperPrint-object) from this Execution.
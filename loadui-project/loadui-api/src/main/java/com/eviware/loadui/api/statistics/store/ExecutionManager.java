@@ -136,6 +136,29 @@ public interface ExecutionManager extends EventFirer
 	 */
 	public void writeEntry( String trackId, Entry entry, String source, int interpolationLevel );
 
+	/**
+	 * Opens a TrackWriter for writing Entries to the Track with the given ID,
+	 * for a specific source and interpolation level. Prefer this over
+	 * writeEntry() when writing repeatedly to the same Track.
+	 * 
+	 * @param trackId
+	 * @param source
+	 * @param interpolationLevel
+	 * @return
+	 */
+	public TrackWriter openWriter( String trackId, String source, int interpolationLevel );
+
+	/**
+	 * Sets the summary Entry of the current Execution for the given Track and
+	 * source, which is stored once the Execution has stopped.
+	 * 
+	 * @see Execution#getSummaryEntry(String, String)
+	 * @param trackId
+	 * @param source
+	 * @param entry
+	 */
+	public void writeSummaryEntry( String trackId, String source, Entry entry );
+
 	/**
 	 * Gets the last stored Entry for a particular source, which is cached in
 	 * memory.
@@ -0,0 +1,65 @@
+/*
+ * Copyright 2013 SmartBear Software
+ * 
+ * Licensed under the EUPL, Version 1.1 or - as soon they will be approved by the European Commission - subsequent
+ * versions of the EUPL (the "Licence");
+ * You may not use this work except in compliance with the Licence.
+ * You may obtain a copy of the Licence at:
+ * 
+ * http://ec.europa.eu/idabc/eupl
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the Licence is
+ * distributed on an "AS IS" basis, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the Licence for the specific language governing permissions and limitations
+ * under the Licence.
+ */
+package com.eviware.loadui.api.statistics.store;
+
+import java.io.Closeable;
+import java.util.List;
+
+/**
+ * A forward-only cursor over a range of a Track, reading one row at a time
+ * without materializing the range. Each row consists of a timestamp and one
+ * double value per value name, where missing values are NaN. A RangeCursor
+ * holds resources in the underlying store, and must be closed when no longer
+ * needed.
+ */
+public interface RangeCursor extends Closeable
+{
+	/**
+	 * Gets the names of the values in each row, in the order used by
+	 * getValue(int).
+	 * 
+	 * @return
+	 */
+	public List<String> getValueNames();
+
+	/**
+	 * Moves to the next row, returning false if there are no more rows.
+	 * 
+	 * @return
+	 */
+	public boolean next();
+
+	/**
+	 * Gets the timestamp of the current row.
+	 * 
+	 * @return
+	 */
+	public long getTimestamp();
+
+	/**
+	 * Gets the value at the given index of the current row.
+	 * 
+	 * @param index
+	 * @return
+	 */
+	public double getValue( int index );
+
+	/**
+	 * Releases the resources held by the RangeCursor.
+	 */
+	@Override
+	public void close();
+}
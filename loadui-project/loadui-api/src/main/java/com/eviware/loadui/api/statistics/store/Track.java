@@ -79,6 +79,23 @@ public interface Track extends Deletable
 	 */
 	public Iterable<Entry> getRange( String source, long startTime, long endTime, int interpolationLevel );
 
+	/**
+	 * Opens a RangeCursor over the specified range, including all Entries with a
+	 * startTime <= timestamp <= endTime for the given source and
+	 * interpolationLevel. The cursor reads the given value names, or all values
+	 * of the Track if none are given. The caller is responsible for closing the
+	 * returned cursor.
+	 * 
+	 * @param source
+	 * @param startTime
+	 * @param endTime
+	 * @param interpolationLevel
+	 * @param valueNames
+	 * @return
+	 */
+	public RangeCursor openRange( String source, long startTime, long endTime, int interpolationLevel,
+			String... valueNames );
+
 	/**
 	 * Gets the EntryAggregator associated with the TrackDescriptor of this Track
 	 *
@@ -0,0 +1,40 @@
+/*
+ * Copyright 2013 SmartBear Software
+ * 
+ * Licensed under the EUPL, Version 1.1 or - as soon they will be approved by the European Commission - subsequent
+ * versions of the EUPL (the "Licence");
+ * You may not use this work except in compliance with the Licence.
+ * You may obtain a copy of the Licence at:
+ * 
+ * http://ec.europa.eu/idabc/eupl
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the Licence is
+ * distributed on an "AS IS" basis, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the Licence for the specific language governing permissions and limitations
+ * under the Licence.
+ */
+package com.eviware.loadui.api.statistics.store;
+
+/**
+ * A handle for writing Entries to a Track for a specific source and
+ * interpolation level. Obtained from ExecutionManager.openWriter(), and valid
+ * for as long as the ExecutionManager is, across Executions.
+ */
+public interface TrackWriter
+{
+	/**
+	 * Writes an Entry to the current Execution, the same way as
+	 * ExecutionManager.writeEntry() does.
+	 * 
+	 * @param entry
+	 */
+	public void write( Entry entry );
+
+	/**
+	 * Gets the last Entry written through this handle, or by writeEntry() for
+	 * the same Track, source and interpolation level, in the current Execution.
+	 * 
+	 * @return
+	 */
+	public Entry getLastEntry();
+}
@@ -93,7 +93,7 @@ public class AggregatedCounterSupport extends CounterSupport
 		{
 			String name = event.getKey();
 			valueCache.invalidate( name );
-			owner.fireEvent( new CounterEvent( ( CounterHolder )owner, name, event.getValue() ) );
+			forwardCounterChange( name, event.getValue() );
 		}
 	}
 }
@@ -0,0 +1,96 @@
+/*
+ * Copyright 2013 SmartBear Software
+ * 
+ * Licensed under the EUPL, Version 1.1 or - as soon they will be approved by the European Commission - subsequent
+ * versions of the EUPL (the "Licence");
+ * You may not use this work except in compliance with the Licence.
+ * You may obtain a copy of the Licence at:
+ * 
+ * http://ec.europa.eu/idabc/eupl
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the Licence is
+ * distributed on an "AS IS" basis, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the Licence for the specific language governing permissions and limitations
+ * under the Licence.
+ */
+package com.eviware.loadui.impl.counter;
+
+import java.util.Collections;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.collect.ImmutableList;
+
+/**
+ * Periodically publishes the accumulated counter changes of all registered
+ * CounterSupports as CounterEvents, on a single shared daemon Thread.
+ */
+final class CounterEventPublisher
+{
+	public static final String INTERVAL_PROPERTY = "loadui.counters.publishInterval";
+
+	private static final Logger log = LoggerFactory.getLogger( CounterEventPublisher.class );
+
+	private static final Set<CounterSupport> supports = Collections.synchronizedSet( Collections
+			.newSetFromMap( new WeakHashMap<CounterSupport, Boolean>() ) );
+
+	static
+	{
+		long interval = Long.getLong( INTERVAL_PROPERTY, 100 );
+		ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor( new ThreadFactory()
+		{
+			@Override
+			public Thread newThread( Runnable runnable )
+			{
+				Thread thread = new Thread( runnable, "CounterEventPublisher" );
+				thread.setDaemon( true );
+				return thread;
+			}
+		} );
+		executor.scheduleWithFixedDelay( new Runnable()
+		{
+			@Override
+			public void run()
+			{
+				publishAll();
+			}
+		}, interval, interval, TimeUnit.MILLISECONDS );
+	}
+
+	private CounterEventPublisher()
+	{
+	}
+
+	static void register( CounterSupport support )
+	{
+		supports.add( support );
+	}
+
+	private static void publishAll()
+	{
+		ImmutableList<CounterSupport> snapshot;
+		synchronized( supports )
+		{
+			snapshot = ImmutableList.copyOf( supports );
+		}
+
+		for( CounterSupport support : snapshot )
+		{
+			try
+			{
+				support.publishCounterEvents();
+			}
+			catch( RuntimeException e )
+			{
+				log.error( "Failed publishing CounterEvents", e );
+			}
+		}
+	}
+}
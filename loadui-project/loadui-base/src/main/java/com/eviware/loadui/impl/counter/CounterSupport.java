@@ -16,6 +16,10 @@
 package com.eviware.loadui.impl.counter;
 
 import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.atomic.AtomicLong;
 
 import com.eviware.loadui.api.counter.Counter;
@@ -29,18 +33,26 @@ import com.google.common.cache.CacheLoader;
 import com.google.common.cache.LoadingCache;
 import com.google.common.collect.ImmutableSet;
 
+/**
+ * Holds the Counters of a CounterHolder. Increments are not published one by
+ * one; instead the changes made to each counter are summed up and published
+ * periodically as a single CounterEvent per counter.
+ */
 public class CounterSupport
 {
 	protected ModelItem owner;
-	private final LoadingCache<String, AtomicLong> counters = CacheBuilder.newBuilder().build(
-			new CacheLoader<String, AtomicLong>()
+	private final LoadingCache<String, CounterValue> counters = CacheBuilder.newBuilder().build(
+			new CacheLoader<String, CounterValue>()
 			{
 				@Override
-				public AtomicLong load( String key ) throws Exception
+				public CounterValue load( String key ) throws Exception
 				{
-					return new AtomicLong();
+					return new CounterValue();
 				}
 			} );
+	private final ConcurrentMap<String, AtomicLong> forwardedChanges = new ConcurrentHashMap<>();
+	private final Object publishLock = new Object();
+	private volatile boolean dirty = false;
 
 	public void init( ModelItem newOwner )
 	{
@@ -50,6 +62,7 @@ public class CounterSupport
 
 		owner = newOwner;
 		owner.addEventListener( ActionEvent.class, new ActionListener() );
+		CounterEventPublisher.register( this );
 	}
 
 	public Counter getCounter( String name )
@@ -64,22 +77,101 @@ public class CounterSupport
 
 	public void resetCounters()
 	{
+		publishCounterEvents();
 		counters.invalidateAll();
 	}
 
 	protected long getCounterValue( String name )
 	{
-		AtomicLong atomicLong = counters.getIfPresent( name );
-		return atomicLong != null ? atomicLong.get() : 0;
+		CounterValue counter = counters.getIfPresent( name );
+		return counter != null ? counter.total.sum() : 0;
 	}
 
 	protected long incrementCounterValue( String name, long value )
 	{
-		counters.getUnchecked( name ).addAndGet( value );
+		CounterValue counter = counters.getUnchecked( name );
+		counter.total.add( value );
+		markDirty();
+
+		return counter.total.sum();
+	}
+
+	/**
+	 * Adds a change of a counter that is not held by this CounterSupport, such
+	 * as that of a child, to the next CounterEvent published for it.
+	 */
+	protected void forwardCounterChange( String name, long delta )
+	{
+		AtomicLong pending = forwardedChanges.get( name );
+		if( pending == null )
+		{
+			AtomicLong newPending = new AtomicLong();
+			pending = forwardedChanges.putIfAbsent( name, newPending );
+			if( pending == null )
+				pending = newPending;
+		}
+		pending.addAndGet( delta );
+		markDirty();
+	}
+
+	/**
+	 * Fires one CounterEvent for each counter which has changed since the last
+	 * call, carrying the sum of the changes. This is called periodically, and
+	 * needs only be called directly to publish changes immediately.
+	 */
+	public void publishCounterEvents()
+	{
+		if( !dirty || owner == null )
+			return;
+
+		Map<String, Long> changes = new LinkedHashMap<>();
+		synchronized( publishLock )
+		{
+			dirty = false;
+			for( Map.Entry<String, CounterValue> entry : counters.asMap().entrySet() )
+			{
+				long delta = entry.getValue().takeDelta();
+				if( delta != 0 )
+					changes.put( entry.getKey(), delta );
+			}
+			for( Map.Entry<String, AtomicLong> entry : forwardedChanges.entrySet() )
+			{
+				long delta = entry.getValue().getAndSet( 0 );
+				if( delta != 0 )
+				{
+					Long localDelta = changes.get( entry.getKey() );
+					changes.put( entry.getKey(), localDelta == null ? delta : localDelta + delta );
+				}
+			}
+		}
+
+		for( Map.Entry<String, Long> change : changes.entrySet() )
+		{
+			owner.fireEvent( new CounterEvent( ( CounterHolder )owner, change.getKey(), change.getValue() ) );
+		}
+	}
+
+	private void markDirty()
+	{
+		if( !dirty )
+			dirty = true;
+	}
 
-		long current = getCounterValue( name );
-		owner.fireEvent( new CounterEvent( ( CounterHolder )owner, name, 1 ) );
-		return current;
+	private static class CounterValue
+	{
+		private final StripedCounter total = new StripedCounter();
+		private long published = 0;
+
+		/**
+		 * Must be called while holding the publishLock.
+		 */
+		public long takeDelta()
+		{
+			long current = total.sum();
+			long delta = current - published;
+			published = current;
+			return delta;
+		}
 	}
 
 	private class CounterImpl implements Counter
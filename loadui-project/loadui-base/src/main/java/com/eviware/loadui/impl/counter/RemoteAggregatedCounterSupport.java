@@ -19,11 +19,9 @@ import java.util.HashMap;
 import java.util.Map;
 import java.util.Map.Entry;
 
-import com.eviware.loadui.api.counter.CounterHolder;
 import com.eviware.loadui.api.counter.CounterSynchronizer;
 import com.eviware.loadui.api.counter.CounterSynchronizer.Aggregator;
 import com.eviware.loadui.api.events.BaseEvent;
-import com.eviware.loadui.api.events.CounterEvent;
 import com.eviware.loadui.api.events.EventHandler;
 import com.eviware.loadui.api.messaging.MessageEndpoint;
 import com.eviware.loadui.api.model.ModelItem;
@@ -97,7 +95,7 @@ public class RemoteAggregatedCounterSupport extends AggregatedCounterSupport imp
 					Long prevVal = summedValues.get( name );
 					long newVal = prevVal == null ? delta : ( prevVal + delta );
 					summedValues.put( name, newVal );
-					owner.fireEvent( new CounterEvent( ( CounterHolder )owner, name, delta ) );
+					forwardCounterChange( name, delta );
 				}
 			}
 		}
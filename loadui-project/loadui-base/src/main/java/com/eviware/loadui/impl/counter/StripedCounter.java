@@ -0,0 +1,79 @@
+/*
+ * Copyright 2013 SmartBear Software
+ * 
+ * Licensed under the EUPL, Version 1.1 or - as soon they will be approved by the European Commission - subsequent
+ * versions of the EUPL (the "Licence");
+ * You may not use this work except in compliance with the Licence.
+ * You may obtain a copy of the Licence at:
+ * 
+ * http://ec.europa.eu/idabc/eupl
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the Licence is
+ * distributed on an "AS IS" basis, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the Licence for the specific language governing permissions and limitations
+ * under the Licence.
+ */
+package com.eviware.loadui.impl.counter;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A long sum which stays cheap to add to from many Threads at once. Starts out
+ * as a single AtomicLong and, once two Threads collide on it, spreads further
+ * additions over cache line padded cells indexed by Thread. Reading the value
+ * sums all cells, and is not atomic with respect to concurrent additions.
+ */
+final class StripedCounter
+{
+	private static final int PADDING = 8;
+	private static final int STRIPES = Math.min( 64,
+			Integer.highestOneBit( Runtime.getRuntime().availableProcessors() * 2 - 1 ) << 1 );
+
+	private final AtomicLong base = new AtomicLong();
+	private volatile AtomicLongArray cells;
+
+	public void add( long value )
+	{
+		AtomicLongArray cs = cells;
+		if( cs == null )
+		{
+			long current = base.get();
+			if( base.compareAndSet( current, current + value ) )
+			{
+				return;
+			}
+			cs = inflate();
+		}
+		cs.addAndGet( stripe() * PADDING, value );
+	}
+
+	public long sum()
+	{
+		long sum = base.get();
+		AtomicLongArray cs = cells;
+		if( cs != null )
+		{
+			for( int i = 0; i < STRIPES; i++ )
+			{
+				sum += cs.get( i * PADDING );
+			}
+		}
+		return sum;
+	}
+
+	private synchronized AtomicLongArray inflate()
+	{
+		if( cells == null )
+		{
+			cells = new AtomicLongArray( STRIPES * PADDING );
+		}
+		return cells;
+	}
+
+	private static int stripe()
+	{
+		int hash = ( int )Thread.currentThread().getId() * 0x9E3779B9;
+		return ( hash ^ ( hash >>> 16 ) ) & ( STRIPES - 1 );
+	}
+}
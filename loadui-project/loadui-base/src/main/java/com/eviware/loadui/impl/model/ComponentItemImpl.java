@@ -19,6 +19,7 @@ import com.eviware.loadui.LoadUI;
 import com.eviware.loadui.api.component.ActivityStrategy;
 import com.eviware.loadui.api.component.ComponentBehavior;
 import com.eviware.loadui.api.component.ComponentContext;
+import com.eviware.loadui.api.component.TriggerScheduler;
 import com.eviware.loadui.api.counter.Counter;
 import com.eviware.loadui.api.counter.CounterSynchronizer;
 import com.eviware.loadui.api.events.*;
@@ -48,17 +49,45 @@ import com.eviware.loadui.impl.terminal.TerminalHolderSupport;
 import com.eviware.loadui.impl.terminal.TerminalMessageImpl;
 import com.eviware.loadui.util.BeanInjector;
 import com.eviware.loadui.util.ReleasableUtils;
+import com.eviware.loadui.util.TimingWheel;
 import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Iterables;
 import com.google.common.collect.Maps;
 import com.google.common.collect.Sets;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.core.convert.ConversionService;
 
 import java.util.*;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 public class ComponentItemImpl extends ModelItemImpl<ComponentItemConfig> implements ComponentItem
 {
+	private static final Logger log = LoggerFactory.getLogger( ComponentItemImpl.class );
+
+	/**
+	 * The maximum number of terminal events handled by one run of the mailbox drainer, before it makes way for other
+	 * tasks of the executor.
+	 */
+	private static final int MAILBOX_BATCH_SIZE = 256;
+
+	/**
+	 * How deep direct deliveries may nest on a single thread, such as in a cycle of connected components, before
+	 * further events are handed to the mailbox instead.
+	 */
+	private static final int MAX_DIRECT_DEPTH = 8;
+
+	private static final ThreadLocal<int[]> directDepth = new ThreadLocal<int[]>()
+	{
+		@Override
+		protected int[] initialValue()
+		{
+			return new int[1];
+		}
+	};
+
 	public static ComponentItemImpl newInstance( CanvasItem canvas, ComponentItemConfig config )
 	{
 		ComponentItemImpl object = new ComponentItemImpl( canvas, config );
@@ -83,7 +112,15 @@ public class ComponentItemImpl extends ModelItemImpl<ComponentItemConfig> implem
 	private LayoutComponent layout;
 	private LayoutComponent compactLayout;
 	private final Set<SettingsLayoutContainer> settingsTabs = Sets.newLinkedHashSet();
-	private boolean nonBlocking = false;
+	private volatile boolean nonBlocking = false;
+	private volatile boolean threadSafe = false;
+
+	/**
+	 * Terminal events waiting to be handled. A single drainer handles them one at a time, in the order they arrived.
+	 */
+	private final Queue<TerminalEventHandler> mailbox = new ConcurrentLinkedQueue<>();
+	private final AtomicBoolean draining = new AtomicBoolean();
+	private final Runnable mailboxDrainer = new MailboxDrainer();
 	private String customHelpUrl = BASE_HELP_URL;
 	private boolean invalid = false;
 	private boolean busy = false;
@@ -99,6 +136,7 @@ public class ComponentItemImpl extends ModelItemImpl<ComponentItemConfig> implem
 	private final Set<Statistic.Descriptor> defaultStatistics = Sets.newLinkedHashSet();
 	private final TerminalsEnabledTask terminalsEnabledTask = new TerminalsEnabledTask();
 	private boolean terminalsEnabled = false;
+	private volatile TriggerScheduler triggerScheduler;
 
 	private ComponentItemImpl( CanvasItem canvas, ComponentItemConfig config )
 	{
@@ -172,13 +210,55 @@ public class ComponentItemImpl extends ModelItemImpl<ComponentItemConfig> implem
 		doHandleTerminalEvent( input, event );
 	}
 
+	/**
+	 * Terminal events, connection changes and messages alike, are handled one at a time through the mailbox of the
+	 * component. Non-blocking behaviors are called directly on the delivering thread while the mailbox is idle, and
+	 * behaviors which are also thread safe are called directly even when other events are being handled.
+	 */
 	private void doHandleTerminalEvent( final InputTerminal input, final TerminalEvent event )
 	{
 		TerminalEventHandler terminalEventHandler = new TerminalEventHandler( event, input );
-		if( nonBlocking )
+		int[] depth = directDepth.get();
+		if( nonBlocking && depth[0] < MAX_DIRECT_DEPTH )
+		{
+			if( threadSafe )
+			{
+				runDirectly( terminalEventHandler, depth );
+				return;
+			}
+
+			if( mailbox.isEmpty() && draining.compareAndSet( false, true ) )
+			{
+				try
+				{
+					runDirectly( terminalEventHandler, depth );
+				}
+				finally
+				{
+					draining.set( false );
+					if( !mailbox.isEmpty() && draining.compareAndSet( false, true ) )
+						executor.execute( mailboxDrainer );
+				}
+				return;
+			}
+		}
+
+		mailbox.add( terminalEventHandler );
+		if( draining.compareAndSet( false, true ) )
+			executor.execute( mailboxDrainer );
+	}
+
+	private static void runDirectly( TerminalEventHandler terminalEventHandler, int[] depth )
+	{
+		depth[0]++;
+		try
+		{
 			terminalEventHandler.run();
-		else
-			executor.execute( terminalEventHandler );
+		}
+		finally
+		{
+			depth[0]--;
+		}
 	}
 
 	@Override
@@ -256,6 +336,8 @@ public class ComponentItemImpl extends ModelItemImpl<ComponentItemConfig> implem
 			triggerAction( CanvasItem.STOP_ACTION );
 		if( behavior != null )
 			behavior.onRelease();
+		if( triggerScheduler != null )
+			triggerScheduler.cancelAll();
 
 		ReleasableUtils.releaseAll( terminalHolderSupport, statisticHolderSupport, behavior, layout, compactLayout,
 				settingsTabs );
@@ -267,6 +349,7 @@ public class ComponentItemImpl extends ModelItemImpl<ComponentItemConfig> implem
 		super.release();
 
 		behavior = null;
+		mailbox.clear();
 		if( activityStrategy != null )
 			activityStrategy.removeEventListener( ActivityEvent.class, activityListener );
 	}
@@ -454,6 +537,38 @@ public class ComponentItemImpl extends ModelItemImpl<ComponentItemConfig> implem
 		}
 	}
 
+	private class MailboxDrainer implements Runnable
+	{
+		@Override
+		public void run()
+		{
+			try
+			{
+				for( int i = 0; i < MAILBOX_BATCH_SIZE; i++ )
+				{
+					TerminalEventHandler terminalEventHandler = mailbox.poll();
+					if( terminalEventHandler == null )
+						break;
+
+					try
+					{
+						terminalEventHandler.run();
+					}
+					catch( RuntimeException e )
+					{
+						log.error( "Error handling terminal event in " + getLabel(), e );
+					}
+				}
+			}
+			finally
+			{
+				draining.set( false );
+				if( !mailbox.isEmpty() && draining.compareAndSet( false, true ) )
+					executor.execute( this );
+			}
+		}
+	}
+
 	private class CanvasListener implements EventHandler<ActionEvent>
 	{
 		@Override
@@ -746,6 +861,12 @@ public class ComponentItemImpl extends ModelItemImpl<ComponentItemConfig> implem
 			ComponentItemImpl.this.nonBlocking = nonBlocking;
 		}
 
+		@Override
+		public void setThreadSafe( boolean threadSafe )
+		{
+			ComponentItemImpl.this.threadSafe = threadSafe;
+		}
+
 		@Override
 		public void setHelpUrl( String helpUrl )
 		{
@@ -874,6 +995,15 @@ public class ComponentItemImpl extends ModelItemImpl<ComponentItemConfig> implem
 			return LoadUI.isController();
 		}
 
+		@Override
+		public synchronized TriggerScheduler getTriggerScheduler()
+		{
+			if( triggerScheduler == null )
+				triggerScheduler = TimingWheel.instance.newScheduler( executor );
+
+			return triggerScheduler;
+		}
+
 		@Override
 		public String getAttribute( String key, String defaultValue )
 		{
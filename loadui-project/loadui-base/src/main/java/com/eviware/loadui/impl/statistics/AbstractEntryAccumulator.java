@@ -0,0 +1,104 @@
+/*
+ * Copyright 2013 SmartBear Software
+ * 
+ * Licensed under the EUPL, Version 1.1 or - as soon they will be approved by the European Commission - subsequent
+ * versions of the EUPL (the "Licence");
+ * You may not use this work except in compliance with the Licence.
+ * You may obtain a copy of the Licence at:
+ * 
+ * http://ec.europa.eu/idabc/eupl
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the Licence is
+ * distributed on an "AS IS" basis, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the Licence for the specific language governing permissions and limitations
+ * under the Licence.
+ */
+package com.eviware.loadui.impl.statistics;
+
+import com.eviware.loadui.api.statistics.EntryAccumulator;
+import com.eviware.loadui.api.statistics.store.Entry;
+import com.eviware.loadui.util.statistics.store.EntrySchema;
+import com.eviware.loadui.util.statistics.store.SchemaEntry;
+
+/**
+ * Base class for the EntryAccumulators of the StatisticsWriters. Keeps track of
+ * the number of Entries and the latest timestamp, and returns a single Entry
+ * as it is, without aggregating it.
+ * 
+ * @param <T>
+ *           The type of the subclass, which merge() accepts.
+ */
+public abstract class AbstractEntryAccumulator<T extends AbstractEntryAccumulator<T>> implements EntryAccumulator
+{
+	protected final boolean parallel;
+
+	private Entry first;
+	private int size = 0;
+	private long timestamp = -1;
+
+	public AbstractEntryAccumulator( boolean parallel )
+	{
+		this.parallel = parallel;
+	}
+
+	@Override
+	public final void add( Entry entry )
+	{
+		if( size++ == 0 )
+			first = entry;
+		timestamp = Math.max( timestamp, entry.getTimestamp() );
+		accumulate( entry );
+	}
+
+	@Override
+	@SuppressWarnings( "unchecked" )
+	public final void merge( EntryAccumulator other )
+	{
+		AbstractEntryAccumulator<?> accumulator = ( AbstractEntryAccumulator<?> )other;
+		if( accumulator.isEmpty() )
+			return;
+
+		if( size == 0 )
+			first = accumulator.first;
+		size += accumulator.size;
+		timestamp = Math.max( timestamp, accumulator.timestamp );
+		combine( ( T )other );
+	}
+
+	@Override
+	public boolean isEmpty()
+	{
+		return size == 0;
+	}
+
+	@Override
+	public Entry getResult()
+	{
+		if( size <= 1 )
+			return first;
+
+		return result( SchemaEntry.schemaOf( first ), timestamp, size );
+	}
+
+	/**
+	 * Adds the values of an Entry to the state of this accumulator.
+	 */
+	protected abstract void accumulate( Entry entry );
+
+	/**
+	 * Adds the state of another accumulator to the state of this one.
+	 */
+	protected abstract void combine( T other );
+
+	/**
+	 * Creates the aggregated Entry from two or more Entries.
+	 * 
+	 * @param schema
+	 *           The EntrySchema of the Entries, or null.
+	 * @param timestamp
+	 *           The latest timestamp of the Entries.
+	 * @param size
+	 *           The number of Entries.
+	 */
+	protected abstract Entry result( EntrySchema schema, long timestamp, int size );
+}
@@ -30,9 +30,9 @@ import com.eviware.loadui.api.statistics.StatisticsWriter;
 import com.eviware.loadui.api.statistics.store.Entry;
 import com.eviware.loadui.api.statistics.store.TrackDescriptor;
 import com.eviware.loadui.util.BeanInjector;
-import com.eviware.loadui.util.statistics.store.EntryImpl;
+import com.eviware.loadui.util.statistics.store.EntrySchema;
+import com.eviware.loadui.util.statistics.store.SchemaEntry;
 import com.eviware.loadui.util.statistics.store.TrackDescriptorImpl;
-import com.google.common.collect.ImmutableMap;
 
 public abstract class AbstractStatisticsWriter implements StatisticsWriter
 {
@@ -45,6 +45,7 @@ public abstract class AbstractStatisticsWriter implements StatisticsWriter
 	private final StatisticVariable variable;
 	private final String id;
 	private final TrackDescriptor descriptor;
+	private final EntrySchema schema;
 
 	private final StatisticsAggregator aggregator;
 
@@ -62,6 +63,7 @@ public abstract class AbstractStatisticsWriter implements StatisticsWriter
 		this.variable = variable;
 		id = DigestUtils.md5Hex( variable.getStatisticHolder().getId() + variable.getLabel() + getType() );
 		descriptor = new TrackDescriptorImpl( id, values, entryAggregator );
+		schema = EntrySchema.of( descriptor );
 		delay = config.containsKey( DELAY ) ? ( ( Number )config.get( DELAY ) ).longValue() : manager
 				.getMinimumWriteDelay();
 
@@ -101,6 +103,14 @@ public abstract class AbstractStatisticsWriter implements StatisticsWriter
 		return descriptor;
 	}
 
+	/**
+	 * Gets the EntrySchema used for the Entries output by this writer.
+	 */
+	protected EntrySchema getEntrySchema()
+	{
+		return schema;
+	}
+
 	@Override
 	public void flush()
 	{
@@ -120,6 +130,15 @@ public abstract class AbstractStatisticsWriter implements StatisticsWriter
 		return new EntryBuilder( timestamp );
 	}
 
+	/**
+	 * Like at( long timestamp ), but stores the values in the slots of the given
+	 * EntrySchema rather than by name.
+	 */
+	protected static EntryBuilder at( EntrySchema schema, long timestamp )
+	{
+		return new EntryBuilder( schema, timestamp );
+	}
+
 	/**
 	 * Builder for use in at( int timestamp ) to make writing data to the proper
 	 * Track easy.
@@ -128,28 +147,32 @@ public abstract class AbstractStatisticsWriter implements StatisticsWriter
 	 */
 	protected static class EntryBuilder
 	{
-		private final long timestamp;
-		private final ImmutableMap.Builder<String, Number> mapBuilder = ImmutableMap.builder();
+		private final SchemaEntry.Builder builder;
 
 		public EntryBuilder( long timestamp )
 		{
-			this.timestamp = timestamp;
+			this( null, timestamp );
+		}
+
+		public EntryBuilder( EntrySchema schema, long timestamp )
+		{
+			builder = new SchemaEntry.Builder( schema, timestamp );
 		}
 
 		public <T extends Number> EntryBuilder put( String name, T value )
 		{
-			mapBuilder.put( name, value );
+			builder.put( name, value );
 			return this;
 		}
 
 		public long getTimestamp()
 		{
-			return timestamp;
+			return builder.getTimestamp();
 		}
 
 		public Entry build()
 		{
-			return new EntryImpl( timestamp, mapBuilder.build() );
+			return builder.build();
 		}
 	}
 
@@ -19,13 +19,15 @@ import java.util.Map;
 import java.util.Set;
 import java.util.TreeMap;
 
-import com.eviware.loadui.api.statistics.EntryAggregator;
+import com.eviware.loadui.api.statistics.EntryAccumulator;
+import com.eviware.loadui.api.statistics.IncrementalEntryAggregator;
 import com.eviware.loadui.api.statistics.StatisticVariable;
 import com.eviware.loadui.api.statistics.StatisticsManager;
 import com.eviware.loadui.api.statistics.StatisticsWriter;
 import com.eviware.loadui.api.statistics.StatisticsWriterFactory;
 import com.eviware.loadui.api.statistics.store.Entry;
-import com.google.common.collect.Iterables;
+import com.eviware.loadui.util.statistics.EntryAccumulators;
+import com.eviware.loadui.util.statistics.store.EntrySchema;
 
 public class CounterStatisticsWriter extends AbstractStatisticsWriter
 {
@@ -88,7 +90,8 @@ public class CounterStatisticsWriter extends AbstractStatisticsWriter
 		// log.debug( " counterStatWriter:output()   lastTimeFlushed={} delay={}",
 		// lastTimeFlushed, delay );
 		lastTimeFlushed = Math.min( lastTimeFlushed + delay, currentTime );
-		return at( lastTimeFlushed ).put( Stats.TOTAL.name(), total ).put( Stats.PER_SECOND.name(), perSecond ).build();
+		return at( getEntrySchema(), lastTimeFlushed )
+				.put( Stats.TOTAL.name(), total ).put( Stats.PER_SECOND.name(), perSecond ).build();
 		// log.debug( " ...resulted in Entry {}",e );
 	}
 
@@ -106,31 +109,58 @@ public class CounterStatisticsWriter extends AbstractStatisticsWriter
 		change = 0;
 	}
 
-	private static class Aggregator implements EntryAggregator
+	private static class Aggregator implements IncrementalEntryAggregator
 	{
 		@Override
 		public Entry aggregate( Set<Entry> entries, boolean parallel )
+		{
+			return EntryAccumulators.aggregate( this, entries, parallel );
+		}
+
+		@Override
+		public EntryAccumulator createAccumulator( boolean parallel )
+		{
+			return new Accumulator( parallel );
+		}
+	}
+
+	private static class Accumulator extends AbstractEntryAccumulator<Accumulator>
+	{
+		private long total = 0;
+		private double perSecond = 0;
+
+		public Accumulator( boolean parallel )
+		{
+			super( parallel );
+		}
+
+		@Override
+		public Entry getResult()
 		{
 			// Counters already aggregate their values on their own, so we shouldn't
 			// do this here.
-			if( parallel )
-				return null;
-			if( entries.size() <= 1 )
-				return Iterables.getFirst( entries, null );
-
-			long total = 0;
-			double perSecond = 0;
-			long maxTime = -1;
-			for( Entry entry : entries )
-			{
-				total = Math.max( total, entry.getValue( Stats.TOTAL.name() ).longValue() );
-				perSecond += entry.getValue( Stats.PER_SECOND.name() ).longValue();
-				maxTime = Math.max( maxTime, entry.getTimestamp() );
-			}
-
-			perSecond /= entries.size();
-
-			return at( maxTime ).put( Stats.TOTAL.name(), total ).put( Stats.PER_SECOND.name(), perSecond ).build();
+			return parallel ? null : super.getResult();
+		}
+
+		@Override
+		protected void accumulate( Entry entry )
+		{
+			total = Math.max( total, entry.getValue( Stats.TOTAL.name() ).longValue() );
+			perSecond += entry.getValue( Stats.PER_SECOND.name() ).longValue();
+		}
+
+		@Override
+		protected void combine( Accumulator other )
+		{
+			total = Math.max( total, other.total );
+			perSecond += other.perSecond;
+		}
+
+		@Override
+		protected Entry result( EntrySchema schema, long timestamp, int size )
+		{
+			return at( schema, timestamp ).put( Stats.TOTAL.name(), total ).put( Stats.PER_SECOND.name(), perSecond / size )
+					.build();
 		}
 	}
 
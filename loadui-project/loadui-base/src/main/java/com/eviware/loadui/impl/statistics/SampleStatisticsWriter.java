@@ -16,20 +16,23 @@
 package com.eviware.loadui.impl.statistics;
 
 import java.util.Map;
-import java.util.PriorityQueue;
 import java.util.Set;
 import java.util.TreeMap;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import com.eviware.loadui.api.statistics.EntryAggregator;
+import com.eviware.loadui.api.statistics.EntryAccumulator;
+import com.eviware.loadui.api.statistics.IncrementalEntryAggregator;
 import com.eviware.loadui.api.statistics.StatisticVariable;
 import com.eviware.loadui.api.statistics.StatisticsManager;
 import com.eviware.loadui.api.statistics.StatisticsWriter;
 import com.eviware.loadui.api.statistics.StatisticsWriterFactory;
 import com.eviware.loadui.api.statistics.store.Entry;
-import com.google.common.collect.Iterables;
+import com.eviware.loadui.util.statistics.EntryAccumulators;
+import com.eviware.loadui.util.statistics.EntrySketches;
+import com.eviware.loadui.util.statistics.QuantileSketch;
+import com.eviware.loadui.util.statistics.store.EntrySchema;
 
 /**
  * StatisticsWriter for calculating the average of given values.
@@ -66,12 +69,21 @@ public class SampleStatisticsWriter extends AbstractStatisticsWriter
 	double sum = 0.0;
 	long count = 0L;
 
-	private final PriorityQueue<Double> sortedValues = new PriorityQueue<>();
+	private double sumOfSquares = 0.0;
+	private QuantileSketch sketch = new QuantileSketch();
+
+	/**
+	 * The values needed for aggregation aren't part of the track structure, but
+	 * get their own slots so that they are kept as primitives.
+	 */
+	private final EntrySchema outputSchema;
 
 	public SampleStatisticsWriter( StatisticsManager statisticsManager, StatisticVariable variable,
 			Map<String, Class<? extends Number>> trackStructure, Map<String, Object> config )
 	{
 		super( statisticsManager, variable, trackStructure, config, new Aggregator() );
+		outputSchema = getEntrySchema().extend( Stats.COUNT.name(), Long.class ).extend( Stats.SUM.name(), Double.class )
+				.extend( Stats.STD_DEV_SUM.name(), Double.class );
 	}
 
 	@Override
@@ -86,8 +98,9 @@ public class SampleStatisticsWriter extends AbstractStatisticsWriter
 		synchronized( this )
 		{
 			double doubleValue = value.doubleValue();
-			this.sortedValues.add( doubleValue );
+			sketch.add( doubleValue );
 			sum += doubleValue;
+			sumOfSquares += doubleValue * doubleValue;
 			count++ ;
 			if( lastTimeFlushed + delay <= System.currentTimeMillis() )
 			{
@@ -97,167 +110,193 @@ public class SampleStatisticsWriter extends AbstractStatisticsWriter
 	}
 
 	@Override
-	public Entry output()
+	public synchronized Entry output()
 	{
 		if( count == 0 )
 		{
 			return null;
 		}
-		double average = 0.0;
-		double stdDev = 0.0;
-		double sumTotalSquare = 0.0;
-		double percentile25 = 0;
-		double percentile50 = 0;
-		double percentile75 = 0;
-		double percentile90 = 0;
-
-		average = sum / count;
-		sumTotalSquare = 0;
-
-		double previousValue = 0;
-		int upperPercPos25 = 0, upperPercPos50 = 0, upperPercPos75 = 0, upperPercPos90 = 0;
-		double diff25 = 0, diff50 = 0, diff75 = 0, diff90 = 0;
-
-		// percentile precalculations
-		if( sortedValues.size() != 1 )
-		{
-			double percentilePos25 = 0.25 * ( sortedValues.size() - 1 );
-			double percentilePos50 = 0.50 * ( sortedValues.size() - 1 );
-			double percentilePos75 = 0.75 * ( sortedValues.size() - 1 );
-			double percentilePos90 = 0.9 * ( sortedValues.size() - 1 );
-			if( percentilePos90 >= sortedValues.size() - 1 )
-			{
-				upperPercPos90 = sortedValues.size() - 1;
-			}
-			else
-			{
-				upperPercPos90 = ( int )Math.floor( percentilePos90 ) + 1;
-			}
-			upperPercPos75 = ( int )Math.floor( percentilePos75 ) + 1;
-			upperPercPos50 = ( int )Math.floor( percentilePos50 ) + 1;
-			upperPercPos25 = ( int )Math.floor( percentilePos25 ) + 1;
-			diff25 = percentilePos25 - Math.floor( percentilePos25 );
-			diff50 = percentilePos50 - Math.floor( percentilePos50 );
-			diff75 = percentilePos75 - Math.floor( percentilePos75 );
-			diff90 = percentilePos90 - Math.floor( percentilePos90 );
-		}
-
-		Double value;
-		double min = sortedValues.peek();
-		if( sortedValues.size() > 1 )
-		{
-			int i = 0;
-			while( ( value = sortedValues.poll() ) != null )
-			{
-				sumTotalSquare += Math.pow( value - average, 2 );
-				if( i == upperPercPos25 )
-					percentile25 = previousValue + diff25 * ( value - previousValue );
-				if( i == upperPercPos50 )
-					percentile50 = previousValue + diff50 * ( value - previousValue );
-				if( i == upperPercPos75 )
-					percentile75 = previousValue + diff75 * ( value - previousValue );
-				if( i == upperPercPos90 )
-					percentile90 = previousValue + diff90 * ( value - previousValue );
-				previousValue = value;
-				i++ ;
-			}
-		}
-		else
-		{
-			previousValue = percentile25 = percentile50 = percentile75 = percentile90 = min;
-		}
-		double max = previousValue;
 
-		stdDev = Math.sqrt( sumTotalSquare / count );
-		// percentile = perc.evaluate( pValues );
+		double average = sum / count;
+		double sumTotalSquare = Math.max( 0, sumOfSquares - sum * average );
+		double stdDev = Math.sqrt( sumTotalSquare / count );
 
 		lastTimeFlushed = System.currentTimeMillis();
 
-		Entry e = at( lastTimeFlushed ).put( Stats.AVERAGE.name(), average ).put( Stats.COUNT.name(), count )
+		Entry e = at( outputSchema, lastTimeFlushed ).put( Stats.AVERAGE.name(), average ).put( Stats.COUNT.name(), count )
 				.put( Stats.SUM.name(), sum ).put( Stats.STD_DEV_SUM.name(), sumTotalSquare )
-				.put( Stats.STD_DEV.name(), stdDev ).put( Stats.PERCENTILE_25TH.name(), percentile25 )
-				.put( Stats.PERCENTILE_75TH.name(), percentile75 ).put( Stats.PERCENTILE_90TH.name(), percentile90 )
-				.put( Stats.MEDIAN.name(), percentile50 ).put( Stats.MIN.name(), min ).put( Stats.MAX.name(), max ).build();
-
-		// reset counters
+				.put( Stats.STD_DEV.name(), stdDev ).put( Stats.PERCENTILE_25TH.name(), sketch.getQuantile( 0.25 ) )
+				.put( Stats.PERCENTILE_75TH.name(), sketch.getQuantile( 0.75 ) )
+				.put( Stats.PERCENTILE_90TH.name(), sketch.getQuantile( 0.9 ) )
+				.put( Stats.MEDIAN.name(), sketch.getQuantile( 0.5 ) ).put( Stats.MIN.name(), sketch.getMin() )
+				.put( Stats.MAX.name(), sketch.getMax() ).build();
+		EntrySketches.attach( e, sketch );
+
+		// reset counters, the sketch now belongs to the Entry.
 		sum = 0;
+		sumOfSquares = 0;
 		count = 0;
-		sortedValues.clear();
+		sketch = new QuantileSketch();
 		return e;
 	}
 
 	@Override
-	public void reset()
+	public synchronized void reset()
 	{
 		super.reset();
-		sortedValues.clear();
+		sketch = new QuantileSketch();
 		sum = 0.0;
+		sumOfSquares = 0.0;
 		count = 0L;
 	}
 
-	private static class Aggregator implements EntryAggregator
+	private static class Aggregator implements IncrementalEntryAggregator
 	{
-		/**
-		 * Aggregates a list of Entries.
-		 * 
-		 * Note that we are using Population based Standard deviation, as opposed
-		 * to Sample based Standard deviation.
-		 * 
-		 * The percentile calculation assumes that the values are normally
-		 * distributed. This assumption might be wrong, but has to be done to
-		 * avoid storing and iterating through the whole set of actual values
-		 * provided by the loadUI components.
-		 * 
-		 * @author henrik.olsson
-		 */
 		@Override
 		public Entry aggregate( Set<Entry> entries, boolean parallel )
 		{
-			if( entries.size() <= 1 )
-				return Iterables.getFirst( entries, null );
+			return EntryAccumulators.aggregate( this, entries, parallel );
+		}
+
+		@Override
+		public EntryAccumulator createAccumulator( boolean parallel )
+		{
+			return new Accumulator( parallel );
+		}
+	}
+
+	/**
+	 * Aggregates Entries.
+	 * 
+	 * Note that we are using Population based Standard deviation, as opposed to
+	 * Sample based Standard deviation.
+	 * 
+	 * Percentiles are calculated from the merged QuantileSketches of the
+	 * Entries, as kept by EntrySketches, which includes Entries received from
+	 * agents. Entries without a sketch, such as those read back from storage,
+	 * fall back to a count-weighted average of their percentiles.
+	 * 
+	 * @author henrik.olsson
+	 */
+	private static class Accumulator extends AbstractEntryAccumulator<Accumulator>
+	{
+		private double totalSum = 0;
+		private long totalCount = 0;
+		private double min = Double.MAX_VALUE;
+		private double max = 0;
+		private double median = 0, percentile25 = 0, percentile75 = 0, percentile90 = 0, stddev = 0;
 
-			long timestamp = -1;
-			double totalSum = 0;
-			long totalCount = 0;
-			double min = Double.MAX_VALUE;
-			double max = 0;
-			double median = 0, percentile25 = 0, percentile75 = 0, percentile90 = 0, stddev = 0;
+		/**
+		 * The merged sketches of the Entries, or null if there are none, or if
+		 * any of the Entries lacked a sketch.
+		 */
+		private QuantileSketch sketch = null;
+		private boolean hasSketches = true;
+
+		public Accumulator( boolean parallel )
+		{
+			super( parallel );
+		}
 
-			for( Entry e : entries )
+		@Override
+		protected void accumulate( Entry e )
+		{
+			QuantileSketch entrySketch = EntrySketches.get( e );
+			if( entrySketch != null )
 			{
-				long count = e.getValue( Stats.COUNT.name() ).longValue();
-				double average = e.getValue( Stats.AVERAGE.name() ).doubleValue();
+				addSketch( entrySketch );
+			}
+			else
+			{
+				dropSketches();
+			}
 
-				timestamp = Math.max( timestamp, e.getTimestamp() );
+			long count = e.getValue( Stats.COUNT.name() ).longValue();
+			double average = e.getValue( Stats.AVERAGE.name() ).doubleValue();
 
-				// median - not really median of all subpopulations, rather a weighted
-				// average of the subpopulations' medians (performance reasons).
-				median += count * e.getValue( Stats.MEDIAN.name() ).doubleValue();
-				percentile25 += count * e.getValue( Stats.PERCENTILE_25TH.name() ).doubleValue();
-				percentile75 += count * e.getValue( Stats.PERCENTILE_75TH.name() ).doubleValue();
-				percentile90 += count * e.getValue( Stats.PERCENTILE_90TH.name() ).doubleValue();
-				stddev += count * e.getValue( Stats.STD_DEV.name() ).doubleValue();
+			// used only without sketches: not really the median of all subpopulations,
+			// rather a weighted average of the subpopulations' medians.
+			median += count * e.getValue( Stats.MEDIAN.name() ).doubleValue();
+			percentile25 += count * e.getValue( Stats.PERCENTILE_25TH.name() ).doubleValue();
+			percentile75 += count * e.getValue( Stats.PERCENTILE_75TH.name() ).doubleValue();
+			percentile90 += count * e.getValue( Stats.PERCENTILE_90TH.name() ).doubleValue();
+			stddev += count * e.getValue( Stats.STD_DEV.name() ).doubleValue();
 
-				// average
-				totalSum += count * average;
-				totalCount += count;
+			// average
+			totalSum += count * average;
+			totalCount += count;
+
+			min = Math.min( min, e.getValue( Stats.MIN.name() ).doubleValue() );
+			max = Math.max( max, e.getValue( Stats.MAX.name() ).doubleValue() );
+		}
 
-				min = Math.min( min, e.getValue( Stats.MIN.name() ).doubleValue() );
-				max = Math.max( max, e.getValue( Stats.MAX.name() ).doubleValue() );
+		@Override
+		protected void combine( Accumulator other )
+		{
+			if( other.hasSketches && other.sketch != null )
+			{
+				addSketch( other.sketch );
 			}
+			else
+			{
+				dropSketches();
+			}
+
+			median += other.median;
+			percentile25 += other.percentile25;
+			percentile75 += other.percentile75;
+			percentile90 += other.percentile90;
+			stddev += other.stddev;
+			totalSum += other.totalSum;
+			totalCount += other.totalCount;
+			min = Math.min( min, other.min );
+			max = Math.max( max, other.max );
+		}
+
+		private void addSketch( QuantileSketch entrySketch )
+		{
+			if( !hasSketches )
+				return;
+
+			// the sketch of an Entry is never modified, so it is copied here.
+			if( sketch == null )
+				sketch = new QuantileSketch();
+			sketch.addAll( entrySketch );
+		}
 
-			median = median / totalCount;
-			percentile25 = percentile25 / totalCount;
-			percentile75 = percentile75 / totalCount;
-			percentile90 = percentile90 / totalCount;
-			stddev = stddev / totalCount;
+		private void dropSketches()
+		{
+			hasSketches = false;
+			sketch = null;
+		}
 
+		@Override
+		protected Entry result( EntrySchema schema, long timestamp, int size )
+		{
 			double totalAverage = totalSum / totalCount;
 
-			return at( timestamp ).put( Stats.AVERAGE.name(), totalAverage ).put( Stats.COUNT.name(), totalCount )
-					.put( Stats.STD_DEV.name(), stddev ).put( Stats.PERCENTILE_90TH.name(), percentile90 )
-					.put( Stats.PERCENTILE_25TH.name(), percentile25 ).put( Stats.PERCENTILE_75TH.name(), percentile75 )
-					.put( Stats.MEDIAN.name(), median ).put( Stats.MIN.name(), min ).put( Stats.MAX.name(), max ).build();
+			EntryBuilder builder = at( schema, timestamp ).put( Stats.AVERAGE.name(), totalAverage )
+					.put( Stats.COUNT.name(), totalCount ).put( Stats.STD_DEV.name(), stddev / totalCount );
+
+			if( hasSketches && sketch != null )
+			{
+				// the result gets a copy, as this accumulator may keep adding to its sketch.
+				QuantileSketch merged = new QuantileSketch();
+				merged.addAll( sketch );
+				Entry result = builder.put( Stats.PERCENTILE_90TH.name(), merged.getQuantile( 0.9 ) )
+						.put( Stats.PERCENTILE_25TH.name(), merged.getQuantile( 0.25 ) )
+						.put( Stats.PERCENTILE_75TH.name(), merged.getQuantile( 0.75 ) )
+						.put( Stats.MEDIAN.name(), merged.getQuantile( 0.5 ) ).put( Stats.MIN.name(), min )
+						.put( Stats.MAX.name(), max ).build();
+				EntrySketches.attach( result, merged );
+				return result;
+			}
+
+			return builder.put( Stats.PERCENTILE_90TH.name(), percentile90 / totalCount )
+					.put( Stats.PERCENTILE_25TH.name(), percentile25 / totalCount )
+					.put( Stats.PERCENTILE_75TH.name(), percentile75 / totalCount )
+					.put( Stats.MEDIAN.name(), median / totalCount ).put( Stats.MIN.name(), min )
+					.put( Stats.MAX.name(), max ).build();
 		}
 	}
 
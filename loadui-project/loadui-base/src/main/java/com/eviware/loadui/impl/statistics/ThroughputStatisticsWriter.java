@@ -19,12 +19,14 @@ import java.util.Map;
 import java.util.Set;
 import java.util.TreeMap;
 
-import com.eviware.loadui.api.statistics.EntryAggregator;
+import com.eviware.loadui.api.statistics.EntryAccumulator;
+import com.eviware.loadui.api.statistics.IncrementalEntryAggregator;
 import com.eviware.loadui.api.statistics.StatisticVariable;
 import com.eviware.loadui.api.statistics.StatisticsManager;
 import com.eviware.loadui.api.statistics.StatisticsWriterFactory;
 import com.eviware.loadui.api.statistics.store.Entry;
-import com.google.common.collect.Iterables;
+import com.eviware.loadui.util.statistics.EntryAccumulators;
+import com.eviware.loadui.util.statistics.store.EntrySchema;
 
 /**
  * 
@@ -84,7 +86,8 @@ public class ThroughputStatisticsWriter extends AbstractStatisticsWriter
 		count = 0;
 		lastTimeFlushed += delay;
 
-		return at( lastTimeFlushed ).put( Stats.BPS.name(), bps ).put( Stats.TPS.name(), tps ).build();
+		return at( getEntrySchema(), lastTimeFlushed )
+				.put( Stats.BPS.name(), bps ).put( Stats.TPS.name(), tps ).build();
 	}
 
 	@Override
@@ -116,35 +119,57 @@ public class ThroughputStatisticsWriter extends AbstractStatisticsWriter
 		count = 0;
 	}
 
-	private static class Aggregator implements EntryAggregator
+	private static class Aggregator implements IncrementalEntryAggregator
 	{
 		@Override
 		public Entry aggregate( Set<Entry> entries, boolean parallel )
 		{
-			if( entries.size() <= 1 )
-				return Iterables.getFirst( entries, null );
-
-			double tpsSum = 0;
-			double bpsSum = 0;
-			long minTime = Long.MAX_VALUE;
-			long maxTime = -1;
-			for( Entry entry : entries )
-			{
-				bpsSum += entry.getValue( Stats.BPS.name() ).doubleValue();
-				tpsSum += entry.getValue( Stats.TPS.name() ).doubleValue();
-				minTime = Math.min( minTime, entry.getTimestamp() );
-				maxTime = Math.max( maxTime, entry.getTimestamp() );
-			}
+			return EntryAccumulators.aggregate( this, entries, parallel );
+		}
+
+		@Override
+		public EntryAccumulator createAccumulator( boolean parallel )
+		{
+			return new Accumulator( parallel );
+		}
+	}
+
+	private static class Accumulator extends AbstractEntryAccumulator<Accumulator>
+	{
+		private double tpsSum = 0;
+		private double bpsSum = 0;
 
+		public Accumulator( boolean parallel )
+		{
+			super( parallel );
+		}
+
+		@Override
+		protected void accumulate( Entry entry )
+		{
+			bpsSum += entry.getValue( Stats.BPS.name() ).doubleValue();
+			tpsSum += entry.getValue( Stats.TPS.name() ).doubleValue();
+		}
+
+		@Override
+		protected void combine( Accumulator other )
+		{
+			bpsSum += other.bpsSum;
+			tpsSum += other.tpsSum;
+		}
+
+		@Override
+		protected Entry result( EntrySchema schema, long timestamp, int size )
+		{
 			double tps = tpsSum;
 			double bps = bpsSum;
 			if( !parallel )
 			{
-				tps /= entries.size();
-				bps /= entries.size();
+				tps /= size;
+				bps /= size;
 			}
 
-			return at( maxTime ).put( Stats.BPS.name(), bps ).put( Stats.TPS.name(), tps ).build();
+			return at( schema, timestamp ).put( Stats.BPS.name(), bps ).put( Stats.TPS.name(), tps ).build();
 		}
 	}
 
@@ -19,12 +19,14 @@ import java.util.Collections;
 import java.util.Map;
 import java.util.Set;
 
-import com.eviware.loadui.api.statistics.EntryAggregator;
+import com.eviware.loadui.api.statistics.EntryAccumulator;
+import com.eviware.loadui.api.statistics.IncrementalEntryAggregator;
 import com.eviware.loadui.api.statistics.StatisticVariable;
 import com.eviware.loadui.api.statistics.StatisticsManager;
 import com.eviware.loadui.api.statistics.StatisticsWriterFactory;
 import com.eviware.loadui.api.statistics.store.Entry;
-import com.google.common.collect.Iterables;
+import com.eviware.loadui.util.statistics.EntryAccumulators;
+import com.eviware.loadui.util.statistics.store.EntrySchema;
 
 /**
  * A StatisticsWriter used to calculate a raw value, where each update signifies
@@ -97,7 +99,7 @@ public class VariableStatisticsWriter extends AbstractStatisticsWriter
 		if( lastUpdate < lastTimeFlushed )
 			lastUpdate = lastTimeFlushed;
 
-		return at( lastTimeFlushed ).put( Stats.VALUE.name(), value ).build();
+		return at( getEntrySchema(), lastTimeFlushed ).put( Stats.VALUE.name(), value ).build();
 	}
 
 	@Override
@@ -119,26 +121,46 @@ public class VariableStatisticsWriter extends AbstractStatisticsWriter
 		return TYPE;
 	}
 
-	private static class Aggregator implements EntryAggregator
+	private static class Aggregator implements IncrementalEntryAggregator
 	{
 		@Override
 		public Entry aggregate( Set<Entry> entries, boolean parallel )
 		{
-			if( entries.size() <= 1 )
-				return Iterables.getFirst( entries, null );
+			return EntryAccumulators.aggregate( this, entries, parallel );
+		}
 
-			long maxTime = -1;
-			double value = 0;
-			for( Entry entry : entries )
-			{
-				maxTime = Math.max( maxTime, entry.getTimestamp() );
-				value += entry.getValue( Stats.VALUE.name() ).doubleValue();
-			}
+		@Override
+		public EntryAccumulator createAccumulator( boolean parallel )
+		{
+			return new Accumulator( parallel );
+		}
+	}
+
+	private static class Accumulator extends AbstractEntryAccumulator<Accumulator>
+	{
+		private double value = 0;
 
-			if( !parallel )
-				value /= entries.size();
+		public Accumulator( boolean parallel )
+		{
+			super( parallel );
+		}
 
-			return at( maxTime ).put( Stats.VALUE.name(), value ).build();
+		@Override
+		protected void accumulate( Entry entry )
+		{
+			value += entry.getValue( Stats.VALUE.name() ).doubleValue();
+		}
+
+		@Override
+		protected void combine( Accumulator other )
+		{
+			value += other.value;
+		}
+
+		@Override
+		protected Entry result( EntrySchema schema, long timestamp, int size )
+		{
+			return at( schema, timestamp ).put( Stats.VALUE.name(), parallel ? value : value / size ).build();
 		}
 	}
 
@@ -16,7 +16,6 @@
 package com.eviware.loadui.impl.summary.sections;
 
 import java.util.Collection;
-import java.util.Map;
 
 import javax.swing.table.TableModel;
 
@@ -85,17 +84,10 @@ public class ProjectExecutionMetricsSection extends MutableSectionImpl
 		for( SceneItem tc : project.getChildren() )
 			for( ComponentItem component : tc.getComponents() )
 				if( component.getBehavior() instanceof RunnerCategory )
-				{
-					Map<String, String> stats = ( ( RunnerCategory )component.getBehavior() ).getStatistics();
-					table.add( new TestCaseSamplerStatisticsTable.TestCaseSamplerStatisticsModel( component.getLabel(),
-							stats ) );
-				}
+					table.addRunner( component );
 		for( ComponentItem component : project.getComponents() )
 			if( component.getBehavior() instanceof RunnerCategory )
-			{
-				Map<String, String> stats = ( ( RunnerCategory )component.getBehavior() ).getStatistics();
-				table.add( new TestCaseSamplerStatisticsTable.TestCaseSamplerStatisticsModel( component.getLabel(), stats ) );
-			}
+				table.addRunner( component );
 		return table;
 	}
 
@@ -15,8 +15,6 @@
  */
 package com.eviware.loadui.impl.summary.sections;
 
-import java.util.Map;
-
 import javax.swing.table.TableModel;
 
 import com.eviware.loadui.api.component.categories.RunnerCategory;
@@ -61,10 +59,7 @@ public class TestCaseExecutionMetricsSection extends MutableSectionImpl
 		for( ComponentItem component : testcase.getComponents() )
 			// if( component.getType().equals("HttpSampler")) {
 			if( component.getBehavior() instanceof RunnerCategory )
-			{
-				Map<String, String> stats = ( ( RunnerCategory )component.getBehavior() ).getStatistics();
-				table.add( new TestCaseSamplerStatisticsTable.TestCaseSamplerStatisticsModel( component.getLabel(), stats ) );
-			}
+				table.addRunner( component );
 		return table;
 	}
 }
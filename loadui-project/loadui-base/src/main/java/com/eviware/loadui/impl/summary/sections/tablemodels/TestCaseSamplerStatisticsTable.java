@@ -22,11 +22,20 @@ import java.util.Map;
 
 import javax.swing.table.AbstractTableModel;
 
+import com.eviware.loadui.api.component.categories.RunnerCategory;
+import com.eviware.loadui.api.model.ComponentItem;
+import com.eviware.loadui.api.statistics.StatisticVariable;
+import com.eviware.loadui.impl.statistics.SampleStatisticsWriter;
+
 public class TestCaseSamplerStatisticsTable extends AbstractTableModel
 {
 
 	private static final long serialVersionUID = 7903409215023804173L;
-	String[] columnNames = { "name", "cnt", "min", "max", "avg", "std-dev", "min/avg", "max/avg", "err", "ratio" };
+	private static final String TIME_TAKEN = "Time Taken";
+	private static final String PERCENTILE_90TH = "90th";
+
+	String[] columnNames = { "name", "cnt", "min", "max", "avg", "std-dev", "min/avg", "max/avg", "err", "ratio",
+			PERCENTILE_90TH };
 	List<TestCaseSamplerStatisticsModel> data = new ArrayList<>();
 
 	@Override
@@ -55,7 +64,7 @@ public class TestCaseSamplerStatisticsTable extends AbstractTableModel
 		else if( columnIndex != 9 )
 		{
 			String v = data.get( rowIndex ).getStat( columnNames[columnIndex] );
-			if( v.equals( "-1" ) )
+			if( v == null || v.equals( "-1" ) )
 				return "N/A";
 		}
 		return data.get( rowIndex ).getStat( columnNames[columnIndex] );
@@ -66,6 +75,28 @@ public class TestCaseSamplerStatisticsTable extends AbstractTableModel
 		data.add( row );
 	}
 
+	/**
+	 * Adds a row for a runner, using the statistics of the runner itself and
+	 * the 90th percentile of its Time Taken over the whole current Execution.
+	 */
+	public void addRunner( ComponentItem component )
+	{
+		Map<String, String> stats = new HashMap<>( ( ( RunnerCategory )component.getBehavior() ).getStatistics() );
+		Number percentile = getTimeTakenSummary( component, SampleStatisticsWriter.Stats.PERCENTILE_90TH.name() );
+		if( percentile != null )
+			stats.put( PERCENTILE_90TH, String.valueOf( Math.round( percentile.doubleValue() ) ) );
+		add( new TestCaseSamplerStatisticsModel( component.getLabel(), stats ) );
+	}
+
+	private static Number getTimeTakenSummary( ComponentItem component, String statisticName )
+	{
+		StatisticVariable timeTaken = component.getStatisticVariable( TIME_TAKEN );
+		if( timeTaken == null || !timeTaken.getStatisticNames().contains( statisticName ) )
+			return null;
+
+		return timeTaken.getStatistic( statisticName, StatisticVariable.MAIN_SOURCE ).getSummaryValue();
+	}
+
 	public static class TestCaseSamplerStatisticsModel
 	{
 
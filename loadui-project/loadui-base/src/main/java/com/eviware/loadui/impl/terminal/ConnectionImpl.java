@@ -42,8 +42,7 @@ public class ConnectionImpl extends ConnectionBase
 		// if( canvas != input.getComponent().getCanvas() )
 		// throw new IllegalArgumentException(
 		// "ConnectionImpl requires both Terminals to be in the same Canvas." );
-		output.addEventListener( TerminalEvent.class, listener );
-		fireTerminalConnectionEvent( TerminalConnectionEvent.Event.CONNECT );
+		attach();
 	}
 
 	public ConnectionImpl( ConnectionConfig config )
@@ -57,8 +56,7 @@ public class ConnectionImpl extends ConnectionBase
 		// if( canvas != getInputTerminal().getComponent().getCanvas() )
 		// throw new IllegalArgumentException(
 		// "ConnectionImpl requires both Terminals to be in the same Canvas." );
-		getOutputTerminal().addEventListener( TerminalEvent.class, listener );
-		fireTerminalConnectionEvent( TerminalConnectionEvent.Event.CONNECT );
+		attach();
 	}
 
 	public ConnectionConfig getConfig()
@@ -69,15 +67,47 @@ public class ConnectionImpl extends ConnectionBase
 	@Override
 	public void disconnect()
 	{
-		fireTerminalConnectionEvent( TerminalConnectionEvent.Event.DISCONNECT );
-		getOutputTerminal().removeEventListener( TerminalEvent.class, listener );
+		OutputTerminal output = getOutputTerminal();
+		if( output instanceof OutputTerminalImpl )
+		{
+			( ( OutputTerminalImpl )output ).removeConnection( this );
+			fireTerminalConnectionEvent( TerminalConnectionEvent.Event.DISCONNECT );
+		}
+		else
+		{
+			output.removeEventListener( TerminalEvent.class, listener );
+		}
 	}
 
-	private void fireTerminalConnectionEvent( TerminalConnectionEvent.Event event )
+	/**
+	 * TerminalMessages and signature changes sent from an OutputTerminalImpl are delivered directly to its
+	 * Connections. The connect event takes the same path, and is delivered before the Connection is added, so that it
+	 * reaches the components before any message does.
+	 */
+	private void attach()
 	{
 		OutputTerminal output = getOutputTerminal();
 		if( output instanceof OutputTerminalImpl )
-			output.fireEvent( new TerminalConnectionEvent( this, output, getInputTerminal(), event ) );
+		{
+			fireTerminalConnectionEvent( TerminalConnectionEvent.Event.CONNECT );
+			( ( OutputTerminalImpl )output ).addConnection( this );
+		}
+		else
+		{
+			output.addEventListener( TerminalEvent.class, listener );
+		}
+	}
+
+	/**
+	 * Delivers a connection change to the connected components directly, and fires it to any other listeners of the
+	 * OutputTerminal.
+	 */
+	private void fireTerminalConnectionEvent( TerminalConnectionEvent.Event event )
+	{
+		OutputTerminal output = getOutputTerminal();
+		TerminalConnectionEvent connectionEvent = new TerminalConnectionEvent( this, output, getInputTerminal(), event );
+		handleTerminalEvent( connectionEvent );
+		output.fireEvent( connectionEvent );
 	}
 
 	protected void handleTerminalEvent( TerminalEvent event )
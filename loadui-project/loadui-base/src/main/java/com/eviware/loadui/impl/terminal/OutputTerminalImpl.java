@@ -16,12 +16,16 @@
 package com.eviware.loadui.impl.terminal;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.EventObject;
 import java.util.HashSet;
 import java.util.Map;
 import java.util.Set;
+import java.util.WeakHashMap;
 
+import com.eviware.loadui.api.events.EventHandler;
 import com.eviware.loadui.api.events.TerminalMessageEvent;
 import com.eviware.loadui.api.events.TerminalSignatureEvent;
 import com.eviware.loadui.api.model.CanvasItem;
@@ -34,8 +38,23 @@ import com.eviware.loadui.api.terminal.TerminalMessage;
 
 public class OutputTerminalImpl extends TerminalImpl implements OutputTerminal
 {
+	private static final ConnectionImpl[] NO_CONNECTIONS = new ConnectionImpl[0];
+
 	private Map<String, Class<?>> signature = Collections.emptyMap();
 
+	/**
+	 * Snapshot of the live Connections, which TerminalMessages and signature changes are delivered to directly,
+	 * bypassing the EventQueue.
+	 */
+	private volatile ConnectionImpl[] connections = NO_CONNECTIONS;
+
+	/**
+	 * Listeners other than Connections that are interested in TerminalMessageEvents. Messages are only fired as events
+	 * when there is at least one.
+	 */
+	private final Set<EventHandler<?>> messageListeners = Collections.synchronizedSet( Collections
+			.newSetFromMap( new WeakHashMap<EventHandler<?>, Boolean>() ) );
+
 	public OutputTerminalImpl( TerminalHolder owner, String name, String label, String description )
 	{
 		super( owner, name, label, description );
@@ -48,12 +67,80 @@ public class OutputTerminalImpl extends TerminalImpl implements OutputTerminal
 			return;
 
 		this.signature = Collections.unmodifiableMap( signature );
-		fireEvent( new TerminalSignatureEvent( this, signature ) );
+		TerminalSignatureEvent event = new TerminalSignatureEvent( this, signature );
+		for( ConnectionImpl connection : connections )
+			connection.handleTerminalEvent( event );
+
+		fireEvent( event );
 	}
 
 	public void sendMessage( TerminalMessage message )
 	{
-		fireEvent( new TerminalMessageEvent( this, message ) );
+		TerminalMessageEvent event = new TerminalMessageEvent( this, message );
+		for( ConnectionImpl connection : connections )
+			connection.handleTerminalEvent( event );
+
+		if( !messageListeners.isEmpty() )
+			fireEvent( event );
+	}
+
+	synchronized void addConnection( ConnectionImpl connection )
+	{
+		ConnectionImpl[] current = connections;
+		for( ConnectionImpl existing : current )
+			if( existing == connection )
+				return;
+
+		ConnectionImpl[] updated = Arrays.copyOf( current, current.length + 1 );
+		updated[current.length] = connection;
+		connections = updated;
+	}
+
+	synchronized void removeConnection( ConnectionImpl connection )
+	{
+		ConnectionImpl[] current = connections;
+		for( int i = 0; i < current.length; i++ )
+		{
+			if( current[i] == connection )
+			{
+				ConnectionImpl[] updated = new ConnectionImpl[current.length - 1];
+				System.arraycopy( current, 0, updated, 0, i );
+				System.arraycopy( current, i + 1, updated, i, current.length - i - 1 );
+				connections = updated;
+				return;
+			}
+		}
+	}
+
+	@Override
+	public <T extends EventObject> void addEventListener( Class<T> type, EventHandler<? super T> listener )
+	{
+		if( listener != null && type.isAssignableFrom( TerminalMessageEvent.class ) )
+			messageListeners.add( listener );
+		super.addEventListener( type, listener );
+	}
+
+	@Override
+	public <T extends EventObject> void removeEventListener( Class<T> type, EventHandler<? super T> listener )
+	{
+		if( type.isAssignableFrom( TerminalMessageEvent.class ) )
+			messageListeners.remove( listener );
+		super.removeEventListener( type, listener );
+	}
+
+	@Override
+	public void clearEventListeners()
+	{
+		messageListeners.clear();
+		super.clearEventListeners();
+	}
+
+	@Override
+	public void release()
+	{
+		connections = NO_CONNECTIONS;
+		messageListeners.clear();
+		super.release();
 	}
 
 	@Override
@@ -17,6 +17,7 @@ package com.eviware.loadui.impl.terminal;
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Map;
@@ -24,84 +25,98 @@ import java.util.Set;
 
 import org.springframework.core.convert.ConversionService;
 
-import com.eviware.loadui.api.serialization.MutableValue;
 import com.eviware.loadui.api.terminal.TerminalMessage;
-import com.eviware.loadui.impl.serialization.MutableValueImpl;
 import com.eviware.loadui.util.serialization.SerializationUtils;
+import com.google.common.collect.ImmutableSet;
 
+/**
+ * TerminalMessage which shares its backing Map with its copies, until either of
+ * them is modified. Values are stored as-is, and are only passed through the
+ * ConversionService when explicitly put with a type they are not an instance
+ * of.
+ */
 public class TerminalMessageImpl implements TerminalMessage
 {
-	private final Map<String, MutableValue<?>> values = new HashMap<>();
+	/**
+	 * Types which are serialized by their String representation only, and
+	 * restored using the ConversionService.
+	 */
+	private static final Set<Class<?>> SIMPLE_TYPES = ImmutableSet.<Class<?>> of( String.class, Boolean.class,
+			Integer.class, Long.class, Double.class, Float.class, Short.class, Byte.class );
+
 	private final ConversionService conversionService;
+	private Map<String, Object> values;
+	private boolean shared;
 
 	public TerminalMessageImpl( ConversionService conversionService )
+	{
+		this( conversionService, new HashMap<String, Object>(), false );
+	}
+
+	private TerminalMessageImpl( ConversionService conversionService, Map<String, Object> values, boolean shared )
 	{
 		this.conversionService = conversionService;
+		this.values = values;
+		this.shared = shared;
 	}
 
 	@Override
-	@SuppressWarnings( { "unchecked", "rawtypes" } )
-	public TerminalMessage copy()
+	public synchronized TerminalMessage copy()
+	{
+		shared = true;
+		return new TerminalMessageImpl( conversionService, values, true );
+	}
+
+	/**
+	 * Gets the backing Map for modification, first detaching it from any copies
+	 * it is shared with. Must be called while holding the lock of this message.
+	 */
+	private Map<String, Object> mutableValues()
 	{
-		TerminalMessageImpl cpy = new TerminalMessageImpl( conversionService );
-		synchronized( values )
+		if( shared )
 		{
-			for( Entry<String, MutableValue<?>> entry : values.entrySet() )
-				cpy.values.put( entry.getKey(), new MutableValueImpl( entry.getValue().getType(), entry.getValue()
-						.getValue(), conversionService ) );
+			values = new HashMap<>( values );
+			shared = false;
 		}
 
-		return cpy;
+		return values;
 	}
 
 	@Override
 	public Object get( Object key )
 	{
-		return values.containsKey( key ) ? values.get( key ).getValue() : null;
+		return values.get( key );
 	}
 
 	@Override
-	@SuppressWarnings( { "unchecked", "rawtypes" } )
-	public Object put( String key, Object value )
+	public synchronized Object put( String key, Object value )
 	{
-		MutableValue<?> oldVal = values.get( key );
-		Object old = oldVal == null ? null : oldVal.getValue();
-
-		if( oldVal != null && oldVal.getType().isInstance( value ) )
-			oldVal.setValue( value );
-		else
-		{
-			synchronized( values )
-			{
-				values.put( key, new MutableValueImpl( value == null ? Object.class : value.getClass(), value,
-						conversionService ) );
-			}
-		}
-		return old;
+		return mutableValues().put( key, value );
 	}
 
 	@Override
-	public <T> void put( String key, T value, Class<T> type )
+	public synchronized <T> void put( String key, T value, Class<T> type )
 	{
-		synchronized( values )
-		{
-			values.put( key, new MutableValueImpl<>( type, value, conversionService ) );
-		}
+		mutableValues().put( key,
+				value == null || type.isInstance( value ) ? value : conversionService.convert( value, type ) );
 	}
 
 	@Override
 	public Object serialize()
 	{
 		Map<String, String[]> serialized = new HashMap<>();
-		for( Entry<String, MutableValue<?>> entry : values.entrySet() )
+		for( Entry<String, Object> entry : values.entrySet() )
 		{
-			MutableValue<?> valueHolder = entry.getValue();
-			Object value = valueHolder.getValue();
+			Object value = entry.getValue();
+			Class<?> type = value == null ? Object.class : value.getClass();
 			String[] parts;
 			try
 			{
-				parts = new String[] { String.valueOf( value ), valueHolder.getType().getName(),
-						SerializationUtils.serializeBase64( value ) };
+				if( SIMPLE_TYPES.contains( type ) )
+					parts = new String[] { String.valueOf( value ), type.getName() };
+				else
+					parts = new String[] { String.valueOf( value ), type.getName(),
+							SerializationUtils.serializeBase64( value ) };
 			}
 			catch( Exception e )
 			{
@@ -115,37 +130,44 @@ public class TerminalMessageImpl implements TerminalMessage
 	}
 
 	@Override
-	@SuppressWarnings( { "unchecked", "rawtypes" } )
-	public void load( Object serialized )
+	@SuppressWarnings( "unchecked" )
+	public synchronized void load( Object serialized )
 	{
 		if( !( serialized instanceof Map<?, ?> ) )
 			throw new IllegalArgumentException( "" );
 
 		Map<String, String[]> data = ( Map<String, String[]> )serialized;
+		Map<String, Object> target = mutableValues();
 		for( Entry<String, String[]> entry : data.entrySet() )
 		{
 			String[] args = entry.getValue();
-			MutableValue<?> value;
-			if( args.length == 3 )
+			Object value = args[0];
+			if( args.length == 2 )
 			{
 				try
 				{
-					Class<?> type = Class.forName( args[1] );
-					value = new MutableValueImpl( type, SerializationUtils.deserialize( args[2] ), conversionService );
+					value = conversionService.convert( args[0], Class.forName( args[1] ) );
 				}
 				catch( Exception e )
 				{
-					value = new MutableValueImpl<>( String.class, args[0], conversionService );
+					value = args[0];
 				}
 			}
-			else
-			{
-				value = new MutableValueImpl<>( String.class, args[0], conversionService );
-			}
-			synchronized( values )
+			else if( args.length == 3 )
 			{
-				values.put( entry.getKey(), value );
+				try
+				{
+					Class<?> type = Class.forName( args[1] );
+					value = SerializationUtils.deserialize( args[2] );
+					if( value != null && !type.isInstance( value ) )
+						value = conversionService.convert( value, type );
+				}
+				catch( Exception e )
+				{
+					value = args[0];
+				}
 			}
+			target.put( entry.getKey(), value );
 		}
 	}
 
@@ -160,9 +182,14 @@ public class TerminalMessageImpl implements TerminalMessage
 	}
 
 	@Override
-	public void clear()
+	public synchronized void clear()
 	{
-		synchronized( values )
+		if( shared )
+		{
+			values = new HashMap<>();
+			shared = false;
+		}
+		else
 		{
 			values.clear();
 		}
@@ -177,12 +204,7 @@ public class TerminalMessageImpl implements TerminalMessage
 	@Override
 	public boolean containsValue( Object value )
 	{
-		if( value != null )
-			for( MutableValue<?> v : values.values() )
-				if( value.equals( v.getValue() ) )
-					return true;
-
-		return false;
+		return value != null && values.containsValue( value );
 	}
 
 	@Override
@@ -194,21 +216,19 @@ public class TerminalMessageImpl implements TerminalMessage
 	@Override
 	public Set<String> keySet()
 	{
-		return values.keySet();
+		return Collections.unmodifiableSet( values.keySet() );
 	}
 
 	@Override
-	public void putAll( Map<? extends String, ? extends Object> m )
+	public synchronized void putAll( Map<? extends String, ? extends Object> m )
 	{
-		for( Entry<? extends String, ? extends Object> entry : m.entrySet() )
-			put( entry.getKey(), entry.getValue() );
+		mutableValues().putAll( m );
 	}
 
 	@Override
-	public Object remove( Object key )
+	public synchronized Object remove( Object key )
 	{
-		MutableValue<?> value = values.remove( key );
-		return value == null ? null : value.getValue();
+		return values.containsKey( key ) ? mutableValues().remove( key ) : null;
 	}
 
 	@Override
@@ -220,11 +240,7 @@ public class TerminalMessageImpl implements TerminalMessage
 	@Override
 	public Collection<Object> values()
 	{
-		Collection<Object> objects = new ArrayList<>();
-		for( MutableValue<?> value : values.values() )
-			objects.add( value.getValue() );
-
-		return objects;
+		return new ArrayList<>( values.values() );
 	}
 
 	@Override
@@ -0,0 +1,139 @@
+/*
+ * Copyright 2013 SmartBear Software
+ * 
+ * Licensed under the EUPL, Version 1.1 or - as soon they will be approved by the European Commission - subsequent
+ * versions of the EUPL (the "Licence");
+ * You may not use this work except in compliance with the Licence.
+ * You may obtain a copy of the Licence at:
+ * 
+ * http://ec.europa.eu/idabc/eupl
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the Licence is
+ * distributed on an "AS IS" basis, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the Licence for the specific language governing permissions and limitations
+ * under the Licence.
+ */
+package com.eviware.loadui.impl.counter;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.atLeastOnce;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+
+import java.util.ArrayList;
+import java.util.EventObject;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+
+import com.eviware.loadui.api.counter.Counter;
+import com.eviware.loadui.api.events.CounterEvent;
+import com.eviware.loadui.api.model.CanvasItem;
+
+public class CounterSupportTest
+{
+	private CanvasItem owner;
+	private CounterSupport counterSupport;
+
+	@Before
+	public void setup()
+	{
+		owner = mock( CanvasItem.class );
+		counterSupport = new CounterSupport();
+		counterSupport.init( owner );
+	}
+
+	@Test
+	public void incrementsShouldBeCoalescedIntoFewEvents()
+	{
+		Counter requests = counterSupport.getCounter( "requests" );
+		Counter bytes = counterSupport.getCounter( "bytes" );
+		for( int i = 0; i < 1000; i++ )
+		{
+			requests.increment();
+		}
+		bytes.increment( 5 );
+		bytes.increment( 7 );
+
+		counterSupport.publishCounterEvents();
+
+		Map<String, Long> published = new HashMap<>();
+		int eventCount = 0;
+		for( CounterEvent event : publishedEvents() )
+		{
+			Long sum = published.get( event.getKey() );
+			published.put( event.getKey(), sum == null ? event.getValue() : sum + event.getValue() );
+			eventCount++;
+		}
+
+		assertThat( published.get( "requests" ), is( 1000L ) );
+		assertThat( published.get( "bytes" ), is( 12L ) );
+		assertTrue( "Expected coalesced events, got " + eventCount, eventCount < 10 );
+		assertThat( requests.get(), is( 1000L ) );
+	}
+
+	@Test
+	public void forwardedChangesShouldBePublishedWithLocalChanges()
+	{
+		counterSupport.getCounter( "requests" ).increment( 3 );
+		counterSupport.forwardCounterChange( "requests", 4 );
+
+		counterSupport.publishCounterEvents();
+
+		long sum = 0;
+		for( CounterEvent event : publishedEvents() )
+		{
+			sum += event.getValue();
+		}
+		assertThat( sum, is( 7L ) );
+		assertThat( counterSupport.getCounter( "requests" ).get(), is( 3L ) );
+	}
+
+	@Test
+	public void concurrentIncrementsShouldNotBeLost() throws InterruptedException
+	{
+		final Counter counter = counterSupport.getCounter( "requests" );
+		final int threads = 4;
+		final int increments = 100000;
+		final CountDownLatch done = new CountDownLatch( threads );
+		for( int t = 0; t < threads; t++ )
+		{
+			new Thread( new Runnable()
+			{
+				@Override
+				public void run()
+				{
+					for( int i = 0; i < increments; i++ )
+					{
+						counter.increment();
+					}
+					done.countDown();
+				}
+			} ).start();
+		}
+		done.await();
+
+		assertThat( counter.get(), is( ( long )threads * increments ) );
+	}
+
+	private List<CounterEvent> publishedEvents()
+	{
+		ArgumentCaptor<EventObject> captor = ArgumentCaptor.forClass( EventObject.class );
+		verify( owner, atLeastOnce() ).fireEvent( captor.capture() );
+
+		List<CounterEvent> events = new ArrayList<>();
+		for( EventObject event : captor.getAllValues() )
+		{
+			if( event instanceof CounterEvent )
+				events.add( ( CounterEvent )event );
+		}
+		return events;
+	}
+}
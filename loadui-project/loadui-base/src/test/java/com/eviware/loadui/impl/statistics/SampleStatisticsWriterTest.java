@@ -17,20 +17,31 @@ package com.eviware.loadui.impl.statistics;
 
 import static org.hamcrest.Matchers.lessThanOrEqualTo;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertThat;
 import static org.mockito.Matchers.anyString;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
 
 import org.junit.Before;
 import org.junit.Test;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.eviware.loadui.api.statistics.EntryAccumulator;
+import com.eviware.loadui.api.statistics.EntryAggregator;
+import com.eviware.loadui.api.statistics.IncrementalEntryAggregator;
 import com.eviware.loadui.api.statistics.StatisticHolder;
 import com.eviware.loadui.api.statistics.StatisticVariable;
 import com.eviware.loadui.api.statistics.StatisticsManager;
@@ -39,6 +50,10 @@ import com.eviware.loadui.api.statistics.store.Execution;
 import com.eviware.loadui.api.statistics.store.ExecutionManager;
 import com.eviware.loadui.api.statistics.store.Track;
 import com.eviware.loadui.impl.statistics.SampleStatisticsWriter.Stats;
+import com.eviware.loadui.util.messaging.BinaryMessageCodec;
+import com.eviware.loadui.util.statistics.EntrySketches;
+import com.eviware.loadui.util.statistics.QuantileSketch;
+import com.eviware.loadui.util.statistics.store.SchemaEntry;
 import com.eviware.loadui.util.test.BeanInjectorMocker;
 
 public class SampleStatisticsWriterTest
@@ -192,15 +207,44 @@ public class SampleStatisticsWriterTest
 	@Test
 	public void testPercentileAggregation()
 	{
-		// Entry result = prepareAggregation();
-		/*
-		 * assertEquals( 7.25, result.getValue( Stats.PERCENTILE_25TH.name()
-		 * ).doubleValue(), 0.005 ); assertEquals( 9.0, result.getValue(
-		 * Stats.MEDIAN.name() ).doubleValue(), 0.005 ); assertEquals( 10.0,
-		 * result.getValue( Stats.PERCENTILE_75TH.name() ).doubleValue(), 0.005 );
-		 * assertEquals( 12.5, result.getValue( Stats.PERCENTILE_90TH.name()
-		 * ).doubleValue(), 0.005 );
-		 */
+		Entry result = prepareAggregation();
+		assertEquals( 7.25, result.getValue( Stats.PERCENTILE_25TH.name() ).doubleValue(), 0.005 );
+		assertEquals( 9.0, result.getValue( Stats.MEDIAN.name() ).doubleValue(), 0.005 );
+		assertEquals( 10.0, result.getValue( Stats.PERCENTILE_75TH.name() ).doubleValue(), 0.005 );
+		assertEquals( 12.5, result.getValue( Stats.PERCENTILE_90TH.name() ).doubleValue(), 0.005 );
+	}
+
+	@Test
+	public void testPercentileAggregationOfAggregates()
+	{
+		List<Entry> entries = sampleEntries();
+		EntryAggregator aggregator = writer.getTrackDescriptor().getEntryAggregator();
+		Entry firstTwo = aggregator.aggregate( new HashSet<>( entries.subList( 0, 2 ) ), false );
+		Entry result = aggregator.aggregate( new HashSet<>( Arrays.asList( firstTwo, entries.get( 2 ) ) ), false );
+
+		assertEquals( 7.25, result.getValue( Stats.PERCENTILE_25TH.name() ).doubleValue(), 0.005 );
+		assertEquals( 9.0, result.getValue( Stats.MEDIAN.name() ).doubleValue(), 0.005 );
+		assertEquals( 12.5, result.getValue( Stats.PERCENTILE_90TH.name() ).doubleValue(), 0.005 );
+		assertNull( result.getValue( "_QUANTILE_SKETCH" ) );
+	}
+
+	@Test
+	public void testPercentileAggregationAcrossAgents() throws Exception
+	{
+		List<Entry> entries = sampleEntries();
+		Entry fromFirstAgent = sendToController( entries.get( 0 ) );
+		Entry fromSecondAgent = sendToController( entries.get( 1 ) );
+
+		EntryAggregator aggregator = writer.getTrackDescriptor().getEntryAggregator();
+		Entry result = aggregator.aggregate( new HashSet<>( Arrays.asList( fromFirstAgent, fromSecondAgent ) ), true );
+
+		QuantileSketch expected = new QuantileSketch();
+		for( double value : new double[] { 10, 8, 6, 7, 7, 9, 17 } )
+		{
+			expected.add( value );
+		}
+		assertEquals( expected.getQuantile( 0.25 ), result.getValue( Stats.PERCENTILE_25TH.name() ).doubleValue(), 0.005 );
+		assertEquals( expected.getQuantile( 0.9 ), result.getValue( Stats.PERCENTILE_90TH.name() ).doubleValue(), 0.005 );
 	}
 
 	@Test
@@ -217,7 +261,69 @@ public class SampleStatisticsWriterTest
 		assertEquals( 17, result.getValue( Stats.MAX.name() ).doubleValue(), 0.005 );
 	}
 
+	@Test
+	public void testIncrementalAggregation()
+	{
+		List<Entry> entries = sampleEntries();
+		IncrementalEntryAggregator aggregator = ( IncrementalEntryAggregator )writer.getTrackDescriptor()
+				.getEntryAggregator();
+
+		EntryAccumulator first = aggregator.createAccumulator( false );
+		first.add( entries.get( 0 ) );
+		EntryAccumulator rest = aggregator.createAccumulator( false );
+		rest.add( entries.get( 1 ) );
+		rest.add( entries.get( 2 ) );
+		first.merge( rest );
+
+		Entry expected = aggregator.aggregate( new HashSet<>( entries ), false );
+		Entry result = first.getResult();
+		assertEquals( expected.getTimestamp(), result.getTimestamp() );
+		for( Stats stat : Arrays.asList( Stats.AVERAGE, Stats.COUNT, Stats.STD_DEV, Stats.MEDIAN, Stats.PERCENTILE_90TH,
+				Stats.MIN, Stats.MAX ) )
+		{
+			assertEquals( expected.getValue( stat.name() ).doubleValue(), result.getValue( stat.name() ).doubleValue(),
+					0.005 );
+		}
+	}
+
 	private Entry prepareAggregation()
+	{
+		return writer.getTrackDescriptor().getEntryAggregator().aggregate( new HashSet<>( sampleEntries() ), false );
+	}
+
+	/**
+	 * Passes an Entry through the message format used between agents and the
+	 * controller, as TrackStreamReceiver receives it.
+	 */
+	@SuppressWarnings( "unchecked" )
+	private static Entry sendToController( Entry entry ) throws Exception
+	{
+		Map<String, Object> message = new HashMap<>();
+		for( String name : entry.getNames() )
+		{
+			message.put( name, entry.getValue( name ) );
+		}
+		EntrySketches.write( entry, message );
+
+		BinaryMessageCodec codec = new BinaryMessageCodec();
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		try( ObjectOutputStream out = new ObjectOutputStream( bytes ) )
+		{
+			codec.writeData( out, message );
+		}
+		Map<String, Object> received;
+		try( ObjectInputStream in = new ObjectInputStream( new ByteArrayInputStream( bytes.toByteArray() ) ) )
+		{
+			received = ( Map<String, Object> )codec.readData( in );
+		}
+
+		QuantileSketch sketch = EntrySketches.read( received );
+		Entry receivedEntry = SchemaEntry.fromMap( null, entry.getTimestamp(), ( Map<String, Number> )( Map<String, ?> )received );
+		EntrySketches.attach( receivedEntry, sketch );
+		return receivedEntry;
+	}
+
+	private List<Entry> sampleEntries()
 	{
 		// Based on these three sets of samples: {{10, 8, 6}, {7, 7, 9, 17}, {12,
 		// 10, 9}}
@@ -254,7 +360,6 @@ public class SampleStatisticsWriterTest
 		// ).put( Stats.MIN.name(), 9 )
 		// .put( Stats.MAX.name(), 12 ).build() );
 
-		return writer.getTrackDescriptor().getEntryAggregator()
-				.aggregate( new HashSet<>( Arrays.asList( e1, e2, e3 ) ), false );
+		return Arrays.asList( e1, e2, e3 );
 	}
 }
@@ -0,0 +1,137 @@
+/*
+ * Copyright 2013 SmartBear Software
+ * 
+ * Licensed under the EUPL, Version 1.1 or - as soon they will be approved by the European Commission - subsequent
+ * versions of the EUPL (the "Licence");
+ * You may not use this work except in compliance with the Licence.
+ * You may obtain a copy of the Licence at:
+ * 
+ * http://ec.europa.eu/idabc/eupl
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the Licence is
+ * distributed on an "AS IS" basis, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the Licence for the specific language governing permissions and limitations
+ * under the Licence.
+ */
+package com.eviware.loadui.impl.terminal;
+
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.argThat;
+import static org.mockito.Matchers.isA;
+import static org.mockito.Matchers.same;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+
+import org.hamcrest.BaseMatcher;
+import org.hamcrest.Description;
+import org.hamcrest.Matcher;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.InOrder;
+import org.springframework.core.convert.support.DefaultConversionService;
+
+import com.eviware.loadui.api.addressable.AddressableRegistry;
+import com.eviware.loadui.api.events.EventHandler;
+import com.eviware.loadui.api.events.TerminalConnectionEvent;
+import com.eviware.loadui.api.events.TerminalEvent;
+import com.eviware.loadui.api.events.TerminalMessageEvent;
+import com.eviware.loadui.api.terminal.InputTerminal;
+import com.eviware.loadui.api.terminal.TerminalHolder;
+import com.eviware.loadui.api.terminal.TerminalMessage;
+import com.eviware.loadui.config.ConnectionConfig;
+import com.eviware.loadui.util.test.BeanInjectorMocker;
+import com.eviware.loadui.util.test.TestUtils;
+
+public class ConnectionImplTest
+{
+	private OutputTerminalImpl output;
+	private InputTerminal input;
+	private TerminalHolder inputHolder;
+	private TerminalMessage message;
+
+	@Before
+	public void setup()
+	{
+		new BeanInjectorMocker().put( AddressableRegistry.class, mock( AddressableRegistry.class ) );
+
+		output = new OutputTerminalImpl( mock( TerminalHolder.class ), "output", "output", "output" );
+		inputHolder = mock( TerminalHolder.class );
+		input = new InputTerminalImpl( inputHolder, "input", "input", "input" );
+		message = new TerminalMessageImpl( new DefaultConversionService() );
+	}
+
+	@After
+	public void teardown()
+	{
+		output.release();
+	}
+
+	@Test
+	public void messagesShouldBeDeliveredDirectly()
+	{
+		new ConnectionImpl( ConnectionConfig.Factory.newInstance(), output, input );
+
+		output.sendMessage( message );
+
+		verify( inputHolder ).handleTerminalEvent( same( input ), argThat( carries( message ) ) );
+	}
+
+	@Test
+	public void connectionEventsShouldTakeTheSamePathAsMessages()
+	{
+		ConnectionImpl connection = new ConnectionImpl( ConnectionConfig.Factory.newInstance(), output, input );
+		output.sendMessage( message );
+		connection.disconnect();
+
+		InOrder inOrder = inOrder( inputHolder );
+		inOrder.verify( inputHolder ).handleTerminalEvent( same( input ), isA( TerminalConnectionEvent.class ) );
+		inOrder.verify( inputHolder ).handleTerminalEvent( same( input ), argThat( carries( message ) ) );
+		inOrder.verify( inputHolder ).handleTerminalEvent( same( input ), isA( TerminalConnectionEvent.class ) );
+	}
+
+	@Test
+	public void messagesShouldNotBeDeliveredAfterDisconnect() throws Exception
+	{
+		ConnectionImpl connection = new ConnectionImpl( ConnectionConfig.Factory.newInstance(), output, input );
+		connection.disconnect();
+		TestUtils.awaitEvents( output );
+
+		output.sendMessage( message );
+
+		verify( inputHolder, never() ).handleTerminalEvent( any( InputTerminal.class ), argThat( carries( message ) ) );
+	}
+
+	@Test
+	@SuppressWarnings( "unchecked" )
+	public void messagesShouldBeFiredToOtherListeners()
+	{
+		EventHandler<TerminalEvent> listener = mock( EventHandler.class );
+		output.addEventListener( TerminalEvent.class, listener );
+
+		output.sendMessage( message );
+
+		verify( listener, timeout( 1000 ) ).handleEvent( argThat( carries( message ) ) );
+	}
+
+	private static Matcher<TerminalEvent> carries( final TerminalMessage message )
+	{
+		return new BaseMatcher<TerminalEvent>()
+		{
+			@Override
+			public boolean matches( Object item )
+			{
+				return item instanceof TerminalMessageEvent && ( ( TerminalMessageEvent )item ).getMessage() == message;
+			}
+
+			@Override
+			public void describeTo( Description description )
+			{
+				description.appendText( "a TerminalMessageEvent carrying " ).appendValue( message );
+			}
+		};
+	}
+}
@@ -0,0 +1,145 @@
+/*
+ * Copyright 2013 SmartBear Software
+ * 
+ * Licensed under the EUPL, Version 1.1 or - as soon they will be approved by the European Commission - subsequent
+ * versions of the EUPL (the "Licence");
+ * You may not use this work except in compliance with the Licence.
+ * You may obtain a copy of the Licence at:
+ * 
+ * http://ec.europa.eu/idabc/eupl
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the Licence is
+ * distributed on an "AS IS" basis, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the Licence for the specific language governing permissions and limitations
+ * under the Licence.
+ */
+package com.eviware.loadui.impl.terminal;
+
+import java.lang.management.ManagementFactory;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.springframework.core.convert.ConversionService;
+import org.springframework.core.convert.support.DefaultConversionService;
+
+import com.eviware.loadui.api.serialization.MutableValue;
+import com.eviware.loadui.api.terminal.TerminalMessage;
+import com.eviware.loadui.impl.serialization.MutableValueImpl;
+
+/**
+ * Measures the bytes allocated per delivered TerminalMessage when one message
+ * is fanned out to several receivers, comparing the former deep copy (one
+ * HashMap and one MutableValueImpl per key, per receiver) with copy(). The
+ * former copy() is kept below as it was, so both are measured on their own
+ * code path. Run from the command line; requires a HotSpot JVM for
+ * allocation accounting.
+ */
+public class TerminalMessageCopyBenchmark
+{
+	private static final int RECEIVERS = 4;
+	private static final int WARMUP = 200000;
+	private static final int ITERATIONS = 1000000;
+
+	private static Object sink;
+
+	public static void main( String[] args )
+	{
+		ConversionService conversionService = new DefaultConversionService();
+		TerminalMessage message = new TerminalMessageImpl( conversionService );
+		message.put( "ID", "Request-1" );
+		message.put( "Status", true );
+		message.put( "TimeTaken", 42L );
+		message.put( "Timestamp", System.currentTimeMillis() );
+		message.put( "ResponseSize", 1024 );
+		message.put( "URL", "http://localhost/" );
+
+		PreviousTerminalMessage previous = new PreviousTerminalMessage( conversionService );
+		for( Map.Entry<String, Object> entry : message.entrySet() )
+		{
+			previous.put( entry.getKey(), entry.getValue() );
+		}
+
+		deepCopy( previous, WARMUP );
+		cowCopy( message, WARMUP );
+
+		long before = allocatedBytes();
+		deepCopy( previous, ITERATIONS );
+		long deep = allocatedBytes() - before;
+
+		before = allocatedBytes();
+		cowCopy( message, ITERATIONS );
+		long cow = allocatedBytes() - before;
+
+		System.out.println( "Receivers per message: " + RECEIVERS );
+		System.out.println( "Deep copy:     " + deep / ( ITERATIONS * RECEIVERS ) + " bytes per delivered message" );
+		System.out.println( "Copy-on-write: " + cow / ( ITERATIONS * RECEIVERS ) + " bytes per delivered message" );
+	}
+
+	private static void deepCopy( PreviousTerminalMessage message, int iterations )
+	{
+		for( int i = 0; i < iterations; i++ )
+		{
+			for( int r = 0; r < RECEIVERS; r++ )
+			{
+				sink = message.copy();
+			}
+		}
+	}
+
+	private static void cowCopy( TerminalMessage message, int iterations )
+	{
+		for( int i = 0; i < iterations; i++ )
+		{
+			for( int r = 0; r < RECEIVERS; r++ )
+			{
+				sink = message.copy();
+			}
+		}
+	}
+
+	private static long allocatedBytes()
+	{
+		com.sun.management.ThreadMXBean threadBean = ( com.sun.management.ThreadMXBean )ManagementFactory
+				.getThreadMXBean();
+		return threadBean.getThreadAllocatedBytes( Thread.currentThread().getId() );
+	}
+
+	/**
+	 * The storage and copy() of TerminalMessageImpl before it became
+	 * copy-on-write.
+	 */
+	private static class PreviousTerminalMessage
+	{
+		private final Map<String, MutableValue<?>> values = new HashMap<>();
+		private final ConversionService conversionService;
+
+		private PreviousTerminalMessage( ConversionService conversionService )
+		{
+			this.conversionService = conversionService;
+		}
+
+		@SuppressWarnings( { "unchecked", "rawtypes" } )
+		private PreviousTerminalMessage copy()
+		{
+			PreviousTerminalMessage cpy = new PreviousTerminalMessage( conversionService );
+			synchronized( values )
+			{
+				for( Map.Entry<String, MutableValue<?>> entry : values.entrySet() )
+					cpy.values.put( entry.getKey(), new MutableValueImpl( entry.getValue().getType(), entry.getValue()
+							.getValue(), conversionService ) );
+			}
+
+			return cpy;
+		}
+
+		@SuppressWarnings( { "unchecked", "rawtypes" } )
+		private void put( String key, Object value )
+		{
+			synchronized( values )
+			{
+				values.put( key, new MutableValueImpl( value == null ? Object.class : value.getClass(), value,
+						conversionService ) );
+			}
+		}
+	}
+}
@@ -95,4 +95,50 @@ public class TerminalMessageImplTest
 		assertThat( ( Integer )message.get( "b" ), is( 42 ) );
 		assertThat( ( Double )message.get( "c" ), is( 13.37 ) );
 	}
+
+	@Test
+	@SuppressWarnings( { "unchecked", "rawtypes" } )
+	public void shouldConvertTypedValues()
+	{
+		message.put( "a", "42", ( Class )Integer.class );
+		message.put( "b", 42, Number.class );
+
+		assertThat( message.get( "a" ), instanceOf( Integer.class ) );
+		assertThat( ( Integer )message.get( "a" ), is( 42 ) );
+		assertThat( ( Integer )message.get( "b" ), is( 42 ) );
+	}
+
+	@Test
+	public void copiesShouldNotSeeChangesToOriginal()
+	{
+		message.put( "a", "Hello" );
+		TerminalMessage copy = message.copy();
+
+		message.put( "a", "Changed" );
+		message.put( "b", 42 );
+
+		assertThat( ( String )copy.get( "a" ), is( "Hello" ) );
+		assertThat( copy.containsKey( "b" ), is( false ) );
+		assertThat( ( String )message.get( "a" ), is( "Changed" ) );
+	}
+
+	@Test
+	public void originalShouldNotSeeChangesToCopies()
+	{
+		message.put( "a", "Hello" );
+		message.put( "b", 42 );
+		TerminalMessage copy1 = message.copy();
+		TerminalMessage copy2 = message.copy();
+
+		copy1.remove( "a" );
+		copy2.clear();
+		copy2.put( "c", 13.37 );
+
+		assertThat( message.size(), is( 2 ) );
+		assertThat( ( String )message.get( "a" ), is( "Hello" ) );
+		assertThat( copy1.size(), is( 1 ) );
+		assertThat( ( Integer )copy1.get( "b" ), is( 42 ) );
+		assertThat( copy2.size(), is( 1 ) );
+		assertThat( message.get( "c" ), is( nullValue() ) );
+	}
 }
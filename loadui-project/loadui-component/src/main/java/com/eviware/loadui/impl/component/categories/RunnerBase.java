@@ -294,6 +294,40 @@ public abstract class RunnerBase extends BaseCategory implements RunnerCategory,
 		timeTakenVariable.update( startTime + timeTaken, timeTaken );
 		responseSizeVariable.update( startTime + timeTaken, size );
 		throughputVariable.update( startTime + timeTaken, size );
+
+		resumeQueue();
+	}
+
+	/**
+	 * Called instead of sampleCompleted when an asynchronous sample has been
+	 * cancelled, typically from onCancel. Updates the currentlyRunning count
+	 * without producing a result.
+	 *
+	 * @param sampleId The ID of the sample.
+	 */
+	final public void sampleCancelled( Object sampleId )
+	{
+		int cRunning = currentlyRunning.decrementAndGet();
+		updateCurrentlyRunning( cRunning );
+
+		if( cRunning == 0 )
+		{
+			getContext().setBusy( false );
+			activityStrategy.setActivity( false );
+		}
+
+		resumeQueue();
+	}
+
+	/**
+	 * Asynchronous samples don't occupy a Worker while running, so Workers stop
+	 * taking messages once concurrentSamples are running. When one of them
+	 * finishes, a Worker is started for any queued messages.
+	 */
+	private void resumeQueue()
+	{
+		if( !queue.isEmpty() )
+			startWorker();
 	}
 
 	private synchronized void addTopBottomSample( long time, long timeTaken, long size )
@@ -464,6 +498,11 @@ public abstract class RunnerBase extends BaseCategory implements RunnerCategory,
 			discardsCounter.increment();
 		}
 
+		startWorker();
+	}
+
+	private void startWorker()
+	{
 		if( workerCount.get() < concurrentSamples && !isSleeping.get() )
 		{
 			long current = workerCount.incrementAndGet();
@@ -515,7 +554,7 @@ public abstract class RunnerBase extends BaseCategory implements RunnerCategory,
 			}
 			else
 			{
-				log.warn( "Runner returned null on sample(), will have to wait for it to complete!" );
+				log.debug( "Runner returned null on sample(), will have to wait for it to complete!" );
 			}
 		}
 	}
@@ -764,6 +803,18 @@ public abstract class RunnerBase extends BaseCategory implements RunnerCategory,
 
 			while( !exit )
 			{
+				if( currentlyRunning.get() >= concurrentSamples )
+				{
+					// Only reached by asynchronous runners, see resumeQueue(). The
+					// slot is given up before checking again, so that a sample
+					// completing concurrently either finds a free slot or leaves
+					// its queued messages to be picked up here.
+					workerCount.decrementAndGet();
+					if( currentlyRunning.get() < concurrentSamples && !queue.isEmpty() && reenter() )
+						continue;
+					return;
+				}
+
 				try
 				{
 					message = queue.poll();
@@ -789,6 +840,14 @@ public abstract class RunnerBase extends BaseCategory implements RunnerCategory,
 			}
 			workerCount.decrementAndGet();
 		}
+
+		private boolean reenter()
+		{
+			if( workerCount.incrementAndGet() <= concurrentSamples )
+				return true;
+			workerCount.decrementAndGet();
+			return false;
+		}
 	}
 
 	public static class SampleCancelledException extends Exception
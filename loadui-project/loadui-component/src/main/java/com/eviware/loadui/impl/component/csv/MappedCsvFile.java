@@ -0,0 +1,368 @@
+/*
+ * Copyright 2013 SmartBear Software
+ * 
+ * Licensed under the EUPL, Version 1.1 or - as soon they will be approved by the European Commission - subsequent
+ * versions of the EUPL (the "Licence");
+ * You may not use this work except in compliance with the Licence.
+ * You may obtain a copy of the Licence at:
+ * 
+ * http://ec.europa.eu/idabc/eupl
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the Licence is
+ * distributed on an "AS IS" basis, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the Licence for the specific language governing permissions and limitations
+ * under the Licence.
+ */
+package com.eviware.loadui.impl.component.csv;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.eviware.loadui.api.traits.Releasable;
+
+/**
+ * A CSV file which is memory mapped rather than read into memory, for use with
+ * parameter files which are too large to parse up front. The first record of
+ * the file holds the column names.
+ * 
+ * Rows are located using an index which is built lazily, only as far into the
+ * file as has been requested, and which keeps the offset of every
+ * INDEX_INTERVAL:th row. The rest of the file can be indexed by a background
+ * Thread, and indexing the whole file holds the lock used by readers for at
+ * most INDEX_CHUNK rows at a time. The fields of a row are parsed each time it
+ * is read.
+ * Fields may be quoted, and quoted fields may contain separators, line breaks
+ * and doubled quotes. Blank lines are skipped.
+ * 
+ * Instances are shared between everyone opening the same, unchanged, file with
+ * the same separator, and must be released once for each call to open().
+ * Reading rows is thread safe.
+ */
+public final class MappedCsvFile implements Releasable
+{
+	private static final int SEGMENT_BITS = 30;
+	private static final int INDEX_INTERVAL = 16;
+	private static final int INDEX_CHUNK = 64 * 1024;
+	private static final byte QUOTE = '"';
+
+	private static final Map<String, MappedCsvFile> openFiles = new HashMap<>();
+
+	private final String key;
+	private final char separator;
+	private final Charset charset = Charset.defaultCharset();
+	private final int segmentBits;
+	private final long segmentMask;
+	private final MappedByteBuffer[] segments;
+	private final long length;
+	private final String[] columns;
+	private final long firstRow;
+
+	private int references = 0;
+
+	private long[] checkpoints = new long[1024];
+	private long rowCount = 0;
+	private long scanPosition;
+	private boolean indexComplete = false;
+	private boolean indexing = false;
+
+	/**
+	 * Opens a CSV file, or gets the already open instance for it.
+	 */
+	public static MappedCsvFile open( File file, char separator ) throws IOException
+	{
+		String key = file.getCanonicalPath() + '|' + file.length() + '|' + file.lastModified() + '|' + separator;
+		synchronized( openFiles )
+		{
+			MappedCsvFile csvFile = openFiles.get( key );
+			if( csvFile == null )
+			{
+				csvFile = new MappedCsvFile( key, file, separator, SEGMENT_BITS );
+				openFiles.put( key, csvFile );
+			}
+			csvFile.references++ ;
+
+			return csvFile;
+		}
+	}
+
+	MappedCsvFile( String key, File file, char separator, int segmentBits ) throws IOException
+	{
+		this.key = key;
+		this.separator = separator;
+		this.segmentBits = segmentBits;
+		segmentMask = ( 1L << segmentBits ) - 1;
+
+		try (RandomAccessFile raf = new RandomAccessFile( file, "r" ))
+		{
+			FileChannel channel = raf.getChannel();
+			length = channel.size();
+			segments = new MappedByteBuffer[( int )( ( length + segmentMask ) >>> segmentBits )];
+			for( int i = 0; i < segments.length; i++ )
+			{
+				long offset = ( long )i << segmentBits;
+				segments[i] = channel.map( FileChannel.MapMode.READ_ONLY, offset, Math.min( segmentMask + 1, length - offset ) );
+			}
+		}
+
+		long start = skipLineBreaks( hasByteOrderMark() ? 3 : 0 );
+		if( start < length )
+		{
+			long end = recordEnd( start );
+			columns = parseRecord( start, end );
+			firstRow = skipLineBreaks( end + 1 );
+		}
+		else
+		{
+			columns = new String[0];
+			firstRow = length;
+		}
+		scanPosition = firstRow;
+	}
+
+	/**
+	 * Gets the column names, read from the first record of the file.
+	 */
+	public String[] getColumns()
+	{
+		return columns.clone();
+	}
+
+	/**
+	 * Gets the values of a row, where the first row after the column names has
+	 * index 0, or null if the file has fewer rows.
+	 */
+	public String[] getRow( long row )
+	{
+		long start;
+		synchronized( this )
+		{
+			indexTo( row );
+			if( row >= rowCount )
+				return null;
+			start = checkpoints[( int )( row / INDEX_INTERVAL )];
+		}
+
+		for( long i = row % INDEX_INTERVAL; i > 0; i-- )
+			start = nextRecord( start );
+
+		return parseRecord( start, recordEnd( start ) );
+	}
+
+	/**
+	 * Gets the number of rows in the file. This indexes the whole file, if it
+	 * hasn't been indexed already.
+	 */
+	public long getRowCount()
+	{
+		while( true )
+		{
+			synchronized( this )
+			{
+				if( indexComplete )
+					return rowCount;
+				indexTo( rowCount + INDEX_CHUNK - 1 );
+			}
+		}
+	}
+
+	/**
+	 * Gets the number of rows indexed so far, without waiting for the rest of
+	 * the file to be indexed. If nothing has been indexed yet, the first
+	 * INDEX_CHUNK rows are. The rest of the file is indexed in the background.
+	 */
+	public long getIndexedRowCount()
+	{
+		synchronized( this )
+		{
+			if( rowCount == 0 )
+				indexTo( INDEX_CHUNK - 1 );
+			if( indexComplete )
+				return rowCount;
+		}
+		indexInBackground();
+
+		synchronized( this )
+		{
+			return rowCount;
+		}
+	}
+
+	/**
+	 * Starts indexing the whole file on a background Thread, unless it is
+	 * already indexed or being indexed.
+	 */
+	public void indexInBackground()
+	{
+		synchronized( this )
+		{
+			if( indexComplete || indexing )
+				return;
+			indexing = true;
+		}
+
+		Thread indexer = new Thread( new Runnable()
+		{
+			@Override
+			public void run()
+			{
+				try
+				{
+					getRowCount();
+				}
+				finally
+				{
+					synchronized( MappedCsvFile.this )
+					{
+						indexing = false;
+					}
+				}
+			}
+		}, "MappedCsvFile indexer" );
+		indexer.setDaemon( true );
+		indexer.start();
+	}
+
+	public synchronized boolean isIndexComplete()
+	{
+		return indexComplete;
+	}
+
+	public long getLength()
+	{
+		return length;
+	}
+
+	/**
+	 * Releases one reference to the file. The mapping is dropped once the last
+	 * reference is released and the buffers have been garbage collected.
+	 */
+	@Override
+	public void release()
+	{
+		synchronized( openFiles )
+		{
+			if( --references == 0 && openFiles.get( key ) == this )
+				openFiles.remove( key );
+		}
+	}
+
+	private void indexTo( long row )
+	{
+		if( indexComplete )
+			return;
+
+		while( rowCount <= row && scanPosition < length )
+		{
+			if( rowCount % INDEX_INTERVAL == 0 )
+			{
+				int checkpoint = ( int )( rowCount / INDEX_INTERVAL );
+				if( checkpoint == checkpoints.length )
+					checkpoints = Arrays.copyOf( checkpoints, checkpoints.length * 2 );
+				checkpoints[checkpoint] = scanPosition;
+			}
+			rowCount++ ;
+			scanPosition = nextRecord( scanPosition );
+		}
+		indexComplete = scanPosition >= length;
+	}
+
+	private byte byteAt( long position )
+	{
+		return segments[( int )( position >>> segmentBits )].get( ( int )( position & segmentMask ) );
+	}
+
+	private boolean hasByteOrderMark()
+	{
+		return length >= 3 && byteAt( 0 ) == ( byte )0xEF && byteAt( 1 ) == ( byte )0xBB && byteAt( 2 ) == ( byte )0xBF;
+	}
+
+	private long nextRecord( long start )
+	{
+		return skipLineBreaks( recordEnd( start ) + 1 );
+	}
+
+	private long skipLineBreaks( long position )
+	{
+		while( position < length )
+		{
+			byte b = byteAt( position );
+			if( b != '\n' && b != '\r' )
+				break;
+			position++ ;
+		}
+
+		return position;
+	}
+
+	/**
+	 * Finds the line break ending the record starting at the given position,
+	 * ignoring line breaks within quotes.
+	 */
+	private long recordEnd( long start )
+	{
+		boolean quoted = false;
+		for( long position = start; position < length; position++ )
+		{
+			byte b = byteAt( position );
+			if( b == QUOTE )
+				quoted = !quoted;
+			else if( b == '\n' && !quoted )
+				return position;
+		}
+
+		return length;
+	}
+
+	private String[] parseRecord( long start, long end )
+	{
+		if( end > start && byteAt( end - 1 ) == '\r' )
+			end-- ;
+
+		byte[] bytes = new byte[( int )( end - start )];
+		for( int i = 0; i < bytes.length; i++ )
+			bytes[i] = byteAt( start + i );
+
+		return parseLine( new String( bytes, charset ), separator );
+	}
+
+	static String[] parseLine( String line, char separator )
+	{
+		List<String> values = new ArrayList<>();
+		StringBuilder value = new StringBuilder();
+		boolean quoted = false;
+		for( int i = 0; i < line.length(); i++ )
+		{
+			char c = line.charAt( i );
+			if( quoted )
+			{
+				if( c != QUOTE )
+					value.append( c );
+				else if( i + 1 < line.length() && line.charAt( i + 1 ) == QUOTE )
+					value.append( line.charAt( ++i ) );
+				else
+					quoted = false;
+			}
+			else if( c == QUOTE )
+				quoted = true;
+			else if( c == separator )
+			{
+				values.add( value.toString() );
+				value.setLength( 0 );
+			}
+			else
+				value.append( c );
+		}
+		values.add( value.toString() );
+
+		return values.toArray( new String[values.size()] );
+	}
+}
@@ -0,0 +1,234 @@
+/*
+ * Copyright 2013 SmartBear Software
+ * 
+ * Licensed under the EUPL, Version 1.1 or - as soon they will be approved by the European Commission - subsequent
+ * versions of the EUPL (the "Licence");
+ * You may not use this work except in compliance with the Licence.
+ * You may obtain a copy of the Licence at:
+ * 
+ * http://ec.europa.eu/idabc/eupl
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the Licence is
+ * distributed on an "AS IS" basis, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the Licence for the specific language governing permissions and limitations
+ * under the Licence.
+ */
+package com.eviware.loadui.impl.component.csv;
+
+import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.google.common.base.Preconditions;
+
+/**
+ * Reads the rows of a MappedCsvFile in a given order, and may be shared by any
+ * number of concurrent consumers, each row being handed out once per pass.
+ * 
+ * A cursor may be limited to one shard of the file, shard i of n consisting of
+ * the rows i, i + n, i + 2n and so on. Cursors for the different shards of a
+ * file never return the same row.
+ * 
+ * Reading a row never waits for the whole file to be indexed. Random cursors
+ * start indexing it in the background, and pick rows at random from the rows
+ * indexed so far until it is done. A shuffled cursor which starts before the
+ * file is indexed reads its first pass in file order instead, so that each row
+ * is still handed out exactly once per pass.
+ */
+public class RowCursor
+{
+	public enum Order
+	{
+		/**
+		 * Rows are read from the top of the file.
+		 */
+		SEQUENTIAL,
+
+		/**
+		 * Each row is picked at random, so rows may repeat and the cursor never
+		 * runs out.
+		 */
+		RANDOM,
+
+		/**
+		 * Rows are read in a random order, each row once per pass. A new order is
+		 * used for each pass. If the file hasn't been indexed when the first pass
+		 * starts, that pass is read in file order.
+		 */
+		SHUFFLED
+	}
+
+	private static final int ROUNDS = 4;
+
+	private static final int UNDECIDED = 0;
+	private static final int FILE_ORDER = 1;
+	private static final int SHUFFLED_ORDER = 2;
+
+	private final MappedCsvFile csvFile;
+	private final Order order;
+	private final int shardIndex;
+	private final int shardCount;
+	private final boolean loop;
+	private final long seed = new Random().nextLong();
+	private final AtomicLong position = new AtomicLong();
+	private final AtomicInteger firstPassOrder = new AtomicInteger( UNDECIDED );
+
+	public RowCursor( MappedCsvFile csvFile, Order order, boolean loop )
+	{
+		this( csvFile, order, 0, 1, loop );
+	}
+
+	public RowCursor( MappedCsvFile csvFile, Order order, int shardIndex, int shardCount, boolean loop )
+	{
+		Preconditions.checkArgument( shardCount > 0 && shardIndex >= 0 && shardIndex < shardCount,
+				"Invalid shard %s of %s", shardIndex, shardCount );
+
+		this.csvFile = Preconditions.checkNotNull( csvFile );
+		this.order = Preconditions.checkNotNull( order );
+		this.shardIndex = shardIndex;
+		this.shardCount = shardCount;
+		this.loop = loop;
+	}
+
+	/**
+	 * Gets the next row, or null if there are no more rows.
+	 */
+	public String[] next()
+	{
+		switch( order )
+		{
+		case RANDOM :
+		{
+			return getRandomRow();
+		}
+		case SHUFFLED :
+		{
+			long index = position.getAndIncrement();
+			if( isFirstPassInFileOrder() )
+			{
+				// Only rows of the first pass are found here, the size of the shard
+				// is known once the end has been reached.
+				String[] row = getShardRow( index );
+				if( row != null )
+					return row;
+			}
+			long size = getShardSize();
+			long pass = size == 0 ? 0 : index / size;
+			if( size == 0 || ( pass > 0 && !loop ) )
+				return null;
+			return getShardRow( permute( index % size, size, seed + pass ) );
+		}
+		default :
+		{
+			// The size of the shard is only needed, and known, once the end has been reached.
+			long index = position.getAndIncrement();
+			String[] row = getShardRow( index );
+			if( row == null && loop )
+			{
+				long size = getShardSize();
+				if( size > 0 )
+					row = getShardRow( index % size );
+			}
+			return row;
+		}
+		}
+	}
+
+	/**
+	 * Gets the number of rows handed out since the cursor was created or reset.
+	 */
+	public long getPosition()
+	{
+		return position.get();
+	}
+
+	/**
+	 * Restarts the cursor from the first row of its first pass.
+	 */
+	public void reset()
+	{
+		position.set( 0 );
+		firstPassOrder.set( UNDECIDED );
+	}
+
+	/**
+	 * Gets the number of rows in the shard of this cursor.
+	 */
+	public long getShardSize()
+	{
+		return shardSizeOf( csvFile.getRowCount() );
+	}
+
+	private long shardSizeOf( long rowCount )
+	{
+		return rowCount > shardIndex ? ( rowCount - shardIndex + shardCount - 1 ) / shardCount : 0;
+	}
+
+	/**
+	 * Decides the order of the first pass of a shuffled cursor when it is
+	 * started, which is shuffled if the file is already indexed.
+	 */
+	private boolean isFirstPassInFileOrder()
+	{
+		if( firstPassOrder.get() == UNDECIDED )
+		{
+			// indexes the first rows, which for a small file is all of them.
+			csvFile.getIndexedRowCount();
+			firstPassOrder.compareAndSet( UNDECIDED, csvFile.isIndexComplete() ? SHUFFLED_ORDER : FILE_ORDER );
+		}
+
+		return firstPassOrder.get() == FILE_ORDER;
+	}
+
+	private String[] getRandomRow()
+	{
+		long size = shardSizeOf( csvFile.getIndexedRowCount() );
+		return size == 0 ? null : getShardRow( ThreadLocalRandom.current().nextLong( size ) );
+	}
+
+	private String[] getShardRow( long index )
+	{
+		return csvFile.getRow( shardIndex + index * shardCount );
+	}
+
+	/**
+	 * Maps an index in [0, size) to a unique index in [0, size), using a Feistel
+	 * network over the smallest even number of bits able to hold size, and
+	 * repeating it until the result is in range. This gives a random
+	 * permutation without having to store it.
+	 */
+	static long permute( long index, long size, long key )
+	{
+		int bits = Math.max( 2, 64 - Long.numberOfLeadingZeros( size - 1 ) );
+		bits += bits & 1;
+		int half = bits / 2;
+		long mask = ( 1L << half ) - 1;
+
+		long value = index;
+		do
+		{
+			long left = value >>> half;
+			long right = value & mask;
+			for( int round = 0; round < ROUNDS; round++ )
+			{
+				long next = left ^ ( mix( right, key + round ) & mask );
+				left = right;
+				right = next;
+			}
+			value = ( left << half ) | right;
+		}
+		while( value >= size );
+
+		return value;
+	}
+
+	private static long mix( long value, long key )
+	{
+		long hash = value * 0x9E3779B97F4A7C15L + key;
+		hash = ( hash ^ ( hash >>> 33 ) ) * 0xFF51AFD7ED558CCDL;
+		hash = ( hash ^ ( hash >>> 33 ) ) * 0xC4CEB9FE1A85EC53L;
+
+		return hash ^ ( hash >>> 33 );
+	}
+}
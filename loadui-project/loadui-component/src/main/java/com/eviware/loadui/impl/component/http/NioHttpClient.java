@@ -0,0 +1,1144 @@
+/*
+ * Copyright 2013 SmartBear Software
+ * 
+ * Licensed under the EUPL, Version 1.1 or - as soon they will be approved by the European Commission - subsequent
+ * versions of the EUPL (the "Licence");
+ * You may not use this work except in compliance with the Licence.
+ * You may obtain a copy of the Licence at:
+ * 
+ * http://ec.europa.eu/idabc/eupl
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the Licence is
+ * distributed on an "AS IS" basis, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the Licence for the specific language governing permissions and limitations
+ * under the Licence.
+ */
+package com.eviware.loadui.impl.component.http;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.SocketTimeoutException;
+import java.net.URI;
+import java.net.UnknownHostException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.eviware.loadui.api.traits.Releasable;
+import com.eviware.loadui.util.BeanInjector;
+import com.google.common.base.Preconditions;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
+import com.google.common.io.BaseEncoding;
+import com.google.common.util.concurrent.FutureCallback;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.ListenableFutureTask;
+import com.google.common.util.concurrent.MoreExecutors;
+
+/**
+ * An HTTP/1.1 client using non-blocking sockets, where all connections are
+ * served by a small, fixed number of I/O threads regardless of how many
+ * requests are in flight. Connections are kept alive and pooled per host,
+ * response bodies are counted rather than buffered unless requested, and each
+ * connection has its own connect and read timeouts. Only plain HTTP is
+ * supported, optionally through an HTTP proxy. Host names are resolved off the
+ * calling thread by a few resolver threads, and cached addresses are refreshed
+ * in the background.
+ * 
+ * Proxy, credentials and timeouts belong to a Session, so that a single client
+ * can be shared by many users with different settings. ResponseHandlers are
+ * called on the callback Executor rather than on an I/O thread.
+ */
+public class NioHttpClient implements Releasable
+{
+	public static final int DEFAULT_CONNECT_TIMEOUT = 30000;
+	public static final int DEFAULT_READ_TIMEOUT = 60000;
+
+	/**
+	 * How long an unused connection is kept in the pool.
+	 */
+	private static final long KEEP_ALIVE_TIMEOUT = 30000;
+
+	private static final long TIMEOUT_CHECK_INTERVAL = 250;
+
+	private static final int READ_BUFFER_SIZE = 16 * 1024;
+
+	/**
+	 * How long a resolved host address is used before it is looked up again in
+	 * the background.
+	 */
+	private static final long ADDRESS_TTL = 60000;
+
+	private static final int RESOLVER_THREADS = 4;
+
+	private static final int CALLBACK_THREADS = 4;
+
+	private static final Logger log = LoggerFactory.getLogger( NioHttpClient.class );
+
+	private static final Object sharedLock = new Object();
+	private static NioHttpClient shared;
+	private static int sharedSessions = 0;
+
+	private final IoThread[] ioThreads;
+	private final AtomicInteger nextIoThread = new AtomicInteger();
+	private final ConcurrentMap<String, Queue<Connection>> idleConnections = new ConcurrentHashMap<>();
+	private final AtomicInteger openConnections = new AtomicInteger();
+	private final ExecutorService resolver = Executors.newFixedThreadPool( RESOLVER_THREADS, daemonThreads(
+			"NioHttpClient resolver" ) );
+	private final ConcurrentMap<String, ListenableFuture<InetAddress>> pendingLookups = new ConcurrentHashMap<>();
+	private final LoadingCache<String, InetAddress> addresses = CacheBuilder.newBuilder()
+			.refreshAfterWrite( ADDRESS_TTL, TimeUnit.MILLISECONDS ).build( new CacheLoader<String, InetAddress>()
+			{
+				@Override
+				public InetAddress load( String host ) throws UnknownHostException
+				{
+					return InetAddress.getByName( host );
+				}
+
+				@Override
+				public ListenableFuture<InetAddress> reload( final String host, InetAddress oldAddress )
+				{
+					// Keep using the old address until the new one is known.
+					ListenableFutureTask<InetAddress> task = ListenableFutureTask.create( new Callable<InetAddress>()
+					{
+						@Override
+						public InetAddress call() throws UnknownHostException
+						{
+							return load( host );
+						}
+					} );
+					resolver.execute( task );
+					return task;
+				}
+			} );
+	private final Executor callbackExecutor;
+	private final ExecutorService ownCallbackExecutor;
+	private final Session defaultSession = new Session( false );
+
+	private volatile boolean released = false;
+
+	public NioHttpClient()
+	{
+		this( Math.min( 4, Runtime.getRuntime().availableProcessors() ) );
+	}
+
+	/**
+	 * Creates a client which calls ResponseHandlers on a small pool of its own.
+	 */
+	public NioHttpClient( int ioThreadCount )
+	{
+		this( ioThreadCount, null );
+	}
+
+	/**
+	 * Creates a client which calls ResponseHandlers using the given Executor,
+	 * or a small pool of its own if it is null.
+	 */
+	public NioHttpClient( int ioThreadCount, Executor callbackExecutor )
+	{
+		Preconditions.checkArgument( ioThreadCount > 0, "ioThreadCount must be positive" );
+
+		if( callbackExecutor == null )
+		{
+			ownCallbackExecutor = Executors.newFixedThreadPool( CALLBACK_THREADS,
+					daemonThreads( "NioHttpClient callback" ) );
+			this.callbackExecutor = ownCallbackExecutor;
+		}
+		else
+		{
+			ownCallbackExecutor = null;
+			this.callbackExecutor = callbackExecutor;
+		}
+
+		ioThreads = new IoThread[ioThreadCount];
+		for( int i = 0; i < ioThreadCount; i++ )
+		{
+			ioThreads[i] = new IoThread( i );
+		}
+		for( IoThread ioThread : ioThreads )
+		{
+			ioThread.start();
+		}
+	}
+
+	/**
+	 * Opens a Session on the client shared by everything in this runtime, which
+	 * calls ResponseHandlers using the runtime's ExecutorService. The shared
+	 * client is created on first use, and released once all of its Sessions
+	 * have been released.
+	 */
+	public static Session openSharedSession()
+	{
+		synchronized( sharedLock )
+		{
+			if( shared == null )
+				shared = new NioHttpClient( Math.min( 4, Runtime.getRuntime().availableProcessors() ),
+						BeanInjector.getBean( ExecutorService.class ) );
+			sharedSessions++ ;
+			return shared.new Session( true );
+		}
+	}
+
+	/**
+	 * Opens a Session with its own settings, which starts out with the default
+	 * timeouts and without proxy or credentials.
+	 */
+	public Session openSession()
+	{
+		return new Session( false );
+	}
+
+	/**
+	 * Sets the time in milliseconds to wait for a connection to be established,
+	 * for requests sent directly through the client.
+	 */
+	public void setConnectTimeout( int connectTimeout )
+	{
+		defaultSession.setConnectTimeout( connectTimeout );
+	}
+
+	/**
+	 * Sets the time in milliseconds a connection may wait for data from the
+	 * server before the request fails, for requests sent directly through the
+	 * client.
+	 */
+	public void setReadTimeout( int readTimeout )
+	{
+		defaultSession.setReadTimeout( readTimeout );
+	}
+
+	/**
+	 * Sends requests made directly through the client via the given HTTP proxy,
+	 * or directly if host is null.
+	 */
+	public void setProxy( String host, int port )
+	{
+		defaultSession.setProxy( host, port );
+	}
+
+	/**
+	 * Sets the credentials sent with requests made directly through the client.
+	 */
+	public void setCredentials( String username, String password )
+	{
+		defaultSession.setCredentials( username, password );
+	}
+
+	/**
+	 * Sets the proxy credentials sent with requests made directly through the
+	 * client.
+	 */
+	public void setProxyCredentials( String username, String password )
+	{
+		defaultSession.setProxyCredentials( username, password );
+	}
+
+	/**
+	 * Returns the number of currently open connections, both active and idle.
+	 */
+	public int getOpenConnectionCount()
+	{
+		return openConnections.get();
+	}
+
+	/**
+	 * Sends a GET request for the given URI using the settings of the client.
+	 * 
+	 * @see Session#get(URI, boolean, ResponseHandler)
+	 */
+	public Exchange get( URI uri, boolean keepBody, ResponseHandler handler )
+	{
+		return defaultSession.get( uri, keepBody, handler );
+	}
+
+	private void dispatch( Exchange exchange, boolean allowPooled )
+	{
+		if( released )
+		{
+			exchange.fail( new IOException( "The NioHttpClient has been released" ) );
+			return;
+		}
+
+		String host = exchange.routeHost;
+		int port = exchange.routePort;
+		String route = host + ":" + port;
+		if( allowPooled )
+		{
+			Queue<Connection> idle = idleConnections.get( route );
+			if( idle != null )
+			{
+				Connection connection;
+				while( ( connection = idle.poll() ) != null )
+				{
+					if( connection.claim() )
+					{
+						connection.submitExchange( exchange, true );
+						return;
+					}
+				}
+			}
+		}
+
+		// Once an address is older than ADDRESS_TTL, this schedules a lookup in
+		// the background and keeps returning the old address meanwhile.
+		String hostName = host.startsWith( "[" ) ? host.substring( 1, host.length() - 1 ) : host;
+		InetAddress address = addresses.getIfPresent( hostName );
+		if( address != null )
+			connect( exchange, route, new InetSocketAddress( address, port ) );
+		else
+			resolveAndConnect( exchange, route, hostName, port );
+	}
+
+	/**
+	 * Looks up the host on a resolver thread, as a DNS lookup may block for a
+	 * long time. Exchanges waiting for the same host share a single lookup, so
+	 * they don't occupy a resolver thread each.
+	 */
+	private void resolveAndConnect( final Exchange exchange, final String route, final String hostName, final int port )
+	{
+		ListenableFuture<InetAddress> lookup = pendingLookups.get( hostName );
+		if( lookup == null )
+		{
+			ListenableFutureTask<InetAddress> task = ListenableFutureTask.create( new Callable<InetAddress>()
+			{
+				@Override
+				public InetAddress call() throws Exception
+				{
+					try
+					{
+						return addresses.get( hostName );
+					}
+					catch( ExecutionException e )
+					{
+						throw e.getCause() instanceof Exception ? ( Exception )e.getCause() : e;
+					}
+				}
+			} );
+			lookup = pendingLookups.putIfAbsent( hostName, task );
+			if( lookup == null )
+			{
+				lookup = task;
+				task.addListener( new Runnable()
+				{
+					@Override
+					public void run()
+					{
+						pendingLookups.remove( hostName );
+					}
+				}, MoreExecutors.sameThreadExecutor() );
+				try
+				{
+					resolver.execute( task );
+				}
+				catch( RejectedExecutionException e )
+				{
+					task.cancel( false );
+				}
+			}
+		}
+
+		Futures.addCallback( lookup, new FutureCallback<InetAddress>()
+		{
+			@Override
+			public void onSuccess( InetAddress address )
+			{
+				if( !exchange.isDone() )
+					connect( exchange, route, new InetSocketAddress( address, port ) );
+			}
+
+			@Override
+			public void onFailure( Throwable t )
+			{
+				if( t instanceof CancellationException )
+					exchange.fail( new IOException( "The NioHttpClient has been released" ) );
+				else
+					exchange.fail( t instanceof Exception ? ( Exception )t : new IOException( t ) );
+			}
+		} );
+	}
+
+	private void connect( Exchange exchange, String route, InetSocketAddress address )
+	{
+		IoThread ioThread = ioThreads[( nextIoThread.getAndIncrement() & Integer.MAX_VALUE ) % ioThreads.length];
+		new Connection( ioThread, route, address ).submitExchange( exchange, false );
+	}
+
+	private static ByteBuffer createRequest( URI uri, String host, int port, boolean viaProxy, String auth,
+			String proxyAuth )
+	{
+		StringBuilder request = new StringBuilder( "GET " );
+		if( viaProxy )
+		{
+			request.append( uri.toASCIIString() );
+		}
+		else
+		{
+			String path = uri.getRawPath();
+			request.append( path == null || path.isEmpty() ? "/" : path );
+			if( uri.getRawQuery() != null )
+				request.append( '?' ).append( uri.getRawQuery() );
+		}
+		request.append( " HTTP/1.1\r\nHost: " ).append( host );
+		if( port != 80 )
+			request.append( ':' ).append( port );
+		request.append( "\r\nUser-Agent: loadUI\r\nAccept: */*\r\n" );
+
+		if( auth != null )
+			request.append( "Authorization: " ).append( auth ).append( "\r\n" );
+		if( viaProxy && proxyAuth != null )
+			request.append( "Proxy-Authorization: " ).append( proxyAuth ).append( "\r\n" );
+		request.append( "\r\n" );
+
+		return ByteBuffer.wrap( request.toString().getBytes( StandardCharsets.ISO_8859_1 ) );
+	}
+
+	private static String basicAuthorization( String username, String password )
+	{
+		if( username == null )
+			return null;
+
+		String credentials = username + ":" + ( password == null ? "" : password );
+		return "Basic " + BaseEncoding.base64().encode( credentials.getBytes( StandardCharsets.ISO_8859_1 ) );
+	}
+
+	private static ThreadFactory daemonThreads( final String name )
+	{
+		return new ThreadFactory()
+		{
+			@Override
+			public Thread newThread( Runnable r )
+			{
+				Thread thread = new Thread( r, name );
+				thread.setDaemon( true );
+				return thread;
+			}
+		};
+	}
+
+	@Override
+	public void release()
+	{
+		released = true;
+		resolver.shutdownNow();
+		for( IoThread ioThread : ioThreads )
+		{
+			ioThread.shutdown();
+		}
+		idleConnections.clear();
+		if( ownCallbackExecutor != null )
+			ownCallbackExecutor.shutdown();
+	}
+
+	/**
+	 * The settings used for a series of requests, with connections shared
+	 * between all Sessions of the same client. Releasing a Session doesn't abort
+	 * its requests.
+	 */
+	public final class Session implements Releasable
+	{
+		private final boolean sharedSession;
+		private final AtomicBoolean sessionReleased = new AtomicBoolean();
+		private volatile int connectTimeout = DEFAULT_CONNECT_TIMEOUT;
+		private volatile int readTimeout = DEFAULT_READ_TIMEOUT;
+		private volatile String proxyHost;
+		private volatile int proxyPort;
+		private volatile String authorization;
+		private volatile String proxyAuthorization;
+
+		private Session( boolean sharedSession )
+		{
+			this.sharedSession = sharedSession;
+		}
+
+		/**
+		 * Sets the time in milliseconds to wait for a connection to be
+		 * established.
+		 */
+		public void setConnectTimeout( int connectTimeout )
+		{
+			this.connectTimeout = connectTimeout;
+		}
+
+		/**
+		 * Sets the time in milliseconds a connection may wait for data from the
+		 * server before the request fails.
+		 */
+		public void setReadTimeout( int readTimeout )
+		{
+			this.readTimeout = readTimeout;
+		}
+
+		/**
+		 * Sends all requests through the given HTTP proxy, or directly if host
+		 * is null.
+		 */
+		public void setProxy( String host, int port )
+		{
+			proxyHost = host;
+			proxyPort = port;
+		}
+
+		/**
+		 * Sets the credentials sent with each request using Basic
+		 * authentication, or none if username is null.
+		 */
+		public void setCredentials( String username, String password )
+		{
+			authorization = basicAuthorization( username, password );
+		}
+
+		/**
+		 * Sets the credentials sent to the proxy using Basic authentication, or
+		 * none if username is null.
+		 */
+		public void setProxyCredentials( String username, String password )
+		{
+			proxyAuthorization = basicAuthorization( username, password );
+		}
+
+		/**
+		 * Sends a GET request for the given URI. The ResponseHandler is called
+		 * once the response is complete or the request has failed, unless the
+		 * returned Exchange is aborted first.
+		 * 
+		 * @param uri
+		 *           An http URI.
+		 * @param keepBody
+		 *           If true, the body of the response is kept and made available
+		 *           in the Response.
+		 * @param handler
+		 * @return
+		 */
+		public Exchange get( URI uri, boolean keepBody, ResponseHandler handler )
+		{
+			Preconditions.checkState( !released && !sessionReleased.get(), "The NioHttpClient has been released" );
+			Preconditions.checkArgument( "http".equalsIgnoreCase( uri.getScheme() ) && uri.getHost() != null,
+					"Not an http URI: %s", uri );
+
+			String host = uri.getHost();
+			int port = uri.getPort() == -1 ? 80 : uri.getPort();
+			String viaProxyHost = proxyHost;
+			boolean viaProxy = viaProxyHost != null;
+
+			Exchange exchange = new Exchange( uri, keepBody, handler, callbackExecutor, createRequest( uri, host, port,
+					viaProxy, authorization, proxyAuthorization ), viaProxy ? viaProxyHost : host, viaProxy ? proxyPort
+					: port, connectTimeout, readTimeout );
+			dispatch( exchange, true );
+
+			return exchange;
+		}
+
+		/**
+		 * Releases the shared client once this was its last Session. Has no
+		 * effect on other Sessions.
+		 */
+		@Override
+		public void release()
+		{
+			if( !sharedSession || !sessionReleased.compareAndSet( false, true ) )
+				return;
+
+			synchronized( sharedLock )
+			{
+				if( --sharedSessions == 0 && shared == NioHttpClient.this )
+				{
+					shared = null;
+					NioHttpClient.this.release();
+				}
+			}
+		}
+	}
+
+	/**
+	 * Receives the outcome of a request.
+	 */
+	public interface ResponseHandler
+	{
+		public void completed( Response response );
+
+		public void failed( Exception exception );
+	}
+
+	/**
+	 * The status and size of a completed response.
+	 */
+	public static final class Response
+	{
+		private final int statusCode;
+		private final long bodyBytes;
+		private final String body;
+
+		private Response( int statusCode, long bodyBytes, String body )
+		{
+			this.statusCode = statusCode;
+			this.bodyBytes = bodyBytes;
+			this.body = body;
+		}
+
+		public int getStatusCode()
+		{
+			return statusCode;
+		}
+
+		/**
+		 * The size of the response body in bytes.
+		 */
+		public long getBodyBytes()
+		{
+			return bodyBytes;
+		}
+
+		/**
+		 * The response body, or null if it wasn't requested to be kept.
+		 */
+		public String getBody()
+		{
+			return body;
+		}
+	}
+
+	/**
+	 * A request which is in progress.
+	 */
+	public static final class Exchange
+	{
+		private final URI uri;
+		private final boolean keepBody;
+		private final ResponseHandler handler;
+		private final Executor callbackExecutor;
+		private final ByteBuffer request;
+		private final AtomicBoolean done = new AtomicBoolean();
+		private volatile boolean aborted = false;
+		private final String routeHost;
+		private final int routePort;
+		private final int connectTimeout;
+		private final int readTimeout;
+		private volatile Connection connection;
+		private boolean retried = false;
+
+		private Exchange( URI uri, boolean keepBody, ResponseHandler handler, Executor callbackExecutor,
+				ByteBuffer request, String routeHost, int routePort, int connectTimeout, int readTimeout )
+		{
+			this.uri = uri;
+			this.keepBody = keepBody;
+			this.handler = handler;
+			this.callbackExecutor = callbackExecutor;
+			this.request = request;
+			this.routeHost = routeHost;
+			this.routePort = routePort;
+			this.connectTimeout = connectTimeout;
+			this.readTimeout = readTimeout;
+		}
+
+		public URI getUri()
+		{
+			return uri;
+		}
+
+		/**
+		 * Aborts the request, closing its connection. The ResponseHandler will
+		 * not be called after this. Returns false if the request had already
+		 * completed.
+		 */
+		public boolean abort()
+		{
+			if( !done.compareAndSet( false, true ) )
+				return false;
+
+			aborted = true;
+			Connection current = connection;
+			if( current != null )
+				current.abort( this );
+			return true;
+		}
+
+		public boolean isAborted()
+		{
+			return aborted;
+		}
+
+		public boolean isDone()
+		{
+			return done.get();
+		}
+
+		private void complete( final Response response )
+		{
+			if( done.compareAndSet( false, true ) )
+			{
+				callback( new Runnable()
+				{
+					@Override
+					public void run()
+					{
+						handler.completed( response );
+					}
+				} );
+			}
+		}
+
+		private void fail( final Exception exception )
+		{
+			if( done.compareAndSet( false, true ) )
+			{
+				callback( new Runnable()
+				{
+					@Override
+					public void run()
+					{
+						handler.failed( exception );
+					}
+				} );
+			}
+		}
+
+		/**
+		 * Calls the handler away from the I/O thread, or directly if the
+		 * callback Executor no longer accepts tasks.
+		 */
+		private void callback( final Runnable call )
+		{
+			Runnable guarded = new Runnable()
+			{
+				@Override
+				public void run()
+				{
+					try
+					{
+						call.run();
+					}
+					catch( RuntimeException e )
+					{
+						log.error( "Error in ResponseHandler", e );
+					}
+				}
+			};
+
+			try
+			{
+				callbackExecutor.execute( guarded );
+			}
+			catch( RejectedExecutionException e )
+			{
+				guarded.run();
+			}
+		}
+	}
+
+	/**
+	 * A connection to a host or proxy. Apart from claiming an idle connection,
+	 * all access is made from its IoThread.
+	 */
+	private class Connection
+	{
+		private static final int BUSY = 0;
+		private static final int IDLE = 1;
+		private static final int CLOSED = 2;
+
+		private final IoThread ioThread;
+		private final String route;
+		private final InetSocketAddress address;
+		private final AtomicInteger state = new AtomicInteger( BUSY );
+
+		private SocketChannel channel;
+		private SelectionKey key;
+		private Exchange exchange;
+		private ByteBuffer output;
+		private ResponseParser parser;
+		private boolean reused;
+		private long deadline;
+
+		public Connection( IoThread ioThread, String route, InetSocketAddress address )
+		{
+			this.ioThread = ioThread;
+			this.route = route;
+			this.address = address;
+		}
+
+		/**
+		 * Takes an idle connection from the pool for a new request.
+		 */
+		public boolean claim()
+		{
+			return state.compareAndSet( IDLE, BUSY );
+		}
+
+		public void submitExchange( final Exchange newExchange, final boolean pooled )
+		{
+			newExchange.connection = this;
+			ioThread.submit( new Runnable()
+			{
+				@Override
+				public void run()
+				{
+					if( pooled )
+						begin( newExchange );
+					else
+						open( newExchange );
+				}
+			} );
+		}
+
+		public void abort( final Exchange abortedExchange )
+		{
+			ioThread.submit( new Runnable()
+			{
+				@Override
+				public void run()
+				{
+					if( exchange == abortedExchange )
+					{
+						exchange = null;
+						close();
+					}
+				}
+			} );
+		}
+
+		private void open( Exchange newExchange )
+		{
+			if( newExchange.isDone() )
+				return;
+
+			if( released )
+			{
+				newExchange.fail( new IOException( "The NioHttpClient has been released" ) );
+				return;
+			}
+
+			try
+			{
+				channel = SocketChannel.open();
+				openConnections.incrementAndGet();
+				channel.configureBlocking( false );
+				channel.socket().setTcpNoDelay( true );
+				boolean connected = channel.connect( address );
+				key = channel.register( ioThread.selector, connected ? 0 : SelectionKey.OP_CONNECT, this );
+				start( newExchange, false );
+				if( !connected )
+					deadline = System.currentTimeMillis() + newExchange.connectTimeout;
+			}
+			catch( IOException e )
+			{
+				exchange = newExchange;
+				failed( e );
+			}
+		}
+
+		private void begin( Exchange newExchange )
+		{
+			if( state.get() == CLOSED )
+			{
+				// Closed by the server after being claimed.
+				if( !newExchange.isDone() )
+					dispatch( newExchange, false );
+			}
+			else if( newExchange.isDone() )
+			{
+				pool();
+			}
+			else
+			{
+				start( newExchange, true );
+			}
+		}
+
+		private void start( Exchange newExchange, boolean reuse )
+		{
+			exchange = newExchange;
+			reused = reuse;
+			output = newExchange.request.duplicate();
+			parser = new ResponseParser( newExchange.keepBody );
+			deadline = System.currentTimeMillis() + newExchange.readTimeout;
+			if( channel.isConnected() )
+				key.interestOps( SelectionKey.OP_WRITE );
+		}
+
+		public void handle()
+		{
+			try
+			{
+				if( key.isConnectable() )
+				{
+					channel.finishConnect();
+					deadline = System.currentTimeMillis() + exchange.readTimeout;
+					key.interestOps( SelectionKey.OP_WRITE );
+				}
+				else if( key.isWritable() )
+				{
+					channel.write( output );
+					if( !output.hasRemaining() )
+						key.interestOps( SelectionKey.OP_READ );
+					deadline = System.currentTimeMillis() + exchange.readTimeout;
+				}
+				else if( key.isReadable() )
+				{
+					read();
+				}
+			}
+			catch( IOException e )
+			{
+				failed( e );
+			}
+		}
+
+		private void read() throws IOException
+		{
+			ByteBuffer buffer = ioThread.readBuffer;
+			buffer.clear();
+			int count = channel.read( buffer );
+			if( count == 0 )
+				return;
+
+			if( exchange == null )
+			{
+				// Data or end of stream on an idle connection means that the server
+				// is closing it.
+				if( state.compareAndSet( IDLE, CLOSED ) )
+					removeFromPool();
+				close();
+				return;
+			}
+
+			if( count < 0 )
+			{
+				if( parser.endOfStream() )
+					completed();
+				else
+					failed( new EOFException( "Connection closed before the response was complete" ) );
+				return;
+			}
+
+			deadline = System.currentTimeMillis() + exchange.readTimeout;
+			buffer.flip();
+			if( parser.parse( buffer ) )
+				completed();
+		}
+
+		private void completed()
+		{
+			Exchange completedExchange = exchange;
+			Response response = new Response( parser.getStatusCode(), parser.getBodyBytes(), parser.getBody() );
+			boolean keepAlive = parser.isKeepAlive() && !released;
+			exchange = null;
+			parser = null;
+
+			if( keepAlive )
+				pool();
+			else
+				close();
+
+			completedExchange.complete( response );
+		}
+
+		private void pool()
+		{
+			exchange = null;
+			deadline = System.currentTimeMillis() + KEEP_ALIVE_TIMEOUT;
+			key.interestOps( SelectionKey.OP_READ );
+			state.set( IDLE );
+
+			Queue<Connection> idle = idleConnections.get( route );
+			if( idle == null )
+			{
+				Queue<Connection> newQueue = new ConcurrentLinkedQueue<>();
+				idle = idleConnections.putIfAbsent( route, newQueue );
+				if( idle == null )
+					idle = newQueue;
+			}
+			idle.add( this );
+		}
+
+		private void removeFromPool()
+		{
+			Queue<Connection> idle = idleConnections.get( route );
+			if( idle != null )
+				idle.remove( this );
+		}
+
+		private void failed( Exception e )
+		{
+			Exchange failedExchange = exchange;
+			boolean retry = reused && parser != null && !parser.hasStarted();
+			exchange = null;
+			close();
+
+			if( failedExchange != null && !failedExchange.isDone() )
+			{
+				if( retry && !failedExchange.retried )
+				{
+					// The server may have closed the kept alive connection just as it
+					// was reused, so try again on a new connection.
+					failedExchange.retried = true;
+					dispatch( failedExchange, false );
+				}
+				else
+				{
+					failedExchange.fail( e );
+				}
+			}
+		}
+
+		public void checkTimeout( long now )
+		{
+			if( now < deadline )
+				return;
+
+			if( exchange != null )
+			{
+				failed( new SocketTimeoutException( channel.isConnected() ? "Read timed out" : "Connect timed out" ) );
+			}
+			else if( state.compareAndSet( IDLE, CLOSED ) )
+			{
+				removeFromPool();
+				close();
+			}
+		}
+
+		private void close()
+		{
+			state.set( CLOSED );
+			if( key != null )
+				key.cancel();
+			if( channel != null && channel.isOpen() )
+			{
+				try
+				{
+					channel.close();
+				}
+				catch( IOException e )
+				{
+					log.debug( "Error closing connection", e );
+				}
+				openConnections.decrementAndGet();
+			}
+		}
+	}
+
+	private class IoThread extends Thread
+	{
+		private final Selector selector;
+		private final Queue<Runnable> tasks = new ConcurrentLinkedQueue<>();
+		private final ByteBuffer readBuffer = ByteBuffer.allocate( READ_BUFFER_SIZE );
+		private volatile boolean running = true;
+
+		public IoThread( int index )
+		{
+			super( "NioHttpClient-" + index );
+			setDaemon( true );
+			try
+			{
+				selector = Selector.open();
+			}
+			catch( IOException e )
+			{
+				throw new RuntimeException( "Unable to open Selector", e );
+			}
+		}
+
+		public void submit( Runnable task )
+		{
+			tasks.add( task );
+			selector.wakeup();
+		}
+
+		public void shutdown()
+		{
+			running = false;
+			selector.wakeup();
+		}
+
+		@Override
+		public void run()
+		{
+			long nextTimeoutCheck = System.currentTimeMillis() + TIMEOUT_CHECK_INTERVAL;
+			while( running )
+			{
+				try
+				{
+					selector.select( TIMEOUT_CHECK_INTERVAL );
+
+					Runnable task;
+					while( ( task = tasks.poll() ) != null )
+					{
+						task.run();
+					}
+
+					Iterator<SelectionKey> selected = selector.selectedKeys().iterator();
+					while( selected.hasNext() )
+					{
+						SelectionKey key = selected.next();
+						selected.remove();
+						if( key.isValid() )
+							( ( Connection )key.attachment() ).handle();
+					}
+
+					long now = System.currentTimeMillis();
+					if( now >= nextTimeoutCheck )
+					{
+						for( SelectionKey key : selector.keys() )
+						{
+							if( key.isValid() )
+								( ( Connection )key.attachment() ).checkTimeout( now );
+						}
+						nextTimeoutCheck = now + TIMEOUT_CHECK_INTERVAL;
+					}
+				}
+				catch( IOException | RuntimeException e )
+				{
+					log.error( "Error in HTTP I/O thread", e );
+				}
+			}
+
+			Runnable task;
+			while( ( task = tasks.poll() ) != null )
+			{
+				task.run();
+			}
+
+			IOException releasedException = new IOException( "The NioHttpClient has been released" );
+			for( SelectionKey key : selector.keys() )
+			{
+				Connection connection = ( Connection )key.attachment();
+				Exchange exchange = connection.exchange;
+				connection.exchange = null;
+				connection.close();
+				if( exchange != null )
+					exchange.fail( releasedException );
+			}
+			try
+			{
+				selector.close();
+			}
+			catch( IOException e )
+			{
+				log.debug( "Error closing Selector", e );
+			}
+		}
+	}
+}
@@ -0,0 +1,353 @@
+/*
+ * Copyright 2013 SmartBear Software
+ * 
+ * Licensed under the EUPL, Version 1.1 or - as soon they will be approved by the European Commission - subsequent
+ * versions of the EUPL (the "Licence");
+ * You may not use this work except in compliance with the Licence.
+ * You may obtain a copy of the Licence at:
+ * 
+ * http://ec.europa.eu/idabc/eupl
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the Licence is
+ * distributed on an "AS IS" basis, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the Licence for the specific language governing permissions and limitations
+ * under the Licence.
+ */
+package com.eviware.loadui.impl.component.http;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Incrementally parses an HTTP/1.1 response as it is read from a connection.
+ * The body is counted as it passes through, and only kept if requested.
+ * Supports bodies delimited by Content-Length, chunked transfer encoding or
+ * the connection being closed.
+ * 
+ * Not thread safe.
+ */
+final class ResponseParser
+{
+	private static final int MAX_LINE_LENGTH = 8 * 1024;
+
+	private enum State
+	{
+		STATUS_LINE, HEADERS, BODY, BODY_UNTIL_CLOSE, CHUNK_SIZE, CHUNK_DATA, CHUNK_END, TRAILERS, DONE
+	}
+
+	private final boolean keepBody;
+	private final StringBuilder line = new StringBuilder();
+	private ByteArrayOutputStream body;
+
+	private State state = State.STATUS_LINE;
+	private boolean started = false;
+	private boolean http10;
+	private int statusCode;
+	private long contentLength;
+	private boolean chunked;
+	private boolean connectionClose;
+	private boolean connectionKeepAlive;
+	private Charset charset;
+
+	private long remaining;
+	private long bodyBytes = 0;
+
+	public ResponseParser( boolean keepBody )
+	{
+		this.keepBody = keepBody;
+		resetHeaders();
+	}
+
+	/**
+	 * Consumes bytes of the response from the given buffer, which must be
+	 * backed by an array. Returns true once the response is complete, leaving
+	 * any bytes after it in the buffer.
+	 */
+	public boolean parse( ByteBuffer buffer ) throws IOException
+	{
+		while( state != State.DONE && buffer.hasRemaining() )
+		{
+			switch( state )
+			{
+			case STATUS_LINE :
+				if( readLine( buffer ) )
+				{
+					parseStatusLine( line.toString() );
+					state = State.HEADERS;
+				}
+				break;
+			case HEADERS :
+				if( readLine( buffer ) )
+				{
+					if( line.length() == 0 )
+						headersCompleted();
+					else
+						parseHeader( line.toString() );
+				}
+				break;
+			case BODY :
+				readBody( buffer );
+				if( remaining == 0 )
+					state = State.DONE;
+				break;
+			case BODY_UNTIL_CLOSE :
+				remaining = buffer.remaining();
+				readBody( buffer );
+				break;
+			case CHUNK_SIZE :
+				if( readLine( buffer ) )
+				{
+					remaining = parseChunkSize( line.toString() );
+					state = remaining == 0 ? State.TRAILERS : State.CHUNK_DATA;
+				}
+				break;
+			case CHUNK_DATA :
+				readBody( buffer );
+				if( remaining == 0 )
+					state = State.CHUNK_END;
+				break;
+			case CHUNK_END :
+				if( readLine( buffer ) )
+					state = State.CHUNK_SIZE;
+				break;
+			case TRAILERS :
+				if( readLine( buffer ) && line.length() == 0 )
+					state = State.DONE;
+				break;
+			default :
+				throw new IllegalStateException( state.name() );
+			}
+		}
+
+		return state == State.DONE;
+	}
+
+	/**
+	 * Signals that the connection has been closed by the server. Returns true
+	 * if this completes the response, as for a body delimited by the connection
+	 * being closed.
+	 */
+	public boolean endOfStream()
+	{
+		if( state == State.BODY_UNTIL_CLOSE )
+			state = State.DONE;
+
+		return state == State.DONE;
+	}
+
+	/**
+	 * Returns true if any part of the response has been received.
+	 */
+	public boolean hasStarted()
+	{
+		return started;
+	}
+
+	public boolean isComplete()
+	{
+		return state == State.DONE;
+	}
+
+	/**
+	 * Returns true if the connection can be reused for another request after
+	 * this response.
+	 */
+	public boolean isKeepAlive()
+	{
+		if( connectionClose || contentLength < 0 && !chunked && hasBody() )
+			return false;
+
+		return !http10 || connectionKeepAlive;
+	}
+
+	public int getStatusCode()
+	{
+		return statusCode;
+	}
+
+	/**
+	 * The number of bytes in the body, after any transfer encoding has been
+	 * removed.
+	 */
+	public long getBodyBytes()
+	{
+		return bodyBytes;
+	}
+
+	/**
+	 * Returns the body, decoded using the charset given by the Content-Type
+	 * header, or null if the body isn't kept.
+	 */
+	public String getBody()
+	{
+		return body == null ? null : new String( body.toByteArray(), charset );
+	}
+
+	private boolean readLine( ByteBuffer buffer ) throws IOException
+	{
+		while( buffer.hasRemaining() )
+		{
+			started = true;
+			char c = ( char )( buffer.get() & 0xff );
+			if( c == '\n' )
+			{
+				int length = line.length();
+				if( length > 0 && line.charAt( length - 1 ) == '\r' )
+					line.setLength( length - 1 );
+				return true;
+			}
+			if( line.length() >= MAX_LINE_LENGTH )
+				throw new IOException( "Response line exceeds " + MAX_LINE_LENGTH + " characters" );
+			line.append( c );
+		}
+
+		return false;
+	}
+
+	private void readBody( ByteBuffer buffer )
+	{
+		int count = ( int )Math.min( remaining, buffer.remaining() );
+		if( keepBody )
+		{
+			if( body == null )
+				body = new ByteArrayOutputStream();
+			body.write( buffer.array(), buffer.arrayOffset() + buffer.position(), count );
+		}
+		buffer.position( buffer.position() + count );
+		remaining -= count;
+		bodyBytes += count;
+	}
+
+	private void parseStatusLine( String statusLine ) throws IOException
+	{
+		line.setLength( 0 );
+		String[] parts = statusLine.split( " ", 3 );
+		if( parts.length < 2 || !parts[0].startsWith( "HTTP/" ) )
+			throw new IOException( "Invalid status line: " + statusLine );
+
+		http10 = "HTTP/1.0".equals( parts[0] );
+		try
+		{
+			statusCode = Integer.parseInt( parts[1] );
+		}
+		catch( NumberFormatException e )
+		{
+			throw new IOException( "Invalid status line: " + statusLine );
+		}
+	}
+
+	private void parseHeader( String header ) throws IOException
+	{
+		line.setLength( 0 );
+		int separator = header.indexOf( ':' );
+		if( separator <= 0 )
+			throw new IOException( "Invalid header: " + header );
+
+		String name = header.substring( 0, separator ).trim();
+		String value = header.substring( separator + 1 ).trim();
+		if( "Content-Length".equalsIgnoreCase( name ) )
+		{
+			try
+			{
+				contentLength = Long.parseLong( value );
+			}
+			catch( NumberFormatException e )
+			{
+				throw new IOException( "Invalid header: " + header );
+			}
+		}
+		else if( "Transfer-Encoding".equalsIgnoreCase( name ) )
+		{
+			chunked = value.toLowerCase().contains( "chunked" );
+		}
+		else if( "Connection".equalsIgnoreCase( name ) )
+		{
+			connectionClose = value.equalsIgnoreCase( "close" );
+			connectionKeepAlive = value.equalsIgnoreCase( "keep-alive" );
+		}
+		else if( "Content-Type".equalsIgnoreCase( name ) )
+		{
+			charset = parseCharset( value );
+		}
+	}
+
+	private void headersCompleted()
+	{
+		line.setLength( 0 );
+		if( statusCode >= 100 && statusCode < 200 )
+		{
+			// Interim response, the actual one follows.
+			resetHeaders();
+			state = State.STATUS_LINE;
+		}
+		else if( !hasBody() )
+		{
+			state = State.DONE;
+		}
+		else if( chunked )
+		{
+			state = State.CHUNK_SIZE;
+		}
+		else if( contentLength >= 0 )
+		{
+			remaining = contentLength;
+			state = remaining == 0 ? State.DONE : State.BODY;
+		}
+		else
+		{
+			state = State.BODY_UNTIL_CLOSE;
+		}
+	}
+
+	private boolean hasBody()
+	{
+		return statusCode != 204 && statusCode != 304;
+	}
+
+	private long parseChunkSize( String chunkLine ) throws IOException
+	{
+		line.setLength( 0 );
+		int extension = chunkLine.indexOf( ';' );
+		String size = ( extension < 0 ? chunkLine : chunkLine.substring( 0, extension ) ).trim();
+		try
+		{
+			return Long.parseLong( size, 16 );
+		}
+		catch( NumberFormatException e )
+		{
+			throw new IOException( "Invalid chunk size: " + chunkLine );
+		}
+	}
+
+	private void resetHeaders()
+	{
+		contentLength = -1;
+		chunked = false;
+		connectionClose = false;
+		connectionKeepAlive = false;
+		charset = StandardCharsets.ISO_8859_1;
+	}
+
+	private static Charset parseCharset( String contentType )
+	{
+		for( String parameter : contentType.split( ";" ) )
+		{
+			String[] pair = parameter.trim().split( "=", 2 );
+			if( pair.length == 2 && "charset".equalsIgnoreCase( pair[0].trim() ) )
+			{
+				try
+				{
+					return Charset.forName( pair[1].trim().replace( "\"", "" ) );
+				}
+				catch( IllegalArgumentException e )
+				{
+					break;
+				}
+			}
+		}
+		return StandardCharsets.ISO_8859_1;
+	}
+}
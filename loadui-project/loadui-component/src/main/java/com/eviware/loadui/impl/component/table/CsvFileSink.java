@@ -0,0 +1,220 @@
+/*
+ * Copyright 2013 SmartBear Software
+ * 
+ * Licensed under the EUPL, Version 1.1 or - as soon they will be approved by the European Commission - subsequent
+ * versions of the EUPL (the "Licence");
+ * You may not use this work except in compliance with the Licence.
+ * You may obtain a copy of the Licence at:
+ * 
+ * http://ec.europa.eu/idabc/eupl
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the Licence is
+ * distributed on an "AS IS" basis, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the Licence for the specific language governing permissions and limitations
+ * under the Licence.
+ */
+package com.eviware.loadui.impl.component.table;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.util.List;
+import java.util.zip.GZIPOutputStream;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.eviware.loadui.api.traits.Releasable;
+
+/**
+ * Writes rows to a CSV file in batches. Adding a row only queues it, while the
+ * rows are formatted and written on each call to flush(), through a large
+ * buffer and optionally gzip compressed. The file is opened on the first
+ * flush. Fields are always quoted, with quotes within them doubled.
+ * 
+ * At most capacity rows are queued. If rows are added faster than they are
+ * flushed, the oldest ones are dropped, as in a MessageRingBuffer. A row may
+ * be given the header it belongs to. The header is written before the row
+ * when it differs from the one written last, so rows after a gap still get a
+ * header.
+ */
+public class CsvFileSink implements Releasable
+{
+	public static final int DEFAULT_CAPACITY = 100000;
+
+	private static final int BUFFER_SIZE = 256 * 1024;
+	private static final char SEPARATOR = ',';
+	private static final char QUOTE = '"';
+
+	private static final Logger log = LoggerFactory.getLogger( CsvFileSink.class );
+
+	private final File file;
+	private final boolean append;
+	private final boolean gzip;
+	private final MessageRingBuffer<Row> rows;
+
+	private Writer writer;
+	private String[] writtenHeader;
+	private volatile boolean closed = false;
+
+	public CsvFileSink( File file, boolean append, boolean gzip )
+	{
+		this( file, append, gzip, DEFAULT_CAPACITY );
+	}
+
+	public CsvFileSink( File file, boolean append, boolean gzip, int capacity )
+	{
+		this.file = file;
+		this.append = append;
+		this.gzip = gzip;
+		rows = new MessageRingBuffer<>( capacity );
+	}
+
+	public File getFile()
+	{
+		return file;
+	}
+
+	/**
+	 * Queues a row for writing. Rows written after the sink has been closed are
+	 * ignored.
+	 */
+	public void write( String[] row )
+	{
+		write( row, null );
+	}
+
+	/**
+	 * Queues a row for writing, to be preceded by the given header unless that
+	 * was the header written last. Rows written after the sink has been closed
+	 * are ignored.
+	 */
+	public void write( String[] row, String[] header )
+	{
+		if( !closed )
+			rows.offer( new Row( row, header ) );
+	}
+
+	/**
+	 * Gets the number of rows which were dropped because the queue was full.
+	 */
+	public long getDroppedCount()
+	{
+		return rows.getDroppedCount();
+	}
+
+	/**
+	 * Writes all queued rows to the file.
+	 * 
+	 * @return The number of rows written, not counting headers.
+	 * @throws IOException
+	 */
+	public synchronized int flush() throws IOException
+	{
+		if( closed )
+			return 0;
+
+		List<Row> queued = rows.drain();
+		if( queued.isEmpty() )
+			return 0;
+
+		if( writer == null )
+		{
+			OutputStream out = new FileOutputStream( file, append );
+			if( gzip )
+				out = new GZIPOutputStream( out, BUFFER_SIZE );
+			writer = new BufferedWriter( new OutputStreamWriter( out, Charset.defaultCharset() ), BUFFER_SIZE );
+		}
+
+		for( Row row : queued )
+		{
+			if( row.header != null && row.header != writtenHeader )
+			{
+				writeRow( row.header );
+				writtenHeader = row.header;
+			}
+			writeRow( row.values );
+		}
+		writer.flush();
+
+		return queued.size();
+	}
+
+	/**
+	 * Writes any queued rows and closes the file.
+	 * 
+	 * @throws IOException
+	 */
+	public synchronized void close() throws IOException
+	{
+		try
+		{
+			flush();
+		}
+		finally
+		{
+			closed = true;
+			rows.drain();
+			if( writer != null )
+				writer.close();
+			writer = null;
+		}
+	}
+
+	@Override
+	public void release()
+	{
+		try
+		{
+			close();
+		}
+		catch( IOException e )
+		{
+			log.error( "Failed writing to " + file, e );
+		}
+	}
+
+	private void writeRow( String[] row ) throws IOException
+	{
+		for( int i = 0; i < row.length; i++ )
+		{
+			if( i > 0 )
+				writer.write( SEPARATOR );
+			writer.write( QUOTE );
+			String value = row[i] == null ? "" : row[i];
+			if( value.indexOf( QUOTE ) == -1 )
+			{
+				writer.write( value );
+			}
+			else
+			{
+				for( int j = 0; j < value.length(); j++ )
+				{
+					char c = value.charAt( j );
+					if( c == QUOTE )
+						writer.write( QUOTE );
+					writer.write( c );
+				}
+			}
+			writer.write( QUOTE );
+		}
+		writer.write( '\n' );
+	}
+
+	private static class Row
+	{
+		private final String[] values;
+		private final String[] header;
+
+		private Row( String[] values, String[] header )
+		{
+			this.values = values;
+			this.header = header;
+		}
+	}
+}
@@ -0,0 +1,169 @@
+/*
+ * Copyright 2013 SmartBear Software
+ * 
+ * Licensed under the EUPL, Version 1.1 or - as soon they will be approved by the European Commission - subsequent
+ * versions of the EUPL (the "Licence");
+ * You may not use this work except in compliance with the Licence.
+ * You may obtain a copy of the Licence at:
+ * 
+ * http://ec.europa.eu/idabc/eupl
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the Licence is
+ * distributed on an "AS IS" basis, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the Licence for the specific language governing permissions and limitations
+ * under the Licence.
+ */
+package com.eviware.loadui.impl.component.table;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import com.google.common.base.Preconditions;
+
+/**
+ * A fixed capacity buffer holding the latest items offered to it, optionally
+ * keeping only every Nth item. Offering an item never blocks or waits for the
+ * consumer: when the buffer is full the oldest item is overwritten. Any number
+ * of threads may offer items, while a single consumer periodically drains the
+ * buffer. A producer which finishes after a newer item has been put in its slot
+ * doesn't overwrite it, its own item counting as dropped instead.
+ * 
+ * @param <T>
+ */
+public class MessageRingBuffer<T>
+{
+	private final int capacity;
+	private final int sampleInterval;
+	private final AtomicReferenceArray<Slot<T>> slots;
+	private final AtomicLong offered = new AtomicLong();
+	private final AtomicLong head = new AtomicLong();
+
+	private long tail = 0;
+	private long dropped = 0;
+
+	public MessageRingBuffer( int capacity )
+	{
+		this( capacity, 1 );
+	}
+
+	/**
+	 * @param capacity
+	 *           The maximum number of items held.
+	 * @param sampleInterval
+	 *           Only every sampleInterval:th offered item is kept.
+	 */
+	public MessageRingBuffer( int capacity, int sampleInterval )
+	{
+		Preconditions.checkArgument( capacity > 0, "capacity must be positive" );
+		Preconditions.checkArgument( sampleInterval > 0, "sampleInterval must be positive" );
+
+		this.capacity = capacity;
+		this.sampleInterval = sampleInterval;
+		slots = new AtomicReferenceArray<>( capacity );
+	}
+
+	/**
+	 * Offers an item to the buffer.
+	 * 
+	 * @param item
+	 * @return True if the item was kept, false if it was skipped by sampling.
+	 */
+	public boolean offer( T item )
+	{
+		if( sampleInterval > 1 && offered.getAndIncrement() % sampleInterval != 0 )
+			return false;
+
+		put( claim(), item );
+
+		return true;
+	}
+
+	/**
+	 * Claims the sequence number of the next item.
+	 */
+	long claim()
+	{
+		return head.getAndIncrement();
+	}
+
+	/**
+	 * Writes an item to the slot of a claimed sequence number, unless the slot
+	 * already holds a newer item.
+	 */
+	void put( long sequence, T item )
+	{
+		int index = ( int )( sequence % capacity );
+		Slot<T> slot = new Slot<>( sequence, item );
+		while( true )
+		{
+			Slot<T> current = slots.get( index );
+			if( current != null && current.sequence > sequence )
+				return;
+			if( slots.compareAndSet( index, current, slot ) )
+				return;
+		}
+	}
+
+	/**
+	 * Removes and returns the items added since the last call, oldest first. At
+	 * most capacity items are returned, any older ones having been overwritten.
+	 */
+	public synchronized List<T> drain()
+	{
+		long end = head.get();
+		long start = Math.max( tail, end - capacity );
+		dropped += start - tail;
+
+		List<T> items = new ArrayList<>( ( int )( end - start ) );
+		for( long sequence = start; sequence < end; sequence++ )
+		{
+			Slot<T> slot = slots.get( ( int )( sequence % capacity ) );
+			if( slot == null || slot.sequence < sequence )
+			{
+				// Claimed but not yet written, leave the rest for the next drain.
+				end = sequence;
+				break;
+			}
+			if( slot.sequence > sequence )
+				dropped++ ;
+			else
+				items.add( slot.item );
+		}
+		tail = end;
+
+		return items;
+	}
+
+	/**
+	 * Gets the number of kept items which were overwritten before being
+	 * drained.
+	 */
+	public synchronized long getDroppedCount()
+	{
+		return dropped;
+	}
+
+	public int getCapacity()
+	{
+		return capacity;
+	}
+
+	public int getSampleInterval()
+	{
+		return sampleInterval;
+	}
+
+	private static class Slot<T>
+	{
+		private final long sequence;
+		private final T item;
+
+		private Slot( long sequence, T item )
+		{
+			this.sequence = sequence;
+			this.item = item;
+		}
+	}
+}
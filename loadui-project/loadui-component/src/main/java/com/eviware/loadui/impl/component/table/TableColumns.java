@@ -0,0 +1,128 @@
+/*
+ * Copyright 2013 SmartBear Software
+ * 
+ * Licensed under the EUPL, Version 1.1 or - as soon they will be approved by the European Commission - subsequent
+ * versions of the EUPL (the "Licence");
+ * You may not use this work except in compliance with the Licence.
+ * You may obtain a copy of the Licence at:
+ * 
+ * http://ec.europa.eu/idabc/eupl
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the Licence is
+ * distributed on an "AS IS" basis, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the Licence for the specific language governing permissions and limitations
+ * under the Licence.
+ */
+package com.eviware.loadui.impl.component.table;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * The columns of a table built from messages with varying keys, in the order
+ * they were first seen. The column array is only rebuilt when a message brings
+ * a new key, so checking a message with known keys is lock free and does not
+ * allocate.
+ */
+public class TableColumns
+{
+	private final Set<String> columnSet = Collections.newSetFromMap( new ConcurrentHashMap<String, Boolean>() );
+	private final Queue<String> added = new ConcurrentLinkedQueue<>();
+	private volatile String[] columns = new String[0];
+
+	/**
+	 * Adds any of the given keys which aren't already columns.
+	 * 
+	 * @param keys
+	 * @return True if any columns were added.
+	 */
+	public boolean addAll( Collection<String> keys )
+	{
+		if( columnSet.containsAll( keys ) )
+			return false;
+
+		synchronized( this )
+		{
+			List<String> newColumns = new ArrayList<>();
+			for( String key : keys )
+				if( !columnSet.contains( key ) && !newColumns.contains( key ) )
+					newColumns.add( key );
+			if( newColumns.isEmpty() )
+				return false;
+
+			String[] updated = Arrays.copyOf( columns, columns.length + newColumns.size() );
+			for( int i = 0; i < newColumns.size(); i++ )
+				updated[columns.length + i] = newColumns.get( i );
+
+			// The array is published before the set, so that a key found in the set is always in the array.
+			columns = updated;
+			columnSet.addAll( newColumns );
+			added.addAll( newColumns );
+
+			return true;
+		}
+	}
+
+	/**
+	 * Gets the current columns. The same array is returned until columns are
+	 * added or cleared, and must not be modified.
+	 */
+	public String[] getColumns()
+	{
+		return columns;
+	}
+
+	/**
+	 * Removes and returns the columns added since the last call.
+	 */
+	public List<String> takeAddedColumns()
+	{
+		List<String> result = new ArrayList<>();
+		String column;
+		while( ( column = added.poll() ) != null )
+			result.add( column );
+
+		return result;
+	}
+
+	/**
+	 * Gets the values of a message in column order, using an empty String for
+	 * missing values.
+	 */
+	public String[] toRow( Map<String, ?> message )
+	{
+		return toRow( message, columns );
+	}
+
+	/**
+	 * Gets the values of a message in the order of the given columns, such as
+	 * an array previously returned by getColumns(), so that the row matches a
+	 * header written from that array even if columns have been added since.
+	 */
+	public static String[] toRow( Map<String, ?> message, String[] columns )
+	{
+		String[] row = new String[columns.length];
+		for( int i = 0; i < columns.length; i++ )
+		{
+			Object value = message.get( columns[i] );
+			row[i] = value == null ? "" : String.valueOf( value );
+		}
+
+		return row;
+	}
+
+	public synchronized void clear()
+	{
+		columnSet.clear();
+		columns = new String[0];
+		added.clear();
+	}
+}
@@ -0,0 +1,136 @@
+/*
+ * Copyright 2013 SmartBear Software
+ * 
+ * Licensed under the EUPL, Version 1.1 or - as soon they will be approved by the European Commission - subsequent
+ * versions of the EUPL (the "Licence");
+ * You may not use this work except in compliance with the Licence.
+ * You may obtain a copy of the Licence at:
+ * 
+ * http://ec.europa.eu/idabc/eupl
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the Licence is
+ * distributed on an "AS IS" basis, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the Licence for the specific language governing permissions and limitations
+ * under the Licence.
+ */
+package com.eviware.loadui.impl.component.csv;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.not;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.hamcrest.Matchers.greaterThanOrEqualTo;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+import static org.junit.Assert.assertThat;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.google.common.base.Charsets;
+import com.google.common.io.Files;
+
+public class MappedCsvFileTest
+{
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void shouldParseQuotedFieldsAndLineBreaks() throws IOException
+	{
+		File file = write( "name,comment\r\n" + "alice,plain\r\n" + "\r\n" + "bob,\"a, \"\"quoted\"\" value\"\r\n"
+				+ "carol,\"two\nlines\"\n" + "dave," );
+		MappedCsvFile csvFile = MappedCsvFile.open( file, ',' );
+		try
+		{
+			assertThat( csvFile.getColumns(), is( new String[] { "name", "comment" } ) );
+			assertThat( csvFile.isIndexComplete(), is( false ) );
+
+			assertThat( csvFile.getRow( 0 ), is( new String[] { "alice", "plain" } ) );
+			assertThat( csvFile.getRow( 1 ), is( new String[] { "bob", "a, \"quoted\" value" } ) );
+			assertThat( csvFile.getRow( 2 ), is( new String[] { "carol", "two\nlines" } ) );
+			assertThat( csvFile.getRow( 3 ), is( new String[] { "dave", "" } ) );
+			assertThat( csvFile.getRow( 4 ), is( nullValue() ) );
+
+			assertThat( csvFile.getRowCount(), is( 4L ) );
+			assertThat( csvFile.isIndexComplete(), is( true ) );
+		}
+		finally
+		{
+			csvFile.release();
+		}
+	}
+
+	@Test
+	public void shouldReadRowsSpanningSegments() throws IOException
+	{
+		StringBuilder content = new StringBuilder( "id;value\n" );
+		for( int i = 0; i < 1000; i++ )
+			content.append( i ).append( ';' ).append( "value-" ).append( i ).append( '\n' );
+		File file = write( content.toString() );
+
+		// 64 byte segments, so most rows are split between two of them.
+		MappedCsvFile csvFile = new MappedCsvFile( "test", file, ';', 6 );
+		assertThat( csvFile.getRow( 999 ), is( new String[] { "999", "value-999" } ) );
+		for( int i = 0; i < 1000; i++ )
+			assertThat( csvFile.getRow( i ), is( new String[] { String.valueOf( i ), "value-" + i } ) );
+		assertThat( csvFile.getRowCount(), is( 1000L ) );
+	}
+
+	@Test
+	public void shouldIndexInBackground() throws Exception
+	{
+		StringBuilder content = new StringBuilder( "id\n" );
+		for( int i = 0; i < 200000; i++ )
+			content.append( i ).append( '\n' );
+		MappedCsvFile csvFile = new MappedCsvFile( "test", write( content.toString() ), ',', 30 );
+
+		long indexed = csvFile.getIndexedRowCount();
+		assertThat( indexed, greaterThanOrEqualTo( 1024L ) );
+		assertThat( indexed, lessThanOrEqualTo( 200000L ) );
+		assertThat( csvFile.getRow( indexed - 1 ), is( new String[] { String.valueOf( indexed - 1 ) } ) );
+
+		for( int i = 0; i < 100 && !csvFile.isIndexComplete(); i++ )
+			Thread.sleep( 50 );
+		assertThat( csvFile.isIndexComplete(), is( true ) );
+		assertThat( csvFile.getIndexedRowCount(), is( 200000L ) );
+	}
+
+	@Test
+	public void shouldShareOpenFiles() throws IOException
+	{
+		File file = write( "a\n1\n" );
+		MappedCsvFile first = MappedCsvFile.open( file, ',' );
+		MappedCsvFile second = MappedCsvFile.open( file, ',' );
+		assertThat( second, sameInstance( first ) );
+		assertThat( MappedCsvFile.open( file, ';' ), not( sameInstance( first ) ) );
+
+		first.release();
+		MappedCsvFile third = MappedCsvFile.open( file, ',' );
+		assertThat( third, sameInstance( first ) );
+
+		second.release();
+		third.release();
+		assertThat( MappedCsvFile.open( file, ',' ), not( sameInstance( first ) ) );
+	}
+
+	@Test
+	public void shouldHandleEmptyFiles() throws IOException
+	{
+		MappedCsvFile csvFile = new MappedCsvFile( "test", write( "" ), ',', 30 );
+		assertThat( csvFile.getColumns().length, is( 0 ) );
+		assertThat( csvFile.getRow( 0 ), is( nullValue() ) );
+		assertThat( csvFile.getRowCount(), is( 0L ) );
+	}
+
+	private File write( String content ) throws IOException
+	{
+		File file = folder.newFile( "data" + folder.getRoot().list().length + ".csv" );
+		Files.write( content, file, Charsets.UTF_8 );
+
+		return file;
+	}
+}
@@ -0,0 +1,204 @@
+/*
+ * Copyright 2013 SmartBear Software
+ * 
+ * Licensed under the EUPL, Version 1.1 or - as soon they will be approved by the European Commission - subsequent
+ * versions of the EUPL (the "Licence");
+ * You may not use this work except in compliance with the Licence.
+ * You may obtain a copy of the Licence at:
+ * 
+ * http://ec.europa.eu/idabc/eupl
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the Licence is
+ * distributed on an "AS IS" basis, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the Licence for the specific language governing permissions and limitations
+ * under the Licence.
+ */
+package com.eviware.loadui.impl.component.csv;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.google.common.base.Charsets;
+import com.google.common.io.Files;
+
+public class RowCursorTest
+{
+	private static final int ROWS = 500;
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private MappedCsvFile csvFile;
+
+	@Before
+	public void setup() throws IOException
+	{
+		StringBuilder content = new StringBuilder( "id\n" );
+		for( int i = 0; i < ROWS; i++ )
+			content.append( i ).append( '\n' );
+		File file = folder.newFile( "rows.csv" );
+		Files.write( content.toString(), file, Charsets.UTF_8 );
+		csvFile = MappedCsvFile.open( file, ',' );
+	}
+
+	@After
+	public void tearDown()
+	{
+		csvFile.release();
+	}
+
+	@Test
+	public void shouldReadSequentiallyAndLoop()
+	{
+		RowCursor cursor = new RowCursor( csvFile, RowCursor.Order.SEQUENTIAL, false );
+		for( int i = 0; i < ROWS; i++ )
+			assertThat( cursor.next()[0], is( String.valueOf( i ) ) );
+		assertThat( cursor.next(), is( nullValue() ) );
+
+		cursor = new RowCursor( csvFile, RowCursor.Order.SEQUENTIAL, true );
+		for( int i = 0; i < ROWS * 2 + 1; i++ )
+			assertThat( cursor.next()[0], is( String.valueOf( i % ROWS ) ) );
+	}
+
+	@Test
+	public void shouldShuffleWithoutReplacement()
+	{
+		RowCursor cursor = new RowCursor( csvFile, RowCursor.Order.SHUFFLED, true );
+		List<Integer> firstPass = readPass( cursor, ROWS );
+		List<Integer> secondPass = readPass( cursor, ROWS );
+
+		assertThat( new HashSet<>( firstPass ).size(), is( ROWS ) );
+		assertThat( new HashSet<>( secondPass ).size(), is( ROWS ) );
+		assertTrue( !firstPass.equals( secondPass ) );
+		assertTrue( !firstPass.equals( readPass( new RowCursor( csvFile, RowCursor.Order.SEQUENTIAL, false ), ROWS ) ) );
+
+		cursor = new RowCursor( csvFile, RowCursor.Order.SHUFFLED, false );
+		readPass( cursor, ROWS );
+		assertThat( cursor.next(), is( nullValue() ) );
+	}
+
+	@Test
+	public void shouldHandOutEachRowOnceWhileIndexing() throws IOException
+	{
+		// More rows than are indexed up front, so the rest is indexed in the
+		// background while the first pass is read.
+		int rows = 200000;
+		StringBuilder content = new StringBuilder( "id\n" );
+		for( int i = 0; i < rows; i++ )
+			content.append( i ).append( '\n' );
+		File file = folder.newFile( "large.csv" );
+		Files.write( content.toString(), file, Charsets.UTF_8 );
+		MappedCsvFile largeFile = MappedCsvFile.open( file, ',' );
+		try
+		{
+			RowCursor cursor = new RowCursor( largeFile, RowCursor.Order.SHUFFLED, true );
+			assertThat( new HashSet<>( readPass( cursor, rows ) ).size(), is( rows ) );
+			assertThat( new HashSet<>( readPass( cursor, rows ) ).size(), is( rows ) );
+		}
+		finally
+		{
+			largeFile.release();
+		}
+	}
+
+	@Test
+	public void shouldPermuteAnySize()
+	{
+		for( long size = 1; size < 300; size++ )
+		{
+			Set<Long> seen = new HashSet<>();
+			for( long i = 0; i < size; i++ )
+			{
+				long value = RowCursor.permute( i, size, 42 );
+				assertTrue( value >= 0 && value < size );
+				seen.add( value );
+			}
+			assertThat( seen.size(), is( ( int )size ) );
+		}
+	}
+
+	@Test
+	public void shouldHandOutEachRowOnceToConcurrentConsumers() throws Exception
+	{
+		final RowCursor cursor = new RowCursor( csvFile, RowCursor.Order.SHUFFLED, false );
+		ExecutorService executor = Executors.newFixedThreadPool( 4 );
+		try
+		{
+			List<Future<List<Integer>>> futures = new ArrayList<>();
+			for( int i = 0; i < 4; i++ )
+			{
+				futures.add( executor.submit( new Callable<List<Integer>>()
+				{
+					@Override
+					public List<Integer> call()
+					{
+						List<Integer> rows = new ArrayList<>();
+						String[] row;
+						while( ( row = cursor.next() ) != null )
+							rows.add( Integer.valueOf( row[0] ) );
+						return rows;
+					}
+				} ) );
+			}
+
+			List<Integer> all = new ArrayList<>();
+			for( Future<List<Integer>> future : futures )
+				all.addAll( future.get() );
+
+			assertThat( all.size(), is( ROWS ) );
+			assertThat( new HashSet<>( all ).size(), is( ROWS ) );
+		}
+		finally
+		{
+			executor.shutdown();
+		}
+	}
+
+	@Test
+	public void shouldSplitRowsIntoDisjointShards()
+	{
+		Set<Integer> all = new HashSet<>();
+		int total = 0;
+		for( int shard = 0; shard < 3; shard++ )
+		{
+			RowCursor cursor = new RowCursor( csvFile, RowCursor.Order.SEQUENTIAL, shard, 3, false );
+			List<Integer> rows = readPass( cursor, ( int )cursor.getShardSize() );
+			assertThat( cursor.next(), is( nullValue() ) );
+			for( int row : rows )
+				assertThat( row % 3, is( shard ) );
+			all.addAll( rows );
+			total += rows.size();
+		}
+
+		assertThat( total, is( ROWS ) );
+		assertThat( all.size(), is( ROWS ) );
+	}
+
+	private static List<Integer> readPass( RowCursor cursor, int rows )
+	{
+		List<Integer> values = new ArrayList<>();
+		for( int i = 0; i < rows; i++ )
+			values.add( Integer.valueOf( cursor.next()[0] ) );
+
+		return values;
+	}
+}
@@ -0,0 +1,199 @@
+/*
+ * Copyright 2013 SmartBear Software
+ * 
+ * Licensed under the EUPL, Version 1.1 or - as soon they will be approved by the European Commission - subsequent
+ * versions of the EUPL (the "Licence");
+ * You may not use this work except in compliance with the Licence.
+ * You may obtain a copy of the Licence at:
+ * 
+ * http://ec.europa.eu/idabc/eupl
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the Licence is
+ * distributed on an "AS IS" basis, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the Licence for the specific language governing permissions and limitations
+ * under the Licence.
+ */
+package com.eviware.loadui.impl.component.http;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A minimal HTTP/1.1 server for testing HTTP clients against, running on a
+ * free local port with a thread per connection. Connections are kept alive
+ * unless the response is delimited by closing the connection. Supported
+ * paths:
+ * 
+ * /length/N - a body of N bytes with a Content-Length header.
+ * /chunked/N - a body of N bytes using chunked transfer encoding.
+ * /close/N - a body of N bytes ending when the connection is closed.
+ * /status/N - an empty response with status code N.
+ * /slow/N - a body of N bytes, sent after a delay of two seconds.
+ */
+public class LocalHttpServer implements Closeable
+{
+	private static final int CHUNK_SIZE = 1000;
+
+	private final ServerSocket serverSocket;
+	private final AtomicInteger connectionCount = new AtomicInteger();
+	private final AtomicInteger requestCount = new AtomicInteger();
+
+	public LocalHttpServer() throws IOException
+	{
+		serverSocket = new ServerSocket( 0, 1000, InetAddress.getByName( "127.0.0.1" ) );
+		Thread acceptor = new Thread( new Runnable()
+		{
+			@Override
+			public void run()
+			{
+				while( !serverSocket.isClosed() )
+				{
+					try
+					{
+						final Socket socket = serverSocket.accept();
+						connectionCount.incrementAndGet();
+						Thread handler = new Thread( new Runnable()
+						{
+							@Override
+							public void run()
+							{
+								serve( socket );
+							}
+						}, "LocalHttpServer-connection" );
+						handler.setDaemon( true );
+						handler.start();
+					}
+					catch( IOException e )
+					{
+						// Closed.
+					}
+				}
+			}
+		}, "LocalHttpServer" );
+		acceptor.setDaemon( true );
+		acceptor.start();
+	}
+
+	public URI getUri( String path )
+	{
+		return URI.create( "http://127.0.0.1:" + serverSocket.getLocalPort() + path );
+	}
+
+	/**
+	 * The number of connections accepted so far.
+	 */
+	public int getConnectionCount()
+	{
+		return connectionCount.get();
+	}
+
+	/**
+	 * The number of requests received so far.
+	 */
+	public int getRequestCount()
+	{
+		return requestCount.get();
+	}
+
+	@Override
+	public void close() throws IOException
+	{
+		serverSocket.close();
+	}
+
+	private void serve( Socket socket )
+	{
+		try
+		{
+			BufferedReader in = new BufferedReader( new InputStreamReader( socket.getInputStream(),
+					StandardCharsets.ISO_8859_1 ) );
+			OutputStream out = socket.getOutputStream();
+			String requestLine;
+			while( ( requestLine = in.readLine() ) != null )
+			{
+				String line;
+				while( ( line = in.readLine() ) != null && !line.isEmpty() )
+				{
+					// Skip headers.
+				}
+				requestCount.incrementAndGet();
+
+				String[] path = requestLine.split( " " )[1].split( "/" );
+				String type = path[1];
+				int number = Integer.parseInt( path[2] );
+				if( !respond( out, type, number ) )
+					break;
+			}
+		}
+		catch( IOException | InterruptedException e )
+		{
+			// Connection closed.
+		}
+		finally
+		{
+			try
+			{
+				socket.close();
+			}
+			catch( IOException e )
+			{
+				// Ignore.
+			}
+		}
+	}
+
+	/**
+	 * Writes a response, returning false if the connection should be closed.
+	 */
+	private boolean respond( OutputStream out, String type, int number ) throws IOException, InterruptedException
+	{
+		byte[] body = new byte[type.equals( "status" ) ? 0 : number];
+		Arrays.fill( body, ( byte )'x' );
+		int status = type.equals( "status" ) ? number : 200;
+
+		switch( type )
+		{
+		case "chunked" :
+			out.write( header( status, "Transfer-Encoding: chunked" ) );
+			for( int offset = 0; offset < body.length; offset += CHUNK_SIZE )
+			{
+				int length = Math.min( CHUNK_SIZE, body.length - offset );
+				out.write( ( Integer.toHexString( length ) + "\r\n" ).getBytes( StandardCharsets.ISO_8859_1 ) );
+				out.write( body, offset, length );
+				out.write( "\r\n".getBytes( StandardCharsets.ISO_8859_1 ) );
+			}
+			out.write( "0\r\n\r\n".getBytes( StandardCharsets.ISO_8859_1 ) );
+			out.flush();
+			return true;
+		case "close" :
+			out.write( header( status, "Connection: close" ) );
+			out.write( body );
+			out.flush();
+			return false;
+		case "slow" :
+			Thread.sleep( 2000 );
+			//$FALL-THROUGH$
+		default :
+			out.write( header( status, "Content-Length: " + body.length ) );
+			out.write( body );
+			out.flush();
+			return true;
+		}
+	}
+
+	private static byte[] header( int status, String header )
+	{
+		return ( "HTTP/1.1 " + status + " Status\r\nContent-Type: text/plain\r\n" + header + "\r\n\r\n" )
+				.getBytes( StandardCharsets.ISO_8859_1 );
+	}
+}
@@ -0,0 +1,211 @@
+/*
+ * Copyright 2013 SmartBear Software
+ * 
+ * Licensed under the EUPL, Version 1.1 or - as soon they will be approved by the European Commission - subsequent
+ * versions of the EUPL (the "Licence");
+ * You may not use this work except in compliance with the Licence.
+ * You may obtain a copy of the Licence at:
+ * 
+ * http://ec.europa.eu/idabc/eupl
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the Licence is
+ * distributed on an "AS IS" basis, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the Licence for the specific language governing permissions and limitations
+ * under the Licence.
+ */
+package com.eviware.loadui.impl.component.http;
+
+import static org.hamcrest.CoreMatchers.instanceOf;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.not;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+import java.net.SocketTimeoutException;
+import java.net.URI;
+import java.net.UnknownHostException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class NioHttpClientTest
+{
+	private LocalHttpServer server;
+	private NioHttpClient client;
+
+	@Before
+	public void setup() throws Exception
+	{
+		server = new LocalHttpServer();
+		client = new NioHttpClient( 2 );
+	}
+
+	@After
+	public void tearDown() throws Exception
+	{
+		client.release();
+		server.close();
+	}
+
+	@Test
+	public void shouldCountBodiesOfAllFramings() throws Exception
+	{
+		assertThat( get( "/length/12345", false ).getBodyBytes(), is( 12345L ) );
+		assertThat( get( "/chunked/4500", false ).getBodyBytes(), is( 4500L ) );
+		assertThat( get( "/close/70000", false ).getBodyBytes(), is( 70000L ) );
+
+		NioHttpClient.Response response = get( "/status/404", false );
+		assertThat( response.getStatusCode(), is( 404 ) );
+		assertThat( response.getBodyBytes(), is( 0L ) );
+		assertThat( response.getBody(), is( nullValue() ) );
+	}
+
+	@Test
+	public void shouldKeepBodyWhenRequested() throws Exception
+	{
+		assertThat( get( "/chunked/2500", true ).getBody().length(), is( 2500 ) );
+	}
+
+	@Test
+	public void shouldReuseKeptAliveConnections() throws Exception
+	{
+		for( int i = 0; i < 10; i++ )
+		{
+			get( "/length/100", false );
+		}
+
+		assertThat( server.getConnectionCount(), is( 1 ) );
+		assertThat( client.getOpenConnectionCount(), is( 1 ) );
+	}
+
+	@Test
+	public void shouldRunConcurrentRequests() throws Exception
+	{
+		int count = 200;
+		BlockingQueue<Object> results = new LinkedBlockingQueue<>();
+		for( int i = 0; i < count; i++ )
+		{
+			client.get( server.getUri( "/chunked/" + i ), false, new QueueingHandler( results ) );
+		}
+
+		List<Object> completed = new ArrayList<>();
+		for( int i = 0; i < count; i++ )
+		{
+			completed.add( results.poll( 10, TimeUnit.SECONDS ) );
+		}
+		for( Object result : completed )
+		{
+			assertThat( result, instanceOf( NioHttpClient.Response.class ) );
+		}
+		assertThat( server.getRequestCount(), is( count ) );
+	}
+
+	@Test
+	public void shouldTimeOutSlowResponses() throws Exception
+	{
+		client.setReadTimeout( 300 );
+		BlockingQueue<Object> results = new LinkedBlockingQueue<>();
+		client.get( server.getUri( "/slow/10" ), false, new QueueingHandler( results ) );
+
+		assertThat( results.poll( 5, TimeUnit.SECONDS ), instanceOf( SocketTimeoutException.class ) );
+	}
+
+	@Test
+	public void shouldReportUnknownHostsToHandler() throws Exception
+	{
+		BlockingQueue<Object> results = new LinkedBlockingQueue<>();
+		client.get( URI.create( "http://nonexistent.invalid/" ), false, new QueueingHandler( results ) );
+
+		assertThat( results.poll( 10, TimeUnit.SECONDS ), instanceOf( UnknownHostException.class ) );
+	}
+
+	@Test
+	public void shouldNotCallHandlerOfAbortedExchange() throws Exception
+	{
+		BlockingQueue<Object> results = new LinkedBlockingQueue<>();
+		NioHttpClient.Exchange exchange = client.get( server.getUri( "/slow/10" ), false, new QueueingHandler(
+				results ) );
+
+		assertTrue( exchange.abort() );
+		assertTrue( exchange.isAborted() );
+		assertThat( results.poll( 3, TimeUnit.SECONDS ), is( nullValue() ) );
+	}
+
+	@Test
+	public void shouldCallHandlersOffTheIoThreads() throws Exception
+	{
+		final BlockingQueue<String> threadNames = new LinkedBlockingQueue<>();
+		client.get( server.getUri( "/length/10" ), false, new NioHttpClient.ResponseHandler()
+		{
+			@Override
+			public void completed( NioHttpClient.Response response )
+			{
+				threadNames.add( Thread.currentThread().getName() );
+			}
+
+			@Override
+			public void failed( Exception exception )
+			{
+				threadNames.add( Thread.currentThread().getName() );
+			}
+		} );
+
+		assertThat( threadNames.poll( 5, TimeUnit.SECONDS ), is( "NioHttpClient callback" ) );
+	}
+
+	@Test
+	public void shouldKeepSettingsOfSessionsApart() throws Exception
+	{
+		NioHttpClient.Session impatient = client.openSession();
+		impatient.setReadTimeout( 300 );
+		BlockingQueue<Object> impatientResults = new LinkedBlockingQueue<>();
+		BlockingQueue<Object> patientResults = new LinkedBlockingQueue<>();
+
+		impatient.get( server.getUri( "/slow/10" ), false, new QueueingHandler( impatientResults ) );
+		client.openSession().get( server.getUri( "/slow/10" ), false, new QueueingHandler( patientResults ) );
+
+		assertThat( impatientResults.poll( 5, TimeUnit.SECONDS ), instanceOf( SocketTimeoutException.class ) );
+		Object patientResult = patientResults.poll( 5, TimeUnit.SECONDS );
+		assertThat( patientResult, not( instanceOf( Exception.class ) ) );
+		assertThat( ( ( NioHttpClient.Response )patientResult ).getBodyBytes(), is( 10L ) );
+	}
+
+	private NioHttpClient.Response get( String path, boolean keepBody ) throws Exception
+	{
+		BlockingQueue<Object> results = new LinkedBlockingQueue<>();
+		client.get( server.getUri( path ), keepBody, new QueueingHandler( results ) );
+		Object result = results.poll( 5, TimeUnit.SECONDS );
+		if( result instanceof Exception )
+			throw ( Exception )result;
+		return ( NioHttpClient.Response )result;
+	}
+
+	private static class QueueingHandler implements NioHttpClient.ResponseHandler
+	{
+		private final BlockingQueue<Object> results;
+
+		public QueueingHandler( BlockingQueue<Object> results )
+		{
+			this.results = results;
+		}
+
+		@Override
+		public void completed( NioHttpClient.Response response )
+		{
+			results.add( response );
+		}
+
+		@Override
+		public void failed( Exception exception )
+		{
+			results.add( exception );
+		}
+	}
+}
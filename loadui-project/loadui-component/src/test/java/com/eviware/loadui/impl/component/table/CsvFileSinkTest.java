@@ -0,0 +1,100 @@
+/*
+ * Copyright 2013 SmartBear Software
+ * 
+ * Licensed under the EUPL, Version 1.1 or - as soon they will be approved by the European Commission - subsequent
+ * versions of the EUPL (the "Licence");
+ * You may not use this work except in compliance with the Licence.
+ * You may obtain a copy of the Licence at:
+ * 
+ * http://ec.europa.eu/idabc/eupl
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the Licence is
+ * distributed on an "AS IS" basis, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the Licence for the specific language governing permissions and limitations
+ * under the Licence.
+ */
+package com.eviware.loadui.impl.component.table;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.util.zip.GZIPInputStream;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.google.common.base.Charsets;
+import com.google.common.io.CharStreams;
+import com.google.common.io.Files;
+
+public class CsvFileSinkTest
+{
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void shouldWriteQueuedRowsOnFlush() throws IOException
+	{
+		File file = new File( folder.getRoot(), "log.csv" );
+		CsvFileSink sink = new CsvFileSink( file, false, false );
+		sink.write( new String[] { "a", "b" } );
+		assertThat( file.exists(), is( false ) );
+
+		assertThat( sink.flush(), is( 1 ) );
+		sink.write( new String[] { "say \"hi\"", "" } );
+		assertThat( sink.flush(), is( 1 ) );
+		assertThat( Files.toString( file, Charsets.UTF_8 ), is( "\"a\",\"b\"\n\"say \"\"hi\"\"\",\"\"\n" ) );
+
+		sink.close();
+		sink.write( new String[] { "ignored" } );
+		assertThat( sink.flush(), is( 0 ) );
+
+		CsvFileSink appending = new CsvFileSink( file, true, false );
+		appending.write( new String[] { "c" } );
+		appending.close();
+		assertThat( Files.readLines( file, Charsets.UTF_8 ).size(), is( 3 ) );
+	}
+
+	@Test
+	public void shouldDropOldestRowsWhenFull() throws IOException
+	{
+		File file = new File( folder.getRoot(), "log.csv" );
+		CsvFileSink sink = new CsvFileSink( file, false, false, 2 );
+		String[] header = { "h" };
+		for( int i = 0; i < 5; i++ )
+			sink.write( new String[] { String.valueOf( i ) }, header );
+
+		assertThat( sink.flush(), is( 2 ) );
+		assertThat( sink.getDroppedCount(), is( 3L ) );
+		sink.write( new String[] { "5" }, header );
+		sink.close();
+
+		// The header is written once, before the first row which was kept.
+		assertThat( Files.toString( file, Charsets.UTF_8 ), is( "\"h\"\n\"3\"\n\"4\"\n\"5\"\n" ) );
+	}
+
+	@Test
+	public void shouldCompressWhenGzipped() throws IOException
+	{
+		File file = new File( folder.getRoot(), "log.csv.gz" );
+		CsvFileSink sink = new CsvFileSink( file, false, true );
+		for( int i = 0; i < 1000; i++ )
+			sink.write( new String[] { "row", String.valueOf( i ) } );
+		sink.flush();
+		sink.write( new String[] { "last" } );
+		sink.release();
+
+		try (InputStreamReader reader = new InputStreamReader( new GZIPInputStream( new FileInputStream( file ) ),
+				Charsets.UTF_8 ))
+		{
+			String content = CharStreams.toString( reader );
+			assertThat( content.split( "\n" ).length, is( 1001 ) );
+			assertThat( content.endsWith( "\"row\",\"999\"\n\"last\"\n" ), is( true ) );
+		}
+	}
+}
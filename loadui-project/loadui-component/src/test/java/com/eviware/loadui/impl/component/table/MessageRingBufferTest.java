@@ -0,0 +1,148 @@
+/*
+ * Copyright 2013 SmartBear Software
+ * 
+ * Licensed under the EUPL, Version 1.1 or - as soon they will be approved by the European Commission - subsequent
+ * versions of the EUPL (the "Licence");
+ * You may not use this work except in compliance with the Licence.
+ * You may obtain a copy of the Licence at:
+ * 
+ * http://ec.europa.eu/idabc/eupl
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the Licence is
+ * distributed on an "AS IS" basis, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the Licence for the specific language governing permissions and limitations
+ * under the Licence.
+ */
+package com.eviware.loadui.impl.component.table;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+import org.junit.Test;
+
+public class MessageRingBufferTest
+{
+	@Test
+	public void shouldKeepLatestItems()
+	{
+		MessageRingBuffer<Integer> buffer = new MessageRingBuffer<>( 3 );
+		buffer.offer( 1 );
+		buffer.offer( 2 );
+		assertThat( buffer.drain(), is( Arrays.asList( 1, 2 ) ) );
+		assertThat( buffer.drain(), is( Collections.<Integer> emptyList() ) );
+
+		for( int i = 3; i <= 10; i++ )
+			buffer.offer( i );
+		assertThat( buffer.drain(), is( Arrays.asList( 8, 9, 10 ) ) );
+		assertThat( buffer.getDroppedCount(), is( 5L ) );
+	}
+
+	@Test
+	public void shouldSampleEveryNthItem()
+	{
+		MessageRingBuffer<Integer> buffer = new MessageRingBuffer<>( 10, 3 );
+		List<Boolean> kept = new ArrayList<>();
+		for( int i = 0; i < 7; i++ )
+			kept.add( buffer.offer( i ) );
+
+		assertThat( kept, is( Arrays.asList( true, false, false, true, false, false, true ) ) );
+		assertThat( buffer.drain(), is( Arrays.asList( 0, 3, 6 ) ) );
+	}
+
+	@Test
+	public void shouldAccountForEveryItemWithConcurrentProducers() throws InterruptedException
+	{
+		final MessageRingBuffer<Integer> buffer = new MessageRingBuffer<>( 64 );
+		final int producers = 4;
+		final int items = 20000;
+		final CountDownLatch done = new CountDownLatch( producers );
+		for( int p = 0; p < producers; p++ )
+		{
+			new Thread( new Runnable()
+			{
+				@Override
+				public void run()
+				{
+					for( int i = 0; i < items; i++ )
+						buffer.offer( i );
+					done.countDown();
+				}
+			} ).start();
+		}
+
+		long drained = 0;
+		while( done.getCount() > 0 )
+			drained += buffer.drain().size();
+		done.await();
+		drained += buffer.drain().size();
+
+		assertThat( drained + buffer.getDroppedCount(), is( ( long )producers * items ) );
+	}
+
+	@Test
+	public void shouldKeepNewerItemWhenAnOlderWriteFinishesLast()
+	{
+		MessageRingBuffer<Integer> buffer = new MessageRingBuffer<>( 2 );
+		long slow = buffer.claim();
+		buffer.offer( 1 );
+		buffer.offer( 2 );
+		buffer.put( slow, 0 );
+
+		assertThat( buffer.drain(), is( Arrays.asList( 1, 2 ) ) );
+		assertThat( buffer.getDroppedCount(), is( 1L ) );
+		buffer.offer( 3 );
+		assertThat( buffer.drain(), is( Arrays.asList( 3 ) ) );
+	}
+
+	@Test
+	public void shouldNotStrandSlotsWhenProducersFinishOutOfOrder() throws InterruptedException
+	{
+		// A tiny buffer makes producers which claimed a slot one lap apart race
+		// to write it.
+		final MessageRingBuffer<Integer> buffer = new MessageRingBuffer<>( 2 );
+		final int producers = 8;
+		final int items = 50000;
+		final CountDownLatch start = new CountDownLatch( 1 );
+		final CountDownLatch done = new CountDownLatch( producers );
+		for( int p = 0; p < producers; p++ )
+		{
+			new Thread( new Runnable()
+			{
+				@Override
+				public void run()
+				{
+					try
+					{
+						start.await();
+						for( int i = 0; i < items; i++ )
+							buffer.offer( i );
+					}
+					catch( InterruptedException e )
+					{
+						Thread.currentThread().interrupt();
+					}
+					done.countDown();
+				}
+			} ).start();
+		}
+
+		start.countDown();
+		long drained = 0;
+		while( done.getCount() > 0 )
+			drained += buffer.drain().size();
+		done.await();
+		drained += buffer.drain().size();
+		assertThat( drained + buffer.getDroppedCount(), is( ( long )producers * items ) );
+
+		// Every slot holds the item of its latest sequence, so nothing is left
+		// waiting for a write which will never come.
+		buffer.offer( -1 );
+		assertThat( buffer.drain(), is( Arrays.asList( -1 ) ) );
+	}
+}
@@ -0,0 +1,77 @@
+/*
+ * Copyright 2013 SmartBear Software
+ * 
+ * Licensed under the EUPL, Version 1.1 or - as soon they will be approved by the European Commission - subsequent
+ * versions of the EUPL (the "Licence");
+ * You may not use this work except in compliance with the Licence.
+ * You may obtain a copy of the Licence at:
+ * 
+ * http://ec.europa.eu/idabc/eupl
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the Licence is
+ * distributed on an "AS IS" basis, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the Licence for the specific language governing permissions and limitations
+ * under the Licence.
+ */
+package com.eviware.loadui.impl.component.table;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.junit.Assert.assertThat;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.junit.Test;
+
+public class TableColumnsTest
+{
+	@Test
+	public void shouldOnlyRebuildColumnsForNewKeys()
+	{
+		TableColumns columns = new TableColumns();
+		assertThat( columns.addAll( Arrays.asList( "a", "b" ) ), is( true ) );
+		String[] first = columns.getColumns();
+
+		assertThat( columns.addAll( Arrays.asList( "b", "a" ) ), is( false ) );
+		assertThat( columns.getColumns(), sameInstance( first ) );
+
+		assertThat( columns.addAll( Arrays.asList( "c", "a", "c" ) ), is( true ) );
+		assertThat( columns.getColumns(), is( new String[] { "a", "b", "c" } ) );
+		assertThat( columns.takeAddedColumns(), is( Arrays.asList( "a", "b", "c" ) ) );
+		assertThat( columns.takeAddedColumns(), is( Collections.<String> emptyList() ) );
+
+		columns.clear();
+		assertThat( columns.getColumns().length, is( 0 ) );
+	}
+
+	@Test
+	public void shouldOrderValuesByColumn()
+	{
+		TableColumns columns = new TableColumns();
+		columns.addAll( Arrays.asList( "a", "b", "c" ) );
+
+		Map<String, Object> message = new LinkedHashMap<>();
+		message.put( "c", 0 );
+		message.put( "a", "x" );
+
+		assertThat( columns.toRow( message ), is( new String[] { "x", "", "0" } ) );
+	}
+
+	@Test
+	public void shouldBuildRowsFromAnEarlierSnapshot()
+	{
+		TableColumns columns = new TableColumns();
+		columns.addAll( Arrays.asList( "a", "b" ) );
+		String[] snapshot = columns.getColumns();
+		columns.addAll( Arrays.asList( "c" ) );
+
+		Map<String, Object> message = new LinkedHashMap<>();
+		message.put( "a", 1 );
+		message.put( "c", 3 );
+
+		assertThat( TableColumns.toRow( message, snapshot ), is( new String[] { "1", "" } ) );
+	}
+}
@@ -16,173 +16,254 @@
 package com.eviware.loadui.impl.statistics;
 
 import com.eviware.loadui.api.model.AgentItem;
-import com.eviware.loadui.api.model.ProjectItem;
-import com.eviware.loadui.api.model.SceneItem;
+import com.eviware.loadui.api.statistics.EntryAccumulator;
 import com.eviware.loadui.api.statistics.EntryAggregator;
-import com.eviware.loadui.api.statistics.StatisticHolder;
 import com.eviware.loadui.api.statistics.StatisticVariable;
 import com.eviware.loadui.api.statistics.StatisticsAggregator;
 import com.eviware.loadui.api.statistics.store.*;
 import com.eviware.loadui.api.statistics.store.ExecutionManager.State;
+import com.eviware.loadui.api.traits.Releasable;
+import com.eviware.loadui.util.statistics.EntryAccumulators;
 import com.google.common.collect.*;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.util.*;
-
-public class AgentDataAggregator implements StatisticsAggregator
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Aggregates the Entries sent by the agents into one Entry per second and
+ * Track. The per-second buckets are striped by trackId, so agents reporting
+ * different Tracks don't contend, and a second is flushed once every connected
+ * agent assigned to the Track has reported a later second, or once more than
+ * BUFFER_SIZE seconds are buffered.
+ */
+public class AgentDataAggregator implements StatisticsAggregator, Releasable
 {
 	public final static Logger log = LoggerFactory.getLogger( AgentDataAggregator.class );
 
 	private final static int BUFFER_SIZE = 5;
+	private final static int STRIPES = 16;
 
-	private final NavigableMap<Long, SetMultimap<String, Entry>> entriesIntoTrackIdBySecond = Maps.newTreeMap();
-	private final TreeMultimap<Long, String> agentIdBySeconds = TreeMultimap.create();
+	private final Stripe[] stripes = new Stripe[STRIPES];
+	private final NavigableSet<Long> bufferedSeconds = new ConcurrentSkipListSet<>();
+	private final ConcurrentMap<String, AgentState> agentStates = Maps.newConcurrentMap();
+	private final AtomicLong newestSecond = new AtomicLong( Long.MIN_VALUE );
+	private final Object flushLock = new Object();
+	private volatile long flushedBefore = Long.MIN_VALUE;
+
+	private final TrackAssignmentIndex assignmentIndex = new TrackAssignmentIndex();
 	private final ExecutionManager executionManager;
 	private final StatisticsInterpolator statisticsInterpolator;
+	private final FlushingExecutionListener executionListener = new FlushingExecutionListener();
 
 	public AgentDataAggregator( ExecutionManager executionManager )
 	{
 		this.executionManager = executionManager;
 		statisticsInterpolator = new StatisticsInterpolator( executionManager );
-		executionManager.addExecutionListener( new FlushingExecutionListener() );
+		for( int i = 0; i < STRIPES; i++ )
+		{
+			stripes[i] = new Stripe();
+		}
+		executionManager.addExecutionListener( executionListener );
 	}
 
-
-	private SceneItem getScene( String trackId, AgentItem agent, ProjectItem project )
+	public void update( Entry entry, String trackId, AgentItem agent )
 	{
-		Collection<? extends SceneItem> assignedScenes = project.getScenesAssignedTo( agent );
+		// updates the unaggregated statistic
+		statisticsInterpolator.update( entry, trackId, agent.getLabel() );
 
-		Iterable<StatisticHolder> assignedHolders = getStatisticHolders( assignedScenes );
+		Collection<String> assignedAgentsConnected = assignmentIndex.getConnectedAgentIds( trackId, agent
+				.getWorkspace().getCurrentProject() );
 
-		for( StatisticHolder holder : assignedHolders )
-		{
-			SceneItem scene = toScene( holder );
-			if( scene == null ) continue;
+		updateAndAggregate( entry, trackId, agent.getId(), assignedAgentsConnected );
+	}
+
+	public void updateAndAggregate( final Entry entry, final String trackId, final String currentAgentId, final Collection<String> connectedAgentIds )
+	{
+		long time = entry.getTimestamp() / 1000;
+		AgentState agentState = getAgentState( currentAgentId );
 
-			for( StatisticVariable variable : holder.getStatisticVariables() )
+		Stripe stripe = stripes[( trackId.hashCode() & Integer.MAX_VALUE ) % STRIPES];
+		synchronized( stripe )
+		{
+			if( time < flushedBefore )
 			{
-				for( TrackDescriptor descriptor : variable.getTrackDescriptors() )
-				{
-					if( descriptor.getId().equals( trackId ) )
-					{
-						return scene;
-					}
-				}
+				// old value
+				agentState.lateDrops.incrementAndGet();
+				log.warn( "received old message" );
+				return;
 			}
-		}
 
-		throw new RuntimeException( "Could not find trackId during data aggregation" );
-	}
+			Map<String, EntryAccumulator> currentEntryMap = stripe.entriesIntoTrackIdBySecond.get( time );
+			if( currentEntryMap == null )
+			{
+				// no map for this time yet
+				currentEntryMap = new HashMap<>();
+				stripe.entriesIntoTrackIdBySecond.put( time, currentEntryMap );
+			}
 
-	private SceneItem toScene( StatisticHolder holder )
-	{
-		if( holder instanceof SceneItem )
-			return ( SceneItem )holder;
-		if( holder.getCanvas() instanceof SceneItem )
-			return ( SceneItem )holder.getCanvas();
-		return null;
-	}
+			EntryAccumulator accumulator = currentEntryMap.get( trackId );
+			if( accumulator == null )
+			{
+				accumulator = createAccumulator( trackId );
+				if( accumulator != null )
+					currentEntryMap.put( trackId, accumulator );
+			}
+			if( accumulator != null )
+				accumulator.add( entry );
 
+			// added while holding the stripe, so that a concurrent flush either sees the second or drops the entry.
+			bufferedSeconds.add( time );
+		}
 
-	private Iterable<StatisticHolder> getStatisticHolders( Collection<? extends SceneItem> assignedScenes )
-	{
-		HashSet<StatisticHolder> assignedHolders = new HashSet<>();
+		raise( agentState.latestSecond, time );
+		raise( newestSecond, time );
 
-		for( SceneItem scene : assignedScenes )
+		long flushableTime = getLatestFlushableTime( connectedAgentIds );
+		if( flushableTime > flushedBefore )
 		{
-			assignedHolders.add( scene );
-
-			for( StatisticHolder component : scene.getComponents() )
-			{
-				assignedHolders.add( component );
-			}
+			flushBefore( flushableTime );
 		}
-		return assignedHolders;
+
+		flushOldTimes();
 	}
 
-	public synchronized void update( Entry entry, String trackId, AgentItem agent )
+	/**
+	 * Gets the number of seconds the given agent is behind the newest second
+	 * reported by any agent, or -1 if the agent hasn't reported anything during
+	 * the current execution.
+	 */
+	public long getAgentLag( String agentId )
 	{
-		// updates the unaggregated statistic
-		statisticsInterpolator.update( entry, trackId, agent.getLabel() );
+		AgentState agentState = agentStates.get( agentId );
+		if( agentState == null || agentState.latestSecond.get() == Long.MIN_VALUE )
+			return -1;
 
-		Collection<String> assignedAgentsConnected = getAgentsSendingDataWithTrackId( trackId, agent );
-
-		updateAndAggregate( entry, trackId, agent.getId(), assignedAgentsConnected );
+		return newestSecond.get() - agentState.latestSecond.get();
 	}
 
-	private Collection<String> getAgentsSendingDataWithTrackId( String trackId, AgentItem agent )
+	/**
+	 * Gets the number of Entries from the given agent which have been discarded
+	 * during the current execution, for arriving after their second was
+	 * flushed.
+	 */
+	public long getLateDropCount( String agentId )
 	{
-		ProjectItem project = agent.getWorkspace().getCurrentProject();
-		SceneItem scene = getScene( trackId, agent, project );
-		Collection<? extends AgentItem> assignedAgents = project.getAgentsAssignedTo( scene );
-		return getIdsOfAgentsConnected( assignedAgents );
+		AgentState agentState = agentStates.get( agentId );
+		return agentState == null ? 0 : agentState.lateDrops.get();
 	}
 
-	public void updateAndAggregate( final Entry entry, final String trackId, final String currentAgentId, final Collection<String> connectedAgentIds )
+	private AgentState getAgentState( String agentId )
 	{
-
-		long time = entry.getTimestamp() / 1000;
-
-		if( !entriesIntoTrackIdBySecond.isEmpty() && time < entriesIntoTrackIdBySecond.firstEntry().getKey() )
+		AgentState agentState = agentStates.get( agentId );
+		if( agentState == null )
 		{
-			// old value
-			log.warn( "received old message" );
-			return;
+			AgentState newState = new AgentState();
+			agentState = agentStates.putIfAbsent( agentId, newState );
+			if( agentState == null )
+				agentState = newState;
 		}
+		return agentState;
+	}
 
-		agentIdBySeconds.put( time, currentAgentId );
-		SetMultimap<String, Entry> currentEntryMap = entriesIntoTrackIdBySecond.get( time );
-
-		if( currentEntryMap == null )
+	private static void raise( AtomicLong value, long candidate )
+	{
+		long current;
+		while( ( current = value.get() ) < candidate )
 		{
-			// no map for this time yet
-			entriesIntoTrackIdBySecond.put( time, HashMultimap.<String, Entry>create() );
-			currentEntryMap = entriesIntoTrackIdBySecond.get( time );
+			if( value.compareAndSet( current, candidate ) )
+				return;
 		}
-		currentEntryMap.put( trackId, entry );
+	}
 
-		Collection<Long> flushableTimes = getFlushableTimes( connectedAgentIds, agentIdBySeconds );
-		if( !flushableTimes.isEmpty() )
+	/**
+	 * Every second before the oldest latest second of the connected agents is
+	 * complete. Returns Long.MIN_VALUE if some connected agent has yet to
+	 * report.
+	 */
+	private long getLatestFlushableTime( Collection<String> connectedAgentIds )
+	{
+		if( connectedAgentIds.isEmpty() )
 		{
-			flushTimes( flushableTimes );
+			return newestSecond.get();
 		}
 
-		flushOldTimes();
-	}
-
-	private void flushTimes( Collection<Long> flushableTimes )
-	{
-		// making copy to avoid concurrent modification
-		Iterable<Long> copyOfTimes = new TreeSet<>( flushableTimes );
-		for( Long flushableTime : copyOfTimes )
+		long flushableTime = Long.MAX_VALUE;
+		for( String agentId : connectedAgentIds )
 		{
-			flushAndRemove( flushableTime );
+			AgentState agentState = agentStates.get( agentId );
+			if( agentState == null )
+				return Long.MIN_VALUE;
+			flushableTime = Math.min( flushableTime, agentState.latestSecond.get() );
 		}
+
+		return flushableTime;
 	}
 
 	private void flushOldTimes()
 	{
-		if( entriesIntoTrackIdBySecond.size() > BUFFER_SIZE )
+		while( bufferedSeconds.size() > BUFFER_SIZE )
 		{
-			flushAndRemove( entriesIntoTrackIdBySecond.firstEntry().getKey() );
+			Long oldest = bufferedSeconds.pollFirst();
+			if( oldest != null )
+				flushBefore( oldest + 1 );
 		}
 	}
 
-	private void flushAndRemove( Long time )
+	/**
+	 * Flushes every buffered second before the given one, in order, and
+	 * discards any Entry for those seconds arriving later.
+	 */
+	private void flushBefore( long time )
 	{
-		SetMultimap<String, Entry> entriesByTrackId = entriesIntoTrackIdBySecond.get( time );
-
-		for( String trackId : entriesByTrackId.keySet() )
+		synchronized( flushLock )
 		{
-			flush( trackId, entriesByTrackId.get( trackId ) );
-		}
-		entriesIntoTrackIdBySecond.remove( time );
-		agentIdBySeconds.removeAll( time );
+			if( time <= flushedBefore )
+				return;
+			flushedBefore = time;
+
+			NavigableMap<Long, List<Map<String, EntryAccumulator>>> flushable = Maps.newTreeMap();
+			for( Stripe stripe : stripes )
+			{
+				synchronized( stripe )
+				{
+					NavigableMap<Long, Map<String, EntryAccumulator>> head = stripe.entriesIntoTrackIdBySecond.headMap( time, false );
+					for( Map.Entry<Long, Map<String, EntryAccumulator>> bucket : head.entrySet() )
+					{
+						List<Map<String, EntryAccumulator>> buckets = flushable.get( bucket.getKey() );
+						if( buckets == null )
+						{
+							buckets = new ArrayList<>();
+							flushable.put( bucket.getKey(), buckets );
+						}
+						buckets.add( bucket.getValue() );
+					}
+					head.clear();
+				}
+			}
+			bufferedSeconds.headSet( time ).clear();
 
+			for( List<Map<String, EntryAccumulator>> buckets : flushable.values() )
+			{
+				for( Map<String, EntryAccumulator> entriesByTrackId : buckets )
+				{
+					for( Map.Entry<String, EntryAccumulator> entry : entriesByTrackId.entrySet() )
+					{
+						flush( entry.getKey(), entry.getValue() );
+					}
+				}
+			}
+		}
 	}
 
-	private synchronized void flush( String trackId, Set<Entry> entries )
+	/**
+	 * Creates the EntryAccumulator aggregating the Entries of the agents for one
+	 * second of a Track, or returns null if the Entries should be discarded.
+	 */
+	private EntryAccumulator createAccumulator( String trackId )
 	{
 		Track track = executionManager.getTrack( trackId );
 
@@ -190,38 +271,60 @@ public class AgentDataAggregator implements StatisticsAggregator
 		{
 			// could be related to agents sending data from runs not started by this machine?
 			log.warn( "Track does not exist, entries discarded" );
-			return;
+			return null;
 		}
 
 		EntryAggregator aggregator = track.getEntryAggregator();
 
-		if( aggregator != null )
+		if( aggregator == null )
 		{
-			Entry entry = aggregator.aggregate( entries, true );
+			log.warn( "Could not get aggregator, entries discarded" );
+			return null;
+		}
 
-			if( entry != null )
-			{
-				statisticsInterpolator.update( entry, trackId, StatisticVariable.MAIN_SOURCE );
-			}
+		return EntryAccumulators.create( aggregator, true );
+	}
 
-		}
-		else
+	private void flush( String trackId, EntryAccumulator accumulator )
+	{
+		Entry entry = accumulator.getResult();
+
+		if( entry != null )
 		{
-			log.warn( "Could not get aggregator, entries discarded" );
+			statisticsInterpolator.update( entry, trackId, StatisticVariable.MAIN_SOURCE );
 		}
-
 	}
 
 	private void flushAll()
 	{
 		long flushTime = System.currentTimeMillis();
 
-		for( Long time : Sets.newLinkedHashSet( entriesIntoTrackIdBySecond.keySet() ) )
+		synchronized( flushLock )
 		{
-			flushAndRemove( time );
+			flushBefore( Long.MAX_VALUE );
+			statisticsInterpolator.flush( flushTime );
+			statisticsInterpolator.writeSummaries();
 		}
+	}
 
-		statisticsInterpolator.flush( flushTime );
+	private void reset()
+	{
+		synchronized( flushLock )
+		{
+			for( Stripe stripe : stripes )
+			{
+				synchronized( stripe )
+				{
+					stripe.entriesIntoTrackIdBySecond.clear();
+				}
+			}
+			bufferedSeconds.clear();
+			agentStates.clear();
+			newestSecond.set( Long.MIN_VALUE );
+			flushedBefore = Long.MIN_VALUE;
+			assignmentIndex.invalidate();
+			statisticsInterpolator.reset();
+		}
 	}
 
 	@Override
@@ -236,55 +339,22 @@ public class AgentDataAggregator implements StatisticsAggregator
 		statisticsInterpolator.update( entry, trackId, source );
 	}
 
-	public Collection<String> getIdsOfAgentsConnected( Collection<? extends AgentItem> agents )
+	@Override
+	public void release()
 	{
-		HashSet<String> result = new HashSet<>();
-
-		for( AgentItem agent : agents )
-		{
-			if( agent.isReady() )
-			{
-				result.add( agent.getId() );
-			}
-		}
-
-		return result;
+		executionManager.removeExecutionListener( executionListener );
+		assignmentIndex.release();
 	}
 
-	public Collection<Long> getFlushableTimes( final Collection<String> agents, final TreeMultimap<Long, String> reportedAgentsBySecond )
+	private static class Stripe
 	{
-		long lastFlushableTime = getLatestFlushableTime( agents, reportedAgentsBySecond );
-
-		if( lastFlushableTime == -1 )
-		{
-			return new TreeSet<>();
-		}
-
-		NavigableSet<Long> timeSet = reportedAgentsBySecond.keySet();
-
-		return timeSet.subSet( timeSet.first(), true, lastFlushableTime, false );
-
+		private final NavigableMap<Long, Map<String, EntryAccumulator>> entriesIntoTrackIdBySecond = Maps.newTreeMap();
 	}
 
-	private long getLatestFlushableTime( Collection<String> agents, TreeMultimap<Long, String> reportedAgentsBySecond )
+	private static class AgentState
 	{
-		ArrayList<String> copy = new ArrayList<>( agents );
-		for( Long time : reportedAgentsBySecond.keySet().descendingSet() )
-		{
-
-			for( String agentId : reportedAgentsBySecond.get( time ) )
-			{
-				copy.remove( agentId );
-			}
-
-			if( copy.isEmpty() )
-			{
-				return time;
-			}
-
-		}
-
-		return -1;
+		private final AtomicLong latestSecond = new AtomicLong( Long.MIN_VALUE );
+		private final AtomicLong lateDrops = new AtomicLong();
 	}
 
 	private class FlushingExecutionListener implements ExecutionListener
@@ -292,9 +362,7 @@ public class AgentDataAggregator implements StatisticsAggregator
 		@Override
 		public void executionStarted( State oldState )
 		{
-			entriesIntoTrackIdBySecond.clear();
-			agentIdBySeconds.clear();
-			statisticsInterpolator.reset();
+			reset();
 		}
 
 		@Override
@@ -163,6 +163,8 @@ public class ProjectExecutionManagerImpl implements ProjectExecutionManager, Rel
 
 	private class RunningExecutionTask implements TestExecutionTask
 	{
+		private SummaryTask summaryTask;
+
 		@Override
 		public void invoke( TestExecution execution, Phase phase )
 		{
@@ -179,6 +181,13 @@ public class ProjectExecutionManagerImpl implements ProjectExecutionManager, Rel
 					break;
 				case POST_STOP:
 					stopExecution( runningProject );
+					// the summary reads the execution summary entries, which are
+					// only stored once the execution has been stopped
+					if( summaryTask != null )
+					{
+						summaryTask.invoke( execution, phase );
+						summaryTask = null;
+					}
 					break;
 				default:
 					break;
@@ -205,8 +214,7 @@ public class ProjectExecutionManagerImpl implements ProjectExecutionManager, Rel
 				return;
 			}
 
-			SummaryTask postStopTask = new SummaryTask( runningProject, executionManager.getCurrentExecution() );
-			testRunner.runTaskOnce( postStopTask, Phase.POST_STOP );
+			summaryTask = new SummaryTask( runningProject, executionManager.getCurrentExecution() );
 
 		}
 
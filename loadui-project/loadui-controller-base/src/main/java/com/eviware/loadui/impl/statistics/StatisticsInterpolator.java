@@ -15,19 +15,26 @@
  */
 package com.eviware.loadui.impl.statistics;
 
-import java.util.HashMap;
-import java.util.HashSet;
-import java.util.Map;
-import java.util.Set;
+import java.util.concurrent.ConcurrentMap;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.eviware.loadui.api.statistics.EntryAccumulator;
+import com.eviware.loadui.api.statistics.IncrementalEntryAggregator;
 import com.eviware.loadui.api.statistics.store.Entry;
 import com.eviware.loadui.api.statistics.store.ExecutionManager;
 import com.eviware.loadui.api.statistics.store.ExecutionManager.State;
 import com.eviware.loadui.api.statistics.store.Track;
+import com.eviware.loadui.api.statistics.store.TrackWriter;
+import com.eviware.loadui.util.statistics.EntryAccumulators;
+import com.google.common.collect.Maps;
 
+/**
+ * Writes the Entries of each Track and source, along with their aggregates at
+ * each interpolation level. The levels of each Track and source are locked on
+ * their own, so that updates of different Tracks don't contend.
+ */
 public class StatisticsInterpolator
 {
 	public final static Logger log = LoggerFactory.getLogger( StatisticsInterpolator.class );
@@ -40,51 +47,90 @@ public class StatisticsInterpolator
 
 	private final ExecutionManager executionManager;
 
-	private final Map<String, AggregateLevel> aggregateLevels = new HashMap<>();
+	private final ConcurrentMap<String, AggregateLevel> aggregateLevels = Maps.newConcurrentMap();
 
 	public StatisticsInterpolator( ExecutionManager executionManager )
 	{
 		this.executionManager = executionManager;
 	}
 
-	public synchronized void reset()
+	public void reset()
 	{
 		aggregateLevels.clear();
 	}
 
-	public synchronized void update( Entry entry, String trackId, String source )
+	public void update( Entry entry, String trackId, String source )
 	{
 		long currentTime = entry.getTimestamp();
 		if( executionManager.getState() != State.STOPPED )
 		{
-			executionManager.writeEntry( trackId, entry, source );
+			AggregateLevel aggregateLevel = getLevel( trackId, source, currentTime );
+			synchronized( aggregateLevel )
+			{
+				aggregateLevel.input.write( entry );
+				aggregateLevel.summarize( entry );
+				aggregateLevel.update( entry, currentTime );
+			}
+		}
+	}
 
-			String key = trackId + source;
-			if( !aggregateLevels.containsKey( key ) )
-				aggregateLevels.put( key, new AggregateLevel( source, trackId, 0, currentTime ) );
+	private AggregateLevel getLevel( String trackId, String source, long currentTime )
+	{
+		String key = trackId + source;
+		AggregateLevel aggregateLevel = aggregateLevels.get( key );
+		if( aggregateLevel == null )
+		{
+			// created while holding the map, as creating a level opens its writers.
+			synchronized( aggregateLevels )
+			{
+				aggregateLevel = aggregateLevels.get( key );
+				if( aggregateLevel == null )
+				{
+					aggregateLevel = new AggregateLevel( source, trackId, 0, currentTime );
+					aggregateLevels.put( key, aggregateLevel );
+				}
+			}
+		}
+
+		return aggregateLevel;
+	}
 
-			aggregateLevels.get( key ).update( entry, currentTime );
+	/**
+	 * Writes the summary Entry of each Track and source, aggregated from all
+	 * Entries of the Execution, to the ExecutionManager. Called once the
+	 * Execution has stopped.
+	 */
+	public void writeSummaries()
+	{
+		for( AggregateLevel level : aggregateLevels.values() )
+		{
+			synchronized( level )
+			{
+				level.writeSummary();
+			}
 		}
 	}
 
-	public synchronized void flush( long flushTime )
+	public void flush( long flushTime )
 	{
 		if( executionManager.getState() != State.STOPPED )
 		{
-			for( java.util.Map.Entry<String, AggregateLevel> entry : aggregateLevels.entrySet() )
+			for( AggregateLevel level : aggregateLevels.values() )
 			{
-				String source = entry.getKey();
-				AggregateLevel sublevel = entry.getValue();
-				while( sublevel != null )
+				synchronized( level )
 				{
-					Entry aggregateEntry = sublevel.flush( flushTime );
-					if( aggregateEntry != null )
+					AggregateLevel sublevel = level;
+					while( sublevel != null )
 					{
-						executionManager.writeEntry( sublevel.trackId, aggregateEntry, source, sublevel.level + 1 );
-						if( sublevel.child != null )
-							sublevel.child.update( aggregateEntry, flushTime );
+						Entry aggregateEntry = sublevel.flush( flushTime );
+						if( aggregateEntry != null )
+						{
+							sublevel.output.write( aggregateEntry );
+							if( sublevel.child != null )
+								sublevel.child.update( aggregateEntry, flushTime );
+						}
+						sublevel = sublevel.child;
 					}
-					sublevel = sublevel.child;
 				}
 			}
 		}
@@ -96,8 +142,11 @@ public class StatisticsInterpolator
 		private final String trackId;
 		private final int level;
 		private final AggregateLevel child;
+		private final TrackWriter input;
+		private final TrackWriter output;
 		private long lastFlush;
-		private final Set<Entry> entries = new HashSet<>();
+		private EntryAccumulator accumulator;
+		private EntryAccumulator summary;
 
 		private AggregateLevel( String source, String trackId, int level, long currentTime )
 		{
@@ -108,6 +157,8 @@ public class StatisticsInterpolator
 
 			child = level < aggregateIntervals.length - 1 ? new AggregateLevel( source, trackId, level + 1, currentTime )
 					: null;
+			input = executionManager.openWriter( trackId, source, level );
+			output = child != null ? child.input : executionManager.openWriter( trackId, source, level + 1 );
 		}
 
 		public void update( Entry entry, long currentTime )
@@ -117,27 +168,80 @@ public class StatisticsInterpolator
 
 			if( entry.getTimestamp() <= flushTime && currentTime >= flushTime )
 			{
-				entries.add( entry );
+				add( entry );
 				aggregateEntry = flush( flushTime );
 			}
 			else if( currentTime >= flushTime )
 			{
 				aggregateEntry = flush( flushTime );
-				entries.add( entry );
+				add( entry );
 			}
 			else
 			{
-				entries.add( entry );
+				add( entry );
 			}
 
 			if( aggregateEntry != null )
 			{
-				executionManager.writeEntry( trackId, aggregateEntry, source, level + 1 );
+				output.write( aggregateEntry );
 				if( child != null )
 					child.update( entry, currentTime );
 			}
 		}
 
+		/**
+		 * Adds an Entry to the current period, creating an EntryAccumulator for
+		 * it if needed. Entries for Tracks which don't exist are dropped.
+		 * 
+		 * @param entry
+		 */
+		private void add( Entry entry )
+		{
+			if( accumulator == null )
+			{
+				Track track = executionManager.getTrack( trackId );
+				if( track == null )
+					return;
+
+				accumulator = EntryAccumulators.create( track.getEntryAggregator(), false );
+			}
+
+			accumulator.add( entry );
+		}
+
+		/**
+		 * Adds an Entry to the summary of the whole Execution. Only Tracks with
+		 * an IncrementalEntryAggregator are summarized, as others would need
+		 * every Entry of the Execution to be kept in memory.
+		 * 
+		 * @param entry
+		 */
+		private void summarize( Entry entry )
+		{
+			if( summary == null )
+			{
+				Track track = executionManager.getTrack( trackId );
+				if( track == null || !( track.getEntryAggregator() instanceof IncrementalEntryAggregator ) )
+					return;
+
+				summary = EntryAccumulators.create( track.getEntryAggregator(), false );
+			}
+
+			summary.add( entry );
+		}
+
+		private void writeSummary()
+		{
+			if( summary == null )
+				return;
+
+			Entry entry = summary.getResult();
+			summary = null;
+
+			if( entry != null )
+				executionManager.writeSummaryEntry( trackId, source, entry );
+		}
+
 		/**
 		 * @param flushTime
 		 * @return
@@ -146,12 +250,11 @@ public class StatisticsInterpolator
 		{
 			lastFlush = flushTime;
 
-			Track track = executionManager.getTrack( trackId );
-			if( entries.isEmpty() || track == null )
+			if( accumulator == null )
 				return null;
 
-			Entry entry = track.getTrackDescriptor().getEntryAggregator().aggregate( entries, false );
-			entries.clear();
+			Entry entry = accumulator.getResult();
+			accumulator = null;
 
 			return entry;
 		}
@@ -0,0 +1,191 @@
+/*
+ * Copyright 2013 SmartBear Software
+ * 
+ * Licensed under the EUPL, Version 1.1 or - as soon they will be approved by the European Commission - subsequent
+ * versions of the EUPL (the "Licence");
+ * You may not use this work except in compliance with the Licence.
+ * You may obtain a copy of the Licence at:
+ * 
+ * http://ec.europa.eu/idabc/eupl
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the Licence is
+ * distributed on an "AS IS" basis, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the Licence for the specific language governing permissions and limitations
+ * under the Licence.
+ */
+package com.eviware.loadui.impl.statistics;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.eviware.loadui.api.events.BaseEvent;
+import com.eviware.loadui.api.events.CollectionEvent;
+import com.eviware.loadui.api.events.EventHandler;
+import com.eviware.loadui.api.model.AgentItem;
+import com.eviware.loadui.api.model.ProjectItem;
+import com.eviware.loadui.api.model.SceneItem;
+import com.eviware.loadui.api.statistics.StatisticHolder;
+import com.eviware.loadui.api.statistics.StatisticVariable;
+import com.eviware.loadui.api.statistics.store.TrackDescriptor;
+import com.eviware.loadui.api.traits.Releasable;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Iterables;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+
+/**
+ * Maps the trackIds of the current project to the scenes owning them, and the
+ * scenes to the IDs of the ready agents they are assigned to. The index is
+ * built lazily, and rebuilt when the scenes or assignments of the project
+ * change, when an assigned agent becomes ready or not, or when an unknown
+ * trackId is looked up. Each snapshot records the generation it was built
+ * for, so a snapshot built concurrently with invalidate() is never used.
+ */
+class TrackAssignmentIndex implements Releasable
+{
+	private final ProjectListener projectListener = new ProjectListener();
+	private final AgentListener agentListener = new AgentListener();
+	private final Set<AgentItem> listenedAgents = Sets.newHashSet();
+	private final AtomicLong generation = new AtomicLong();
+
+	private ProjectItem project;
+	private volatile Snapshot snapshot;
+
+	/**
+	 * Gets the IDs of the ready agents assigned to the scene which owns the
+	 * given trackId.
+	 * 
+	 * @throws RuntimeException
+	 *            if no scene in the project owns the trackId.
+	 */
+	public Set<String> getConnectedAgentIds( String trackId, ProjectItem currentProject )
+	{
+		Snapshot current = snapshot;
+		if( current == null || current.project != currentProject || current.generation != generation.get() )
+		{
+			current = rebuild( currentProject );
+		}
+
+		SceneItem scene = current.scenes.get( trackId );
+		if( scene == null )
+		{
+			// a new component or statistic since the index was built.
+			current = rebuild( currentProject );
+			scene = current.scenes.get( trackId );
+			if( scene == null )
+				throw new RuntimeException( "Could not find trackId during data aggregation" );
+		}
+
+		return current.connectedAgentIds.get( scene );
+	}
+
+	public void invalidate()
+	{
+		generation.incrementAndGet();
+	}
+
+	@Override
+	public synchronized void release()
+	{
+		if( project != null )
+		{
+			project.removeEventListener( CollectionEvent.class, projectListener );
+			project = null;
+		}
+		for( AgentItem agent : listenedAgents )
+		{
+			agent.removeEventListener( BaseEvent.class, agentListener );
+		}
+		listenedAgents.clear();
+		snapshot = null;
+	}
+
+	private synchronized Snapshot rebuild( ProjectItem currentProject )
+	{
+		if( project != currentProject )
+		{
+			release();
+			project = currentProject;
+			project.addEventListener( CollectionEvent.class, projectListener );
+		}
+
+		long buildGeneration = generation.get();
+		Map<String, SceneItem> scenes = Maps.newHashMap();
+		ImmutableMap.Builder<SceneItem, ImmutableSet<String>> connectedAgentIds = ImmutableMap.builder();
+		for( SceneItem scene : project.getChildren() )
+		{
+			for( StatisticHolder holder : Iterables.concat( ImmutableList.of( scene ), scene.getComponents() ) )
+			{
+				for( StatisticVariable variable : holder.getStatisticVariables() )
+				{
+					for( TrackDescriptor descriptor : variable.getTrackDescriptors() )
+					{
+						scenes.put( descriptor.getId(), scene );
+					}
+				}
+			}
+			ImmutableSet.Builder<String> agentIds = ImmutableSet.builder();
+			for( AgentItem agent : project.getAgentsAssignedTo( scene ) )
+			{
+				if( listenedAgents.add( agent ) )
+				{
+					agent.addEventListener( BaseEvent.class, agentListener );
+				}
+				if( agent.isReady() )
+				{
+					agentIds.add( agent.getId() );
+				}
+			}
+			connectedAgentIds.put( scene, agentIds.build() );
+		}
+
+		Snapshot newSnapshot = new Snapshot( project, buildGeneration, ImmutableMap.copyOf( scenes ),
+				connectedAgentIds.build() );
+		snapshot = newSnapshot;
+		return newSnapshot;
+	}
+
+	private static class Snapshot
+	{
+		private final ProjectItem project;
+		private final long generation;
+		private final ImmutableMap<String, SceneItem> scenes;
+		private final ImmutableMap<SceneItem, ImmutableSet<String>> connectedAgentIds;
+
+		private Snapshot( ProjectItem project, long generation, ImmutableMap<String, SceneItem> scenes,
+				ImmutableMap<SceneItem, ImmutableSet<String>> connectedAgentIds )
+		{
+			this.project = project;
+			this.generation = generation;
+			this.scenes = scenes;
+			this.connectedAgentIds = connectedAgentIds;
+		}
+	}
+
+	private class ProjectListener implements EventHandler<CollectionEvent>
+	{
+		@Override
+		public void handleEvent( CollectionEvent event )
+		{
+			if( ProjectItem.SCENES.equals( event.getKey() ) || ProjectItem.ASSIGNMENTS.equals( event.getKey() ) )
+			{
+				invalidate();
+			}
+		}
+	}
+
+	private class AgentListener implements EventHandler<BaseEvent>
+	{
+		@Override
+		public void handleEvent( BaseEvent event )
+		{
+			if( AgentItem.READY.equals( event.getKey() ) )
+			{
+				invalidate();
+			}
+		}
+	}
+}
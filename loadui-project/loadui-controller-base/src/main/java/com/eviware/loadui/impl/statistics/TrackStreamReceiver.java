@@ -27,8 +27,12 @@ import com.eviware.loadui.api.model.AgentItem;
 import com.eviware.loadui.api.statistics.Statistic;
 import com.eviware.loadui.api.statistics.store.Execution;
 import com.eviware.loadui.api.statistics.store.ExecutionManager;
+import com.eviware.loadui.api.statistics.store.Track;
 import com.eviware.loadui.api.traits.Releasable;
-import com.eviware.loadui.util.statistics.store.EntryImpl;
+import com.eviware.loadui.util.statistics.EntrySketches;
+import com.eviware.loadui.util.statistics.QuantileSketch;
+import com.eviware.loadui.util.statistics.store.EntrySchema;
+import com.eviware.loadui.util.statistics.store.SchemaEntry;
 
 /**
  * Receives Track data from agents and saves it to the current Execution.
@@ -86,10 +90,17 @@ public class TrackStreamReceiver implements Releasable
 					timestamp = currentTimeMillis;
 
 				String trackId = ( String )map.remove( "_TRACK_ID" );
+				QuantileSketch sketch = EntrySketches.read( map );
 
-				EntryImpl entry = new EntryImpl( timestamp, ( Map<String, Number> )data );
 				if( execution != null )
+				{
+					Track track = execution.getTrack( trackId );
+					EntrySchema schema = track == null ? null : EntrySchema.of( track.getTrackDescriptor() );
+					SchemaEntry entry = SchemaEntry.fromMap( schema, timestamp, ( Map<String, Number> )data );
+					if( sketch != null )
+						EntrySketches.attach( entry, sketch );
 					TrackStreamReceiver.this.aggregator.update( entry, trackId, agent );
+				}
 			}
 		}
 	}
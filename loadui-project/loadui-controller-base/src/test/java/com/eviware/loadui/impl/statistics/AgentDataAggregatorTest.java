@@ -3,14 +3,18 @@ package com.eviware.loadui.impl.statistics;
 import com.eviware.loadui.api.statistics.EntryAggregator;
 import com.eviware.loadui.api.statistics.StatisticVariable;
 import com.eviware.loadui.api.statistics.store.Entry;
+import com.eviware.loadui.api.statistics.store.ExecutionListener;
 import com.eviware.loadui.api.statistics.store.ExecutionManager;
 import com.eviware.loadui.api.statistics.store.Track;
+import com.eviware.loadui.api.statistics.store.TrackWriter;
 import com.eviware.loadui.util.statistics.store.EntryImpl;
 import com.google.common.collect.Iterables;
 import org.junit.Before;
 import org.junit.Test;
 import org.mockito.ArgumentCaptor;
 import org.mockito.Mockito;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
 
 import java.util.*;
 
@@ -69,6 +73,31 @@ public class AgentDataAggregatorTest
 		executionManagerMock = Mockito.mock( ExecutionManager.class );
 		when( executionManagerMock.getState() ).thenReturn( ExecutionManager.State.STARTED );
 		when( executionManagerMock.getTrack( anyString() ) ).thenReturn( trackMock );
+		when( executionManagerMock.openWriter( anyString(), anyString(), anyInt() ) ).thenAnswer( new Answer<TrackWriter>()
+		{
+			@Override
+			public TrackWriter answer( InvocationOnMock invocation )
+			{
+				final Object[] args = invocation.getArguments();
+				return new TrackWriter()
+				{
+					@Override
+					public void write( Entry entry )
+					{
+						if( ( Integer )args[2] == 0 )
+							executionManagerMock.writeEntry( ( String )args[0], entry, ( String )args[1] );
+						else
+							executionManagerMock.writeEntry( ( String )args[0], entry, ( String )args[1], ( Integer )args[2] );
+					}
+
+					@Override
+					public Entry getLastEntry()
+					{
+						return null;
+					}
+				};
+			}
+		} );
 
 		aggregator = new AgentDataAggregator( executionManagerMock );
 	}
@@ -365,6 +394,44 @@ public class AgentDataAggregatorTest
 
 	}
 
+	@Test
+	public void shouldCountLateDropsAndLagPerAgent()
+	{
+		//given
+		String trackId1 = "TrackID1";
+
+		String agentId1 = "coolAgent2008";
+		String agentId2 = "agent2";
+		List<String> twoAgents = Arrays.asList( agentId1, agentId2 );
+
+		//when
+		aggregator.updateAndAggregate( newEntry( 1777, VAR_STAT_NAME, 4 ), trackId1, agentId1, twoAgents );
+		aggregator.updateAndAggregate( newEntry( 1555, VAR_STAT_NAME, 6 ), trackId1, agentId2, twoAgents );
+		aggregator.updateAndAggregate( newEntry( 3222, VAR_STAT_NAME, 2 ), trackId1, agentId1, twoAgents );
+		aggregator.updateAndAggregate( newEntry( 3333, VAR_STAT_NAME, 3 ), trackId1, agentId2, twoAgents );
+		aggregator.updateAndAggregate( newEntry( 777, VAR_STAT_NAME, 7 ), trackId1, agentId2, twoAgents );
+		aggregator.updateAndAggregate( newEntry( 5555, VAR_STAT_NAME, 7 ), trackId1, agentId1, twoAgents );
+
+		//then
+		assertThat( aggregator.getLateDropCount( agentId1 ), equalTo( 0l ) );
+		assertThat( aggregator.getLateDropCount( agentId2 ), equalTo( 1l ) );
+
+		assertThat( aggregator.getAgentLag( agentId1 ), equalTo( 0l ) );
+		assertThat( aggregator.getAgentLag( agentId2 ), equalTo( 2l ) );
+		assertThat( aggregator.getAgentLag( "unknown agent" ), equalTo( -1l ) );
+	}
+
+	@Test
+	public void shouldStopListeningToExecutionsWhenReleased()
+	{
+		ArgumentCaptor<ExecutionListener> listenerCaptor = ArgumentCaptor.forClass( ExecutionListener.class );
+		verify( executionManagerMock ).addExecutionListener( listenerCaptor.capture() );
+
+		aggregator.release();
+
+		verify( executionManagerMock ).removeExecutionListener( listenerCaptor.getValue() );
+	}
+
 	private EntryImpl newEntry( long timeStamp, String description, long value )
 	{
 		return new EntryImpl( timeStamp, createValueMap( description, value ) );
@@ -0,0 +1,161 @@
+/*
+ * Copyright 2013 SmartBear Software
+ * 
+ * Licensed under the EUPL, Version 1.1 or - as soon they will be approved by the European Commission - subsequent
+ * versions of the EUPL (the "Licence");
+ * You may not use this work except in compliance with the Licence.
+ * You may obtain a copy of the Licence at:
+ * 
+ * http://ec.europa.eu/idabc/eupl
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the Licence is
+ * distributed on an "AS IS" basis, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the Licence for the specific language governing permissions and limitations
+ * under the Licence.
+ */
+package com.eviware.loadui.impl.statistics;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.Set;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+
+import com.eviware.loadui.api.statistics.EntryAccumulator;
+import com.eviware.loadui.api.statistics.EntryAggregator;
+import com.eviware.loadui.api.statistics.IncrementalEntryAggregator;
+import com.eviware.loadui.api.statistics.store.Entry;
+import com.eviware.loadui.api.statistics.store.ExecutionManager;
+import com.eviware.loadui.api.statistics.store.Track;
+import com.eviware.loadui.api.statistics.store.TrackWriter;
+import com.eviware.loadui.util.statistics.EntryAccumulators;
+
+public class StatisticsInterpolatorTest
+{
+	private static final String VALUE = "Total";
+
+	private ExecutionManager executionManager;
+	private StatisticsInterpolator interpolator;
+
+	@Before
+	public void setup()
+	{
+		Track summedTrack = mock( Track.class );
+		when( summedTrack.getEntryAggregator() ).thenReturn( new SumAggregator() );
+
+		Track bufferedTrack = mock( Track.class );
+		when( bufferedTrack.getEntryAggregator() ).thenReturn( new EntryAggregator()
+		{
+			@Override
+			public Entry aggregate( Set<Entry> entries, boolean parallel )
+			{
+				return null;
+			}
+		} );
+
+		executionManager = mock( ExecutionManager.class );
+		when( executionManager.getState() ).thenReturn( ExecutionManager.State.STARTED );
+		when( executionManager.getTrack( "summed" ) ).thenReturn( summedTrack );
+		when( executionManager.getTrack( "buffered" ) ).thenReturn( bufferedTrack );
+		when( executionManager.openWriter( anyString(), anyString(), anyInt() ) ).thenReturn( mock( TrackWriter.class ) );
+
+		interpolator = new StatisticsInterpolator( executionManager );
+	}
+
+	@Test
+	public void shouldWriteSummaryOfAllEntries()
+	{
+		interpolator.update( newEntry( 1000, 3 ), "summed", "agent" );
+		interpolator.update( newEntry( 2000, 4 ), "summed", "agent" );
+		interpolator.update( newEntry( 20000, 5 ), "summed", "agent" );
+
+		interpolator.writeSummaries();
+
+		ArgumentCaptor<Entry> entryCaptor = ArgumentCaptor.forClass( Entry.class );
+		verify( executionManager ).writeSummaryEntry( eq( "summed" ), eq( "agent" ), entryCaptor.capture() );
+		assertThat( entryCaptor.getValue().getValue( VALUE ).longValue(), is( 12L ) );
+		assertThat( entryCaptor.getValue().getTimestamp(), is( 20000L ) );
+	}
+
+	@Test
+	public void shouldWriteEachSummaryOnlyOnce()
+	{
+		interpolator.update( newEntry( 1000, 3 ), "summed", "agent" );
+
+		interpolator.writeSummaries();
+		interpolator.writeSummaries();
+
+		verify( executionManager, times( 1 ) ).writeSummaryEntry( anyString(), anyString(), any( Entry.class ) );
+	}
+
+	@Test
+	public void shouldNotSummarizeTracksWithoutIncrementalAggregator()
+	{
+		interpolator.update( newEntry( 1000, 3 ), "buffered", "agent" );
+
+		interpolator.writeSummaries();
+
+		verify( executionManager, never() ).writeSummaryEntry( anyString(), anyString(), any( Entry.class ) );
+	}
+
+	private static Entry newEntry( long timestamp, long value )
+	{
+		return new AbstractStatisticsWriter.EntryBuilder( timestamp ).put( VALUE, value ).build();
+	}
+
+	private static class SumAggregator implements IncrementalEntryAggregator
+	{
+		@Override
+		public Entry aggregate( Set<Entry> entries, boolean parallel )
+		{
+			return EntryAccumulators.aggregate( this, entries, parallel );
+		}
+
+		@Override
+		public EntryAccumulator createAccumulator( boolean parallel )
+		{
+			return new EntryAccumulator()
+			{
+				private long timestamp = -1;
+				private long sum = 0;
+
+				@Override
+				public void add( Entry entry )
+				{
+					timestamp = Math.max( timestamp, entry.getTimestamp() );
+					sum += entry.getValue( VALUE ).longValue();
+				}
+
+				@Override
+				public void merge( EntryAccumulator other )
+				{
+					throw new UnsupportedOperationException();
+				}
+
+				@Override
+				public boolean isEmpty()
+				{
+					return timestamp < 0;
+				}
+
+				@Override
+				public Entry getResult()
+				{
+					return isEmpty() ? null : newEntry( timestamp, sum );
+				}
+			};
+		}
+	}
+}
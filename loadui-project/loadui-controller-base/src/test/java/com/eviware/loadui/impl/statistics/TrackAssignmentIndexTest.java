@@ -0,0 +1,105 @@
+/*
+ * Copyright 2013 SmartBear Software
+ * 
+ * Licensed under the EUPL, Version 1.1 or - as soon they will be approved by the European Commission - subsequent
+ * versions of the EUPL (the "Licence");
+ * You may not use this work except in compliance with the Licence.
+ * You may obtain a copy of the Licence at:
+ * 
+ * http://ec.europa.eu/idabc/eupl
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the Licence is
+ * distributed on an "AS IS" basis, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the Licence for the specific language governing permissions and limitations
+ * under the Licence.
+ */
+package com.eviware.loadui.impl.statistics;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.Collections;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import com.eviware.loadui.api.model.AgentItem;
+import com.eviware.loadui.api.model.ProjectItem;
+import com.eviware.loadui.api.model.SceneItem;
+import com.eviware.loadui.api.statistics.StatisticVariable;
+import com.eviware.loadui.api.statistics.store.TrackDescriptor;
+import com.google.common.collect.ImmutableSet;
+
+public class TrackAssignmentIndexTest
+{
+	private final TrackAssignmentIndex index = new TrackAssignmentIndex();
+
+	private ProjectItem project;
+	private SceneItem scene;
+	private AgentItem agent;
+
+	@Before
+	public void setup()
+	{
+		TrackDescriptor descriptor = mock( TrackDescriptor.class );
+		when( descriptor.getId() ).thenReturn( "track" );
+		StatisticVariable variable = mock( StatisticVariable.class );
+		doReturn( Collections.singleton( descriptor ) ).when( variable ).getTrackDescriptors();
+
+		scene = mock( SceneItem.class );
+		doReturn( Collections.singleton( variable ) ).when( scene ).getStatisticVariables();
+		doReturn( Collections.emptySet() ).when( scene ).getComponents();
+
+		agent = mock( AgentItem.class );
+		when( agent.getId() ).thenReturn( "agent" );
+
+		project = mock( ProjectItem.class );
+		doReturn( Collections.singleton( scene ) ).when( project ).getChildren();
+		doReturn( Collections.singleton( agent ) ).when( project ).getAgentsAssignedTo( scene );
+	}
+
+	@Test
+	public void shouldReuseSnapshotUntilInvalidated()
+	{
+		when( agent.isReady() ).thenReturn( true );
+		assertThat( index.getConnectedAgentIds( "track", project ), is( ( Object )ImmutableSet.of( "agent" ) ) );
+		assertThat( index.getConnectedAgentIds( "track", project ), is( ( Object )ImmutableSet.of( "agent" ) ) );
+		verify( project, times( 1 ) ).getChildren();
+
+		when( agent.isReady() ).thenReturn( false );
+		index.invalidate();
+		assertThat( index.getConnectedAgentIds( "track", project ).isEmpty(), is( true ) );
+	}
+
+	@Test
+	public void shouldNotUseSnapshotBuiltDuringInvalidation()
+	{
+		when( agent.isReady() ).thenAnswer( new Answer<Boolean>()
+		{
+			private boolean first = true;
+
+			@Override
+			public Boolean answer( InvocationOnMock invocation )
+			{
+				if( first )
+				{
+					// the agent disconnects while the snapshot is being built
+					first = false;
+					index.invalidate();
+					return true;
+				}
+				return false;
+			}
+		} );
+
+		assertThat( index.getConnectedAgentIds( "track", project ), is( ( Object )ImmutableSet.of( "agent" ) ) );
+		assertThat( index.getConnectedAgentIds( "track", project ).isEmpty(), is( true ) );
+	}
+}
@@ -22,22 +22,25 @@ import com.eviware.loadui.api.statistics.store.Execution;
 import com.eviware.loadui.api.testevents.TestEvent;
 import com.eviware.loadui.ui.fx.api.analysis.ExecutionChart;
 import com.eviware.loadui.ui.fx.util.Observables.Group;
+import com.eviware.loadui.util.statistics.DataPointBuffer;
 import com.google.common.base.Function;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Iterables;
-import com.google.common.collect.Lists;
 import javafx.beans.InvalidationListener;
 import javafx.beans.Observable;
 import javafx.beans.value.ChangeListener;
 import javafx.beans.value.ObservableValue;
 import javafx.scene.Node;
+import javafx.scene.chart.LineChart;
 import javafx.scene.chart.XYChart;
 import javafx.scene.chart.XYChart.Series;
 import javafx.scene.shape.*;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.ArrayList;
 import java.util.LinkedList;
+import java.util.List;
 import java.util.concurrent.Callable;
 
 import static com.eviware.loadui.ui.fx.util.ObservableLists.fromExpression;
@@ -56,6 +59,12 @@ public final class SegmentViewToSeriesFunction implements Function<SegmentView<?
 
 	protected static final Logger log = LoggerFactory.getLogger( SegmentViewToSeriesFunction.class );
 
+	// used until the chart has been laid out
+	private static final int DEFAULT_CHART_WIDTH = 800;
+
+	// minimum number of pixels per point for point markers to be drawn
+	private static final int MARKER_SPACING = 6;
+
 	public SegmentViewToSeriesFunction( ObservableValue<Execution> execution,
 													Group<Observable> observablesUpdatedByUser, Observable timePulse, Observable position, ExecutionChart chart )
 	{
@@ -76,39 +85,14 @@ public final class SegmentViewToSeriesFunction implements Function<SegmentView<?
 		throw new RuntimeException( "Unsupported Segment type" );
 	}
 
-	private static final Function<DataPoint<?>, XYChart.Data<Long, Number>> datapointToChartdata = new Function<DataPoint<?>, XYChart.Data<Long, Number>>()
-	{
-		@Override
-		public XYChart.Data<Long, Number> apply( DataPoint<?> point )
-		{
-			return new XYChart.Data<Long, Number>( point.getTimestamp(), point.getValue() );
-		}
-	};
-
 	private Series<Long, Number> lineSegmentToSeries( final LineSegmentView segmentView )
 	{
 		final LineSegment segment = segmentView.getSegment();
 		final XYChart.Series<Long, Number> series = new XYChart.Series<>();
 		series.setName( segment.getStatisticName() );
 
-		// applies the scale to each point
-		final Function<XYChart.Data<Long, Number>, XYChart.Data<Long, Number>> chartdataToScaledChartdata = new Function<XYChart.Data<Long, Number>, XYChart.Data<Long, Number>>()
-		{
-			@Override
-			public XYChart.Data<Long, Number> apply( XYChart.Data<Long, Number> point )
-			{
-				double scaleValue = Math.pow( 10,
-						Integer.parseInt( segment.getAttribute( LineSegmentView.SCALE_ATTRIBUTE, "0" ) ) );
-
-				XYChart.Data<Long, Number> dataPoint = new XYChart.Data<Long, Number>( point.getXValue(), point.getYValue()
-						.doubleValue() * scaleValue );
-
-				dataPoint.setNode( CircleBuilder.create().fill( chart.getColor( segment, execution.getValue() ) )
-						.radius( 3 ).build() );
-
-				return dataPoint;
-			}
-		};
+		// the raw points of the visible period, which the series is a downsampled view of
+		final DataPointBuffer buffer = new DataPointBuffer();
 
 		InvalidationListener seriesUpdater = new InvalidationListener()
 		{
@@ -126,10 +110,24 @@ public final class SegmentViewToSeriesFunction implements Function<SegmentView<?
 							chart.getTickZoomLevel().getLevel() );
 					if( latestDataPoint != null )
 					{
-						series.getData().add(
-								chartdataToScaledChartdata.apply( datapointToChartdata.apply( latestDataPoint ) ) );
-						if( series.getData().get( 0 ).getXValue() < chart.getPosition() )
-							series.getData().remove( 0 );
+						buffer.add( latestDataPoint.getTimestamp(), latestDataPoint.getValue().doubleValue() );
+						buffer.removeBefore( ( long )chart.getPosition() );
+
+						int chartWidth = getChartWidth();
+						if( series.getData().size() < 2 * chartWidth )
+						{
+							int size = series.getData().size() + 1;
+							series.getData().add(
+									toChartData( latestDataPoint.getTimestamp(), latestDataPoint.getValue().doubleValue(),
+											getScale( segment ), size * MARKER_SPACING <= chartWidth ? segment : null ) );
+							if( series.getData().get( 0 ).getXValue() < chart.getPosition() )
+								series.getData().remove( 0 );
+						}
+						else
+						{
+							// the live part has grown too dense, downsample the whole line again.
+							updateSeriesFromBuffer( segment, series, buffer );
+						}
 					}
 				}
 				else
@@ -147,7 +145,7 @@ public final class SegmentViewToSeriesFunction implements Function<SegmentView<?
 							}
 						}
 					}
-					updateLineFromDB( segment, series, chartdataToScaledChartdata );
+					updateLineFromDB( segment, series, buffer );
 				}
 			}
 		};
@@ -179,7 +177,7 @@ public final class SegmentViewToSeriesFunction implements Function<SegmentView<?
 			@Override
 			public void invalidated( Observable _ )
 			{
-				updateLineFromDB( segment, series, chartdataToScaledChartdata );
+				updateLineFromDB( segment, series, buffer );
 			}
 		} );
 
@@ -238,13 +236,69 @@ public final class SegmentViewToSeriesFunction implements Function<SegmentView<?
 	}
 
 	private void updateLineFromDB( final LineSegment segment, final XYChart.Series<Long, Number> series,
-											 final Function<XYChart.Data<Long, Number>, XYChart.Data<Long, Number>> chartdataToScaledChartdata )
+											 final DataPointBuffer buffer )
+	{
+		buffer.clear();
+		for( DataPoint<Number> point : segment.getStatistic().getPeriod( ( long )chart.getPosition() - 2000,
+				( long )chart.getPosition() + chart.getSpan() + 2000, chart.getTickZoomLevel().getLevel(),
+				execution.getValue() ) )
+		{
+			buffer.add( point.getTimestamp(), point.getValue().doubleValue() );
+		}
+
+		updateSeriesFromBuffer( segment, series, buffer );
+	}
+
+	/**
+	 * Replaces the data of the series with the buffered line, downsampled to
+	 * about one point per pixel of the chart. Point markers are only created
+	 * when the points are far enough apart to be told apart.
+	 */
+	private void updateSeriesFromBuffer( final LineSegment segment, final XYChart.Series<Long, Number> series,
+													 final DataPointBuffer buffer )
+	{
+		int chartWidth = getChartWidth();
+		int[] sampled = buffer.downsample( chartWidth );
+		double scale = getScale( segment );
+		LineSegment markedSegment = sampled.length * MARKER_SPACING <= chartWidth ? segment : null;
+
+		List<XYChart.Data<Long, Number>> chartdata = new ArrayList<>( sampled.length );
+		for( int index : sampled )
+		{
+			chartdata.add( toChartData( buffer.getTimestamp( index ), buffer.getValue( index ), scale, markedSegment ) );
+		}
+
+		series.getData().setAll( chartdata );
+	}
+
+	/**
+	 * Creates the scaled chart data for a point, with a marker in the color of
+	 * the given segment, or without a marker if the segment is null.
+	 */
+	private XYChart.Data<Long, Number> toChartData( long timestamp, double value, double scale, LineSegment markedSegment )
+	{
+		XYChart.Data<Long, Number> dataPoint = new XYChart.Data<Long, Number>( timestamp, value * scale );
+
+		if( markedSegment != null )
+		{
+			dataPoint.setNode( CircleBuilder.create().fill( chart.getColor( markedSegment, execution.getValue() ) )
+					.radius( 3 ).build() );
+		}
+
+		return dataPoint;
+	}
+
+	private static double getScale( LineSegment segment )
+	{
+		return Math.pow( 10, Integer.parseInt( segment.getAttribute( LineSegmentView.SCALE_ATTRIBUTE, "0" ) ) );
+	}
+
+	private int getChartWidth()
 	{
-		Iterable<XYChart.Data<Long, Number>> chartdata = Iterables.transform(
-				segment.getStatistic().getPeriod( ( long )chart.getPosition() - 2000,
-						( long )chart.getPosition() + chart.getSpan() + 2000, chart.getTickZoomLevel().getLevel(),
-						execution.getValue() ), datapointToChartdata );
+		LineChart<Long, Number> lineChart = chart.getLineChart();
+		if( lineChart == null || lineChart.getWidth() < 1 )
+			return DEFAULT_CHART_WIDTH;
 
-		series.getData().setAll( Lists.newArrayList( Iterables.transform( chartdata, chartdataToScaledChartdata ) ) );
+		return ( int )lineChart.getWidth();
 	}
 }
@@ -2,6 +2,11 @@
  * Attaches values from a CSV-file to incoming Virtual Users. These values can
  * then be used by subsequent components, such as a SoapUI Runner.
  *
+ * In streaming mode the file is memory mapped and rows are read on demand,
+ * instead of the whole file being parsed into memory. Rows can then be read in
+ * order, at random or shuffled, and each agent can be given its own share of
+ * the rows.
+ *
  * @id com.eviware.DataSource
  * @category flow
  * @dependency com.xlson.groovycsv:groovycsv:1.0
@@ -10,7 +15,13 @@
 import com.xlson.groovycsv.CsvParser
 import java.util.ArrayList
 import com.google.common.collect.Lists
+import com.eviware.loadui.impl.component.csv.MappedCsvFile
+import com.eviware.loadui.impl.component.csv.RowCursor
+import com.eviware.loadui.api.component.ComponentContext
+import com.eviware.loadui.api.events.CollectionEvent
 
+final SHARD_INDEX = 'DataSource.shardIndex'
+final SHARD_COUNT = 'DataSource.shardCount'
 
 
 createOutgoing( 'output' ) // Creates an outgoing connector called "output".
@@ -20,14 +31,53 @@ def inputFileText;
 
 def dataList;
 
+csvFile = null
+columns = null
+rowCursor = null
+shardIndex = 0
+shardCount = 1
+
 createProperty( 'separatorSymbol', String, ',' )
 
 parseCsv = {
-	if( inputFile.value )
+	def previousFile = csvFile
+	csvFile = null
+	rowCursor = null
+	if( inputFile.value && streaming.value )
+	{
+		dataList = null
+		csvFile = MappedCsvFile.open( inputFile.value, separatorSymbol.value.charAt( 0 ) )
+		csvFile.indexInBackground()
+		columns = csvFile.columns
+		resetCursor()
+	}
+	else if( inputFile.value )
 	{
 		dataList = Lists.newArrayList(CsvParser.parseCsv( inputFile.value.text, separator: separatorSymbol.value) as Iterator)
 		resetIterator()
 	}
+	// Released last, so that the index is kept when the same file is opened again.
+	previousFile?.release()
+}
+
+resetCursor = {
+	if( csvFile )
+		rowCursor = new RowCursor( csvFile, RowCursor.Order.valueOf( order.value.toUpperCase() ), shardIndex, shardCount, shouldLoop.value )
+}
+
+// Sent whenever the agents change, so that each agent knows its rows before the run starts.
+// Without shardRows every agent is told to read all rows, undoing any earlier assignment.
+sendShards = {
+	if( controller )
+	{
+		def agents = agentTerminals
+		agents.eachWithIndex{ terminal, index ->
+			def shard = newMessage()
+			shard[SHARD_INDEX] = shardRows.value ? index : 0
+			shard[SHARD_COUNT] = shardRows.value ? agents.size() : 1
+			send( terminal, shard )
+		}
+	}
 }
 
 resetIterator = {
@@ -38,11 +88,45 @@ createProperty( 'inputFile', File ) {
 	parseCsv() // This will be called whenever the property's value is changed.
 }
 
-createProperty( 'shouldLoop', Boolean, false ) 
+createProperty( 'shouldLoop', Boolean, false ) { resetCursor() }
+createProperty( 'streaming', Boolean, false ) { parseCsv() }
+createProperty( 'order', String, 'Sequential' ) { resetCursor() }
+createProperty( 'shardRows', Boolean, false ) { sendShards() }
+
+addEventListener( CollectionEvent ) { event ->
+	if( event.key == ComponentContext.AGENT_TERMINALS )
+		sendShards()
+}
 
 // This is called whenever we get an incoming message.
 onMessage = { sendingConnector, receivingConnector, message ->
 
+	if( receivingConnector == remoteTerminal )
+	{
+		// The controller assigns each agent its share of the rows.
+		if( message.containsKey( SHARD_COUNT ) && ( message[SHARD_INDEX] != shardIndex || message[SHARD_COUNT] != shardCount ) )
+		{
+			shardIndex = message[SHARD_INDEX]
+			shardCount = message[SHARD_COUNT]
+			resetCursor()
+		}
+		return
+	}
+
+	if( rowCursor )
+	{
+		def values = rowCursor.next()
+		if( values != null )
+		{
+			columns.eachWithIndex{ key, index ->
+				if( index < values.length )
+					message[key] = values[index]
+			}
+		}
+		send( output, message )
+		return
+	}
+
 	if(!csvIterator?.hasNext() && shouldLoop.value)
 	{
 		resetIterator()
@@ -59,10 +143,19 @@ onMessage = { sendingConnector, receivingConnector, message ->
 	send( output, message )
 }
 
+// Sent again in case an agent has connected since, agents ignore unchanged shards.
+onAction( 'START' ) {
+	sendShards()
+}
+
 onAction( 'RESET' ) {
 	parseCsv()
 }
 
+onRelease = {
+	csvFile?.release()
+}
+
 layout { 
 	property( property:inputFile, constraints: 'width 220', label:'Input file' )
 	property( property:shouldLoop, label:'Loop' )
@@ -70,6 +163,9 @@ layout {
 
 settings (label: 'General') {
 	property( property: separatorSymbol, label:'Separator' )
+	property( property: streaming, label:'Stream rows from file (for large files)' )
+	property( property: order, label:'Row order (streaming)', options:['Sequential','Random','Shuffled'] )
+	property( property: shardRows, label:'Give each agent its own rows (streaming)' )
 }
 
 parseCsv()
@@ -76,7 +76,7 @@ onMessage = { outgoing, incoming, message ->
 		
 		waitTime = delayTime as Long
 		message.put( 'actualDelay', waitTime )
-		schedule( {
+		triggerScheduler.schedule( {
 			send( output, message )
 			waitingCount.decrementAndGet()
 		}, waitTime, TimeUnit.MILLISECONDS )
@@ -88,14 +88,14 @@ onRelease = {
 }
 
 onAction( "COMPLETE" ) {
-	cancelTasks()
+	triggerScheduler.cancelAll()
 	waitingCount.set( 0 )
 }
 
 onAction( "RESET" ) {
 	waitTime = 0
 	waitingCount.set( 0 )
-	cancelTasks()
+	triggerScheduler.cancelAll()
 }
 
 layout { 
@@ -54,7 +54,7 @@ createProperty( 'interval', Long, 0 ) { value ->
 onReplace( stateProperty ) { value ->
 	doDelay = value && interval.value > 0
 	if( value ) schedule()
-	else future?.cancel( true )
+	else future?.cancel()
 }
 
 doDelay = stateProperty.value && interval.value > 0
@@ -64,8 +64,8 @@ loadDisplay = 0
 latestAction = 'NONE'
 
 schedule = {
-	future?.cancel( true )
-	if( doDelay ) future = scheduleAtFixedRate( { if( count < load.value ) trigger() }, interval.value, interval.value, TimeUnit.MILLISECONDS )
+	future?.cancel()
+	if( doDelay ) future = triggerScheduler.scheduleAtFixedRate( { if( count < load.value ) trigger() }, interval.value, interval.value, TimeUnit.MILLISECONDS )
 	else if( load.value > 0 ) trigger()
 }
 
@@ -107,7 +107,7 @@ onAction( 'START' ) {
 }
 
 onAction( 'STOP' ) {
-	future?.cancel( true )
+	future?.cancel()
 	latestAction = 'STOP'
 }
 
@@ -32,7 +32,7 @@ createProperty( 'unit', String, 'Sec' ) { schedule() }
 
 onReplace( stateProperty ) { value ->
 	if( value ) schedule()
-	else future?.cancel( true )
+	else future?.cancel()
 }
 
 createProperty( 'burstSize', Long, 1 )
@@ -48,13 +48,13 @@ schedule = {
 	if( stateProperty.value ) {
 		long microsecondsPerUnit = unit.value == 'Sec' ? 1000000 : unit.value == 'Min' ? 60000000 : 3600000000
 		long delay = Math.max( 1, (long)(microsecondsPerUnit / rate.value) )
-		future?.cancel( true )
-		future = scheduleAtFixedRate( triggerBurst, delay, delay, TimeUnit.MICROSECONDS )
+		future?.cancel()
+		future = triggerScheduler.scheduleAtFixedRate( triggerBurst, delay, delay, TimeUnit.MICROSECONDS )
 	}
 }
 
 onAction( "START" ) { schedule() }
-onAction( "STOP" ) { future?.cancel( true ) }
+onAction( "STOP" ) { future?.cancel() }
 
 //Layout
 layout { 
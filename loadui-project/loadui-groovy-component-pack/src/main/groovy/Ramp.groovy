@@ -24,6 +24,9 @@
  */
 
 import com.eviware.loadui.api.events.PropertyEvent
+import com.eviware.loadui.api.component.TriggerScheduler
+
+import java.util.concurrent.TimeUnit
 
 //Properties
 createProperty( 'start', Long, 0 )
@@ -39,8 +42,6 @@ timeEllapsed = 0
 currentDelay = 0
 targetReached = false
 
-timer = new Timer(true)
-
 scheduled = false
 future = null
 
@@ -79,32 +80,32 @@ begin = {
 	}
 }
 
-schedule = {
-	if (stateProperty.value && running && !scheduled) {
-		if (!targetReached) {
-			if (currentDelay > 0) {
-				timeEllapsed = timeEllapsed + currentDelay
-				currentRate = start.value + timeEllapsed * gradient
-			}
-			
-			if (timeEllapsed/1000 >= period.value) {
-				targetReached = true
-				currentRate = end.value
-				direction = "none"
-			}
-			if (currentRate.longValue() > 0) { 
-				currentDelay = msPerUnit/(currentRate.longValue()) 
-			}
-			else { 
-				currentDelay = 1 //Handling edge cases
-			}
-		} 
+nextDelay = {
+	if (!targetReached) {
+		if (currentDelay > 0) {
+			timeEllapsed = timeEllapsed + currentDelay
+			currentRate = start.value + timeEllapsed * gradient
+		}
 		
-		future = timer.runAfter(currentDelay.intValue()) {
-			trigger()
-			scheduled = false
-			schedule()
+		if (timeEllapsed/1000 >= period.value) {
+			targetReached = true
+			currentRate = end.value
+			direction = "none"
+		}
+		if (currentRate.longValue() > 0) { 
+			currentDelay = msPerUnit/(currentRate.longValue()) 
 		}
+		else { 
+			currentDelay = 1 //Handling edge cases
+		}
+	} 
+	
+	(long)(currentDelay * 1000)
+} as TriggerScheduler.Delays
+
+schedule = {
+	if (stateProperty.value && running && !scheduled) {
+		future = triggerScheduler.scheduleWithDelays( { trigger() }, nextDelay.next(), nextDelay, TimeUnit.MICROSECONDS )
 		scheduled = true
 	}
 }
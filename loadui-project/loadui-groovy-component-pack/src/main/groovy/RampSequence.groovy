@@ -46,8 +46,8 @@ onAction( 'START' ) {
 }
 
 onAction( 'STOP' ) {
-	future?.cancel( true )
-	cancellingFuture?.cancel( true )
+	future?.cancel()
+	cancellingFuture?.cancel()
 	startTime = null
 }
 
@@ -63,9 +63,9 @@ scheduleNext = { wakeTime ->
 		def delay = 1000000/peakRate.value
 		if( peakRateUnit.value == 'min' )
 			delay = 1000000/(peakRate.value/60)
-		future = scheduleAtFixedRate( { trigger() }, delay, delay, TimeUnit.MICROSECONDS )
-		cancellingFuture = schedule( {
-			future?.cancel( true )
+		future = triggerScheduler.scheduleAtFixedRate( { trigger() }, delay as long, delay as long, TimeUnit.MICROSECONDS )
+		cancellingFuture = triggerScheduler.schedule( {
+			future?.cancel()
 			a = a*-1
 			scheduleNext( rampLength.value )
 		}, peakLength.value, TimeUnit.SECONDS )
@@ -83,10 +83,10 @@ scheduleNext = { wakeTime ->
 		}
 	
 		t1 = Math.sqrt( 2/a + t0**2 )
-		future?.cancel( true )
+		future?.cancel()
 		def diff = Math.abs( t1 - getT0() )
 		if( !Double.isNaN( diff ) ) {
-			future = schedule( {
+			future = triggerScheduler.schedule( {
 					trigger()
 					triggersSent++
 					scheduleNext( t1 )
@@ -24,6 +24,7 @@
  */
 
 import com.eviware.loadui.api.events.PropertyEvent
+import com.eviware.loadui.api.component.TriggerScheduler
 import java.util.concurrent.TimeUnit
 
 //Properties
@@ -41,27 +42,24 @@ defaultDelay = msPerUnit/rate.value
 currentDelay = 0
 
 random = new Random()
-timer = new Timer(true)
+
+nextDelay = {
+	if (factor.value > 0) {
+		if ( type.value == 'Uniform' ) 
+			currentDelay = defaultDelay + ((random.nextDouble() - 0.5) * (factor.value / 100) * defaultDelay)
+		if ( type.value == 'Gaussian' )  
+			currentDelay = defaultDelay + (random.nextGaussian() * (factor.value / 100) * defaultDelay * 0.3)
+		if ( type.value == 'Exponential' ) 
+			currentDelay = defaultDelay * (-Math.log(1-(random.nextDouble())))
+	} else
+		currentDelay = defaultDelay
+	
+	Math.max( 0, (long)(currentDelay * 1000) )
+} as TriggerScheduler.Delays
 
 enqueue = {
 	if (rate.value > 0 && stateProperty.value) {
-		if (factor.value > 0) {
-			if ( type.value == 'Uniform' ) 
-				currentDelay = defaultDelay + ((random.nextDouble() - 0.5) * (factor.value / 100) * defaultDelay)
-			if ( type.value == 'Gaussian' )  
-				currentDelay = defaultDelay + (random.nextGaussian() * (factor.value / 100) * defaultDelay * 0.3)
-			if ( type.value == 'Exponential' ) 
-				currentDelay = defaultDelay * (-Math.log(1-(random.nextDouble())))
-		} else
-			currentDelay = defaultDelay
-		
-		//if (currentDelay.intValue() == 0)
-		//	currentDelay = 1
-		
-		schedule( {
-			trigger()
-			enqueue()
-		}, currentDelay.intValue(), TimeUnit.MILLISECONDS )
+		triggerScheduler.scheduleWithDelays( { trigger() }, nextDelay.next(), nextDelay, TimeUnit.MICROSECONDS )
 	}
 }
 
@@ -69,9 +67,9 @@ addEventListener( PropertyEvent ) { event ->
 	if ( event.event == PropertyEvent.Event.VALUE ) {
 		
 		if (event.property == stateProperty && !stateProperty.value)
-			cancelTasks()
+			triggerScheduler.cancelAll()
 		if (stateProperty.value)
-			cancelTasks()
+			triggerScheduler.cancelAll()
 		
 		if( event.property == unit ) {
 			if ( unit.value == "Sec" )
@@ -88,12 +86,12 @@ addEventListener( PropertyEvent ) { event ->
 }
 
 onAction( 'START' ) {
-	cancelTasks()
+	triggerScheduler.cancelAll()
 	enqueue()
 }
 
 onAction( 'STOP' ) {
-	cancelTasks()
+	triggerScheduler.cancelAll()
 }
 
 layout { 
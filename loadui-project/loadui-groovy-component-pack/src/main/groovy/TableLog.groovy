@@ -26,12 +26,13 @@
  */
 
 import au.com.bytecode.opencsv.CSVWriter
+import com.eviware.loadui.impl.component.table.CsvFileSink
+import com.eviware.loadui.impl.component.table.MessageRingBuffer
+import com.eviware.loadui.impl.component.table.TableColumns
 import java.io.FileWriter
 import java.io.FileOutputStream
 import java.io.FileInputStream
 import java.text.SimpleDateFormat
-import java.util.concurrent.CopyOnWriteArraySet
-import java.util.concurrent.ConcurrentLinkedQueue
 
 import javafx.application.Platform
 import javafx.stage.FileChooser
@@ -49,12 +50,14 @@ table = null
 tableWriterFuture = null
 fileWriterFuture = null
 tableWriterDelay = 250
-final messageQueue = [] as LinkedList
-writer = null
+sink = null
 writerLock = new Object()
-final writeQueue = [] as ConcurrentLinkedQueue
 
-createProperty( 'maxRows', Long, 250 )
+// Holds the latest messages to display, without ever making the sender wait for the table.
+newDisplayBuffer = { new MessageRingBuffer( Math.max( 1, maxRows.value ) as int, Math.max( 1, sampleEvery.value ) as int ) }
+
+createProperty( 'maxRows', Long, 250 ) { displayBuffer = newDisplayBuffer() }
+createProperty( 'sampleEvery', Long, 1 ) { displayBuffer = newDisplayBuffer() }
 createProperty( 'logFilePath', String )
 createProperty( 'saveFile', Boolean, false )
 createProperty( 'follow', Boolean, false )
@@ -63,12 +66,14 @@ createProperty( 'summaryRows', Long, 0 )
 createProperty( 'appendSaveFile', Boolean, false )
 createProperty( 'formatTimestamps', Boolean, true )
 createProperty( 'addHeaders', Boolean, false )
+createProperty( 'gzipSaveFile', Boolean, false )
+
+displayBuffer = newDisplayBuffer()
 
 cellFactory = { val -> { it -> val.value[val.tableColumn.text] } as ObservableValue } as Callback
 rebuildTable = { table = new TableView( prefHeight: 200, minWidth: 500 ) }
-final tableColumns = [] as CopyOnWriteArraySet
-final addedColumns = []
-def latestHeader
+final tableColumns = new TableColumns()
+timestampColumns = [ columns: null, names: [] ]
 saveFileName = null
 def format = new SimpleDateFormat( "HH:mm:ss:SSS" )
 
@@ -83,16 +88,14 @@ onMessage = { o, i, m ->
 output = { message ->
 	def writeLog = saveFile.value && saveFileName
 	if( controller || writeLog ) {
-		synchronized( this ) {
-			addedColumns += message.keySet() - tableColumns
-			tableColumns += addedColumns
-		}
+		tableColumns.addAll( message.keySet() )
+		def columns = tableColumns.columns
 
 		if ( formatTimestamps.value ) {
-			message.each() { key, value ->
-				if ( key.toLowerCase().contains("timestamp") ) {
+			getTimestampColumns( columns ).each() { key ->
+				if ( message.containsKey( key ) ) {
 					try {
-						message[key] = format.format( new Date( value ) )
+						message[key] = format.format( new Date( message[key] ) )
 					} catch ( IllegalArgumentException e ) {
 						log.info( "Failed to format Timestamp in a column whose name hinted about it containing a Timestamp" )
 					}
@@ -101,14 +104,11 @@ output = { message ->
 		}
 
 		if( controller ) {
-			synchronized( messageQueue ) {
-				messageQueue << message
-				while( messageQueue.size() > maxRows.value ) messageQueue.remove( 0 )
-			}
+			displayBuffer.offer( message )
 		}
 
 		if( writeLog ) {
-			putMessageInWriteQueue( message )
+			putMessageInWriteQueue( message, columns )
 		}
 	}
 
@@ -118,15 +118,35 @@ output = { message ->
 	}
 }
 
-putMessageInWriteQueue = { message ->
-	def header = tableColumns as String[]
-	if( addHeaders.value && !Arrays.equals( latestHeader, header ) ) {
-		writeQueue << header
-		latestHeader = header
+// The columns only change when a new key is seen, so this is worked out once per change.
+getTimestampColumns = { columns ->
+	def cached = timestampColumns
+	if( !cached.columns.is( columns ) ) {
+		cached = [ columns: columns, names: columns.findAll { it.toLowerCase().contains( "timestamp" ) } ]
+		timestampColumns = cached
+	}
+	cached.names
+}
+
+putMessageInWriteQueue = { message, header ->
+	def currentSink = openSink()
+	if( !currentSink ) return
+	// The row uses the same columns as the header, even if new ones have been added since.
+	// The sink writes the header before the first row using it.
+	currentSink.write( TableColumns.toRow( message, header ), addHeaders.value ? header : null )
+}
+
+// Returns null once the writer has been closed, until a new file name is built.
+openSink = {
+	def currentSink = sink
+	if( currentSink ) return currentSink
+	synchronized( writerLock ) {
+		if( !sink && saveFileName ) {
+			log.info "Creating new log file writer writing to $saveFileName"
+			sink = new CsvFileSink( new File( saveFileName ), appendSaveFile.value, gzipSaveFile.value )
+		}
+		sink
 	}
-	def entries = header.collect { message[it] ?: "" } as String[]
-	
-	writeQueue << entries
 }
 
 duringPhase( "START" ) {
@@ -158,10 +178,15 @@ onRelease = {
 	closeWriter()
 }
 
+// Clears the file name too, so that a message arriving late doesn't start a new file over the one just written.
 closeWriter = {
-	withFileWriter( false ) { // TODO: Why do we do this?
-		writer?.close()
-		writer = null
+	synchronized( writerLock ) {
+		def closing = sink
+		closing?.release()
+		if( closing?.droppedCount )
+			log.warn "Table Log dropped ${closing.droppedCount} rows which were logged faster than they could be written to $saveFileName"
+		sink = null
+		saveFileName = null
 	}
 }
 
@@ -172,7 +197,7 @@ buildFileName = {
 	}
 	
 	synchronized( writerLock ) {
-		if( writer ) return
+		if( sink ) return
 	}
 	
 	def filePath = "${getBaseLogDir()}${File.separator}${logFilePath.value}"
@@ -189,8 +214,13 @@ buildFileName = {
 		def f = new File( filePath )
 		filePath = "${f.parent}${File.separator}${addTimestampToFileName( f.name )}"
 	}
+	if( gzipSaveFile.value && !filePath.toString().endsWith( '.gz' ) ) {
+		filePath = "${filePath}.gz"
+	}
 	new File( filePath ).parentFile.mkdirs()
-	saveFileName = filePath
+	synchronized( writerLock ) {
+		saveFileName = filePath
+	}
 }
 
 synchronized startTableWriter() {
@@ -206,33 +236,24 @@ void stopTableWriter() {
 
 tableWriter = {
 	def newColumns = []
-	synchronized( this ) {
-		for ( iter = addedColumns.iterator(); iter.hasNext();) {
-			def added = iter.next()
-			iter.remove()
-			log.info "Adding column to Table Log: $added"
-			def column = new TableColumn( cellValueFactory: cellFactory, text: added, sortable: false )
-			column.widthProperty().addListener( { obs, oldVal, width -> setAttribute( "width_$added", "$width" ) } as ChangeListener )
-			newColumns << column
-			try {
-				column.width = Double.parseDouble( getAttribute( "width_$added", null ) )
-			} catch( e ) {
-			}
-		}	
+	for ( added in tableColumns.takeAddedColumns() ) {
+		log.info "Adding column to Table Log: $added"
+		def column = new TableColumn( cellValueFactory: cellFactory, text: added, sortable: false )
+		column.widthProperty().addListener( { obs, oldVal, width -> setAttribute( "width_$added", "$width" ) } as ChangeListener )
+		newColumns << column
+		try {
+			column.width = Double.parseDouble( getAttribute( "width_$added", null ) )
+		} catch( e ) {
+		}
 	}
 	
-	def newMessages = []
-	def excessItems =  0
-	synchronized( messageQueue ) {
-		excessItems = ( table.items.size() + messageQueue.size() - maxRows.value ) as int
-		newMessages += messageQueue
-		messageQueue.clear()
-	}
+	def newMessages = displayBuffer.drain()
+	def excessItems = ( table.items.size() + newMessages.size() - maxRows.value ) as int
 	
-	if ( newMessages || excessItems || newColumns ) {
+	if ( newMessages || excessItems > 0 || newColumns ) {
 		Platform.runLater {
 			if ( newColumns ) table.columns.addAll newColumns
-			if ( excessItems > 0 ) table.items.remove( 0, excessItems )
+			if ( excessItems > 0 ) table.items.remove( 0, Math.min( excessItems, table.items.size() ) )
 			if ( newMessages ) table.items.addAll newMessages
 		}
 	}
@@ -244,11 +265,10 @@ writeToFile =
 {
 	if( saveFileName )
 	{
-		withFileWriter() { fileWriter -> 
-			while( !writeQueue.isEmpty() )
-			{
-				fileWriter.writeNext( writeQueue.poll() )
-			}
+		try {
+			sink?.flush()
+		} catch( IOException e ) {
+			log.error( "Failed writing Table Log to $saveFileName", e )
 		}
 	}
 }
@@ -297,8 +317,9 @@ refreshLayout = {
 				def flushWriter = null
 				try {
 					flushWriter = new CSVWriter( new FileWriter( saveFile, false ), (char) ',' )
-					flushWriter.writeNext( tableColumns as String[] )
-					table.items.each { message -> flushWriter.writeNext( tableColumns.collect { message[it] ?: "" } as String[] ) }
+					def columns = tableColumns.columns
+					flushWriter.writeNext( columns )
+					table.items.each { message -> flushWriter.writeNext( TableColumns.toRow( message, columns ) ) }
 				} catch ( e ) {
 					log.error( 'Failed writing log to file!', e )
 				} finally {
@@ -317,20 +338,11 @@ refreshLayout = {
 }
 if( controller ) refreshLayout()
 
-void withFileWriter( createIfNull = true, closure ) {
-	synchronized( writerLock ) {
-		if( createIfNull && !writer ) {
-			log.info "Creating new CSVWriter writing to $saveFileName"
-			writer = new CSVWriter( new FileWriter( saveFileName, appendSaveFile.value ), ',' as char )
-		}
-		closure( writer )
-	}
-}
-
 
 settings( label: "General" ) {
 	box {
 		property( property: maxRows, label: 'Max Rows in Table' )
+		property( property: sampleEvery, label: 'Show every Nth message' )
 	}
 	//FIXME summary report not working, see generateSummary below
 	//box {
@@ -345,6 +357,7 @@ settings( label:'Logging' ) {
 		property( property: appendSaveFile, label: 'Append selected file' )
 		property( property: formatTimestamps, label: 'Format timestamps' )
 		property( property: addHeaders, label: 'Include headers' )
+		property( property: gzipSaveFile, label: 'Compress log file (gzip)' )
 		label( '(If not appending file, its name will be used to generate new log files each time test is run.)' )
 	}
 }
@@ -354,7 +367,7 @@ generateSummary = { chapter ->
 	if( summaryRows.value > 0 ) {
 		int nRows = summaryRows.value
 		def rows = table.items.subList( table.items.size() - nRows, table.items.size() )
-		def cols = tableColumns as List
+		def cols = tableColumns.columns as List
 		chapter.addSection( getLabel() ).addTable( getLabel(), new javax.swing.table.AbstractTableModel() {
 			int getColumnCount() { cols.size() }
 			int getRowCount() { nRows }
@@ -23,6 +23,8 @@
  * @nonBlocking true
  */
 
+import com.eviware.loadui.api.component.TriggerScheduler
+
 import java.util.concurrent.TimeUnit
 
 def FUNCTIONS = [
@@ -52,34 +54,33 @@ calculateRate = {
 	def progress = ( ( System.currentTimeMillis() - startTime ) % per ) / per
 	def newRate = Math.round( rate.value + FUNCTIONS[shape.value]( amplitude.value, progress ) )
 	if( currentRate != newRate ) {
-		try {
-		def timePassed = ( future && !future.cancelled ) ? UNITS[unit.value].toMicros(1) / currentRate - future.getDelay( TimeUnit.MICROSECONDS ) : 0
 		currentRate = newRate
-		schedule( timePassed )
-		} catch( e ) { e.printStackTrace() }
+		// A running task picks up the new rate by itself, at its next delay.
+		if( future == null || future.done ) schedule()
 	}
 }
 
+// Stops the task when the rate drops to 0, calculateRate starts it again.
+nextDelay = { currentRate > 0 ? (long)( UNITS[unit.value].toMicros(1) / currentRate ) : -1L } as TriggerScheduler.Delays
+
 future = null
 pollFuture = null
 initialize = {
 	startTime = System.currentTimeMillis()
-	pollFuture?.cancel( true )
-	pollFuture = scheduleAtFixedRate( calculateRate, 0, 250, TimeUnit.MILLISECONDS )
-	schedule( 0 )
+	pollFuture?.cancel()
+	pollFuture = triggerScheduler.scheduleAtFixedRate( calculateRate, 0, 250, TimeUnit.MILLISECONDS )
+	schedule()
 }
 
-schedule = { timePassed ->
-	future?.cancel( true )
+schedule = {
+	future?.cancel()
 	if( stateProperty.value && currentRate > 0 ) {	
-		def triggerDelay = UNITS[unit.value].toMicros(1) / currentRate
-		def initialDelay = Math.max( 0.0, triggerDelay - timePassed )
-		future = scheduleAtFixedRate( { trigger() }, initialDelay, triggerDelay, TimeUnit.MICROSECONDS )
+		future = triggerScheduler.scheduleWithDelays( { trigger() }, nextDelay.next(), nextDelay, TimeUnit.MICROSECONDS )
 	}
 }
 
 onAction("START") { initialize() }
-onAction("STOP") { future?.cancel( true ) ; pollFuture?.cancel( true ) }
+onAction("STOP") { future?.cancel() ; pollFuture?.cancel() }
 onAction("RESET") { startTime = System.currentTimeMillis() }
 
 layout  { 
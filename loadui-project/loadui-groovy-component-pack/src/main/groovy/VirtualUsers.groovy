@@ -26,6 +26,9 @@
 
 import com.eviware.loadui.api.events.PropertyEvent
 import com.eviware.loadui.api.events.ActionEvent
+import com.eviware.loadui.api.component.TriggerScheduler
+
+import java.util.concurrent.TimeUnit
 
 //Properties
 createProperty( 'numUsers', Long, 20 )
@@ -36,23 +39,22 @@ baseRate = numUsers.value/interval.value
 
 defaultDelay = 1000/baseRate
 
-timer = new Timer(true)
 random = new Random()
 
 future = null
 
+nextDelay = {
+	if (isRandomised.value) {
+		currentDelay = defaultDelay * (-Math.log(1-(random.nextDouble())))
+	} else
+		currentDelay = defaultDelay
+	
+	(long)(currentDelay * 1000)
+} as TriggerScheduler.Delays
+
 schedule = {
 	if (defaultDelay > 0 && stateProperty.value) {
-		if (isRandomised.value) {
-			currentDelay = defaultDelay * (-Math.log(1-(random.nextDouble())))
-		} else
-			currentDelay = defaultDelay
-		
-		
-		future = timer.runAfter(currentDelay.intValue()) {
-			trigger()
-			schedule()
-		}
+		future = triggerScheduler.scheduleWithDelays( { trigger() }, nextDelay.next(), nextDelay, TimeUnit.MICROSECONDS )
 	}
 }
 
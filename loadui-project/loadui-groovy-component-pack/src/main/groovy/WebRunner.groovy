@@ -41,6 +41,7 @@ import com.eviware.loadui.api.events.PropertyEvent
 import com.eviware.loadui.api.model.CanvasItem
 import com.eviware.loadui.impl.component.categories.RunnerBase.SampleCancelledException
 import com.eviware.loadui.impl.component.ActivityStrategies
+import com.eviware.loadui.impl.component.http.NioHttpClient
 import com.eviware.loadui.util.ReleasableUtils
 
 import javax.net.ssl.*
@@ -71,6 +72,16 @@ class AllowAllHostNamesVerifier implements X509HostnameVerifier {
     boolean verify(String hostname, SSLSession session) {}
 }
 
+//A request made using the NioHttpClient, which completes asynchronously.
+class AsyncSample {
+    def exchange
+    def sampleId
+
+    boolean isAborted() { exchange?.aborted }
+
+    void abort() { exchange?.abort() }
+}
+
 def sslContext = SSLContext.getInstance("SSL")
 TrustManager[] tms = [new NaiveTrustManager()]
 sslContext.init(new KeyManager[0], tms, new SecureRandom())
@@ -90,6 +101,7 @@ createProperty('url', String) {->
     validateUrl()
 }
 createProperty('outputBody', Boolean, false)
+createProperty('nonBlocking', Boolean, false)
 
 createProperty('errorCodeList', String)
 
@@ -101,6 +113,7 @@ authUsername = createProperty('_authUsername', String)
 authPassword = createProperty('_authPassword', String)
 
 http = new DefaultHttpClient(cm)
+nioSession = null
 
 inlineUrlAuthUsername = null
 inlineUrlAuthPassword = null
@@ -143,6 +156,40 @@ validateUrl = {
     validUrl = cleanUrl
 }
 
+//All WebRunners share one NioHttpClient, each with its own Session holding the proxy and credentials.
+obtainNioSession = {
+    synchronized (this) {
+        if (nioSession == null) {
+            nioSession = NioHttpClient.openSharedSession()
+            configureNioSession()
+        }
+        return nioSession
+    }
+}
+
+configureNioSession = {
+    def client = nioSession
+    if (client == null)
+        return
+
+    if (proxyHost.value?.trim() && proxyPort.value) {
+        client.setProxy(proxyHost.value, (int) proxyPort.value)
+        if (proxyUsername.value?.trim() && proxyPassword.value)
+            client.setProxyCredentials(proxyUsername.value, proxyPassword.value)
+        else
+            client.setProxyCredentials(null, null)
+    } else {
+        client.setProxy(null, 0)
+    }
+
+    if (inlineUrlAuthUsername && inlineUrlAuthPassword)
+        client.setCredentials(inlineUrlAuthUsername, inlineUrlAuthPassword)
+    else if (authUsername.value?.trim() && authPassword.value?.trim())
+        client.setCredentials(authUsername.value, authPassword.value)
+    else
+        client.setCredentials(null, null)
+}
+
 updateProxy = {
     if (proxyHost.value?.trim() && proxyPort.value) {
         // recreate the client because otherwise the credentials do not seem to be updated
@@ -162,6 +209,7 @@ updateProxy = {
     } else {
         http.params.setParameter(ConnRoutePNames.DEFAULT_PROXY, null)
     }
+    configureNioSession()
 }
 
 updateAuth = {
@@ -184,6 +232,7 @@ updateAuth = {
                 new UsernamePasswordCredentials(username, password)
         )
     }
+    configureNioSession()
 }
 
 validateUrl()
@@ -194,10 +243,69 @@ sampleResetValue = 0
 discardResetValue = 0
 failedResetValue = 0
 
+countErrorCode = { statusCode ->
+    if (errorCodeList.value) {
+        def assertionCodes = errorCodeList.value.split(',')
+
+        for (code in assertionCodes) {
+            if (code.trim() == statusCode.toString()) {
+                failedRequestCounter.increment()
+                failureCounter.increment()
+                break
+            }
+        }
+    }
+}
+
+//Sends the request using the NioHttpClient, which completes the sample from a worker thread.
+sampleNonBlocking = { message, sampleId, uri ->
+    message['ID'] = uri
+
+    def asyncSample = new AsyncSample(sampleId: sampleId)
+    def handler = [
+            completed: { response ->
+                if (!runningSamples.remove(asyncSample))
+                    return
+
+                message['Status'] = true
+                message['URI'] = uri
+                message['HttpStatus'] = response.statusCode
+                countErrorCode(response.statusCode)
+
+                message['Bytes'] = response.bodyBytes
+                if (outputBody.value)
+                    message['Response'] = response.body
+
+                sampleCompleted(message, sampleId)
+            },
+            failed: { e ->
+                if (!runningSamples.remove(asyncSample))
+                    return
+
+                log.warn("IOException: {}: ", e.message)
+                message['Status'] = false
+                failedRequestCounter.increment()
+                failureCounter.increment()
+
+                sampleCompleted(message, sampleId)
+            }
+    ] as NioHttpClient.ResponseHandler
+
+    // Holding the lock ensures that the handler finds the sample, even if the response arrives immediately.
+    synchronized (runningSamples) {
+        runningSamples.add(asyncSample)
+        asyncSample.exchange = obtainNioSession().get(new URI(uri), outputBody.value, handler)
+    }
+
+    return null
+}
+
 sample = { message, sampleId ->
 
     def uri = message['url'] ?: validUrl
-    if (uri) {
+    if (uri && nonBlocking.value && uri ==~ /(?i)http:\/\/.*/) {
+        return sampleNonBlocking(message, sampleId, uri)
+    } else if (uri) {
         def get = new HttpGet(uri)
         message['ID'] = uri
 
@@ -207,18 +315,7 @@ sample = { message, sampleId ->
             message['Status'] = true
             message['URI'] = uri
             message['HttpStatus'] = response.statusLine.statusCode
-
-            if (errorCodeList.value) {
-                def assertionCodes = errorCodeList.value.split(',')
-
-                for (code in assertionCodes) {
-                    if (code.trim() == response.statusLine.statusCode.toString()) {
-                        failedRequestCounter.increment()
-                        failureCounter.increment()
-                        break
-                    }
-                }
-            }
+            countErrorCode(response.statusLine.statusCode)
 
             if (response.entity != null) {
                 int contentLength = response.entity.contentLength
@@ -275,12 +372,25 @@ onCancel = {
         def methods = runningSamples.toArray()
         numberOfRunning = methods.size()
         runningSamples.clear()
-        methods.each { if (!it.aborted) it.abort() }
+        methods.each {
+            if (!it.aborted) it.abort()
+            if (it instanceof AsyncSample) sampleCancelled(it.sampleId)
+        }
     }
 
     return numberOfRunning
 }
 
+onRelease = {
+    // The client is shared, so requests still in flight have to be aborted here.
+    synchronized (runningSamples) {
+        def asyncSamples = runningSamples.findAll { it instanceof AsyncSample }
+        runningSamples.removeAll(asyncSamples)
+        asyncSamples.each { it.abort() }
+    }
+    ReleasableUtils.release(nioSession)
+}
+
 onAction("RESET") {
     requestResetValue = 0
     sampleResetValue = 0
@@ -344,6 +454,7 @@ compactLayout {
 
 settings(label: "Basic") {
     property(property: outputBody, label: 'Output Response Body')
+    property(property: nonBlocking, label: 'Use Non-blocking HTTP Engine (http only)')
     //property( property: propagateSession, label: 'Propagate Session' )
     property(property: concurrentSamples, label: 'Max Concurrent Requests')
     property(property: maxQueueSize, label: 'Max Queue')
@@ -0,0 +1,302 @@
+/*
+ * Copyright 2013 SmartBear Software
+ * 
+ * Licensed under the EUPL, Version 1.1 or - as soon they will be approved by the European Commission - subsequent
+ * versions of the EUPL (the "Licence");
+ * You may not use this work except in compliance with the Licence.
+ * You may obtain a copy of the Licence at:
+ * 
+ * http://ec.europa.eu/idabc/eupl
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the Licence is
+ * distributed on an "AS IS" basis, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the Licence for the specific language governing permissions and limitations
+ * under the Licence.
+ */
+package com.eviware.loadui.util.groovy;
+
+import groovy.lang.Binding;
+import groovy.lang.GroovyClassLoader;
+import groovy.lang.GroovySystem;
+import groovy.lang.Script;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.security.AccessController;
+import java.security.PrivilegedAction;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+import org.codehaus.groovy.control.CompilationFailedException;
+import org.codehaus.groovy.control.CompilationUnit;
+import org.codehaus.groovy.control.CompilerConfiguration;
+import org.codehaus.groovy.control.Phases;
+import org.codehaus.groovy.runtime.InvokerHelper;
+import org.codehaus.groovy.tools.GroovyClass;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.eviware.loadui.LoadUI;
+import com.google.common.base.Charsets;
+import com.google.common.collect.Maps;
+import com.google.common.hash.Hashing;
+
+/**
+ * Compiles Groovy scripts once per distinct script body and ClassLoader, so
+ * that each GroovyEnvironment only needs to instantiate a new Script from an
+ * already compiled class. Classes are keyed by a hash of the script contents
+ * and stored in the GroovyEnvironmentClassLoader they were compiled against,
+ * which keeps dependencies loaded by Grape visible to the script and lets the
+ * classes be collected together with their ClassLoader. Scripts are compiled
+ * under a class name derived from the same hash, so components sharing a body
+ * and ClassLoader share the compiled class.
+ * 
+ * The generated bytecode can optionally be kept on disk, keyed by the hash and
+ * the id of the ClassLoader, in which case a restarted instance defines the
+ * classes directly instead of recompiling them.
+ * This is enabled by setting the system property {@value #DISK_CACHE_PROPERTY}
+ * to true.
+ */
+public final class CompiledScriptCache
+{
+	public static final String DISK_CACHE_PROPERTY = "loadui.groovy.classCache";
+
+	public static final CompiledScriptCache instance = new CompiledScriptCache(
+			Boolean.getBoolean( DISK_CACHE_PROPERTY ) ? new File( System.getProperty( LoadUI.LOADUI_HOME ), ".groovy"
+					+ File.separator + "classes" ) : null );
+
+	private static final String SCRIPT_CLASS_PREFIX = "Script";
+
+	private static final Logger log = LoggerFactory.getLogger( CompiledScriptCache.class );
+
+	private final File diskCacheDir;
+	private final AtomicLong hits = new AtomicLong();
+	private final AtomicLong diskHits = new AtomicLong();
+	private final AtomicLong misses = new AtomicLong();
+	private final AtomicLong compileNanos = new AtomicLong();
+
+	/**
+	 * @param diskCacheDir
+	 *           The directory to keep compiled classes in between runs, or null
+	 *           to only cache classes in memory.
+	 */
+	public CompiledScriptCache( @Nullable File diskCacheDir )
+	{
+		this.diskCacheDir = diskCacheDir;
+	}
+
+	/**
+	 * Creates a new instance of the given script, compiling it only if no class
+	 * has already been compiled for the same body using the given ClassLoader.
+	 * Each returned Script has its own Binding.
+	 */
+	@Nonnull
+	public Script newScript( @Nonnull GroovyEnvironmentClassLoader classLoader, @Nonnull String classLoaderId,
+			@Nonnull String body ) throws CompilationFailedException
+	{
+		return InvokerHelper.createScript( getScriptClass( classLoader, classLoaderId, body ), new Binding() );
+	}
+
+	@Nonnull
+	Class<?> getScriptClass( @Nonnull GroovyEnvironmentClassLoader classLoader, @Nonnull String classLoaderId,
+			@Nonnull String body ) throws CompilationFailedException
+	{
+		String hash = Hashing.sha1().hashString( GroovySystem.getVersion() + '\n' + body, Charsets.UTF_8 ).toString();
+		String className = SCRIPT_CLASS_PREFIX + hash;
+		Map<String, Class<?>> compiledScripts = classLoader.getCompiledScripts();
+
+		synchronized( compiledScripts )
+		{
+			Class<?> scriptClass = compiledScripts.get( hash );
+			if( scriptClass != null )
+			{
+				hits.incrementAndGet();
+				return scriptClass;
+			}
+
+			String diskKey = classLoaderId.replaceAll( "[^a-zA-Z0-9_.-]", "_" ) + "-" + hash;
+			Map<String, byte[]> classes = readFromDisk( diskKey );
+			if( classes != null )
+			{
+				diskHits.incrementAndGet();
+			}
+			else
+			{
+				misses.incrementAndGet();
+				long start = System.nanoTime();
+				classes = compile( classLoader, body, className );
+				long elapsed = System.nanoTime() - start;
+				compileNanos.addAndGet( elapsed );
+				log.debug( "Compiled {} in {} ms", className, TimeUnit.NANOSECONDS.toMillis( elapsed ) );
+				writeToDisk( diskKey, classes );
+			}
+
+			scriptClass = define( classLoader, classes, className );
+			compiledScripts.put( hash, scriptClass );
+
+			return scriptClass;
+		}
+	}
+
+	/**
+	 * Returns the number of scripts that were instantiated from a class already
+	 * present in memory.
+	 */
+	public long getHitCount()
+	{
+		return hits.get();
+	}
+
+	/**
+	 * Returns the number of scripts that were defined from the on-disk cache
+	 * instead of being compiled.
+	 */
+	public long getDiskHitCount()
+	{
+		return diskHits.get();
+	}
+
+	/**
+	 * Returns the number of scripts that had to be compiled.
+	 */
+	public long getMissCount()
+	{
+		return misses.get();
+	}
+
+	/**
+	 * Returns the total time spent compiling scripts.
+	 */
+	public long getCompileTime( TimeUnit unit )
+	{
+		return unit.convert( compileNanos.get(), TimeUnit.NANOSECONDS );
+	}
+
+	@Override
+	public String toString()
+	{
+		return "CompiledScriptCache[hits=" + getHitCount() + ", diskHits=" + getDiskHitCount() + ", misses="
+				+ getMissCount() + ", compileTime=" + getCompileTime( TimeUnit.MILLISECONDS ) + "ms]";
+	}
+
+	private static Map<String, byte[]> compile( GroovyClassLoader classLoader, String body, String className )
+	{
+		CompilationUnit unit = new CompilationUnit( CompilerConfiguration.DEFAULT, null, classLoader );
+		unit.addSource( className + ".groovy", body );
+		unit.compile( Phases.CLASS_GENERATION );
+
+		Map<String, byte[]> classes = Maps.newLinkedHashMap();
+		for( Object generated : unit.getClasses() )
+		{
+			GroovyClass groovyClass = ( GroovyClass )generated;
+			classes.put( groovyClass.getName(), groovyClass.getBytes() );
+		}
+
+		return classes;
+	}
+
+	private static Class<?> define( final GroovyClassLoader classLoader, Map<String, byte[]> classes, String className )
+	{
+		GroovyClassLoader.InnerLoader innerLoader = AccessController
+				.doPrivileged( new PrivilegedAction<GroovyClassLoader.InnerLoader>()
+				{
+					@Override
+					public GroovyClassLoader.InnerLoader run()
+					{
+						return new GroovyClassLoader.InnerLoader( classLoader );
+					}
+				} );
+
+		Class<?> scriptClass = null;
+		for( Map.Entry<String, byte[]> entry : classes.entrySet() )
+		{
+			Class<?> definedClass = innerLoader.defineClass( entry.getKey(), entry.getValue() );
+			if( className.equals( entry.getKey() ) )
+				scriptClass = definedClass;
+		}
+
+		if( scriptClass == null )
+			throw new IllegalStateException( "No class named " + className + " was generated for the script" );
+
+		return scriptClass;
+	}
+
+	@Nullable
+	private Map<String, byte[]> readFromDisk( String key )
+	{
+		if( diskCacheDir == null )
+			return null;
+
+		File file = new File( diskCacheDir, key + ".classes" );
+		if( !file.isFile() )
+			return null;
+
+		try (DataInputStream in = new DataInputStream( new BufferedInputStream( new FileInputStream( file ) ) ))
+		{
+			Map<String, byte[]> classes = Maps.newLinkedHashMap();
+			for( int count = in.readInt(); count > 0; count-- )
+			{
+				String name = in.readUTF();
+				byte[] bytes = new byte[in.readInt()];
+				in.readFully( bytes );
+				classes.put( name, bytes );
+			}
+
+			return classes;
+		}
+		catch( IOException e )
+		{
+			log.warn( "Unable to read cached classes from " + file + ", recompiling", e );
+			if( !file.delete() )
+				log.debug( "Unable to delete {}", file );
+			return null;
+		}
+	}
+
+	private void writeToDisk( String key, Map<String, byte[]> classes )
+	{
+		if( diskCacheDir == null )
+			return;
+
+		if( !diskCacheDir.isDirectory() && !diskCacheDir.mkdirs() )
+		{
+			log.warn( "Unable to create class cache directory: {}", diskCacheDir );
+			return;
+		}
+
+		File file = new File( diskCacheDir, key + ".classes" );
+		File tempFile = new File( diskCacheDir, key + ".tmp" );
+		try (DataOutputStream out = new DataOutputStream( new BufferedOutputStream( new FileOutputStream( tempFile ) ) ))
+		{
+			out.writeInt( classes.size() );
+			for( Map.Entry<String, byte[]> entry : classes.entrySet() )
+			{
+				out.writeUTF( entry.getKey() );
+				out.writeInt( entry.getValue().length );
+				out.write( entry.getValue() );
+			}
+		}
+		catch( IOException e )
+		{
+			log.warn( "Unable to write cached classes to " + file, e );
+			tempFile.delete();
+			return;
+		}
+
+		if( !tempFile.renameTo( file ) )
+		{
+			log.debug( "Unable to move {} into place", tempFile );
+			tempFile.delete();
+		}
+	}
+}
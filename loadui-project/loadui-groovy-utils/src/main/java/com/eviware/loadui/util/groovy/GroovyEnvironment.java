@@ -19,7 +19,6 @@ import groovy.grape.Grape;
 import groovy.lang.Binding;
 import groovy.lang.Closure;
 import groovy.lang.DelegatingMetaClass;
-import groovy.lang.GroovyShell;
 import groovy.lang.MetaClass;
 import groovy.lang.MissingMethodException;
 import groovy.lang.MissingPropertyException;
@@ -39,8 +38,8 @@ import com.eviware.loadui.api.traits.Releasable;
 import com.google.common.collect.Maps;
 
 /**
- * A runtime environment for a ParsedGroovyScript. The script is compiled and
- * run using the given parameters, such as classloader, GroovyResolver, etc. The
+ * A runtime environment for a ParsedGroovyScript. The script is compiled, or
+ * taken from the CompiledScriptCache, and run using the given parameters, such as classloader, GroovyResolver, etc. The
  * script can be interacted with by calling invokeClosure, which attempts to run
  * a Closure within the scripts binding.
  * 
@@ -62,8 +61,8 @@ public class GroovyEnvironment implements Releasable
 	private final ParsedGroovyScript script;
 	private final String scriptName;
 	private final Logger log;
+	private final String classLoaderId;
 	private final GroovyEnvironmentClassLoader classLoader;
-	private final GroovyShell shell;
 	private final GroovyResolver.Methods methodResolver;
 	private final GroovyResolver.Properties propertyResolver;
 	private final Binding binding;
@@ -76,8 +75,8 @@ public class GroovyEnvironment implements Releasable
 		scriptName = "Groovy" + id.replaceAll( "[^a-zA-Z]", "" );
 		log = LoggerFactory.getLogger( basePackage + "." + id );
 
+		this.classLoaderId = classLoaderId;
 		classLoader = classLoaderRegistry.useClassLoader( classLoaderId );
-		shell = new GroovyShell( classLoader );
 
 		methodResolver = resolver instanceof GroovyResolver.Methods ? ( GroovyResolver.Methods )resolver
 				: GroovyResolver.NULL_RESOLVER;
@@ -115,7 +114,8 @@ public class GroovyEnvironment implements Releasable
 		{
 			Thread.currentThread().setContextClassLoader( classLoader );
 
-			Script groovyScript = shell.parse( script.getBody(), scriptName );
+			Script groovyScript = CompiledScriptCache.instance.newScript( classLoader, classLoaderId,
+					script.getBody() );
 			binding.setProperty( "log", log );
 			groovyScript.setMetaClass( new ScriptMetaClass( groovyScript.getMetaClass() ) );
 
@@ -210,7 +210,6 @@ public class GroovyEnvironment implements Releasable
 	public void release()
 	{
 		invokeClosure( true, false, "onRelease" );
-		shell.resetLoadedClasses();
 	}
 
 	private class ScriptMetaClass extends DelegatingMetaClass
@@ -32,6 +32,7 @@ import java.net.MalformedURLException;
 import java.nio.file.FileSystems;
 import java.nio.file.Path;
 import java.util.HashMap;
+import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.TimeUnit;
@@ -48,6 +49,7 @@ public class GroovyEnvironmentClassLoader extends GroovyClassLoader
 	public static final Logger log = LoggerFactory.getLogger( GroovyEnvironmentClassLoader.class );
 
 	private final Set<Object> loadedDeps = Sets.newHashSet();
+	private final Map<String, Class<?>> compiledScripts = Maps.newHashMap();
 
 	public GroovyEnvironmentClassLoader( ClassLoader classLoader )
 	{
@@ -100,6 +102,16 @@ public class GroovyEnvironmentClassLoader extends GroovyClassLoader
 		}
 	}
 
+	/**
+	 * Script classes compiled against this ClassLoader by the
+	 * CompiledScriptCache. Kept here so that the classes are collected together
+	 * with the ClassLoader they were resolved against.
+	 */
+	Map<String, Class<?>> getCompiledScripts()
+	{
+		return compiledScripts;
+	}
+
 	private void impossibleToLoad( String dependency )
 	{
 		try
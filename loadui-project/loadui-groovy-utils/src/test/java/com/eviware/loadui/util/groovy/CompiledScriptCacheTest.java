@@ -0,0 +1,137 @@
+/*
+ * Copyright 2013 SmartBear Software
+ * 
+ * Licensed under the EUPL, Version 1.1 or - as soon they will be approved by the European Commission - subsequent
+ * versions of the EUPL (the "Licence");
+ * You may not use this work except in compliance with the Licence.
+ * You may obtain a copy of the Licence at:
+ * 
+ * http://ec.europa.eu/idabc/eupl
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the Licence is
+ * distributed on an "AS IS" basis, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the Licence for the specific language governing permissions and limitations
+ * under the Licence.
+ */
+package com.eviware.loadui.util.groovy;
+
+import static org.hamcrest.CoreMatchers.*;
+import static org.junit.Assert.*;
+import groovy.lang.Binding;
+import groovy.lang.Script;
+
+import java.io.File;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.eviware.loadui.util.ReleasableUtils;
+
+public class CompiledScriptCacheTest
+{
+	private static final String LOADER_ID = "shared";
+	private static final String SCRIPT = "class Counter { int count }\n" + //
+			"counter = new Counter()\n" + //
+			"increment = { counter.count += step; counter.count }";
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private GroovyEnvironmentClassLoader classLoader;
+
+	@Before
+	public void setup()
+	{
+		classLoader = newClassLoader();
+	}
+
+	private GroovyEnvironmentClassLoader newClassLoader()
+	{
+		return new GroovyEnvironmentClassLoader( getClass().getClassLoader(), folder.getRoot() );
+	}
+
+	@Test
+	public void shouldReuseCompiledClassWithSeparateBindings()
+	{
+		CompiledScriptCache cache = new CompiledScriptCache( null );
+
+		Script first = cache.newScript( classLoader, LOADER_ID, SCRIPT );
+		Script second = cache.newScript( classLoader, LOADER_ID, SCRIPT );
+
+		assertThat( cache.getMissCount(), is( 1L ) );
+		assertThat( cache.getHitCount(), is( 1L ) );
+		assertSame( first.getClass(), second.getClass() );
+		assertNotSame( first.getBinding(), second.getBinding() );
+
+		first.setProperty( "step", 1 );
+		second.setProperty( "step", 5 );
+		first.run();
+		second.run();
+		first.invokeMethod( "increment", null );
+
+		assertThat( first.invokeMethod( "increment", null ), is( ( Object )2 ) );
+		assertThat( second.invokeMethod( "increment", null ), is( ( Object )5 ) );
+	}
+
+	@Test
+	public void shouldShareClassBetweenComponentsUsingTheSameClassLoader()
+	{
+		CompiledScriptCache cache = CompiledScriptCache.instance;
+		ClassLoaderRegistry registry = new ClassLoaderRegistry()
+		{
+			@Override
+			protected GroovyEnvironmentClassLoader provideClassLoader( ClassLoader bundleClassLoader )
+			{
+				return classLoader;
+			}
+		};
+		String body = SCRIPT + "\n// " + folder.getRoot().getName();
+		long misses = cache.getMissCount();
+		long hits = cache.getHitCount();
+
+		GroovyEnvironment first = GroovyEnvironment.newInstance( new ParsedGroovyScript( body ), "componentA",
+				"test", registry, LOADER_ID, null, new Binding() );
+		GroovyEnvironment second = GroovyEnvironment.newInstance( new ParsedGroovyScript( body ), "componentB",
+				"test", registry, LOADER_ID, null, new Binding() );
+
+		assertThat( cache.getMissCount() - misses, is( 1L ) );
+		assertThat( cache.getHitCount() - hits, is( 1L ) );
+
+		ReleasableUtils.releaseAll( first, second, registry );
+	}
+
+	@Test
+	public void shouldCompileAgainForChangedBodyOrClassLoader()
+	{
+		CompiledScriptCache cache = new CompiledScriptCache( null );
+
+		Class<?> original = cache.getScriptClass( classLoader, LOADER_ID, SCRIPT );
+		Class<?> changed = cache.getScriptClass( classLoader, LOADER_ID, SCRIPT + "\n" );
+		Class<?> otherLoader = cache.getScriptClass( newClassLoader(), "other", SCRIPT );
+
+		assertThat( cache.getMissCount(), is( 3L ) );
+		assertNotSame( original, changed );
+		assertNotSame( original, otherLoader );
+	}
+
+	@Test
+	public void shouldLoadClassesFromDiskCache() throws Exception
+	{
+		File cacheDir = folder.newFolder( "classes" );
+		CompiledScriptCache cache = new CompiledScriptCache( cacheDir );
+		cache.newScript( classLoader, LOADER_ID, SCRIPT );
+
+		assertThat( cacheDir.listFiles().length, is( 1 ) );
+
+		CompiledScriptCache restarted = new CompiledScriptCache( cacheDir );
+		Script script = restarted.newScript( newClassLoader(), LOADER_ID, SCRIPT );
+		script.setProperty( "step", 3 );
+		script.run();
+
+		assertThat( restarted.getMissCount(), is( 0L ) );
+		assertThat( restarted.getDiskHitCount(), is( 1L ) );
+		assertThat( script.invokeMethod( "increment", null ), is( ( Object )3 ) );
+	}
+}
@@ -136,9 +136,9 @@ public abstract class AbstractSegmentModel extends DefaultChartModel
 			for( Object object : dataPoints )
 			{
 				dataPoint = ( DataPoint<?> )object;
-				final double doubleValue = dataPoint.getValue().doubleValue();
-				if( !Double.isNaN( doubleValue ) )
-					addPoint( dataPoint.getTimestamp(), scalar * doubleValue, false );
+				final Number value = dataPoint.getValue();
+				if( value != null && !Double.isNaN( value.doubleValue() ) )
+					addPoint( dataPoint.getTimestamp(), scalar * value.doubleValue(), false );
 			}
 			update();
 		}
@@ -0,0 +1,272 @@
+/*
+ * Copyright 2013 SmartBear Software
+ * 
+ * Licensed under the EUPL, Version 1.1 or - as soon they will be approved by the European Commission - subsequent
+ * versions of the EUPL (the "Licence");
+ * You may not use this work except in compliance with the Licence.
+ * You may obtain a copy of the Licence at:
+ * 
+ * http://ec.europa.eu/idabc/eupl
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the Licence is
+ * distributed on an "AS IS" basis, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the Licence for the specific language governing permissions and limitations
+ * under the Licence.
+ */
+package com.eviware.loadui.impl.statistics.db.table;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.collect.ConcurrentHashMultiset;
+import com.google.common.collect.Multiset;
+import com.google.common.collect.Sets;
+
+/**
+ * Writes rows to tables asynchronously. Queued rows are grouped per table and
+ * inserted as JDBC batches, committing once per connection, whenever
+ * maxBatchRows rows have been collected or commitInterval has passed since the
+ * first of them was queued. When the queue is full, callers of write() block
+ * until the writer Thread catches up. Readers only need to wait for the rows of
+ * the table they read, see flush(TableBase).
+ */
+public class BatchingTableWriter
+{
+	public static final String QUEUE_CAPACITY_PROPERTY = "loadui.statistics.writeQueueCapacity";
+	public static final String BATCH_SIZE_PROPERTY = "loadui.statistics.writeBatchSize";
+	public static final String COMMIT_INTERVAL_PROPERTY = "loadui.statistics.commitInterval";
+
+	private static final Logger log = LoggerFactory.getLogger( BatchingTableWriter.class );
+
+	private final BlockingQueue<PendingRow> queue;
+	private final int maxBatchRows;
+	private final long commitIntervalNanos;
+	private final Thread writerThread;
+	private final AtomicInteger pendingRows = new AtomicInteger();
+	private final Multiset<TableBase> pendingRowsByTable = ConcurrentHashMultiset.create();
+
+	public BatchingTableWriter()
+	{
+		this( Integer.getInteger( QUEUE_CAPACITY_PROPERTY, 50000 ), Integer.getInteger( BATCH_SIZE_PROPERTY, 2000 ),
+				Long.getLong( COMMIT_INTERVAL_PROPERTY, 500 ), TimeUnit.MILLISECONDS );
+	}
+
+	public BatchingTableWriter( int queueCapacity, int maxBatchRows, long commitInterval, TimeUnit unit )
+	{
+		this.queue = new ArrayBlockingQueue<>( queueCapacity );
+		this.maxBatchRows = maxBatchRows;
+		this.commitIntervalNanos = unit.toNanos( commitInterval );
+
+		writerThread = new Thread( new Runnable()
+		{
+			@Override
+			public void run()
+			{
+				runWriter();
+			}
+		}, "BatchingTableWriter" );
+		writerThread.setDaemon( true );
+		writerThread.start();
+	}
+
+	/**
+	 * Queues a row to be inserted into the given table, blocking while the queue
+	 * is full. The data Map must not be modified afterwards.
+	 */
+	public void write( TableBase table, Map<String, ? extends Object> data )
+	{
+		pendingRows.incrementAndGet();
+		pendingRowsByTable.add( table );
+		try
+		{
+			queue.put( new PendingRow( table, data, null ) );
+		}
+		catch( InterruptedException e )
+		{
+			pendingRows.decrementAndGet();
+			pendingRowsByTable.remove( table );
+			log.warn( "Interrupted while waiting to queue a row for {}, row dropped", table.getTableName() );
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * Blocks until all rows queued before this call have been committed. Returns
+	 * immediately if there are no such rows.
+	 */
+	public void flush()
+	{
+		if( pendingRows.get() > 0 )
+		{
+			awaitQueuedRows();
+		}
+	}
+
+	/**
+	 * Blocks until all rows queued for the given table before this call have
+	 * been committed. Returns immediately if there are no such rows, so reading
+	 * one table doesn't wait for the rows of all other tables to be written.
+	 */
+	public void flush( TableBase table )
+	{
+		if( pendingRowsByTable.contains( table ) )
+		{
+			awaitQueuedRows();
+		}
+	}
+
+	private void awaitQueuedRows()
+	{
+		if( Thread.currentThread() == writerThread || !writerThread.isAlive() )
+		{
+			return;
+		}
+
+		CountDownLatch latch = new CountDownLatch( 1 );
+		try
+		{
+			queue.put( new PendingRow( null, null, latch ) );
+			latch.await();
+		}
+		catch( InterruptedException e )
+		{
+			log.warn( "Interrupted while flushing queued rows" );
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	public int getQueueDepth()
+	{
+		return queue.size();
+	}
+
+	private void runWriter()
+	{
+		List<PendingRow> batch = new ArrayList<>();
+		while( true )
+		{
+			try
+			{
+				PendingRow first = queue.poll( 1, TimeUnit.SECONDS );
+				if( first == null )
+					continue;
+
+				batch.add( first );
+				long deadline = System.nanoTime() + commitIntervalNanos;
+				while( batch.size() < maxBatchRows && !batch.get( batch.size() - 1 ).isFlush() )
+				{
+					if( queue.drainTo( batch, 1 ) == 0 )
+					{
+						long remaining = deadline - System.nanoTime();
+						PendingRow next = remaining > 0 ? queue.poll( remaining, TimeUnit.NANOSECONDS ) : null;
+						if( next == null )
+							break;
+						batch.add( next );
+					}
+				}
+
+				writeBatch( batch );
+			}
+			catch( InterruptedException e )
+			{
+				log.warn( "BatchingTableWriter interrupted while waiting for rows" );
+			}
+			catch( RuntimeException e )
+			{
+				log.error( "Unexpected error while writing rows", e );
+			}
+			finally
+			{
+				for( PendingRow row : batch )
+				{
+					if( row.isFlush() )
+						row.flushed.countDown();
+					else
+					{
+						pendingRows.decrementAndGet();
+						pendingRowsByTable.remove( row.table );
+					}
+				}
+				batch.clear();
+			}
+		}
+	}
+
+	private void writeBatch( List<PendingRow> batch )
+	{
+		Map<TableBase, List<Map<String, ? extends Object>>> rowsByTable = new LinkedHashMap<>();
+		for( PendingRow row : batch )
+		{
+			if( !row.isFlush() )
+			{
+				List<Map<String, ? extends Object>> rows = rowsByTable.get( row.table );
+				if( rows == null )
+				{
+					rows = new ArrayList<>();
+					rowsByTable.put( row.table, rows );
+				}
+				rows.add( row.data );
+			}
+		}
+
+		Set<Connection> connections = Sets.newSetFromMap( new IdentityHashMap<Connection, Boolean>() );
+		for( Map.Entry<TableBase, List<Map<String, ? extends Object>>> entry : rowsByTable.entrySet() )
+		{
+			TableBase table = entry.getKey();
+			try
+			{
+				table.insertBatch( entry.getValue() );
+				connections.add( table.getConnection() );
+			}
+			catch( SQLException | RuntimeException e )
+			{
+				log.error( "Unable to write " + entry.getValue().size() + " rows to " + table.getTableName(), e );
+			}
+		}
+
+		for( Connection connection : connections )
+		{
+			try
+			{
+				connection.commit();
+			}
+			catch( SQLException e )
+			{
+				log.error( "Unable to commit written rows", e );
+			}
+		}
+	}
+
+	private static class PendingRow
+	{
+		private final TableBase table;
+		private final Map<String, ? extends Object> data;
+		private final CountDownLatch flushed;
+
+		public PendingRow( TableBase table, Map<String, ? extends Object> data, CountDownLatch flushed )
+		{
+			this.table = table;
+			this.data = data;
+			this.flushed = flushed;
+		}
+
+		public boolean isFlush()
+		{
+			return flushed != null;
+		}
+	}
+}
@@ -57,6 +57,21 @@ public class PreparedStatementHolder
 		preparedStatement.executeUpdate();
 	}
 
+	public void addBatch() throws SQLException
+	{
+		preparedStatement.addBatch();
+	}
+
+	public void executeBatch() throws SQLException
+	{
+		preparedStatement.executeBatch();
+	}
+
+	public void clearBatch() throws SQLException
+	{
+		preparedStatement.clearBatch();
+	}
+
 	public ResultSet executeQuery() throws SQLException
 	{
 		return preparedStatement.executeQuery();
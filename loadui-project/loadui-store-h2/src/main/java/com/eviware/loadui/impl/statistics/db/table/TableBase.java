@@ -22,6 +22,7 @@ import java.sql.SQLException;
 import java.sql.Statement;
 import java.sql.Types;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
@@ -46,6 +47,8 @@ public abstract class TableBase implements Releasable
 
 	private final PreparedStatementHolder insertStatement;
 
+	private final Object insertLock = new Object();
+
 	private final PreparedStatementHolder selectStatement;
 
 	private final String createScript;
@@ -266,11 +269,39 @@ public abstract class TableBase implements Releasable
 				.replaceFirst( "\\?", tableName ).replaceFirst( "\\?", b.toString() );
 	}
 
-	public synchronized void insert( Map<String, ? extends Object> data ) throws SQLException
+	public void insert( Map<String, ? extends Object> data ) throws SQLException
 	{
-		insertStatement.setArguments( data );
-		insertStatement.executeUpdate();
-		commit();
+		synchronized( insertLock )
+		{
+			insertStatement.setArguments( data );
+			insertStatement.executeUpdate();
+			commit();
+		}
+	}
+
+	/**
+	 * Inserts all the given rows as one JDBC batch. The rows are not committed,
+	 * which is left to the caller. Only the insert statement is locked, so
+	 * selects on this table don't wait for the batch to be written.
+	 */
+	public void insertBatch( Collection<? extends Map<String, ? extends Object>> rows ) throws SQLException
+	{
+		synchronized( insertLock )
+		{
+			try
+			{
+				for( Map<String, ? extends Object> data : rows )
+				{
+					insertStatement.setArguments( data );
+					insertStatement.addBatch();
+				}
+				insertStatement.executeBatch();
+			}
+			finally
+			{
+				insertStatement.clearBatch();
+			}
+		}
 	}
 
 	private void create() throws SQLException
@@ -359,7 +390,10 @@ public abstract class TableBase implements Releasable
 	public synchronized void release()
 	{
 		selectStatement.release();
-		insertStatement.release();
+		synchronized( insertLock )
+		{
+			insertStatement.release();
+		}
 		JdbcUtil.close( deleteStatement );
 		if( extraStatementMap != null )
 		{
@@ -445,6 +479,11 @@ public abstract class TableBase implements Releasable
 		connection.commit();
 	}
 
+	protected Connection getConnection()
+	{
+		return connection;
+	}
+
 	final protected String buildTableName( String name )
 	{
 		return TABLE_NAME_PREFIX + name;
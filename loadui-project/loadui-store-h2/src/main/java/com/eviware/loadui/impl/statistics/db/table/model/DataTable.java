@@ -15,14 +15,20 @@
  */
 package com.eviware.loadui.impl.statistics.db.table.model;
 
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.util.List;
 import java.util.Map;
 
+import com.eviware.loadui.api.statistics.store.RangeCursor;
 import com.eviware.loadui.impl.statistics.db.ConnectionRegistry;
 import com.eviware.loadui.impl.statistics.db.DatabaseMetadata;
 import com.eviware.loadui.impl.statistics.db.TableRegistry;
 import com.eviware.loadui.impl.statistics.db.table.TableBase;
 import com.eviware.loadui.impl.statistics.db.table.TableDescriptor;
+import com.eviware.loadui.impl.statistics.db.util.JdbcUtil;
+import com.google.common.collect.ImmutableList;
 
 public class DataTable extends TableBase
 {
@@ -32,6 +38,10 @@ public class DataTable extends TableBase
 
 	public static final String STATIC_FIELD_TIMESTAMP = "_TSTAMP";
 
+	public static final String FETCH_SIZE_PROPERTY = "loadui.statistics.fetchSize";
+
+	private static final int FETCH_SIZE = Integer.getInteger( FETCH_SIZE_PROPERTY, 1000 );
+
 	public DataTable( String dbName, String name, Map<String, ? extends Class<? extends Object>> dynamicFields,
 			ConnectionRegistry connectionRegistry, DatabaseMetadata databaseMetadata, TableRegistry tableRegistry )
 			throws SQLException
@@ -61,4 +71,138 @@ public class DataTable extends TableBase
 	{
 		super.release();
 	}
+
+	/**
+	 * Opens a RangeCursor over the rows with startTime <= timestamp <= endTime,
+	 * in timestamp order. The values of the cursor are read from the given
+	 * columns, where a null column gives NaN values. The cursor uses a statement
+	 * of its own, so it doesn't hold the monitor of the table while reading.
+	 */
+	public RangeCursor openRange( long startTime, long endTime, List<String> valueNames, List<String> columns )
+			throws SQLException
+	{
+		int[] columnIndexes = new int[columns.size()];
+		StringBuilder sql = new StringBuilder( "SELECT " ).append( STATIC_FIELD_TIMESTAMP );
+		int selected = 1;
+		for( int i = 0; i < columnIndexes.length; i++ )
+		{
+			String column = columns.get( i );
+			if( column != null )
+			{
+				sql.append( ", " ).append( column );
+				columnIndexes[i] = ++selected;
+			}
+		}
+		sql.append( " FROM " ).append( getTableName() ).append( " WHERE " ).append( STATIC_FIELD_TIMESTAMP )
+				.append( ">=? AND " ).append( STATIC_FIELD_TIMESTAMP ).append( "<=? ORDER BY " )
+				.append( STATIC_FIELD_TIMESTAMP );
+
+		PreparedStatement statement = getConnection().prepareStatement( sql.toString(), ResultSet.TYPE_FORWARD_ONLY,
+				ResultSet.CONCUR_READ_ONLY );
+		try
+		{
+			statement.setFetchSize( FETCH_SIZE );
+			statement.setLong( 1, startTime );
+			statement.setLong( 2, endTime );
+
+			return new DataTableCursor( statement, statement.executeQuery(), valueNames, columnIndexes );
+		}
+		catch( SQLException e )
+		{
+			JdbcUtil.close( statement );
+			throw e;
+		}
+	}
+
+	private static class DataTableCursor implements RangeCursor
+	{
+		private final PreparedStatement statement;
+		private final ResultSet resultSet;
+		private final List<String> valueNames;
+		private final int[] columnIndexes;
+		private final double[] values;
+		private long timestamp;
+		private boolean closed = false;
+
+		public DataTableCursor( PreparedStatement statement, ResultSet resultSet, List<String> valueNames,
+				int[] columnIndexes )
+		{
+			this.statement = statement;
+			this.resultSet = resultSet;
+			this.valueNames = ImmutableList.copyOf( valueNames );
+			this.columnIndexes = columnIndexes;
+			values = new double[columnIndexes.length];
+		}
+
+		@Override
+		public List<String> getValueNames()
+		{
+			return valueNames;
+		}
+
+		@Override
+		public boolean next()
+		{
+			if( closed )
+			{
+				return false;
+			}
+
+			try
+			{
+				if( !resultSet.next() )
+				{
+					close();
+					return false;
+				}
+
+				timestamp = resultSet.getLong( 1 );
+				for( int i = 0; i < columnIndexes.length; i++ )
+				{
+					if( columnIndexes[i] == 0 )
+					{
+						values[i] = Double.NaN;
+					}
+					else
+					{
+						values[i] = resultSet.getDouble( columnIndexes[i] );
+						if( resultSet.wasNull() )
+						{
+							values[i] = Double.NaN;
+						}
+					}
+				}
+
+				return true;
+			}
+			catch( SQLException e )
+			{
+				close();
+				throw new RuntimeException( "Unable to read data from the database.", e );
+			}
+		}
+
+		@Override
+		public long getTimestamp()
+		{
+			return timestamp;
+		}
+
+		@Override
+		public double getValue( int index )
+		{
+			return values[index];
+		}
+
+		@Override
+		public void close()
+		{
+			if( !closed )
+			{
+				closed = true;
+				JdbcUtil.close( resultSet );
+				JdbcUtil.close( statement );
+			}
+		}
+	}
 }
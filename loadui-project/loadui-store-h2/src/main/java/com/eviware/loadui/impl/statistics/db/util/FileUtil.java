@@ -35,4 +35,22 @@ public class FileUtil
 		}
 		return result && directory.delete();
 	}
+
+	public static long getSize( File file )
+	{
+		if( !file.isDirectory() )
+		{
+			return file.length();
+		}
+		long size = 0;
+		File[] children = file.listFiles();
+		if( children != null )
+		{
+			for( File f : children )
+			{
+				size += getSize( f );
+			}
+		}
+		return size;
+	}
 }
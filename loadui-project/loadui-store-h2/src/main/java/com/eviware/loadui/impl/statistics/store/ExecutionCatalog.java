@@ -0,0 +1,299 @@
+/*
+ * Copyright 2013 SmartBear Software
+ * 
+ * Licensed under the EUPL, Version 1.1 or - as soon they will be approved by the European Commission - subsequent
+ * versions of the EUPL (the "Licence");
+ * You may not use this work except in compliance with the Licence.
+ * You may obtain a copy of the Licence at:
+ * 
+ * http://ec.europa.eu/idabc/eupl
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the Licence is
+ * distributed on an "AS IS" basis, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the Licence for the specific language governing permissions and limitations
+ * under the Licence.
+ */
+package com.eviware.loadui.impl.statistics.store;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.collect.ImmutableList;
+
+/**
+ * Persisted summary of the executions stored in a results directory, allowing
+ * them to be listed without reading the properties file of each execution.
+ * An entry is only used while the execution properties file is unchanged
+ * since the entry was written, otherwise the execution is read from disk
+ * again.
+ */
+public class ExecutionCatalog
+{
+	public static final String FILE_NAME = "executions.catalog";
+
+	private static final int VERSION = 1;
+
+	private static final Logger log = LoggerFactory.getLogger( ExecutionCatalog.class );
+
+	private final File baseDirectory;
+	private final File file;
+	private final Map<String, Entry> entries = new HashMap<>();
+	private boolean dirty = false;
+
+	public ExecutionCatalog( File baseDirectory )
+	{
+		this.baseDirectory = baseDirectory;
+		file = new File( baseDirectory, FILE_NAME );
+
+		if( file.exists() )
+		{
+			try
+			{
+				load();
+			}
+			catch( IOException e )
+			{
+				log.warn( "Could not read the execution catalog, it will be rebuilt", e );
+				entries.clear();
+			}
+		}
+	}
+
+	public File getBaseDirectory()
+	{
+		return baseDirectory;
+	}
+
+	/**
+	 * Returns the Entry for the given execution directory, or null if there is
+	 * none or its properties file has been modified since the Entry was
+	 * written.
+	 */
+	public synchronized Entry get( File executionDir )
+	{
+		Entry entry = entries.get( executionDir.getName() );
+		if( entry != null && entry.getModified() == getPropertiesFile( executionDir ).lastModified() )
+		{
+			return entry;
+		}
+		return null;
+	}
+
+	public synchronized Collection<Entry> getEntries()
+	{
+		return ImmutableList.copyOf( entries.values() );
+	}
+
+	/**
+	 * Adds or replaces the Entry of an execution. The catalog is written on the
+	 * next call to flush().
+	 */
+	public synchronized void update( Entry entry )
+	{
+		if( !entry.equals( entries.put( entry.getDirectoryName(), entry ) ) )
+		{
+			dirty = true;
+		}
+	}
+
+	/**
+	 * Writes the catalog if any Entry has been updated since it was last
+	 * written.
+	 */
+	public synchronized void flush()
+	{
+		if( dirty )
+		{
+			store();
+		}
+	}
+
+	/**
+	 * Removes the Entry of an execution and writes the catalog.
+	 */
+	public synchronized void remove( String directoryName )
+	{
+		if( entries.remove( directoryName ) != null )
+		{
+			store();
+		}
+	}
+
+	/**
+	 * Replaces all entries, writing the catalog only if something has changed.
+	 */
+	public synchronized void replaceAll( Collection<Entry> newEntries )
+	{
+		Map<String, Entry> replacement = new HashMap<>();
+		for( Entry entry : newEntries )
+		{
+			replacement.put( entry.getDirectoryName(), entry );
+		}
+
+		if( !replacement.equals( entries ) )
+		{
+			entries.clear();
+			entries.putAll( replacement );
+			store();
+		}
+	}
+
+	static File getPropertiesFile( File executionDir )
+	{
+		return new File( executionDir, ExecutionImpl.PROPERTIES_FILE_NAME );
+	}
+
+	private void load() throws IOException
+	{
+		try (DataInputStream in = new DataInputStream( new BufferedInputStream( new FileInputStream( file ) ) ))
+		{
+			if( in.readInt() != VERSION )
+			{
+				return;
+			}
+			int count = in.readInt();
+			for( int i = 0; i < count; i++ )
+			{
+				Entry entry = new Entry( in.readUTF(), in.readUTF(), in.readUTF(), in.readLong(), in.readLong(),
+						in.readBoolean(), in.readLong(), in.readLong() );
+				entries.put( entry.getDirectoryName(), entry );
+			}
+		}
+	}
+
+	private void store()
+	{
+		dirty = false;
+		File tempFile = new File( baseDirectory, FILE_NAME + ".tmp" );
+		try
+		{
+			try (DataOutputStream out = new DataOutputStream( new BufferedOutputStream( new FileOutputStream( tempFile ) ) ))
+			{
+				out.writeInt( VERSION );
+				out.writeInt( entries.size() );
+				for( Entry entry : entries.values() )
+				{
+					out.writeUTF( entry.getDirectoryName() );
+					out.writeUTF( entry.getId() );
+					out.writeUTF( entry.getLabel() );
+					out.writeLong( entry.getStartTime() );
+					out.writeLong( entry.getLength() );
+					out.writeBoolean( entry.isArchived() );
+					out.writeLong( entry.getSizeOnDisk() );
+					out.writeLong( entry.getModified() );
+				}
+			}
+			Files.move( tempFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING,
+					StandardCopyOption.ATOMIC_MOVE );
+		}
+		catch( IOException e )
+		{
+			log.error( "Could not store the execution catalog!", e );
+		}
+	}
+
+	/**
+	 * The catalogued attributes of a single execution.
+	 */
+	public static final class Entry
+	{
+		private final String directoryName;
+		private final String id;
+		private final String label;
+		private final long startTime;
+		private final long length;
+		private final boolean archived;
+		private final long sizeOnDisk;
+		private final long modified;
+
+		public Entry( String directoryName, String id, String label, long startTime, long length, boolean archived,
+				long sizeOnDisk, long modified )
+		{
+			this.directoryName = directoryName;
+			this.id = id;
+			this.label = label;
+			this.startTime = startTime;
+			this.length = length;
+			this.archived = archived;
+			this.sizeOnDisk = sizeOnDisk;
+			this.modified = modified;
+		}
+
+		public String getDirectoryName()
+		{
+			return directoryName;
+		}
+
+		public String getId()
+		{
+			return id;
+		}
+
+		public String getLabel()
+		{
+			return label;
+		}
+
+		public long getStartTime()
+		{
+			return startTime;
+		}
+
+		public long getLength()
+		{
+			return length;
+		}
+
+		public boolean isArchived()
+		{
+			return archived;
+		}
+
+		public long getSizeOnDisk()
+		{
+			return sizeOnDisk;
+		}
+
+		/**
+		 * The last modification time of the execution properties file when this
+		 * Entry was written.
+		 */
+		public long getModified()
+		{
+			return modified;
+		}
+
+		@Override
+		public boolean equals( Object obj )
+		{
+			if( !( obj instanceof Entry ) )
+			{
+				return false;
+			}
+			Entry other = ( Entry )obj;
+			return directoryName.equals( other.directoryName ) && id.equals( other.id ) && label.equals( other.label )
+					&& startTime == other.startTime && length == other.length && archived == other.archived
+					&& sizeOnDisk == other.sizeOnDisk && modified == other.modified;
+		}
+
+		@Override
+		public int hashCode()
+		{
+			return directoryName.hashCode();
+		}
+	}
+}
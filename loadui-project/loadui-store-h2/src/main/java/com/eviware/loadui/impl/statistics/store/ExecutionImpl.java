@@ -76,6 +76,15 @@ public class ExecutionImpl implements Execution, Releasable
 	public static final String KEY_LENGTH = "LENGTH";
 	public static final String KEY_ICON = "ICON";
 
+	public static final String PROPERTIES_FILE_NAME = "execution.properties";
+
+	/**
+	 * Attributes which are kept in the ExecutionCatalog, and can be read
+	 * without loading the properties file.
+	 */
+	private static final Set<String> CATALOG_KEYS = ImmutableSet.of( KEY_ID, KEY_START_TIME, KEY_ARCHIVED, KEY_LABEL,
+			KEY_LENGTH );
+
 	private final Function<TestEventData, TestEvent.Entry> createTestEvent;
 	private final Function<TestEventData, TestEvent.Entry> createInterpolatedTestEvent;
 
@@ -108,8 +117,19 @@ public class ExecutionImpl implements Execution, Releasable
 
 	private boolean loaded = false;
 
+	/**
+	 * False while only the catalogued attributes have been read.
+	 */
+	private volatile boolean attributesLoaded = true;
+
+	private long sizeOnDisk = 0;
+
 	private Image icon;
 
+	private boolean iconDecoded = false;
+
+	private ExecutionSummary summary;
+
 	public ExecutionImpl( File executionDir, String id, long startTime, ExecutionManagerImpl manager,
 			TestEventRegistry testEventRegistry )
 	{
@@ -117,10 +137,36 @@ public class ExecutionImpl implements Execution, Releasable
 
 		attributes.put( KEY_ID, id );
 		attributes.put( KEY_START_TIME, String.valueOf( startTime ) );
-		storeAttributes();
+		storeAttributes( false );
+	}
+
+	/**
+	 * Creates an ExecutionImpl from its ExecutionCatalog Entry. The remaining
+	 * attributes are read from the properties file when first needed.
+	 */
+	public ExecutionImpl( File executionDir, ExecutionCatalog.Entry entry, ExecutionManagerImpl manager,
+			TestEventRegistry testEventRegistry )
+	{
+		this( executionDir, manager, testEventRegistry, false );
+
+		attributes.put( KEY_ID, entry.getId() );
+		attributes.put( KEY_START_TIME, String.valueOf( entry.getStartTime() ) );
+		attributes.put( KEY_LABEL, entry.getLabel() );
+		attributes.put( KEY_ARCHIVED, String.valueOf( entry.isArchived() ) );
+		attributes.put( KEY_LENGTH, String.valueOf( entry.getLength() ) );
+		length = entry.getLength();
+		lastFlushedLength = length;
+		sizeOnDisk = entry.getSizeOnDisk();
+		attributesLoaded = false;
 	}
 
-	public ExecutionImpl( File executionDir, ExecutionManagerImpl manager, final TestEventRegistry testEventRegistry )
+	public ExecutionImpl( File executionDir, ExecutionManagerImpl manager, TestEventRegistry testEventRegistry )
+	{
+		this( executionDir, manager, testEventRegistry, true );
+	}
+
+	private ExecutionImpl( File executionDir, ExecutionManagerImpl manager, final TestEventRegistry testEventRegistry,
+			boolean readAttributes )
 	{
 		createTestEvent = new Function<TestEventData, TestEvent.Entry>()
 		{
@@ -161,9 +207,9 @@ public class ExecutionImpl implements Execution, Releasable
 		this.manager = manager;
 		trackMap = new HashMap<>();
 
-		propertiesFile = new File( executionDir, "execution.properties" );
+		propertiesFile = new File( executionDir, PROPERTIES_FILE_NAME );
 
-		if( propertiesFile.exists() )
+		if( readAttributes && propertiesFile.exists() )
 			loadAttributes();
 	}
 
@@ -295,17 +341,44 @@ public class ExecutionImpl implements Execution, Releasable
 		return length;
 	}
 
+	@Override
+	public com.eviware.loadui.api.statistics.store.Entry getSummaryEntry( String trackId, String source )
+	{
+		return getSummary().getEntry( trackId, source );
+	}
+
+	synchronized ExecutionSummary getSummary()
+	{
+		if( summary == null )
+			summary = new ExecutionSummary( executionDir );
+		return summary;
+	}
+
 	void updateLength( long timestamp )
 	{
 		length = Math.max( length, timestamp );
 		if( length > lastFlushedLength + 5000 )
-			flushLength();
+			storeLength( false );
 	}
 
+	/**
+	 * Stores the current length, and updates the ExecutionCatalog Entry.
+	 */
 	void flushLength()
+	{
+		storeLength( true );
+	}
+
+	/**
+	 * The periodic flushes while running don't update the catalog, as its Entry
+	 * is stale as soon as the next row is written anyway.
+	 */
+	private void storeLength( boolean updateCatalog )
 	{
 		lastFlushedLength = length;
-		setAttribute( KEY_LENGTH, String.valueOf( length ) );
+		ensureAttributesLoaded();
+		attributes.setProperty( KEY_LENGTH, String.valueOf( length ) );
+		storeAttributes( updateCatalog );
 	}
 
 	@Override
@@ -355,24 +428,59 @@ public class ExecutionImpl implements Execution, Releasable
 		return loaded;
 	}
 
+	/**
+	 * The size of the execution directory, as of when it was last measured.
+	 */
+	public long getSizeOnDisk()
+	{
+		return sizeOnDisk;
+	}
+
+	void setSizeOnDisk( long sizeOnDisk )
+	{
+		this.sizeOnDisk = sizeOnDisk;
+	}
+
+	/**
+	 * Returns the last modification time of the properties file.
+	 */
+	long getAttributesModified()
+	{
+		return propertiesFile.lastModified();
+	}
+
 	@Override
-	public Image getIcon()
+	public synchronized Image getIcon()
 	{
+		if( !iconDecoded )
+		{
+			try
+			{
+				icon = ( Image )TypeConverter.stringToObject( getAttribute( KEY_ICON, null ), BufferedImage.class );
+			}
+			catch( IOException e )
+			{
+				log.error( "Could not decode execution icon!", e );
+			}
+			iconDecoded = true;
+		}
 		return icon;
 	}
 
 	@Override
-	public void setIcon( Image icon )
+	public synchronized void setIcon( Image icon )
 	{
 		setAttribute( KEY_ICON, TypeConverter.objectToString( icon ) );
 		this.icon = icon;
+		iconDecoded = true;
 	}
 
 	@Override
 	public void setAttribute( String key, String value )
 	{
+		ensureAttributesLoaded();
 		attributes.setProperty( key, value );
-		storeAttributes();
+		storeAttributes( true );
 	}
 
 	public File getExecutionDir()
@@ -380,6 +488,19 @@ public class ExecutionImpl implements Execution, Releasable
 		return executionDir;
 	}
 
+	private void ensureAttributesLoaded()
+	{
+		if( !attributesLoaded )
+		{
+			synchronized( this )
+			{
+				if( !attributesLoaded && propertiesFile.exists() )
+					loadAttributes();
+				attributesLoaded = true;
+			}
+		}
+	}
+
 	private void loadAttributes()
 	{
 		FileInputStream fis = null;
@@ -387,8 +508,7 @@ public class ExecutionImpl implements Execution, Releasable
 		{
 			fis = new FileInputStream( propertiesFile );
 			attributes.load( fis );
-			length = Long.parseLong( attributes.getProperty( KEY_LENGTH, "0" ) );
-			icon = ( Image )TypeConverter.stringToObject( getAttribute( KEY_ICON, null ), BufferedImage.class );
+			length = Math.max( length, Long.parseLong( attributes.getProperty( KEY_LENGTH, "0" ) ) );
 		}
 		catch( FileNotFoundException e )
 		{
@@ -404,33 +524,42 @@ public class ExecutionImpl implements Execution, Releasable
 		}
 	}
 
-	private synchronized void storeAttributes()
+	private void storeAttributes( boolean updateCatalog )
 	{
-		try (FileOutputStream fos = new FileOutputStream( propertiesFile ))
-		{
-			attributes.store( fos, "" );
-		}
-		catch( IOException e )
+		synchronized( this )
 		{
-			log.error( "Could not store execution properties file!", e );
+			try (FileOutputStream fos = new FileOutputStream( propertiesFile ))
+			{
+				attributes.store( fos, "" );
+			}
+			catch( IOException e )
+			{
+				log.error( "Could not store execution properties file!", e );
+			}
 		}
+		if( updateCatalog )
+			manager.updateCatalog( this );
 	}
 
 	@Override
 	public void removeAttribute( String key )
 	{
+		ensureAttributesLoaded();
 		attributes.remove( key );
 	}
 
 	@Override
 	public final String getAttribute( String key, String defaultValue )
 	{
+		if( !CATALOG_KEYS.contains( key ) )
+			ensureAttributesLoaded();
 		return attributes.getProperty( key, defaultValue );
 	}
 
 	@Override
 	public Collection<String> getAttributes()
 	{
+		ensureAttributesLoaded();
 		return attributes.stringPropertyNames();
 	}
 
@@ -17,6 +17,8 @@ package com.eviware.loadui.impl.statistics.store;
 
 import java.io.File;
 import java.io.FileFilter;
+import java.io.IOException;
+import java.lang.ref.WeakReference;
 import java.sql.SQLException;
 import java.util.ArrayList;
 import java.util.Collection;
@@ -27,7 +29,18 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
-import java.util.WeakHashMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
 
 import javax.sql.DataSource;
 
@@ -47,8 +60,10 @@ import com.eviware.loadui.api.statistics.store.Entry;
 import com.eviware.loadui.api.statistics.store.Execution;
 import com.eviware.loadui.api.statistics.store.ExecutionListener;
 import com.eviware.loadui.api.statistics.store.ExecutionManager;
+import com.eviware.loadui.api.statistics.store.RangeCursor;
 import com.eviware.loadui.api.statistics.store.Track;
 import com.eviware.loadui.api.statistics.store.TrackDescriptor;
+import com.eviware.loadui.api.statistics.store.TrackWriter;
 import com.eviware.loadui.api.testevents.TestEvent;
 import com.eviware.loadui.api.testevents.TestEventRegistry;
 import com.eviware.loadui.api.traits.Releasable;
@@ -56,6 +71,7 @@ import com.eviware.loadui.impl.statistics.db.ConnectionRegistry;
 import com.eviware.loadui.impl.statistics.db.DataSourceProvider;
 import com.eviware.loadui.impl.statistics.db.DatabaseMetadata;
 import com.eviware.loadui.impl.statistics.db.TableRegistry;
+import com.eviware.loadui.impl.statistics.db.table.BatchingTableWriter;
 import com.eviware.loadui.impl.statistics.db.table.TableBase;
 import com.eviware.loadui.impl.statistics.db.table.model.DataTable;
 import com.eviware.loadui.impl.statistics.db.table.model.InterpolationLevelTable;
@@ -65,19 +81,25 @@ import com.eviware.loadui.impl.statistics.db.table.model.TestEventTable;
 import com.eviware.loadui.impl.statistics.db.table.model.TestEventTypeTable;
 import com.eviware.loadui.impl.statistics.db.table.model.TrackMetadataTable;
 import com.eviware.loadui.impl.statistics.db.util.FileUtil;
+import com.eviware.loadui.impl.statistics.store.columnar.ColumnFile;
+import com.eviware.loadui.impl.statistics.store.columnar.ColumnarStore;
+import com.eviware.loadui.impl.statistics.store.columnar.TestEventLog;
 import com.eviware.loadui.impl.statistics.store.testevents.TestEventData;
 import com.eviware.loadui.impl.statistics.store.testevents.TestEventSourceConfig;
 import com.eviware.loadui.impl.statistics.store.testevents.TestEventSourceDescriptorImpl;
 import com.eviware.loadui.impl.statistics.store.testevents.TestEventTypeDescriptorImpl;
 import com.eviware.loadui.util.FormattingUtils;
 import com.eviware.loadui.util.ReleasableUtils;
+import com.eviware.loadui.util.ScheduledExecutor;
 import com.eviware.loadui.util.events.EventSupport;
 import com.eviware.loadui.util.statistics.ExecutionListenerAdapter;
+import com.eviware.loadui.util.statistics.store.RangeCursors;
+import com.eviware.loadui.util.statistics.store.SchemaEntry;
 import com.eviware.loadui.util.statistics.store.ExecutionChangeSupport;
 import com.google.common.base.Function;
 import com.google.common.base.Objects;
-import com.google.common.base.Supplier;
 import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
 import com.google.common.cache.CacheLoader;
 import com.google.common.cache.LoadingCache;
 import com.google.common.collect.ImmutableList;
@@ -86,8 +108,6 @@ import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Iterables;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
-import com.google.common.collect.Multimap;
-import com.google.common.collect.Multimaps;
 import com.google.common.collect.Sets;
 
 /**
@@ -100,10 +120,22 @@ import com.google.common.collect.Sets;
 public abstract class ExecutionManagerImpl<Type extends DataSource> implements ExecutionManager,
 		DataSourceProvider<Type>, Releasable
 {
+	/**
+	 * Execution attribute holding the number of test events which were dropped
+	 * because they arrived faster than they could be written.
+	 */
+	public static final String DROPPED_TEST_EVENTS_ATTRIBUTE = "droppedTestEvents";
+
 	private static final String UNABLE_TO_WRITE_DATA_TO_THE_DATABASE = "Unable to write data to the database:";
 
 	private static final String UNABLE_TO_READ_DATA_FROM_THE_DATABASE = "Unable to read data from the database.";
 
+	/**
+	 * Seconds between an ExecutionCatalog Entry being updated and the catalog
+	 * being written.
+	 */
+	private static final long CATALOG_FLUSH_DELAY = 5;
+
 	private static Logger log = LoggerFactory.getLogger( ExecutionManagerImpl.class );
 
 	private static final LoadingCache<String, String> columnNames = CacheBuilder.newBuilder().weakKeys()
@@ -128,18 +160,9 @@ public abstract class ExecutionManagerImpl<Type extends DataSource> implements E
 	/**
 	 * Current execution
 	 */
-	private ExecutionImpl currentExecution;
+	private volatile ExecutionImpl currentExecution;
 
-	private final Multimap<String, ValueListener<? super Entry>> listeners = Multimaps.newSetMultimap(
-			new HashMap<String, Collection<ValueListener<? super Entry>>>(),
-			new Supplier<Set<ValueListener<? super Entry>>>()
-			{
-				@Override
-				public Set<ValueListener<? super Entry>> get()
-				{
-					return Sets.newSetFromMap( new WeakHashMap<ValueListener<? super Entry>, Boolean>() );
-				}
-			} );
+	private final ConcurrentMap<String, EntryListeners> listeners = new ConcurrentHashMap<>();
 
 	private final ExecutionChangeSupport ecs = new ExecutionChangeSupport();
 
@@ -151,10 +174,24 @@ public abstract class ExecutionManagerImpl<Type extends DataSource> implements E
 
 	private final Map<String, TrackDescriptor> trackDescriptors = new HashMap<>();
 
-	private final Map<String, Entry> latestEntries = new HashMap<>();
+	private final ConcurrentMap<String, AtomicReference<Entry>> latestEntries = new ConcurrentHashMap<>();
+
+	private final ConcurrentMap<String, TrackWriterImpl> writers = new ConcurrentHashMap<>();
+
+	/**
+	 * Incremented whenever tables or executions are created or released, making
+	 * the TrackWriters resolve their targets again.
+	 */
+	private final AtomicInteger writerGeneration = new AtomicInteger();
 
 	private final TableRegistry tableRegistry = new TableRegistry();
 
+	private final BatchingTableWriter tableWriter = new BatchingTableWriter();
+
+	private final Map<String, ColumnarStore> columnarStores = new ConcurrentHashMap<>();
+
+	private final Map<String, TestEventLog> testEventLogs = new ConcurrentHashMap<>();
+
 	private final DatabaseMetadata metadata;
 
 	private final ConnectionRegistry connectionRegistry;
@@ -163,12 +200,17 @@ public abstract class ExecutionManagerImpl<Type extends DataSource> implements E
 
 	private final ExecutionPool executionPool = new ExecutionPool();
 
+	private final RangeBlockCache rangeBlockCache = new RangeBlockCache();
+
 	private final ResultPathListener resultPathListener = new ResultPathListener();
 
 	private final Map<String, TestEventTypeDescriptorImpl> eventTypes = Maps.newHashMap();
 
 	private boolean loadedExecutionsFromDisk = false;
 
+	private volatile ExecutionCatalog catalog;
+	private final AtomicBoolean catalogFlushScheduled = new AtomicBoolean();
+
 	public ExecutionManagerImpl( TestEventRegistry testEventRegistry )
 	{
 		this.testEventRegistry = testEventRegistry;
@@ -231,6 +273,7 @@ public abstract class ExecutionManagerImpl<Type extends DataSource> implements E
 	public Execution startExecution( String id, long timestamp, String label, String fileName )
 	{
 		latestEntries.clear();
+		writerGeneration.incrementAndGet();
 
 		if( executionMap.containsKey( id ) )
 		{
@@ -245,6 +288,9 @@ public abstract class ExecutionManagerImpl<Type extends DataSource> implements E
 		TestEventSourceTable testEventSourceTable = null;
 		TestEventTypeTable testEventTypeTable = null;
 
+		ColumnarStore columnarStore = null;
+		TestEventLog testEventLog = null;
+
 		String dbName;
 		try
 		{
@@ -269,6 +315,11 @@ public abstract class ExecutionManagerImpl<Type extends DataSource> implements E
 			testEventTypeTable = new TestEventTypeTable( dbName, connectionRegistry, metadata, tableRegistry );
 			testEventSourceTable = new TestEventSourceTable( dbName, connectionRegistry, metadata, tableRegistry );
 
+			if( ColumnarStore.isEnabled() )
+			{
+				columnarStore = ColumnarStore.create( executionDir );
+				testEventLog = TestEventLog.create( executionDir );
+			}
 		}
 		catch( SQLException e )
 		{
@@ -279,6 +330,13 @@ public abstract class ExecutionManagerImpl<Type extends DataSource> implements E
 				signalDiskProblem();
 			return null;
 		}
+		catch( IOException e )
+		{
+			log.error( "Unable to start Execution, couldn't create columnar store", e );
+			ReleasableUtils.release( columnarStore );
+			signalDiskProblem();
+			return null;
+		}
 
 		// after all SQL operations are finished successfully, add created
 		// tables into registry
@@ -287,6 +345,14 @@ public abstract class ExecutionManagerImpl<Type extends DataSource> implements E
 		tableRegistry.put( dbName, trackMetaTable );
 		tableRegistry.put( dbName, testEventTypeTable );
 		tableRegistry.put( dbName, testEventSourceTable );
+		if( columnarStore != null )
+		{
+			columnarStores.put( dbName, columnarStore );
+		}
+		if( testEventLog != null )
+		{
+			testEventLogs.put( dbName, testEventLog );
+		}
 
 		currentExecution = new ExecutionImpl( executionDir, id, timestamp, this, testEventRegistry );
 		currentExecution.setLabel( label );
@@ -335,6 +401,7 @@ public abstract class ExecutionManagerImpl<Type extends DataSource> implements E
 	static void signalDiskProblem( String msg )
 	{
 		log.warn( "Stopping execution since loadUI was unable to record statistics to disk. Please make sure that there's enough free disk space." );
+		instance.tableWriter.flush();
 		instance.stopExecution();
 		if( instance.workspace != null )
 		{
@@ -352,22 +419,28 @@ public abstract class ExecutionManagerImpl<Type extends DataSource> implements E
 	private synchronized void createTrackSourceLevelTable( String dbName, String trackId, int interpolationLevel,
 			String source )
 	{
-		if( tableRegistry.getTable( dbName, buildDataTableName( trackId, interpolationLevel, source ) ) != null )
+		String tableName = buildDataTableName( trackId, interpolationLevel, source );
+		ColumnarStore columnarStore = columnarStores.get( dbName );
+		if( columnarStore == null ? tableRegistry.getTable( dbName, tableName ) != null : columnarStore
+				.isOpen( tableName ) )
 		{
 			return;
 		}
 		try
 		{
 			// create data table
-			TrackDescriptor td = trackDescriptors.get( trackId );
-			ImmutableMap.Builder<String, Class<? extends Number>> builder = ImmutableMap.builder();
-			for( java.util.Map.Entry<String, Class<? extends Number>> entry : td.getValueNames().entrySet() )
+			ImmutableMap<String, Class<? extends Number>> columnNameMap = buildColumnNameMap( trackDescriptors
+					.get( trackId ) );
+
+			DataTable dtd = null;
+			if( columnarStore == null )
 			{
-				builder.put( columnNames.getUnchecked( entry.getKey() ), entry.getValue() );
+				dtd = new DataTable( dbName, tableName, columnNameMap, connectionRegistry, metadata, tableRegistry );
+			}
+			else
+			{
+				columnarStore.getOrCreate( tableName, columnNameMap );
 			}
-
-			DataTable dtd = new DataTable( dbName, buildDataTableName( td.getId(), interpolationLevel, source ),
-					builder.build(), connectionRegistry, metadata, tableRegistry );
 
 			SourceMetadataTable sources = ( SourceMetadataTable )tableRegistry.getTable( dbName,
 					SourceMetadataTable.SOURCE_TABLE_NAME );
@@ -389,9 +462,12 @@ public abstract class ExecutionManagerImpl<Type extends DataSource> implements E
 
 			// all SQL operations were successful so add created table into table
 			// registry
-			tableRegistry.put( dbName, dtd );
+			if( dtd != null )
+			{
+				tableRegistry.put( dbName, dtd );
+			}
 		}
-		catch( SQLException e )
+		catch( SQLException | IOException e )
 		{
 			log.error( "Exception thrown when attempting to create table for {}", trackDescriptors.get( trackId ) );
 			throw new RuntimeException( "Unable to create table for source!", e );
@@ -460,14 +536,29 @@ public abstract class ExecutionManagerImpl<Type extends DataSource> implements E
 			}
 		} );
 
+		ExecutionCatalog executionCatalog = getCatalog( baseDir );
+		List<ExecutionImpl> executions = new ArrayList<>();
+		List<File> uncatalogued = new ArrayList<>();
 		for( File executionDir : executionDirs )
 		{
-			ExecutionImpl execution = new ExecutionImpl( executionDir, this, testEventRegistry );
+			ExecutionCatalog.Entry entry = executionCatalog.get( executionDir );
+			if( entry == null )
+				uncatalogued.add( executionDir );
+			else
+				executions.add( new ExecutionImpl( executionDir, entry, this, testEventRegistry ) );
+		}
+		executions.addAll( readExecutionsInParallel( uncatalogued ) );
+
+		List<ExecutionCatalog.Entry> entries = new ArrayList<>();
+		for( ExecutionImpl execution : executions )
+		{
 			if( !executionMap.containsKey( execution.getId() ) )
 			{
 				executionMap.put( execution.getId(), execution );
 			}
+			entries.add( createCatalogEntry( execution ) );
 		}
+		executionCatalog.replaceAll( entries );
 
 		if( currentExecution != null && executionState != State.STOPPED )
 		{
@@ -479,6 +570,115 @@ public abstract class ExecutionManagerImpl<Type extends DataSource> implements E
 		return ImmutableSet.<Execution> copyOf( executionMap.values() );
 	}
 
+	/**
+	 * Reads executions which are missing from the ExecutionCatalog, measuring
+	 * their size on disk. Several executions are read in parallel, as this is
+	 * mostly spent waiting for the disk.
+	 */
+	private List<ExecutionImpl> readExecutionsInParallel( List<File> executionDirs )
+	{
+		if( executionDirs.isEmpty() )
+			return Collections.emptyList();
+
+		int threads = Math.min( executionDirs.size(), Runtime.getRuntime().availableProcessors() * 2 );
+		ExecutorService executor = Executors.newFixedThreadPool( threads );
+		try
+		{
+			List<Future<ExecutionImpl>> futures = new ArrayList<>();
+			for( final File executionDir : executionDirs )
+			{
+				futures.add( executor.submit( new Callable<ExecutionImpl>()
+				{
+					@Override
+					public ExecutionImpl call()
+					{
+						ExecutionImpl execution = new ExecutionImpl( executionDir, ExecutionManagerImpl.this,
+								testEventRegistry );
+						execution.setSizeOnDisk( FileUtil.getSize( executionDir ) );
+						return execution;
+					}
+				} ) );
+			}
+
+			List<ExecutionImpl> executions = new ArrayList<>();
+			for( Future<ExecutionImpl> future : futures )
+			{
+				try
+				{
+					executions.add( future.get() );
+				}
+				catch( ExecutionException e )
+				{
+					log.error( "Unable to read execution", e.getCause() );
+				}
+			}
+			return executions;
+		}
+		catch( InterruptedException e )
+		{
+			Thread.currentThread().interrupt();
+			throw new RuntimeException( "Interrupted while reading executions", e );
+		}
+		finally
+		{
+			executor.shutdownNow();
+		}
+	}
+
+	private ExecutionCatalog getCatalog( File baseDir )
+	{
+		ExecutionCatalog executionCatalog = catalog;
+		if( executionCatalog == null || !executionCatalog.getBaseDirectory().equals( baseDir ) )
+		{
+			executionCatalog = new ExecutionCatalog( baseDir );
+			catalog = executionCatalog;
+		}
+		return executionCatalog;
+	}
+
+	private static ExecutionCatalog.Entry createCatalogEntry( ExecutionImpl execution )
+	{
+		return new ExecutionCatalog.Entry( execution.getExecutionDir().getName(), execution.getId(),
+				execution.getLabel(), execution.getStartTime(), execution.getLength(), execution.isArchived(),
+				execution.getSizeOnDisk(), execution.getAttributesModified() );
+	}
+
+	/**
+	 * Updates the ExecutionCatalog Entry of an execution after its attributes
+	 * have been stored. The catalog itself is written a few seconds later, or
+	 * when an execution is stopped or released.
+	 */
+	void updateCatalog( ExecutionImpl execution )
+	{
+		ExecutionCatalog executionCatalog = catalog;
+		if( executionCatalog != null
+				&& executionCatalog.getBaseDirectory().equals( execution.getExecutionDir().getParentFile() ) )
+		{
+			executionCatalog.update( createCatalogEntry( execution ) );
+			if( catalogFlushScheduled.compareAndSet( false, true ) )
+			{
+				ScheduledExecutor.instance.schedule( new Runnable()
+				{
+					@Override
+					public void run()
+					{
+						catalogFlushScheduled.set( false );
+						flushCatalog();
+					}
+				}, CATALOG_FLUSH_DELAY, TimeUnit.SECONDS );
+			}
+		}
+	}
+
+	private void flushCatalog()
+	{
+		ExecutionCatalog executionCatalog = catalog;
+		if( executionCatalog != null )
+		{
+			executionCatalog.flush();
+		}
+	}
+
 	@Override
 	public final ExecutionImpl getExecution( String executionId )
 	{
@@ -520,8 +720,21 @@ public abstract class ExecutionManagerImpl<Type extends DataSource> implements E
 				// tables to table registry
 				List<TrackDescriptor> tracksToCreate = new ArrayList<>();
 				List<TableBase> createdTableList = new ArrayList<>();
+				ColumnarStore columnarStore = null;
+				TestEventLog testEventLog = null;
 				try
 				{
+					// executions stored in ColumnFiles only keep their metadata in the
+					// database, and their test events too unless they have a TestEventLog
+					if( ColumnarStore.exists( execution.getExecutionDir() ) )
+					{
+						columnarStore = ColumnarStore.create( execution.getExecutionDir() );
+					}
+					if( TestEventLog.exists( execution.getExecutionDir() ) )
+					{
+						testEventLog = TestEventLog.create( execution.getExecutionDir() );
+					}
+
 					// create source meta table
 					SourceMetadataTable sourceMetaTable = new SourceMetadataTable( dbName, connectionRegistry, metadata,
 							tableRegistry );
@@ -558,21 +771,19 @@ public abstract class ExecutionManagerImpl<Type extends DataSource> implements E
 						TrackDescriptor td = trackDescriptors.get( trackId );
 						if( td != null )
 						{
-							ImmutableMap.Builder<String, Class<? extends Number>> builder = ImmutableMap.builder();
-							for( java.util.Map.Entry<String, Class<? extends Number>> entry : td.getValueNames().entrySet() )
-							{
-								builder.put( columnNames.getUnchecked( entry.getKey() ), entry.getValue() );
-							}
-							ImmutableMap<String, Class<? extends Number>> columnNameMap = builder.build();
+							ImmutableMap<String, Class<? extends Number>> columnNameMap = buildColumnNameMap( td );
 
 							// create data tables
 							for( Integer level : levelTable.getLevels() )
 							{
 								for( String source : sourceMetaTable.getSourceNames() )
 								{
-									DataTable dtd = new DataTable( dbName, buildDataTableName( td.getId(), level, source ),
-											columnNameMap, connectionRegistry, metadata, tableRegistry );
-									createdTableList.add( dtd );
+									if( columnarStore == null )
+									{
+										DataTable dtd = new DataTable( dbName, buildDataTableName( td.getId(), level, source ),
+												columnNameMap, connectionRegistry, metadata, tableRegistry );
+										createdTableList.add( dtd );
+									}
 								}
 
 								// create event log tables for each level
@@ -586,6 +797,14 @@ public abstract class ExecutionManagerImpl<Type extends DataSource> implements E
 
 					// add created tables into table registry
 					tableRegistry.putAll( dbName, createdTableList );
+					if( columnarStore != null )
+					{
+						columnarStores.put( dbName, columnarStore );
+					}
+					if( testEventLog != null )
+					{
+						testEventLogs.put( dbName, testEventLog );
+					}
 
 					// create tracks and add them to execution
 					for( TrackDescriptor t : tracksToCreate )
@@ -598,8 +817,9 @@ public abstract class ExecutionManagerImpl<Type extends DataSource> implements E
 					executionPool.put( execution );
 
 				}
-				catch( SQLException e )
+				catch( SQLException | IOException e )
 				{
+					ReleasableUtils.releaseAll( columnarStore, testEventLog );
 					throw new RuntimeException( "Execution " + executionId + " is corrupted and can't be loaded", e );
 				}
 				finally
@@ -642,46 +862,35 @@ public abstract class ExecutionManagerImpl<Type extends DataSource> implements E
 	{
 		if( currentExecution != null )
 		{
-			Track track = getTrack( trackId );
-			if( track == null )
-			{
-				log.debug(
-						"Track is not registrated yet, unable to store entry: {} for source: {} at level: {} and trackId: {}.",
-						new Object[] { entry, source, interpolationLevel, trackId } );
-				return;
-			}
-
-			// Adjust timestamp:
-			long timestamp = entry.getTimestamp();
-			timestamp -= ( currentExecution.getStartTime() ); //+ totalPause );
-
-			AdjustedEntry adjustedEntry = new AdjustedEntry( entry, timestamp );
-			String key = trackId + ":" + source + ":" + String.valueOf( interpolationLevel );
-			latestEntries.put( key, adjustedEntry );
-
-			currentExecution.updateLength( timestamp );
-			Map<String, Object> data = new HashMap<>();
-			data.put( DataTable.STATIC_FIELD_TIMESTAMP, timestamp );
+			openWriter( trackId, source, interpolationLevel ).write( entry );
+		}
+	}
 
-			for( String name : track.getTrackDescriptor().getValueNames().keySet() )
-			{
-				data.put( columnNames.getUnchecked( name ), entry.getValue( name ) );
-			}
-			try
-			{
-				write( trackId, source, interpolationLevel, data );
-			}
-			catch( SQLException e )
+	@Override
+	public TrackWriter openWriter( String trackId, String source, int interpolationLevel )
+	{
+		String key = buildEntryKey( trackId, source, interpolationLevel );
+		TrackWriterImpl writer = writers.get( key );
+		if( writer == null )
+		{
+			TrackWriterImpl newWriter = new TrackWriterImpl( trackId, source, interpolationLevel, key );
+			writer = writers.putIfAbsent( key, newWriter );
+			if( writer == null )
 			{
-				log.error( UNABLE_TO_WRITE_DATA_TO_THE_DATABASE, e );
-				log.error( "Unable to store entry: {} for source: {} at level: {} and trackId: {}", new Object[] { entry,
-						source, interpolationLevel, trackId } );
+				writer = newWriter;
 			}
+		}
 
-			for( ValueListener<? super Entry> listener : ImmutableSet.copyOf( listeners.get( key ) ) )
-			{
-				listener.update( adjustedEntry );
-			}
+		return writer;
+	}
+
+	@Override
+	public void writeSummaryEntry( String trackId, String source, Entry entry )
+	{
+		ExecutionImpl execution = currentExecution;
+		if( execution != null )
+		{
+			execution.getSummary().putEntry( trackId, source, entry );
 		}
 	}
 
@@ -694,7 +903,29 @@ public abstract class ExecutionManagerImpl<Type extends DataSource> implements E
 	@Override
 	public Entry getLastEntry( String trackId, String source, int interpolationLevel )
 	{
-		return latestEntries.get( trackId + ":" + source + ":" + String.valueOf( interpolationLevel ) );
+		AtomicReference<Entry> latestEntry = latestEntries.get( buildEntryKey( trackId, source, interpolationLevel ) );
+		return latestEntry == null ? null : latestEntry.get();
+	}
+
+	private static String buildEntryKey( String trackId, String source, int interpolationLevel )
+	{
+		return trackId + ":" + source + ":" + String.valueOf( interpolationLevel );
+	}
+
+	private EntryListeners getEntryListeners( String key )
+	{
+		EntryListeners entryListeners = listeners.get( key );
+		if( entryListeners == null )
+		{
+			EntryListeners newListeners = new EntryListeners();
+			entryListeners = listeners.putIfAbsent( key, newListeners );
+			if( entryListeners == null )
+			{
+				entryListeners = newListeners;
+			}
+		}
+
+		return entryListeners;
 	}
 
 	@Override
@@ -707,10 +938,14 @@ public abstract class ExecutionManagerImpl<Type extends DataSource> implements E
 
 			//this will ensure that source exist 
 			TestEventSourceConfig sourceConfig = getConfigForSource( typeLabel, source );
+			Long sourceId = sourceConfig.getId();
 
-			TestEventSourceTable eventSourceTable = ( TestEventSourceTable )tableRegistry.getTable( currentExecution
-					.getExecutionDir().getName(), TestEventSourceTable.TABLE_NAME );
-			Long sourceId = eventSourceTable.getIdByHash( sourceConfig.getHash() );
+			TestEventLog testEventLog = testEventLogs.get( currentExecution.getExecutionDir().getName() );
+			if( testEventLog != null )
+			{
+				testEventLog.append( interpolationLevel, timestamp, sourceId, testEventData );
+				return;
+			}
 
 			Map<String, Object> data = new HashMap<>();
 			data.put( TestEventTable.STATIC_FIELD_TIMESTAMP, timestamp );
@@ -739,7 +974,14 @@ public abstract class ExecutionManagerImpl<Type extends DataSource> implements E
 		}
 	}
 
-	private synchronized TestEventTable getOrCreateTestEventDataTable( ExecutionImpl execution, int interpolationLevel )
+	private TestEventTable getOrCreateTestEventDataTable( ExecutionImpl execution, int interpolationLevel )
+	{
+		TableBase table = tableRegistry.getTable( execution.getExecutionDir().getName(),
+				buildTestEventTableName( interpolationLevel ) );
+		return table != null ? ( TestEventTable )table : createTestEventDataTable( execution, interpolationLevel );
+	}
+
+	private synchronized TestEventTable createTestEventDataTable( ExecutionImpl execution, int interpolationLevel )
 	{
 		String dbName = execution.getExecutionDir().getName();
 		String name = buildTestEventTableName( interpolationLevel );
@@ -907,8 +1149,17 @@ public abstract class ExecutionManagerImpl<Type extends DataSource> implements E
 			loadExecution( executionId );
 			TestEventSourceTable eventSourceTable = getTestEventSourceTable( executionId );
 			List<Long> sourceIds = getSourceIds( sources, eventSourceTable );
-			TestEventTable eventTable = getOrCreateTestEventDataTable( getExecution( executionId ), 0 );
-			List<Map<String, Object>> eventDataList = eventTable.getByCount( sourceIds, offset, limit );
+			TestEventLog testEventLog = getTestEventLog( executionId );
+			List<Map<String, Object>> eventDataList;
+			if( testEventLog != null )
+			{
+				eventDataList = testEventLog.read( 0, offset, limit, sourceIds );
+			}
+			else
+			{
+				TestEventTable eventTable = getOrCreateTestEventDataTable( getExecution( executionId ), 0 );
+				eventDataList = eventTable.getByCount( sourceIds, offset, limit );
+			}
 
 			return parseTestEventDbResults( executionId, eventSourceTable, eventDataList, 0 );
 		}
@@ -916,7 +1167,7 @@ public abstract class ExecutionManagerImpl<Type extends DataSource> implements E
 		{
 			log.error( UNABLE_TO_READ_DATA_FROM_THE_DATABASE, e );
 		}
-		catch( SQLException e )
+		catch( SQLException | IOException e )
 		{
 			log.error( UNABLE_TO_READ_DATA_FROM_THE_DATABASE, e );
 		}
@@ -931,8 +1182,18 @@ public abstract class ExecutionManagerImpl<Type extends DataSource> implements E
 			loadExecution( executionId );
 			TestEventSourceTable eventSourceTable = getTestEventSourceTable( executionId );
 			List<Long> sourceIds = getSourceIds( sources, eventSourceTable );
-			TestEventTable eventTable = getOrCreateTestEventDataTable( getExecution( executionId ), interpolationLevel );
-			List<Map<String, Object>> eventDataList = eventTable.getByTimeRange( sourceIds, startTime, endTime );
+			TestEventLog testEventLog = getTestEventLog( executionId );
+			List<Map<String, Object>> eventDataList;
+			if( testEventLog != null )
+			{
+				eventDataList = testEventLog.readRange( interpolationLevel, startTime, endTime, sourceIds );
+			}
+			else
+			{
+				TestEventTable eventTable = getOrCreateTestEventDataTable( getExecution( executionId ),
+						interpolationLevel );
+				eventDataList = eventTable.getByTimeRange( sourceIds, startTime, endTime );
+			}
 
 			return parseTestEventDbResults( executionId, eventSourceTable, eventDataList, interpolationLevel );
 		}
@@ -940,13 +1201,18 @@ public abstract class ExecutionManagerImpl<Type extends DataSource> implements E
 		{
 			log.error( UNABLE_TO_READ_DATA_FROM_THE_DATABASE, e );
 		}
-		catch( SQLException e )
+		catch( SQLException | IOException e )
 		{
 			log.error( UNABLE_TO_READ_DATA_FROM_THE_DATABASE, e );
 		}
 		return ImmutableList.of();
 	}
 
+	private TestEventLog getTestEventLog( String executionId )
+	{
+		return testEventLogs.get( getExecution( executionId ).getExecutionDir().getName() );
+	}
+
 	private TestEventSourceTable getTestEventSourceTable( String executionId )
 	{
 		return ( TestEventSourceTable )tableRegistry.getTable( getExecution( executionId ).getExecutionDir().getName(),
@@ -1023,6 +1289,12 @@ public abstract class ExecutionManagerImpl<Type extends DataSource> implements E
 
 			List<Long> sourceIds = eventSourceTable.getIdsByHash( hashes );
 
+			TestEventLog testEventLog = getTestEventLog( executionId );
+			if( testEventLog != null )
+			{
+				return testEventLog.count( 0, sourceIds );
+			}
+
 			TestEventTable eventTable = getOrCreateTestEventDataTable( getExecution( executionId ), 0 );
 
 			return eventTable.getCount( sourceIds );
@@ -1034,63 +1306,104 @@ public abstract class ExecutionManagerImpl<Type extends DataSource> implements E
 		}
 	}
 
-	private static String buildDataTableName( String trackId, long interpolationLevel, String source )
+	private static ImmutableMap<String, Class<? extends Number>> buildColumnNameMap( TrackDescriptor td )
 	{
-		source = source.replaceAll( "[^A-Za-z0-9]", "" );
-		return trackId + "_" + interpolationLevel + "_" + source;
+		ImmutableMap.Builder<String, Class<? extends Number>> builder = ImmutableMap.builder();
+		for( java.util.Map.Entry<String, Class<? extends Number>> entry : td.getValueNames().entrySet() )
+		{
+			builder.put( columnNames.getUnchecked( entry.getKey() ), entry.getValue() );
+		}
+
+		return builder.build();
 	}
 
-	private static String buildTestEventTableName( int interpolationLevel )
+	private static ColumnFile getColumnFile( ColumnarStore columnarStore, String name ) throws SQLException
 	{
-		return TestEventTable.TABLE_NAME_PREFIX + "_" + interpolationLevel;
+		try
+		{
+			return columnarStore.get( name );
+		}
+		catch( IOException e )
+		{
+			throw new SQLException( e );
+		}
 	}
 
-	private void write( String trackId, String source, int interpolationLevel, Map<String, Object> data )
-			throws SQLException
+	private void flushColumnarStore( ExecutionImpl execution )
 	{
-		if( executionState == State.STOPPED )
+		ColumnarStore columnarStore = columnarStores.get( execution.getExecutionDir().getName() );
+		if( columnarStore != null )
 		{
-			// This will occur from time to time because sometimes a
-			// StatisticHolder will get the START_ACTION event and trigger
-			// StatisticWriter (which will write it's starting values) before the
-			// ProjectExecutionManager have started a new Execution. One way to get
-			// around this would be to allow addEventListener(... , ... , priority
-			// ).
-			log.debug( "Write request to STOPPED execution ignored." );
-			return;
+			try
+			{
+				columnarStore.flush();
+			}
+			catch( IOException e )
+			{
+				log.error( UNABLE_TO_WRITE_DATA_TO_THE_DATABASE, e );
+			}
 		}
+	}
 
-		// check if source is registered, and register it and create relevant
-		// tables if necessary
-		String dbName = currentExecution.getExecutionDir().getName();
-		createTrackSourceLevelTable( dbName, trackId, interpolationLevel, source );
-
-		TableBase dtd = tableRegistry.getTable( currentExecution.getExecutionDir().getName(),
-				buildDataTableName( trackId, interpolationLevel, source ) );
+	private static String buildDataTableName( String trackId, long interpolationLevel, String source )
+	{
+		source = source.replaceAll( "[^A-Za-z0-9]", "" );
+		return trackId + "_" + interpolationLevel + "_" + source;
+	}
 
-		dtd.insert( data );
+	private static String buildTestEventTableName( int interpolationLevel )
+	{
+		return TestEventTable.TABLE_NAME_PREFIX + "_" + interpolationLevel;
 	}
 
 	public Map<String, Object> readNext( String executionId, String trackId, String source, long startTime,
 			int interpolationLevel ) throws SQLException
 	{
-		TableBase dtd = tableRegistry.getTable( getExecution( executionId ).getExecutionDir().getName(),
-				buildDataTableName( trackId, interpolationLevel, source ) );
+		String dbName = getExecution( executionId ).getExecutionDir().getName();
+		String tableName = buildDataTableName( trackId, interpolationLevel, source );
+		ColumnarStore columnarStore = columnarStores.get( dbName );
 
 		Track track = getTrack( trackId );
 
-		Map<String, Object> data = new HashMap<>();
-		if( dtd == null || track == null )
+		Map<String, Object> rawData;
+		if( columnarStore != null )
 		{
-			// if table or track does not exist return empty set
-			return data;
+			ColumnFile columnFile = getColumnFile( columnarStore, tableName );
+			if( columnFile == null || track == null )
+			{
+				// if file or track does not exist return empty set
+				return new HashMap<>();
+			}
+
+			try
+			{
+				rawData = columnFile.readFirst( startTime, System.currentTimeMillis() );
+			}
+			catch( IOException e )
+			{
+				throw new SQLException( e );
+			}
 		}
+		else
+		{
+			TableBase dtd = tableRegistry.getTable( dbName, tableName );
+
+			Map<String, Object> data = new HashMap<>();
+			if( dtd == null || track == null )
+			{
+				// if table or track does not exist return empty set
+				return data;
+			}
+
+			tableWriter.flush( dtd );
 
-		data.put( DataTable.SELECT_ARG_TIMESTAMP_GTE, startTime );
-		data.put( DataTable.SELECT_ARG_TIMESTAMP_LTE, System.currentTimeMillis() );
+			data.put( DataTable.SELECT_ARG_TIMESTAMP_GTE, startTime );
+			data.put( DataTable.SELECT_ARG_TIMESTAMP_LTE, System.currentTimeMillis() );
+
+			rawData = dtd.selectFirst( data );
+		}
 
 		HashMap<String, Object> cleanedData = Maps.newHashMap();
-		Map<String, Object> rawData = dtd.selectFirst( data );
 		if( !rawData.isEmpty() )
 		{
 			for( String name : track.getTrackDescriptor().getValueNames().keySet() )
@@ -1103,56 +1416,116 @@ public abstract class ExecutionManagerImpl<Type extends DataSource> implements E
 		return cleanedData;
 	}
 
-	public Iterable<Map<String, Object>> read( String executionId, String trackId, String source, long startTime,
-			long endTime, int interpolationLevel ) throws SQLException
+	/**
+	 * Opens a RangeCursor over a range of a Track. The valueNames refer to the
+	 * value names of the TrackDescriptor, where unknown names give NaN values.
+	 */
+	public RangeCursor openRange( String executionId, final String trackId, final String source, long startTime,
+			long endTime, final int interpolationLevel, List<String> valueNames ) throws SQLException
 	{
-		TableBase dtd = tableRegistry.getTable( getExecution( executionId ).getExecutionDir().getName(),
-				buildDataTableName( trackId, interpolationLevel, source ) );
+		final Track track = getTrack( executionId, trackId );
+		final ExecutionImpl execution = getExecution( executionId );
 
-		Track track = getTrack( executionId, trackId );
+		if( track == null )
+		{
+			return RangeCursors.empty( valueNames );
+		}
 
-		if( dtd == null || track == null )
+		TrackWriterImpl writer = writers.get( buildEntryKey( trackId, source, interpolationLevel ) );
+		if( writer != null )
 		{
-			// if table or track does not exist return empty set
-			return new ArrayList<>();
+			writer.flushInvalidation( execution );
 		}
 
-		Map<String, Object> data = new HashMap<>();
-		data.put( DataTable.SELECT_ARG_TIMESTAMP_GTE, startTime );
-		data.put( DataTable.SELECT_ARG_TIMESTAMP_LTE, endTime );
+		List<String> blockNames = ImmutableList.copyOf( track.getTrackDescriptor().getValueNames().keySet() );
+		return rangeBlockCache.openRange( executionId, trackId, source, interpolationLevel, startTime, endTime,
+				execution.getLength(), blockNames, valueNames, new RangeBlockCache.Loader()
+				{
+					@Override
+					public RangeCursor open( long start, long end, List<String> names ) throws SQLException
+					{
+						return openUncachedRange( execution, track, source, start, end, interpolationLevel, names );
+					}
+				} );
+	}
 
-		final Set<String> descriptorNames = track.getTrackDescriptor().getValueNames().keySet();
+	private RangeCursor openUncachedRange( ExecutionImpl execution, Track track, String source, long startTime,
+			long endTime, int interpolationLevel, List<String> valueNames ) throws SQLException
+	{
+		String dbName = execution.getExecutionDir().getName();
+		String tableName = buildDataTableName( track.getId(), interpolationLevel, source );
+		ColumnarStore columnarStore = columnarStores.get( dbName );
 
-		return Iterables.transform( dtd.select( data ), new Function<Map<String, Object>, Map<String, Object>>()
+		// resolve the column of each value once, rather than for each row
+		Set<String> descriptorNames = track.getTrackDescriptor().getValueNames().keySet();
+		List<String> columns = new ArrayList<>( valueNames.size() );
+		for( String name : valueNames )
 		{
-			@Override
-			public Map<String, Object> apply( Map<String, Object> rawData )
+			columns.add( descriptorNames.contains( name ) ? columnNames.getUnchecked( name ) : null );
+		}
+
+		if( columnarStore != null )
+		{
+			ColumnFile columnFile = getColumnFile( columnarStore, tableName );
+			if( columnFile == null )
 			{
-				HashMap<String, Object> data = Maps.newHashMap();
-				for( String name : descriptorNames )
-				{
-					data.put( name, rawData.remove( columnNames.getUnchecked( name ) ) );
-				}
-				data.putAll( rawData );
+				return RangeCursors.empty( valueNames );
+			}
 
-				return data;
+			try
+			{
+				return columnFile.openRange( startTime, endTime, valueNames, columns );
 			}
-		} );
+			catch( IOException e )
+			{
+				throw new SQLException( e );
+			}
+		}
+
+		DataTable dtd = ( DataTable )tableRegistry.getTable( dbName, tableName );
+		if( dtd == null )
+		{
+			return RangeCursors.empty( valueNames );
+		}
+
+		tableWriter.flush( dtd );
+
+		return dtd.openRange( startTime, endTime, valueNames, columns );
+	}
+
+	/**
+	 * Gets the hit, miss and eviction counts of the cache used when reading
+	 * ranges of Tracks.
+	 */
+	public CacheStats getRangeCacheStats()
+	{
+		return rangeBlockCache.getStats();
 	}
 
 	public void deleteTrack( String executionId, String trackId ) throws SQLException
 	{
+		tableWriter.flush();
+		writerGeneration.incrementAndGet();
+		rangeBlockCache.invalidateTrack( executionId, trackId );
 		String dbName = getExecution( executionId ).getExecutionDir().getName();
 		SourceMetadataTable sources = ( SourceMetadataTable )tableRegistry.getTable( dbName,
 				SourceMetadataTable.SOURCE_TABLE_NAME );
 		InterpolationLevelTable levels = ( InterpolationLevelTable )tableRegistry.getTable( dbName,
 				InterpolationLevelTable.INTERPOLATION_LEVEL_TABLE_NAME );
 
+		ColumnarStore columnarStore = columnarStores.get( dbName );
+
 		TableBase table;
 		for( Integer level : levels.getLevels() )
 		{
 			for( String s : sources.getSourceNames() )
 			{
+				if( columnarStore != null )
+				{
+					columnarStore.delete( buildDataTableName( trackId, level, s ) );
+					continue;
+				}
+
 				table = tableRegistry.getTable( dbName, buildDataTableName( trackId, level, s ) );
 				if( table != null )
 				{
@@ -1177,6 +1550,11 @@ public abstract class ExecutionManagerImpl<Type extends DataSource> implements E
 		{
 			FileUtil.deleteDirectory( execution.getExecutionDir() );
 		}
+		ExecutionCatalog executionCatalog = catalog;
+		if( executionCatalog != null )
+		{
+			executionCatalog.remove( execution.getExecutionDir().getName() );
+		}
 		String listName = execution.isArchived() ? ARCHIVE_EXECUTIONS : RECENT_EXECUTIONS;
 		fireEvent( new CollectionEvent( this, listName, CollectionEvent.Event.REMOVED, execution ) );
 	}
@@ -1190,11 +1568,16 @@ public abstract class ExecutionManagerImpl<Type extends DataSource> implements E
 	{
 		if( execution != null )
 		{
+			tableWriter.flush();
+			writerGeneration.incrementAndGet();
 			String dbName = execution.getExecutionDir().getName();
+			rangeBlockCache.invalidateTrack( execution.getId(), null );
+			ReleasableUtils.releaseAll( columnarStores.remove( dbName ), testEventLogs.remove( dbName ) );
 			tableRegistry.release( dbName );
 			connectionRegistry.release( dbName );
 			execution.setLoaded( false );
 		}
+		flushCatalog();
 
 		fireEvent( new BaseEvent( this, Releasable.RELEASED ) );
 	}
@@ -1202,7 +1585,14 @@ public abstract class ExecutionManagerImpl<Type extends DataSource> implements E
 	@Override
 	public void release()
 	{
-		ReleasableUtils.releaseAll( tableRegistry, connectionRegistry, eventSupport );
+		tableWriter.flush();
+		writerGeneration.incrementAndGet();
+		ReleasableUtils.releaseAll( columnarStores.values(), testEventLogs.values(), tableRegistry, connectionRegistry,
+				eventSupport );
+		columnarStores.clear();
+		testEventLogs.clear();
+		rangeBlockCache.invalidateAll();
+		flushCatalog();
 		executionMap.clear();
 		loadedExecutionsFromDisk = false;
 		ecs.removeAllExecutionListeners();
@@ -1228,9 +1618,26 @@ public abstract class ExecutionManagerImpl<Type extends DataSource> implements E
 		{
 			State oldState = executionState;
 			executionState = State.STOPPED;
+			tableWriter.flush();
+			flushColumnarStore( currentExecution );
+			TestEventLog testEventLog = testEventLogs.get( currentExecution.getExecutionDir().getName() );
+			if( testEventLog != null )
+			{
+				testEventLog.flush();
+				long dropped = testEventLog.getDroppedCount();
+				if( dropped > 0 )
+				{
+					log.warn( "{} test events could not be written in time and were dropped", dropped );
+					currentExecution.setAttribute( DROPPED_TEST_EVENTS_ATTRIBUTE, String.valueOf( dropped ) );
+				}
+			}
+			currentExecution.setSizeOnDisk( FileUtil.getSize( currentExecution.getExecutionDir() ) );
 			currentExecution.flushLength();
+			flushCatalog();
 			latestEntries.clear();
+			writerGeneration.incrementAndGet();
 			ecs.fireExecutionStopped( oldState );
+			currentExecution.getSummary().store();
 			fireEvent( new CollectionEvent( this, RECENT_EXECUTIONS, CollectionEvent.Event.ADDED, currentExecution ) );
 			log.debug( "State changed: " + oldState.name() + " -> STOPPED " );
 		}
@@ -1322,14 +1729,329 @@ public abstract class ExecutionManagerImpl<Type extends DataSource> implements E
 	public void addEntryListener( String trackId, String source, int interpolationLevel,
 			ValueListener<? super Entry> listener )
 	{
-		listeners.put( trackId + ":" + source + ":" + String.valueOf( interpolationLevel ), listener );
+		getEntryListeners( buildEntryKey( trackId, source, interpolationLevel ) ).add( listener );
 	}
 
 	@Override
 	public void removeEntryListener( String trackId, String source, int interpolationLevel,
 			ValueListener<? super Entry> listener )
 	{
-		listeners.remove( trackId + ":" + source + ":" + String.valueOf( interpolationLevel ), listener );
+		getEntryListeners( buildEntryKey( trackId, source, interpolationLevel ) ).remove( listener );
+	}
+
+	/**
+	 * The ValueListeners for one Track, source and interpolation level. The
+	 * listeners are weakly referenced, and kept in an immutable list which is
+	 * replaced on changes, so that firing doesn't need to copy or lock.
+	 */
+	private static class EntryListeners
+	{
+		private volatile ImmutableList<WeakReference<ValueListener<? super Entry>>> references = ImmutableList.of();
+
+		public synchronized void add( ValueListener<? super Entry> listener )
+		{
+			ImmutableList.Builder<WeakReference<ValueListener<? super Entry>>> builder = ImmutableList.builder();
+			for( WeakReference<ValueListener<? super Entry>> reference : references )
+			{
+				ValueListener<? super Entry> existing = reference.get();
+				if( listener.equals( existing ) )
+					return;
+				if( existing != null )
+					builder.add( reference );
+			}
+			references = builder.add( new WeakReference<ValueListener<? super Entry>>( listener ) ).build();
+		}
+
+		public synchronized void remove( ValueListener<? super Entry> listener )
+		{
+			ImmutableList.Builder<WeakReference<ValueListener<? super Entry>>> builder = ImmutableList.builder();
+			for( WeakReference<ValueListener<? super Entry>> reference : references )
+			{
+				ValueListener<? super Entry> existing = reference.get();
+				if( existing != null && !listener.equals( existing ) )
+					builder.add( reference );
+			}
+			references = builder.build();
+		}
+
+		public void fire( Entry entry )
+		{
+			for( WeakReference<ValueListener<? super Entry>> reference : references )
+			{
+				ValueListener<? super Entry> listener = reference.get();
+				if( listener != null )
+					listener.update( entry );
+			}
+		}
+	}
+
+	/**
+	 * TrackWriter for the current Execution. Resolves the Track, the value
+	 * columns and the latest Entry slot when first used in an Execution, and the
+	 * table or ColumnFile to write to on the first write while running, so that
+	 * subsequent writes only need to build the row and queue it.
+	 */
+	private class TrackWriterImpl implements TrackWriter
+	{
+		private final String trackId;
+		private final String source;
+		private final int interpolationLevel;
+		private final String key;
+		private final EntryListeners entryListeners;
+
+		private volatile Binding binding;
+
+		public TrackWriterImpl( String trackId, String source, int interpolationLevel, String key )
+		{
+			this.trackId = trackId;
+			this.source = source;
+			this.interpolationLevel = interpolationLevel;
+			this.key = key;
+			entryListeners = getEntryListeners( key );
+		}
+
+		@Override
+		public void write( Entry entry )
+		{
+			ExecutionImpl execution = currentExecution;
+			if( execution == null )
+				return;
+
+			Binding current = binding;
+			if( current == null || current.execution != execution || current.generation != writerGeneration.get() )
+			{
+				current = bind( execution );
+				if( current == null )
+				{
+					log.debug(
+							"Track is not registrated yet, unable to store entry: {} for source: {} at level: {} and trackId: {}.",
+							new Object[] { entry, source, interpolationLevel, trackId } );
+					return;
+				}
+			}
+
+			// Adjust timestamp:
+			long timestamp = entry.getTimestamp() - execution.getStartTime();
+
+			Entry adjustedEntry = entry instanceof SchemaEntry ? ( ( SchemaEntry )entry ).withTimestamp( timestamp )
+					: new AdjustedEntry( entry, timestamp );
+			current.latestEntry.set( adjustedEntry );
+
+			execution.updateLength( timestamp );
+			if( executionState == State.STOPPED )
+			{
+				// This will occur from time to time because sometimes a
+				// StatisticHolder will get the START_ACTION event and trigger
+				// StatisticWriter (which will write it's starting values) before the
+				// ProjectExecutionManager have started a new Execution.
+				log.debug( "Write request to STOPPED execution ignored." );
+			}
+			else
+			{
+				Object[] values = new Object[current.names.length];
+				for( int i = 0; i < values.length; i++ )
+				{
+					values[i] = entry.getValue( current.names[i] );
+				}
+				current.append( timestamp, values );
+			}
+
+			entryListeners.fire( adjustedEntry );
+		}
+
+		@Override
+		public Entry getLastEntry()
+		{
+			AtomicReference<Entry> latestEntry = latestEntries.get( key );
+			return latestEntry == null ? null : latestEntry.get();
+		}
+
+		/**
+		 * Invalidates the cached block last written to, if this writer is bound
+		 * to the given execution. Called before reading through the
+		 * RangeBlockCache.
+		 */
+		private void flushInvalidation( ExecutionImpl execution )
+		{
+			Binding current = binding;
+			if( current != null && current.execution == execution )
+			{
+				current.flushInvalidation();
+			}
+		}
+
+		private Binding bind( ExecutionImpl execution )
+		{
+			int generation = writerGeneration.get();
+			Track track = execution.getTrack( trackId );
+			if( track == null )
+				return null;
+
+			AtomicReference<Entry> latestEntry = latestEntries.get( key );
+			if( latestEntry == null )
+			{
+				AtomicReference<Entry> newEntry = new AtomicReference<>();
+				latestEntry = latestEntries.putIfAbsent( key, newEntry );
+				if( latestEntry == null )
+					latestEntry = newEntry;
+			}
+
+			Binding newBinding = new Binding( this, execution, generation, track.getTrackDescriptor(), latestEntry );
+			binding = newBinding;
+			return newBinding;
+		}
+	}
+
+	/**
+	 * The state of a TrackWriterImpl which has been resolved for a specific
+	 * Execution. Rather than invalidating the RangeBlockCache for every row,
+	 * the block last written to is remembered as dirty. It is invalidated once
+	 * rows are written to another block, or before the next read of the track.
+	 */
+	private class Binding
+	{
+		private static final long NO_BLOCK = Long.MIN_VALUE;
+
+		private final TrackWriterImpl writer;
+		private final ExecutionImpl execution;
+		private final int generation;
+		private final String[] names;
+		private final String[] columns;
+		private final AtomicReference<Entry> latestEntry;
+		private final AtomicLong dirtyBlock = new AtomicLong( NO_BLOCK );
+
+		private TableBase table;
+		private ColumnFile columnFile;
+		private int[] fileIndexes;
+
+		public Binding( TrackWriterImpl writer, ExecutionImpl execution, int generation, TrackDescriptor descriptor,
+				AtomicReference<Entry> latestEntry )
+		{
+			this.writer = writer;
+			this.execution = execution;
+			this.generation = generation;
+			this.latestEntry = latestEntry;
+
+			names = descriptor.getValueNames().keySet().toArray( new String[0] );
+			columns = new String[names.length];
+			for( int i = 0; i < names.length; i++ )
+			{
+				columns[i] = columnNames.getUnchecked( names[i] );
+			}
+		}
+
+		/**
+		 * Appends a row, given as one value per value name of the
+		 * TrackDescriptor, in the order of names.
+		 */
+		public void append( long timestamp, Object[] values )
+		{
+			try
+			{
+				if( table == null && columnFile == null )
+				{
+					resolve();
+				}
+
+				if( columnFile != null )
+				{
+					columnFile.append( timestamp, fileIndexes == null ? values : toFileOrder( values ) );
+				}
+				else
+				{
+					// data tables bind their insert arguments by column name
+					Map<String, Object> data = new HashMap<>( values.length * 2 + 2 );
+					data.put( DataTable.STATIC_FIELD_TIMESTAMP, timestamp );
+					for( int i = 0; i < values.length; i++ )
+					{
+						data.put( columns[i], values[i] );
+					}
+					tableWriter.write( table, data );
+				}
+			}
+			catch( IOException e )
+			{
+				log.error( UNABLE_TO_WRITE_DATA_TO_THE_DATABASE, e );
+				signalDiskProblem();
+			}
+
+			markDirty( RangeBlockCache.getBlock( writer.interpolationLevel, timestamp ) );
+		}
+
+		private Object[] toFileOrder( Object[] values )
+		{
+			Object[] fileValues = new Object[columnFile.getColumnCount()];
+			for( int i = 0; i < values.length; i++ )
+			{
+				if( fileIndexes[i] >= 0 )
+				{
+					fileValues[fileIndexes[i]] = values[i];
+				}
+			}
+
+			return fileValues;
+		}
+
+		private void markDirty( long block )
+		{
+			if( dirtyBlock.get() != block )
+			{
+				long previous = dirtyBlock.getAndSet( block );
+				if( previous != NO_BLOCK && previous != block )
+				{
+					invalidate( previous );
+				}
+			}
+		}
+
+		public void flushInvalidation()
+		{
+			long block = dirtyBlock.getAndSet( NO_BLOCK );
+			if( block != NO_BLOCK )
+			{
+				invalidate( block );
+			}
+		}
+
+		private void invalidate( long block )
+		{
+			rangeBlockCache.invalidateBlock( execution.getId(), writer.trackId, writer.source, writer.interpolationLevel,
+					block, execution.getLength() );
+		}
+
+		private void resolve() throws IOException
+		{
+			// check if source is registered, and register it and create relevant
+			// tables if necessary
+			String dbName = execution.getExecutionDir().getName();
+			createTrackSourceLevelTable( dbName, writer.trackId, writer.interpolationLevel, writer.source );
+
+			String tableName = buildDataTableName( writer.trackId, writer.interpolationLevel, writer.source );
+			ColumnarStore columnarStore = columnarStores.get( dbName );
+			if( columnarStore != null )
+			{
+				columnFile = columnarStore.get( tableName );
+				if( columnFile == null )
+				{
+					throw new IOException( "Missing column file for " + tableName );
+				}
+				fileIndexes = new int[columns.length];
+				boolean sameOrder = columns.length == columnFile.getColumnCount();
+				for( int i = 0; i < columns.length; i++ )
+				{
+					fileIndexes[i] = columnFile.getColumnIndex( columns[i] );
+					sameOrder &= fileIndexes[i] == i;
+				}
+				if( sameOrder )
+				{
+					fileIndexes = null;
+				}
+			}
+			else
+			{
+				table = tableRegistry.getTable( dbName, tableName );
+			}
+		}
 	}
 
 	private static class AdjustedEntry implements Entry
@@ -0,0 +1,169 @@
+/*
+ * Copyright 2013 SmartBear Software
+ * 
+ * Licensed under the EUPL, Version 1.1 or - as soon they will be approved by the European Commission - subsequent
+ * versions of the EUPL (the "Licence");
+ * You may not use this work except in compliance with the Licence.
+ * You may obtain a copy of the Licence at:
+ * 
+ * http://ec.europa.eu/idabc/eupl
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the Licence is
+ * distributed on an "AS IS" basis, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the Licence for the specific language governing permissions and limitations
+ * under the Licence.
+ */
+package com.eviware.loadui.impl.statistics.store;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.eviware.loadui.api.statistics.store.Entry;
+import com.eviware.loadui.util.statistics.store.EntryImpl;
+import com.google.common.collect.HashBasedTable;
+import com.google.common.collect.Table;
+
+/**
+ * The summary Entries of an Execution, one per Track and source, stored in a
+ * file in the execution directory. Only integral and floating point values
+ * are stored, other Number types are left out.
+ */
+public class ExecutionSummary
+{
+	public static final String FILE_NAME = "summary.rollup";
+
+	private static final int VERSION = 1;
+
+	private static final byte TYPE_LONG = 'L';
+	private static final byte TYPE_DOUBLE = 'D';
+
+	private static final Logger log = LoggerFactory.getLogger( ExecutionSummary.class );
+
+	private final File file;
+	private final Table<String, String, Entry> entries = HashBasedTable.create();
+	private boolean dirty = false;
+
+	public ExecutionSummary( File executionDir )
+	{
+		file = new File( executionDir, FILE_NAME );
+
+		if( file.exists() )
+		{
+			try
+			{
+				load();
+			}
+			catch( IOException e )
+			{
+				log.error( "Could not read the execution summary!", e );
+				entries.clear();
+			}
+		}
+	}
+
+	public synchronized Entry getEntry( String trackId, String source )
+	{
+		return entries.get( trackId, source );
+	}
+
+	public synchronized void putEntry( String trackId, String source, Entry entry )
+	{
+		Map<String, Number> values = new HashMap<>();
+		for( String name : entry.getNames() )
+		{
+			Number value = entry.getValue( name );
+			if( isIntegral( value ) || value instanceof Double || value instanceof Float )
+			{
+				values.put( name, value );
+			}
+		}
+		entries.put( trackId, source, new EntryImpl( entry.getTimestamp(), values ) );
+		dirty = true;
+	}
+
+	/**
+	 * Writes the summary to disk, if anything has been added since it was last
+	 * written.
+	 */
+	public synchronized void store()
+	{
+		if( !dirty )
+			return;
+
+		try (DataOutputStream out = new DataOutputStream( new BufferedOutputStream( new FileOutputStream( file ) ) ))
+		{
+			out.writeInt( VERSION );
+			out.writeInt( entries.size() );
+			for( Table.Cell<String, String, Entry> cell : entries.cellSet() )
+			{
+				Entry entry = cell.getValue();
+				out.writeUTF( cell.getRowKey() );
+				out.writeUTF( cell.getColumnKey() );
+				out.writeLong( entry.getTimestamp() );
+				out.writeInt( entry.getNames().size() );
+				for( String name : entry.getNames() )
+				{
+					Number value = entry.getValue( name );
+					out.writeUTF( name );
+					if( isIntegral( value ) )
+					{
+						out.writeByte( TYPE_LONG );
+						out.writeLong( value.longValue() );
+					}
+					else
+					{
+						out.writeByte( TYPE_DOUBLE );
+						out.writeDouble( value.doubleValue() );
+					}
+				}
+			}
+			dirty = false;
+		}
+		catch( IOException e )
+		{
+			log.error( "Could not store the execution summary!", e );
+		}
+	}
+
+	private void load() throws IOException
+	{
+		try (DataInputStream in = new DataInputStream( new BufferedInputStream( new FileInputStream( file ) ) ))
+		{
+			if( in.readInt() != VERSION )
+			{
+				return;
+			}
+			int count = in.readInt();
+			for( int i = 0; i < count; i++ )
+			{
+				String trackId = in.readUTF();
+				String source = in.readUTF();
+				long timestamp = in.readLong();
+				int valueCount = in.readInt();
+				Map<String, Number> values = new HashMap<>();
+				for( int j = 0; j < valueCount; j++ )
+				{
+					String name = in.readUTF();
+					values.put( name, in.readByte() == TYPE_LONG ? ( Number )in.readLong() : ( Number )in.readDouble() );
+				}
+				entries.put( trackId, source, new EntryImpl( timestamp, values ) );
+			}
+		}
+	}
+
+	private static boolean isIntegral( Number value )
+	{
+		return value instanceof Long || value instanceof Integer || value instanceof Short || value instanceof Byte;
+	}
+}
@@ -0,0 +1,500 @@
+/*
+ * Copyright 2013 SmartBear Software
+ * 
+ * Licensed under the EUPL, Version 1.1 or - as soon they will be approved by the European Commission - subsequent
+ * versions of the EUPL (the "Licence");
+ * You may not use this work except in compliance with the Licence.
+ * You may obtain a copy of the Licence at:
+ * 
+ * http://ec.europa.eu/idabc/eupl
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the Licence is
+ * distributed on an "AS IS" basis, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the Licence for the specific language governing permissions and limitations
+ * under the Licence.
+ */
+package com.eviware.loadui.impl.statistics.store;
+
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import com.eviware.loadui.api.statistics.store.RangeCursor;
+import com.google.common.base.Objects;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import com.google.common.cache.Weigher;
+import com.google.common.collect.ImmutableList;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+
+/**
+ * Size bounded cache of decoded Track data, split into fixed time blocks per
+ * interpolation level. Overlapping reads of the same Track, such as scrolling
+ * a chart or comparing executions, are served from the cached blocks instead
+ * of the underlying store. Blocks are evicted by their size in memory. Only
+ * blocks which end before the current length of the execution are cached, as
+ * the block being written to changes with every row. A cached block is
+ * invalidated if a row is written to it later on.
+ */
+public class RangeBlockCache
+{
+	public static final String MAX_SIZE_PROPERTY = "loadui.statistics.rangeCacheMegabytes";
+
+	/**
+	 * The timespan of a block for each interpolation level, aiming for a few
+	 * hundred rows per block.
+	 */
+	private static final long[] BLOCK_SPANS = { 5 * 60 * 1000L, // 5 minutes
+			30 * 60 * 1000L, // 30 minutes
+			2 * 24 * 60 * 60 * 1000L, // 2 days
+			28 * 24 * 60 * 60 * 1000L // 4 weeks
+	};
+
+	/**
+	 * Ranges spanning more blocks than this are read directly, so that reading
+	 * whole executions doesn't evict the blocks used by charts.
+	 */
+	private static final int MAX_BLOCKS_PER_RANGE = 128;
+
+	/**
+	 * The number of version counters that the blocks are spread over by their
+	 * key, so that invalidating one block doesn't discard concurrent loads of
+	 * unrelated blocks.
+	 */
+	private static final int VERSION_STRIPES = 1024;
+
+	private final Cache<BlockKey, Block> blocks;
+	private final AtomicLongArray versions = new AtomicLongArray( VERSION_STRIPES );
+	private final AtomicLong generation = new AtomicLong();
+
+	public RangeBlockCache()
+	{
+		this( Integer.getInteger( MAX_SIZE_PROPERTY, 32 ) * 1024L * 1024L );
+	}
+
+	public RangeBlockCache( long maxBytes )
+	{
+		blocks = CacheBuilder.newBuilder().maximumWeight( maxBytes ).weigher( new Weigher<BlockKey, Block>()
+		{
+			@Override
+			public int weigh( BlockKey key, Block block )
+			{
+				return block.getWeight();
+			}
+		} ).recordStats().build();
+	}
+
+	/**
+	 * Opens a RangeCursor over a range of a Track, reading the blocks the range
+	 * covers from the cache, loading missing ones using the given Loader. Blocks
+	 * hold every value of the blockNames, while the returned cursor gives the
+	 * valueNames. Data of the block containing the given length of the
+	 * execution, and after it, is always read from the Loader, as that block may
+	 * still be written to.
+	 */
+	public RangeCursor openRange( String executionId, String trackId, String source, int interpolationLevel,
+			long startTime, long endTime, long length, List<String> blockNames, List<String> valueNames, Loader loader )
+			throws SQLException
+	{
+		long span = getBlockSpan( interpolationLevel );
+		long firstBlock = blockOf( startTime, span );
+		long lastBlock = Math.min( blockOf( endTime, span ), blockOf( length, span ) - 1 );
+
+		if( endTime < startTime || lastBlock < firstBlock || lastBlock - firstBlock >= MAX_BLOCKS_PER_RANGE )
+		{
+			return loader.open( startTime, endTime, valueNames );
+		}
+
+		int[] indexes = new int[valueNames.size()];
+		for( int i = 0; i < indexes.length; i++ )
+		{
+			indexes[i] = blockNames.indexOf( valueNames.get( i ) );
+		}
+
+		BlockKey firstKey = new BlockKey( executionId, trackId, source, interpolationLevel, firstBlock );
+		return new BlockCursor( firstKey, lastBlock, span, startTime, endTime, ImmutableList.copyOf( blockNames ),
+				ImmutableList.copyOf( valueNames ), indexes, loader );
+	}
+
+	/**
+	 * Invalidates the block containing the given timestamp, after a row has
+	 * been written to it. Rows written to the block containing the length of
+	 * the execution, which is never cached, don't invalidate anything.
+	 */
+	public void invalidate( String executionId, String trackId, String source, int interpolationLevel, long timestamp,
+			long length )
+	{
+		invalidateBlock( executionId, trackId, source, interpolationLevel, getBlock( interpolationLevel, timestamp ),
+				length );
+	}
+
+	/**
+	 * Invalidates a block, as returned by getBlock(int, long), after rows have
+	 * been written to it. As for invalidate, the block containing the length
+	 * of the execution is never cached and isn't invalidated.
+	 */
+	public void invalidateBlock( String executionId, String trackId, String source, int interpolationLevel,
+			long block, long length )
+	{
+		if( block < blockOf( length, getBlockSpan( interpolationLevel ) ) )
+		{
+			BlockKey key = new BlockKey( executionId, trackId, source, interpolationLevel, block );
+			versions.incrementAndGet( stripeOf( key ) );
+			blocks.invalidate( key );
+		}
+	}
+
+	/**
+	 * Returns the block containing the given timestamp at the given
+	 * interpolation level.
+	 */
+	public static long getBlock( int interpolationLevel, long timestamp )
+	{
+		return blockOf( timestamp, getBlockSpan( interpolationLevel ) );
+	}
+
+	/**
+	 * Invalidates all blocks of a Track, or of all Tracks of an execution if
+	 * trackId is null.
+	 */
+	public void invalidateTrack( String executionId, String trackId )
+	{
+		generation.incrementAndGet();
+		for( Iterator<BlockKey> it = blocks.asMap().keySet().iterator(); it.hasNext(); )
+		{
+			BlockKey key = it.next();
+			if( key.executionId.equals( executionId ) && ( trackId == null || key.trackId.equals( trackId ) ) )
+			{
+				it.remove();
+			}
+		}
+	}
+
+	public void invalidateAll()
+	{
+		generation.incrementAndGet();
+		blocks.invalidateAll();
+	}
+
+	/**
+	 * Gets the hit, miss and eviction counts of the cache.
+	 */
+	public CacheStats getStats()
+	{
+		return blocks.stats();
+	}
+
+	public long size()
+	{
+		return blocks.size();
+	}
+
+	private static long getBlockSpan( int interpolationLevel )
+	{
+		return BLOCK_SPANS[Math.max( 0, Math.min( interpolationLevel, BLOCK_SPANS.length - 1 ) )];
+	}
+
+	private static int stripeOf( BlockKey key )
+	{
+		return ( key.hashCode() & Integer.MAX_VALUE ) % VERSION_STRIPES;
+	}
+
+	private static long blockOf( long timestamp, long span )
+	{
+		return timestamp >= 0 ? timestamp / span : -( ( -timestamp - 1 ) / span ) - 1;
+	}
+
+	/**
+	 * Reads a range of a Track from the underlying store.
+	 */
+	public interface Loader
+	{
+		public RangeCursor open( long startTime, long endTime, List<String> valueNames ) throws SQLException;
+	}
+
+	private static class BlockKey
+	{
+		private final String executionId;
+		private final String trackId;
+		private final String source;
+		private final int interpolationLevel;
+		private final long block;
+		private final int hashCode;
+
+		public BlockKey( String executionId, String trackId, String source, int interpolationLevel, long block )
+		{
+			this.executionId = executionId;
+			this.trackId = trackId;
+			this.source = source;
+			this.interpolationLevel = interpolationLevel;
+			this.block = block;
+			hashCode = Objects.hashCode( executionId, trackId, source, interpolationLevel, block );
+		}
+
+		public BlockKey withBlock( long otherBlock )
+		{
+			return new BlockKey( executionId, trackId, source, interpolationLevel, otherBlock );
+		}
+
+		@Override
+		public int hashCode()
+		{
+			return hashCode;
+		}
+
+		@Override
+		public boolean equals( Object obj )
+		{
+			if( this == obj )
+				return true;
+			if( !( obj instanceof BlockKey ) )
+				return false;
+			BlockKey other = ( BlockKey )obj;
+			return block == other.block && interpolationLevel == other.interpolationLevel
+					&& executionId.equals( other.executionId ) && trackId.equals( other.trackId )
+					&& source.equals( other.source );
+		}
+	}
+
+	/**
+	 * The rows of one block, with one column of values per block name.
+	 */
+	private static class Block
+	{
+		private final long[] timestamps;
+		private final double[][] columns;
+
+		public Block( long[] timestamps, double[][] columns )
+		{
+			this.timestamps = timestamps;
+			this.columns = columns;
+		}
+
+		public static Block load( RangeCursor cursor, int columnCount )
+		{
+			int size = 0;
+			long[] timestamps = new long[64];
+			double[][] columns = new double[columnCount][64];
+			try
+			{
+				while( cursor.next() )
+				{
+					if( size == timestamps.length )
+					{
+						timestamps = Arrays.copyOf( timestamps, size * 2 );
+						for( int i = 0; i < columnCount; i++ )
+						{
+							columns[i] = Arrays.copyOf( columns[i], size * 2 );
+						}
+					}
+					timestamps[size] = cursor.getTimestamp();
+					for( int i = 0; i < columnCount; i++ )
+					{
+						columns[i][size] = cursor.getValue( i );
+					}
+					size++ ;
+				}
+			}
+			finally
+			{
+				cursor.close();
+			}
+
+			timestamps = Arrays.copyOf( timestamps, size );
+			for( int i = 0; i < columnCount; i++ )
+			{
+				columns[i] = Arrays.copyOf( columns[i], size );
+			}
+
+			return new Block( timestamps, columns );
+		}
+
+		public int getWeight()
+		{
+			return 64 + 8 * timestamps.length * ( 1 + columns.length );
+		}
+
+		/**
+		 * Returns the index of the first row with a timestamp greater than (or
+		 * equal to, if inclusive is true) the given one.
+		 */
+		public int search( long timestamp, boolean inclusive )
+		{
+			int low = 0;
+			int high = timestamps.length;
+			while( low < high )
+			{
+				int mid = ( low + high ) >>> 1;
+				if( timestamps[mid] < timestamp || ( !inclusive && timestamps[mid] == timestamp ) )
+				{
+					low = mid + 1;
+				}
+				else
+				{
+					high = mid;
+				}
+			}
+
+			return low;
+		}
+	}
+
+	/**
+	 * Reads the rows of a range from each cached block in turn, followed by the
+	 * rows after the last complete block, which are read from the Loader.
+	 */
+	private class BlockCursor implements RangeCursor
+	{
+		private final BlockKey firstKey;
+		private final long lastBlock;
+		private final long span;
+		private final long startTime;
+		private final long endTime;
+		private final List<String> blockNames;
+		private final List<String> valueNames;
+		private final int[] indexes;
+		private final Loader loader;
+
+		private long nextBlock;
+		private Block block;
+		private int row;
+		private int rowEnd;
+		private RangeCursor tail;
+
+		public BlockCursor( BlockKey firstKey, long lastBlock, long span, long startTime, long endTime,
+				List<String> blockNames, List<String> valueNames, int[] indexes, Loader loader )
+		{
+			this.firstKey = firstKey;
+			this.lastBlock = lastBlock;
+			this.span = span;
+			this.startTime = startTime;
+			this.endTime = endTime;
+			this.blockNames = blockNames;
+			this.valueNames = valueNames;
+			this.indexes = indexes;
+			this.loader = loader;
+			nextBlock = firstKey.block;
+		}
+
+		@Override
+		public List<String> getValueNames()
+		{
+			return valueNames;
+		}
+
+		@Override
+		public boolean next()
+		{
+			while( true )
+			{
+				if( tail != null )
+				{
+					return tail.next();
+				}
+				if( block != null && ++row < rowEnd )
+				{
+					return true;
+				}
+
+				if( nextBlock <= lastBlock )
+				{
+					block = getBlock( nextBlock++ );
+					row = block.search( startTime, true ) - 1;
+					rowEnd = block.search( endTime, false );
+				}
+				else
+				{
+					block = null;
+					long tailStart = Math.max( startTime, ( lastBlock + 1 ) * span );
+					if( tailStart > endTime )
+					{
+						return false;
+					}
+					tail = openTail( tailStart );
+				}
+			}
+		}
+
+		@Override
+		public long getTimestamp()
+		{
+			return tail != null ? tail.getTimestamp() : block.timestamps[row];
+		}
+
+		@Override
+		public double getValue( int index )
+		{
+			if( tail != null )
+				return tail.getValue( index );
+
+			int column = indexes[index];
+			return column < 0 ? Double.NaN : block.columns[column][row];
+		}
+
+		@Override
+		public void close()
+		{
+			if( tail != null )
+			{
+				tail.close();
+			}
+		}
+
+		/**
+		 * Gets a block from the cache, or loads it. A block loaded while it, or
+		 * the whole Track, was invalidated may hold rows from before the
+		 * invalidation, so it is used for this cursor but not kept in the cache.
+		 * Versions are kept per stripe of keys, and a single generation for
+		 * invalidating whole Tracks.
+		 */
+		private Block getBlock( final long index )
+		{
+			final BlockKey key = firstKey.withBlock( index );
+			final int stripe = stripeOf( key );
+			final long loadedVersion = versions.get( stripe );
+			final long loadedGeneration = generation.get();
+			final long blockStart = index * span;
+			Block block;
+			try
+			{
+				block = blocks.get( key, new Callable<Block>()
+				{
+					@Override
+					public Block call() throws SQLException
+					{
+						return Block.load( loader.open( blockStart, blockStart + span - 1, blockNames ), blockNames.size() );
+					}
+				} );
+			}
+			catch( ExecutionException | UncheckedExecutionException e )
+			{
+				throw new RuntimeException( "Unable to retrieve track entries!", e.getCause() );
+			}
+
+			if( versions.get( stripe ) != loadedVersion || generation.get() != loadedGeneration )
+			{
+				blocks.invalidate( key );
+			}
+
+			return block;
+		}
+
+		private RangeCursor openTail( long tailStart )
+		{
+			try
+			{
+				return loader.open( tailStart, endTime, valueNames );
+			}
+			catch( SQLException e )
+			{
+				throw new RuntimeException( "Unable to retrieve track entries!", e );
+			}
+		}
+	}
+}
@@ -18,19 +18,24 @@ package com.eviware.loadui.impl.statistics.store;
 import com.eviware.loadui.api.statistics.EntryAggregator;
 import com.eviware.loadui.api.statistics.store.Entry;
 import com.eviware.loadui.api.statistics.store.Execution;
+import com.eviware.loadui.api.statistics.store.RangeCursor;
 import com.eviware.loadui.api.statistics.store.Track;
 import com.eviware.loadui.api.statistics.store.TrackDescriptor;
 import com.eviware.loadui.impl.statistics.db.table.model.DataTable;
 import com.eviware.loadui.util.statistics.store.EntryImpl;
+import com.eviware.loadui.util.statistics.store.EntrySchema;
+import com.eviware.loadui.util.statistics.store.RangeCursors;
+import com.eviware.loadui.util.statistics.store.SchemaEntry;
 import com.google.common.base.Function;
-import com.google.common.collect.Iterables;
-import com.google.common.collect.Maps;
+import com.google.common.collect.ImmutableList;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.sql.SQLException;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 
 public class TrackImpl implements Track
@@ -113,33 +118,58 @@ public class TrackImpl implements Track
 	}
 
 	@Override
-	public Iterable<Entry> getRange( String source, long startTime, long endTime, int interpolationLevel )
+	public Iterable<Entry> getRange( final String source, final long startTime, final long endTime,
+			final int interpolationLevel )
 	{
-		try
+		final EntrySchema schema = EntrySchema.of( trackDescriptor );
+		final List<String> names = schema.getNames().asList();
+
+		return RangeCursors.asIterable( startTime, endTime, new RangeCursors.Opener()
+		{
+			@Override
+			public RangeCursor open( long chunkStartTime, long chunkEndTime )
+			{
+				return openRange( source, chunkStartTime, chunkEndTime, interpolationLevel, names );
+			}
+		}, new Function<RangeCursor, Entry>()
 		{
-			return Iterables.transform(
-					manager.read( execution.getId(), id, source, startTime, endTime, interpolationLevel ),
-					new Function<Map<String, Object>, Entry>()
+			@Override
+			public Entry apply( RangeCursor cursor )
+			{
+				SchemaEntry.Builder builder = new SchemaEntry.Builder( schema, cursor.getTimestamp() );
+				for( int i = 0; i < names.size(); i++ )
+				{
+					double value = cursor.getValue( i );
+					if( !Double.isNaN( value ) )
 					{
-						@Override
-						public Entry apply( Map<String, Object> entryData )
-						{
-							Long timestamp = ( Long )entryData.remove( DataTable.STATIC_FIELD_TIMESTAMP );
-
-							return new EntryImpl( timestamp, Maps.transformValues( entryData, new Function<Object, Number>()
-							{
-								@Override
-								public Number apply( Object value )
-								{
-									return ( Number )value;
-								}
-							} ) );
-						}
-					} );
+						builder.put( names.get( i ), value );
+					}
+				}
+
+				return builder.build();
+			}
+		} );
+	}
+
+	@Override
+	public RangeCursor openRange( String source, long startTime, long endTime, int interpolationLevel,
+			String... valueNames )
+	{
+		return openRange( source, startTime, endTime, interpolationLevel,
+				valueNames.length == 0 ? ImmutableList.copyOf( trackDescriptor.getValueNames().keySet() ) : Arrays
+						.asList( valueNames ) );
+	}
+
+	private RangeCursor openRange( String source, long startTime, long endTime, int interpolationLevel,
+			List<String> valueNames )
+	{
+		try
+		{
+			return manager.openRange( execution.getId(), id, source, startTime, endTime, interpolationLevel, valueNames );
 		}
 		catch( SQLException e )
 		{
-			throw new RuntimeException( "Unable to retrieve next track entry!", e );
+			throw new RuntimeException( "Unable to retrieve track entries!", e );
 		}
 	}
 
@@ -0,0 +1,767 @@
+/*
+ * Copyright 2013 SmartBear Software
+ * 
+ * Licensed under the EUPL, Version 1.1 or - as soon they will be approved by the European Commission - subsequent
+ * versions of the EUPL (the "Licence");
+ * You may not use this work except in compliance with the Licence.
+ * You may obtain a copy of the Licence at:
+ * 
+ * http://ec.europa.eu/idabc/eupl
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the Licence is
+ * distributed on an "AS IS" basis, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the Licence for the specific language governing permissions and limitations
+ * under the Licence.
+ */
+package com.eviware.loadui.impl.statistics.store.columnar;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.eviware.loadui.api.statistics.store.RangeCursor;
+import com.eviware.loadui.api.traits.Releasable;
+import com.eviware.loadui.impl.statistics.db.table.model.DataTable;
+import com.google.common.collect.ImmutableList;
+import com.google.common.io.Closeables;
+
+/**
+ * An append-only file holding the rows of a single track, source and
+ * interpolation level. Each row is stored as a fixed width record consisting of
+ * the timestamp followed by eight bytes per column, so rows can be located by
+ * binary search on the timestamp. Long and Integer columns are stored as longs,
+ * with Long.MIN_VALUE marking a missing value, and other columns as doubles,
+ * with NaN marking a missing value. Reads locate the requested rows by binary
+ * search on the file and only read those, through a read-only memory mapping
+ * if there are many of them.
+ * 
+ * Rows are returned in the same form as DataTable rows, keyed by
+ * DataTable.STATIC_FIELD_TIMESTAMP and the column names, with values converted
+ * back to the column types and null for missing values. Timestamps must be
+ * increasing, rows which are not newer than the last appended row are ignored
+ * (as the primary key of the DataTable would reject duplicates).
+ * 
+ * A single range is limited to 2GB, which for a track with ten values is about
+ * 24 million rows.
+ * 
+ * A ColumnFile created with an OpenColumnFiles limit may have its file handle
+ * closed while it is not in use, in which case it is reopened when needed.
+ */
+public class ColumnFile implements Releasable
+{
+	private static final Logger log = LoggerFactory.getLogger( ColumnFile.class );
+
+	private static final int MAGIC = 0x4C55434F;
+	private static final int VERSION = 2;
+
+	/**
+	 * Version 1 files store every column as a double.
+	 */
+	private static final int VERSION_ALL_DOUBLES = 1;
+
+	private static final long MISSING_LONG = Long.MIN_VALUE;
+	private static final int WRITE_BUFFER_SIZE = 64 * 1024;
+
+	/**
+	 * Ranges smaller than this are read into a heap buffer rather than mapped.
+	 */
+	private static final int MAP_THRESHOLD = 256 * 1024;
+
+	/**
+	 * The number of records a ColumnCursor reads at a time.
+	 */
+	static final int READ_RECORDS = 1024;
+
+	private static final byte TYPE_DOUBLE = 0;
+	private static final byte TYPE_LONG = 1;
+	private static final byte TYPE_INTEGER = 2;
+	private static final byte TYPE_FLOAT = 3;
+
+	private final File file;
+	private final OpenColumnFiles openFiles;
+	private final String[] columns;
+	private final byte[] types;
+	private final boolean[] storedAsLong;
+	private final int recordSize;
+	private final long dataOffset;
+	private final ByteBuffer writeBuffer;
+
+	private final ByteBuffer timestampBuffer = ByteBuffer.allocate( 8 );
+
+	private RandomAccessFile randomAccessFile;
+	private FileChannel channel;
+	private boolean released = false;
+	private long flushedRecords;
+	private long lastTimestamp = Long.MIN_VALUE;
+
+	/**
+	 * Creates a new, empty file with the given columns, replacing any existing
+	 * file.
+	 */
+	public static ColumnFile create( File file, Map<String, ? extends Class<? extends Number>> columns )
+			throws IOException
+	{
+		return create( file, columns, null );
+	}
+
+	/**
+	 * Creates a new, empty file with the given columns, replacing any existing
+	 * file. Its file handle is closed when the given OpenColumnFiles evicts it.
+	 */
+	static ColumnFile create( File file, Map<String, ? extends Class<? extends Number>> columns,
+			OpenColumnFiles openFiles ) throws IOException
+	{
+		String[] names = columns.keySet().toArray( new String[columns.size()] );
+		byte[] types = new byte[names.length];
+		for( int i = 0; i < names.length; i++ )
+		{
+			types[i] = typeOf( columns.get( names[i] ) );
+		}
+
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		DataOutputStream header = new DataOutputStream( bytes );
+		header.writeInt( VERSION );
+		header.writeInt( names.length );
+		for( int i = 0; i < names.length; i++ )
+		{
+			header.writeUTF( names[i] );
+			header.writeByte( types[i] );
+		}
+		header.close();
+
+		RandomAccessFile raf = new RandomAccessFile( file, "rw" );
+		try
+		{
+			raf.setLength( 0 );
+			raf.writeInt( MAGIC );
+			raf.writeInt( bytes.size() );
+			raf.write( bytes.toByteArray() );
+		}
+		catch( IOException e )
+		{
+			Closeables.closeQuietly( raf );
+			throw e;
+		}
+
+		return opened( new ColumnFile( file, raf, names, types, VERSION, 8 + bytes.size(), openFiles ) );
+	}
+
+	/**
+	 * Opens an existing file, discarding any partially written trailing record.
+	 */
+	public static ColumnFile open( File file ) throws IOException
+	{
+		return open( file, null );
+	}
+
+	/**
+	 * Opens an existing file, discarding any partially written trailing record.
+	 * Its file handle is closed when the given OpenColumnFiles evicts it.
+	 */
+	static ColumnFile open( File file, OpenColumnFiles openFiles ) throws IOException
+	{
+		RandomAccessFile raf = new RandomAccessFile( file, "rw" );
+		try
+		{
+			if( raf.readInt() != MAGIC )
+			{
+				throw new IOException( "Not a column file: " + file );
+			}
+			byte[] headerBytes = new byte[raf.readInt()];
+			raf.readFully( headerBytes );
+
+			DataInputStream header = new DataInputStream( new ByteArrayInputStream( headerBytes ) );
+			int version = header.readInt();
+			if( version != VERSION && version != VERSION_ALL_DOUBLES )
+			{
+				throw new IOException( "Unsupported column file version " + version + ": " + file );
+			}
+			String[] names = new String[header.readInt()];
+			byte[] types = new byte[names.length];
+			for( int i = 0; i < names.length; i++ )
+			{
+				names[i] = header.readUTF();
+				types[i] = header.readByte();
+			}
+
+			return opened( new ColumnFile( file, raf, names, types, version, 8 + headerBytes.length, openFiles ) );
+		}
+		catch( IOException e )
+		{
+			Closeables.closeQuietly( raf );
+			throw e;
+		}
+	}
+
+	private static ColumnFile opened( ColumnFile columnFile )
+	{
+		columnFile.touch();
+		return columnFile;
+	}
+
+	private ColumnFile( File file, RandomAccessFile randomAccessFile, String[] columns, byte[] types, int version,
+			long dataOffset, OpenColumnFiles openFiles ) throws IOException
+	{
+		this.file = file;
+		this.openFiles = openFiles;
+		this.randomAccessFile = randomAccessFile;
+		this.columns = columns;
+		this.types = types;
+		storedAsLong = new boolean[columns.length];
+		for( int i = 0; i < columns.length; i++ )
+		{
+			storedAsLong[i] = version != VERSION_ALL_DOUBLES && ( types[i] == TYPE_LONG || types[i] == TYPE_INTEGER );
+		}
+		this.dataOffset = dataOffset;
+		channel = randomAccessFile.getChannel();
+		recordSize = 8 + 8 * columns.length;
+		writeBuffer = ByteBuffer.allocateDirect( Math.max( WRITE_BUFFER_SIZE - WRITE_BUFFER_SIZE % recordSize,
+				recordSize ) );
+
+		flushedRecords = ( channel.size() - dataOffset ) / recordSize;
+		channel.truncate( dataOffset + flushedRecords * recordSize );
+		if( flushedRecords > 0 )
+		{
+			lastTimestamp = timestampAt( channel, flushedRecords - 1 );
+		}
+	}
+
+	/**
+	 * Returns the open FileChannel, reopening the file if it has been closed.
+	 */
+	private FileChannel channel() throws IOException
+	{
+		if( channel == null )
+		{
+			if( released )
+			{
+				throw new IOException( "Column file has been released: " + file );
+			}
+			randomAccessFile = new RandomAccessFile( file, "rw" );
+			channel = randomAccessFile.getChannel();
+		}
+
+		return channel;
+	}
+
+	/**
+	 * Closes the file handle, which is reopened when next needed.
+	 */
+	synchronized void closeChannel()
+	{
+		Closeables.closeQuietly( randomAccessFile );
+		randomAccessFile = null;
+		channel = null;
+	}
+
+	/**
+	 * Marks the file as used, which may close the file handles of other
+	 * ColumnFiles. Must be called without holding the lock of this ColumnFile.
+	 */
+	private void touch()
+	{
+		if( openFiles != null )
+		{
+			openFiles.used( this );
+		}
+	}
+
+	public File getFile()
+	{
+		return file;
+	}
+
+	/**
+	 * Appends a row, given as a Map containing DataTable.STATIC_FIELD_TIMESTAMP
+	 * and a Number for each column. Values which are missing, or NaN, are
+	 * stored as missing.
+	 * 
+	 * @return true if the row was appended, false if it was ignored since it was
+	 *         not newer than the last row, or arrived after the file was
+	 *         released.
+	 */
+	public boolean append( Map<String, ? extends Object> row ) throws IOException
+	{
+		Object[] values = new Object[columns.length];
+		for( int i = 0; i < columns.length; i++ )
+		{
+			values[i] = row.get( columns[i] );
+		}
+
+		return append( ( ( Number )row.get( DataTable.STATIC_FIELD_TIMESTAMP ) ).longValue(), values );
+	}
+
+	/**
+	 * Appends a row, given as one value per column in the order of
+	 * getColumnIndex(String). Values which are null, not a Number, or NaN are
+	 * stored as missing.
+	 * 
+	 * @return true if the row was appended, false if it was ignored since it was
+	 *         not newer than the last row, or arrived after the file was
+	 *         released.
+	 */
+	public boolean append( long timestamp, Object[] values ) throws IOException
+	{
+		boolean flushed = false;
+		synchronized( this )
+		{
+			if( released )
+			{
+				log.debug( "Ignoring row written after {} was released", file );
+				return false;
+			}
+
+			if( timestamp <= lastTimestamp )
+			{
+				return false;
+			}
+
+			if( writeBuffer.remaining() < recordSize )
+			{
+				flushed = writeBuffered();
+			}
+
+			appendRecord( timestamp, values );
+		}
+		if( flushed )
+		{
+			touch();
+		}
+
+		return true;
+	}
+
+	private void appendRecord( long timestamp, Object[] values )
+	{
+		writeBuffer.putLong( timestamp );
+		for( int i = 0; i < columns.length; i++ )
+		{
+			Object value = values[i];
+			double doubleValue = value instanceof Number ? ( ( Number )value ).doubleValue() : Double.NaN;
+			if( !storedAsLong[i] )
+				writeBuffer.putDouble( doubleValue );
+			else if( Double.isNaN( doubleValue ) )
+				writeBuffer.putLong( MISSING_LONG );
+			else
+				writeBuffer.putLong( ( ( Number )value ).longValue() );
+		}
+		lastTimestamp = timestamp;
+	}
+
+	/**
+	 * Writes any buffered rows to the file.
+	 */
+	public void flush() throws IOException
+	{
+		boolean flushed;
+		synchronized( this )
+		{
+			flushed = writeBuffered();
+		}
+		if( flushed )
+		{
+			touch();
+		}
+	}
+
+	/**
+	 * Writes any buffered rows to the file, returning false if there were none.
+	 */
+	private boolean writeBuffered() throws IOException
+	{
+		if( writeBuffer.position() == 0 )
+		{
+			return false;
+		}
+
+		writeBuffer.flip();
+		FileChannel fileChannel = channel();
+		long position = dataOffset + flushedRecords * recordSize;
+		int records = writeBuffer.remaining() / recordSize;
+		while( writeBuffer.hasRemaining() )
+		{
+			position += fileChannel.write( writeBuffer, position );
+		}
+		writeBuffer.clear();
+		flushedRecords += records;
+
+		return true;
+	}
+
+	/**
+	 * Returns the number of rows in the file, including buffered ones.
+	 */
+	public synchronized long size()
+	{
+		return flushedRecords + writeBuffer.position() / recordSize;
+	}
+
+	/**
+	 * Returns the first row with startTime <= timestamp <= endTime, or an empty
+	 * Map if there is no such row.
+	 */
+	public Map<String, Object> readFirst( long startTime, long endTime ) throws IOException
+	{
+		Map<String, Object> row = new HashMap<>();
+		synchronized( this )
+		{
+			writeBuffered();
+			FileChannel fileChannel = channel();
+			long index = search( fileChannel, startTime, true );
+			if( index < flushedRecords )
+			{
+				ByteBuffer record = read( fileChannel, index, 1 );
+				if( record.getLong( 0 ) <= endTime )
+				{
+					row = readRow( record, 0 );
+				}
+			}
+		}
+		touch();
+
+		return row;
+	}
+
+	/**
+	 * Opens a RangeCursor over the rows with startTime <= timestamp <= endTime,
+	 * reading the values from the given columns. Columns which are null or not
+	 * part of the file give NaN values. The cursor is not affected by rows
+	 * appended later. It reads READ_RECORDS records at a time as it advances, so
+	 * a cursor which is closed early only reads the records it has visited.
+	 */
+	public RangeCursor openRange( long startTime, long endTime, List<String> valueNames, List<String> columnNames )
+			throws IOException
+	{
+		long start;
+		long end;
+		synchronized( this )
+		{
+			writeBuffered();
+			FileChannel fileChannel = channel();
+			start = search( fileChannel, startTime, true );
+			end = Math.max( start, search( fileChannel, endTime, false ) );
+		}
+		touch();
+
+		int[] offsets = new int[columnNames.size()];
+		boolean[] longs = new boolean[offsets.length];
+		List<String> fileColumns = Arrays.asList( columns );
+		for( int i = 0; i < offsets.length; i++ )
+		{
+			int index = fileColumns.indexOf( columnNames.get( i ) );
+			offsets[i] = index < 0 ? -1 : 8 + 8 * index;
+			longs[i] = index >= 0 && storedAsLong[index];
+		}
+
+		return new ColumnCursor( start, end, valueNames, offsets, longs );
+	}
+
+	/**
+	 * Reads the given number of records for a ColumnCursor, reopening the file
+	 * if needed.
+	 */
+	private ByteBuffer readRecords( long index, int records ) throws IOException
+	{
+		ByteBuffer buffer;
+		synchronized( this )
+		{
+			buffer = read( channel(), index, records );
+		}
+		touch();
+
+		return buffer;
+	}
+
+	/**
+	 * Reads the given number of records, starting at the given index. Large
+	 * ranges are memory mapped.
+	 */
+	private ByteBuffer read( FileChannel fileChannel, long index, int records ) throws IOException
+	{
+		int length = records * recordSize;
+		long position = dataOffset + index * recordSize;
+		if( length >= MAP_THRESHOLD )
+		{
+			return fileChannel.map( FileChannel.MapMode.READ_ONLY, position, length );
+		}
+
+		ByteBuffer buffer = ByteBuffer.allocate( length );
+		while( buffer.hasRemaining() )
+		{
+			if( fileChannel.read( buffer, position + buffer.position() ) < 0 )
+			{
+				throw new EOFException( "Unexpected end of column file: " + file );
+			}
+		}
+		buffer.flip();
+
+		return buffer;
+	}
+
+	private long timestampAt( FileChannel fileChannel, long index ) throws IOException
+	{
+		timestampBuffer.clear();
+		long position = dataOffset + index * recordSize;
+		while( timestampBuffer.hasRemaining() )
+		{
+			if( fileChannel.read( timestampBuffer, position + timestampBuffer.position() ) < 0 )
+			{
+				throw new EOFException( "Unexpected end of column file: " + file );
+			}
+		}
+
+		return timestampBuffer.getLong( 0 );
+	}
+
+	/**
+	 * Returns the index of the first flushed record with a timestamp greater
+	 * than (or equal to, if inclusive is true) the given one.
+	 */
+	private long search( FileChannel fileChannel, long timestamp, boolean inclusive ) throws IOException
+	{
+		long low = 0;
+		long high = flushedRecords;
+		while( low < high )
+		{
+			long mid = ( low + high ) >>> 1;
+			long midTimestamp = timestampAt( fileChannel, mid );
+			if( midTimestamp < timestamp || ( !inclusive && midTimestamp == timestamp ) )
+			{
+				low = mid + 1;
+			}
+			else
+			{
+				high = mid;
+			}
+		}
+
+		return low;
+	}
+
+	private Map<String, Object> readRow( ByteBuffer buffer, int index )
+	{
+		int offset = index * recordSize;
+		Map<String, Object> row = new HashMap<>( columns.length * 2 + 2 );
+		row.put( DataTable.STATIC_FIELD_TIMESTAMP, buffer.getLong( offset ) );
+		for( int i = 0; i < columns.length; i++ )
+		{
+			row.put( columns[i], readValue( buffer, offset + 8 + 8 * i, i ) );
+		}
+
+		return row;
+	}
+
+	private Number readValue( ByteBuffer buffer, int offset, int column )
+	{
+		if( storedAsLong[column] )
+		{
+			long value = buffer.getLong( offset );
+			if( value == MISSING_LONG )
+				return null;
+			return types[column] == TYPE_INTEGER ? Integer.valueOf( ( int )value ) : Long.valueOf( value );
+		}
+
+		double value = buffer.getDouble( offset );
+		if( Double.isNaN( value ) )
+			return null;
+		switch( types[column] )
+		{
+			case TYPE_LONG:
+				return ( long )value;
+			case TYPE_INTEGER:
+				return ( int )value;
+			case TYPE_FLOAT:
+				return ( float )value;
+			default:
+				return value;
+		}
+	}
+
+	/**
+	 * Returns the index of the given column in the values passed to
+	 * append(long, Object[]), or -1 if the file has no such column.
+	 */
+	public int getColumnIndex( String column )
+	{
+		return Arrays.asList( columns ).indexOf( column );
+	}
+
+	public int getColumnCount()
+	{
+		return columns.length;
+	}
+
+	public Map<String, Class<? extends Number>> getColumns()
+	{
+		Map<String, Class<? extends Number>> result = new HashMap<>();
+		for( int i = 0; i < columns.length; i++ )
+		{
+			result.put( columns[i], classOf( types[i] ) );
+		}
+
+		return Collections.unmodifiableMap( result );
+	}
+
+	@Override
+	public void release()
+	{
+		synchronized( this )
+		{
+			if( !released )
+			{
+				try
+				{
+					writeBuffered();
+				}
+				catch( IOException e )
+				{
+					log.error( "Unable to write buffered rows to " + file, e );
+				}
+				released = true;
+			}
+			closeChannel();
+		}
+		if( openFiles != null )
+		{
+			openFiles.closed( this );
+		}
+	}
+
+	/**
+	 * Releases and deletes the file.
+	 */
+	public boolean delete()
+	{
+		synchronized( this )
+		{
+			writeBuffer.clear();
+		}
+		release();
+		return file.delete();
+	}
+
+	private class ColumnCursor implements RangeCursor
+	{
+		private final long end;
+		private final List<String> valueNames;
+		private final int[] offsets;
+		private final boolean[] longs;
+		private ByteBuffer buffer;
+		private long bufferStart;
+		private long bufferEnd;
+		private long index;
+		private int position = -1;
+
+		public ColumnCursor( long start, long end, List<String> valueNames, int[] offsets, boolean[] longs )
+		{
+			this.end = end;
+			this.valueNames = ImmutableList.copyOf( valueNames );
+			this.offsets = offsets;
+			this.longs = longs;
+			index = start;
+			bufferStart = start;
+			bufferEnd = start;
+		}
+
+		@Override
+		public List<String> getValueNames()
+		{
+			return valueNames;
+		}
+
+		@Override
+		public boolean next()
+		{
+			if( index >= end )
+			{
+				return false;
+			}
+			if( index >= bufferEnd )
+			{
+				int records = ( int )Math.min( READ_RECORDS, end - index );
+				try
+				{
+					buffer = readRecords( index, records );
+				}
+				catch( IOException e )
+				{
+					close();
+					throw new RuntimeException( "Unable to read data from " + file, e );
+				}
+				bufferStart = index;
+				bufferEnd = index + records;
+			}
+			position = ( int )( index++ - bufferStart ) * recordSize;
+
+			return true;
+		}
+
+		@Override
+		public long getTimestamp()
+		{
+			return buffer.getLong( position );
+		}
+
+		@Override
+		public double getValue( int valueIndex )
+		{
+			int offset = offsets[valueIndex];
+			if( offset < 0 )
+				return Double.NaN;
+			if( longs[valueIndex] )
+			{
+				long value = buffer.getLong( position + offset );
+				return value == MISSING_LONG ? Double.NaN : value;
+			}
+			return buffer.getDouble( position + offset );
+		}
+
+		@Override
+		public void close()
+		{
+			index = end;
+			buffer = null;
+		}
+	}
+
+	private static byte typeOf( Class<? extends Number> type )
+	{
+		if( type == Long.class )
+			return TYPE_LONG;
+		if( type == Integer.class )
+			return TYPE_INTEGER;
+		if( type == Float.class )
+			return TYPE_FLOAT;
+		return TYPE_DOUBLE;
+	}
+
+	private static Class<? extends Number> classOf( byte type )
+	{
+		switch( type )
+		{
+			case TYPE_LONG:
+				return Long.class;
+			case TYPE_INTEGER:
+				return Integer.class;
+			case TYPE_FLOAT:
+				return Float.class;
+			default:
+				return Double.class;
+		}
+	}
+}
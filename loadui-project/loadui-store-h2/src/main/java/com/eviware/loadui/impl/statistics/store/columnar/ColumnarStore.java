@@ -0,0 +1,192 @@
+/*
+ * Copyright 2013 SmartBear Software
+ * 
+ * Licensed under the EUPL, Version 1.1 or - as soon they will be approved by the European Commission - subsequent
+ * versions of the EUPL (the "Licence");
+ * You may not use this work except in compliance with the Licence.
+ * You may obtain a copy of the Licence at:
+ * 
+ * http://ec.europa.eu/idabc/eupl
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the Licence is
+ * distributed on an "AS IS" basis, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the Licence for the specific language governing permissions and limitations
+ * under the Licence.
+ */
+package com.eviware.loadui.impl.statistics.store.columnar;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.net.URLEncoder;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.eviware.loadui.api.traits.Releasable;
+import com.eviware.loadui.util.ReleasableUtils;
+
+/**
+ * Holds the ColumnFiles of a single execution, stored in a "columnar"
+ * directory inside the execution directory. An execution whose directory
+ * contains it keeps its track data in ColumnFiles rather than in H2 data
+ * tables. Which store is used for new executions is selected using the
+ * loadui.statistics.store system property ("h2" or "columnar").
+ * 
+ * At most loadui.statistics.columnar.maxOpenFiles ColumnFiles, counted over
+ * all ColumnarStores, keep their file open. The least recently used ones are
+ * closed, and reopened when needed.
+ */
+public class ColumnarStore implements Releasable
+{
+	public static final String STORE_PROPERTY = "loadui.statistics.store";
+	public static final String STORE_H2 = "h2";
+	public static final String STORE_COLUMNAR = "columnar";
+
+	public static final String MAX_OPEN_FILES_PROPERTY = "loadui.statistics.columnar.maxOpenFiles";
+
+	public static final String DIRECTORY_NAME = "columnar";
+
+	private static final String FILE_EXTENSION = ".col";
+
+	private static final Logger log = LoggerFactory.getLogger( ColumnarStore.class );
+
+	private static final OpenColumnFiles openFiles = new OpenColumnFiles( Math.max( 1, Integer.getInteger(
+			MAX_OPEN_FILES_PROPERTY, 256 ) ) );
+
+	private final File directory;
+	private final Map<String, ColumnFile> files = new HashMap<>();
+
+	/**
+	 * Returns true if new executions should be stored in ColumnFiles.
+	 */
+	public static boolean isEnabled()
+	{
+		return STORE_COLUMNAR.equalsIgnoreCase( System.getProperty( STORE_PROPERTY, STORE_H2 ) );
+	}
+
+	/**
+	 * Returns true if the given execution directory contains a ColumnarStore.
+	 */
+	public static boolean exists( File executionDir )
+	{
+		return new File( executionDir, DIRECTORY_NAME ).isDirectory();
+	}
+
+	/**
+	 * Creates a ColumnarStore in the given execution directory, or opens it if
+	 * it already exists.
+	 */
+	public static ColumnarStore create( File executionDir ) throws IOException
+	{
+		return new ColumnarStore( new File( executionDir, DIRECTORY_NAME ) );
+	}
+
+	public ColumnarStore( File directory ) throws IOException
+	{
+		this.directory = directory;
+		if( !directory.isDirectory() && !directory.mkdirs() )
+		{
+			throw new IOException( "Unable to create directory: " + directory );
+		}
+	}
+
+	public File getDirectory()
+	{
+		return directory;
+	}
+
+	/**
+	 * Gets the ColumnFile with the given name, creating it with the given
+	 * columns if it doesn't exist.
+	 */
+	public synchronized ColumnFile getOrCreate( String name, Map<String, ? extends Class<? extends Number>> columns )
+			throws IOException
+	{
+		ColumnFile columnFile = get( name );
+		if( columnFile == null )
+		{
+			columnFile = ColumnFile.create( fileFor( name ), columns, openFiles );
+			files.put( name, columnFile );
+		}
+
+		return columnFile;
+	}
+
+	/**
+	 * Returns true if the ColumnFile with the given name has been created or
+	 * opened.
+	 */
+	public synchronized boolean isOpen( String name )
+	{
+		return files.containsKey( name );
+	}
+
+	/**
+	 * Gets the ColumnFile with the given name, or null if it doesn't exist.
+	 */
+	public synchronized ColumnFile get( String name ) throws IOException
+	{
+		ColumnFile columnFile = files.get( name );
+		if( columnFile == null )
+		{
+			File file = fileFor( name );
+			if( file.exists() )
+			{
+				columnFile = ColumnFile.open( file, openFiles );
+				files.put( name, columnFile );
+			}
+		}
+
+		return columnFile;
+	}
+
+	/**
+	 * Deletes the ColumnFile with the given name, if it exists.
+	 */
+	public synchronized void delete( String name )
+	{
+		ColumnFile columnFile = files.remove( name );
+		File file = columnFile == null ? fileFor( name ) : columnFile.getFile();
+		if( columnFile != null )
+		{
+			columnFile.delete();
+		}
+		if( file.exists() && !file.delete() )
+		{
+			log.warn( "Unable to delete {}", file );
+		}
+	}
+
+	/**
+	 * Writes all buffered rows to disk.
+	 */
+	public synchronized void flush() throws IOException
+	{
+		for( ColumnFile columnFile : files.values() )
+		{
+			columnFile.flush();
+		}
+	}
+
+	@Override
+	public synchronized void release()
+	{
+		ReleasableUtils.releaseAll( files.values() );
+		files.clear();
+	}
+
+	private File fileFor( String name )
+	{
+		try
+		{
+			return new File( directory, URLEncoder.encode( name, "UTF-8" ).replace( "*", "%2A" ) + FILE_EXTENSION );
+		}
+		catch( UnsupportedEncodingException e )
+		{
+			throw new RuntimeException( e );
+		}
+	}
+}
@@ -0,0 +1,76 @@
+/*
+ * Copyright 2013 SmartBear Software
+ * 
+ * Licensed under the EUPL, Version 1.1 or - as soon they will be approved by the European Commission - subsequent
+ * versions of the EUPL (the "Licence");
+ * You may not use this work except in compliance with the Licence.
+ * You may obtain a copy of the Licence at:
+ * 
+ * http://ec.europa.eu/idabc/eupl
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the Licence is
+ * distributed on an "AS IS" basis, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the Licence for the specific language governing permissions and limitations
+ * under the Licence.
+ */
+package com.eviware.loadui.impl.statistics.store.columnar;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+
+/**
+ * Keeps track of which ColumnFiles have an open file handle, closing the least
+ * recently used ones once there are more than the given limit. A closed
+ * ColumnFile reopens its file the next time it is read or flushed.
+ */
+final class OpenColumnFiles
+{
+	private final int limit;
+	private final LinkedHashMap<ColumnFile, Boolean> open = new LinkedHashMap<>( 16, 0.75f, true );
+
+	public OpenColumnFiles( int limit )
+	{
+		this.limit = limit;
+	}
+
+	/**
+	 * Marks the ColumnFile as used. Must not be called while holding the lock
+	 * of any ColumnFile, as evicted files are closed by the calling thread.
+	 */
+	public void used( ColumnFile columnFile )
+	{
+		List<ColumnFile> evicted = null;
+		synchronized( this )
+		{
+			open.put( columnFile, Boolean.TRUE );
+			for( Iterator<ColumnFile> it = open.keySet().iterator(); open.size() > limit && it.hasNext(); )
+			{
+				ColumnFile eldest = it.next();
+				it.remove();
+				if( evicted == null )
+					evicted = new ArrayList<>();
+				evicted.add( eldest );
+			}
+		}
+
+		if( evicted != null )
+		{
+			for( ColumnFile evictedFile : evicted )
+			{
+				evictedFile.closeChannel();
+			}
+		}
+	}
+
+	public synchronized void closed( ColumnFile columnFile )
+	{
+		open.remove( columnFile );
+	}
+
+	public synchronized int size()
+	{
+		return open.size();
+	}
+}
@@ -0,0 +1,950 @@
+/*
+ * Copyright 2013 SmartBear Software
+ * 
+ * Licensed under the EUPL, Version 1.1 or - as soon they will be approved by the European Commission - subsequent
+ * versions of the EUPL (the "Licence");
+ * You may not use this work except in compliance with the Licence.
+ * You may obtain a copy of the Licence at:
+ * 
+ * http://ec.europa.eu/idabc/eupl
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the Licence is
+ * distributed on an "AS IS" basis, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the Licence for the specific language governing permissions and limitations
+ * under the Licence.
+ */
+package com.eviware.loadui.impl.statistics.store.columnar;
+
+import java.io.File;
+import java.io.FileFilter;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.eviware.loadui.api.traits.Releasable;
+import com.eviware.loadui.impl.statistics.db.table.model.TestEventTable;
+import com.eviware.loadui.util.ReleasableUtils;
+import com.google.common.io.Closeables;
+
+/**
+ * An append-only log of the test events of a single execution, stored in an
+ * "events" directory inside the execution directory, with one subdirectory of
+ * segment files per interpolation level. Each record consists of the
+ * timestamp, the id of the test event source, and the event data.
+ * 
+ * Events are queued by append() and written in batches by a writer Thread, so
+ * that a burst of events doesn't hold up the Threads reporting them. When the
+ * queue is full, append() blocks for up to APPEND_TIMEOUT_MILLIS to let the
+ * writer catch up, and only drops the event once that has passed. Dropped
+ * events are counted, see getDroppedCount(). An
+ * in-memory index, rebuilt from the segments when the log is opened, holds the
+ * position and time span of every INDEX_INTERVAL records, as well as the
+ * record numbers of each source. Reading by index or by time range seeks
+ * directly to the relevant records instead of scanning the log.
+ * 
+ * Events are returned in the same form as TestEventTable rows. Reads by index
+ * return the events in the order they were appended, which for a single
+ * controller is the order of their timestamps.
+ */
+public class TestEventLog implements Releasable
+{
+	public static final String DIRECTORY_NAME = "events";
+
+	static final int INDEX_INTERVAL = 64;
+
+	private static final Logger log = LoggerFactory.getLogger( TestEventLog.class );
+
+	private static final int MAGIC = 0x4C554556;
+	private static final int HEADER_SIZE = 8 + 8 + 4;
+	private static final long SEGMENT_SIZE = 16 * 1024 * 1024;
+	private static final int WRITE_BUFFER_SIZE = 64 * 1024;
+	private static final int QUEUE_CAPACITY = 10000;
+	private static final long APPEND_TIMEOUT_MILLIS = 2000;
+	private static final int MAX_BATCH_SIZE = 1000;
+	private static final String SEGMENT_EXTENSION = ".seg";
+
+	private final File directory;
+	private final Map<Integer, LevelLog> levels = new HashMap<>();
+	private final BlockingQueue<PendingEvent> queue = new LinkedBlockingQueue<>( QUEUE_CAPACITY );
+	private final AtomicInteger pendingEvents = new AtomicInteger();
+	private final AtomicLong droppedEvents = new AtomicLong();
+	private final ReadWriteLock releaseLock = new ReentrantReadWriteLock();
+
+	private Thread writerThread;
+	private volatile boolean released = false;
+	private boolean closed = false;
+
+	/**
+	 * Returns true if the given execution directory contains a TestEventLog.
+	 */
+	public static boolean exists( File executionDir )
+	{
+		return new File( executionDir, DIRECTORY_NAME ).isDirectory();
+	}
+
+	/**
+	 * Creates a TestEventLog in the given execution directory, or opens it if it
+	 * already exists.
+	 */
+	public static TestEventLog create( File executionDir ) throws IOException
+	{
+		return new TestEventLog( new File( executionDir, DIRECTORY_NAME ) );
+	}
+
+	public TestEventLog( File directory ) throws IOException
+	{
+		this.directory = directory;
+		if( !directory.isDirectory() && !directory.mkdirs() )
+		{
+			throw new IOException( "Unable to create directory: " + directory );
+		}
+
+		File[] levelDirs = directory.listFiles( new FileFilter()
+		{
+			@Override
+			public boolean accept( File file )
+			{
+				return file.isDirectory() && file.getName().matches( "\\d+" );
+			}
+		} );
+		try
+		{
+			for( File levelDir : levelDirs )
+			{
+				levels.put( Integer.valueOf( levelDir.getName() ), new LevelLog( levelDir ) );
+			}
+		}
+		catch( IOException e )
+		{
+			ReleasableUtils.releaseAll( levels.values() );
+			throw e;
+		}
+	}
+
+	/**
+	 * Queues an event to be written. If the queue is full, waits for up to
+	 * APPEND_TIMEOUT_MILLIS for room before dropping the event. The released
+	 * check and the enqueueing happen under the read lock of releaseLock, so
+	 * that no event is queued after release() has started.
+	 */
+	public void append( int interpolationLevel, long timestamp, long sourceId, byte[] data )
+	{
+		releaseLock.readLock().lock();
+		try
+		{
+			if( released )
+			{
+				log.warn( "Test event appended to a released log, event dropped" );
+				return;
+			}
+
+			startWriter();
+			pendingEvents.incrementAndGet();
+			boolean queued = false;
+			try
+			{
+				queued = queue.offer( new PendingEvent( interpolationLevel, timestamp, sourceId, data, null ),
+						APPEND_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS );
+			}
+			catch( InterruptedException e )
+			{
+				Thread.currentThread().interrupt();
+			}
+			if( !queued )
+			{
+				pendingEvents.decrementAndGet();
+				if( droppedEvents.getAndIncrement() % QUEUE_CAPACITY == 0 )
+				{
+					log.warn( "Test events are arriving faster than they can be written, {} events dropped so far",
+							droppedEvents.get() );
+				}
+			}
+		}
+		finally
+		{
+			releaseLock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * Returns the number of events dropped because the queue was full.
+	 */
+	public long getDroppedCount()
+	{
+		return droppedEvents.get();
+	}
+
+	/**
+	 * Blocks until all events queued before this call have been written.
+	 */
+	public void flush()
+	{
+		Thread writer;
+		synchronized( this )
+		{
+			writer = writerThread;
+		}
+		if( pendingEvents.get() == 0 || writer == null || Thread.currentThread() == writer || !writer.isAlive() )
+		{
+			return;
+		}
+
+		CountDownLatch latch = new CountDownLatch( 1 );
+		try
+		{
+			queue.put( new PendingEvent( 0, 0, 0, null, latch ) );
+			latch.await();
+		}
+		catch( InterruptedException e )
+		{
+			log.warn( "Interrupted while flushing queued test events" );
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * Returns the number of events from the given sources.
+	 */
+	public int count( int interpolationLevel, Collection<Long> sourceIds )
+	{
+		flush();
+		LevelLog levelLog = getLevel( interpolationLevel );
+		return levelLog == null ? 0 : levelLog.count( sourceIds );
+	}
+
+	/**
+	 * Reads up to limit events from the given sources, starting at the event
+	 * with the given index among the events of those sources.
+	 */
+	public List<Map<String, Object>> read( int interpolationLevel, int offset, int limit, Collection<Long> sourceIds )
+			throws IOException
+	{
+		flush();
+		LevelLog levelLog = getLevel( interpolationLevel );
+		return levelLog == null ? Collections.<Map<String, Object>> emptyList() : levelLog.read( offset, limit,
+				sourceIds );
+	}
+
+	/**
+	 * Reads the events from the given sources with startTime <= timestamp <=
+	 * endTime, ordered by timestamp.
+	 */
+	public List<Map<String, Object>> readRange( int interpolationLevel, long startTime, long endTime,
+			Collection<Long> sourceIds ) throws IOException
+	{
+		flush();
+		LevelLog levelLog = getLevel( interpolationLevel );
+		return levelLog == null ? Collections.<Map<String, Object>> emptyList() : levelLog.readRange( startTime,
+				endTime, sourceIds );
+	}
+
+	/**
+	 * Stops accepting events, waits for the writer Thread to write the queued
+	 * ones, and closes the log.
+	 */
+	@Override
+	public void release()
+	{
+		releaseLock.writeLock().lock();
+		try
+		{
+			released = true;
+		}
+		finally
+		{
+			releaseLock.writeLock().unlock();
+		}
+
+		Thread writer;
+		synchronized( this )
+		{
+			writer = writerThread;
+			writerThread = null;
+		}
+
+		if( writer != null && writer != Thread.currentThread() )
+		{
+			// wakes the writer up if it is waiting for events
+			queue.offer( new PendingEvent( 0, 0, 0, null, new CountDownLatch( 1 ) ) );
+			try
+			{
+				writer.join();
+			}
+			catch( InterruptedException e )
+			{
+				log.warn( "Interrupted while waiting for queued test events to be written" );
+				Thread.currentThread().interrupt();
+			}
+		}
+
+		synchronized( this )
+		{
+			closed = true;
+			ReleasableUtils.releaseAll( levels.values() );
+			levels.clear();
+		}
+	}
+
+	private synchronized void startWriter()
+	{
+		if( writerThread == null && !released )
+		{
+			writerThread = new Thread( new Runnable()
+			{
+				@Override
+				public void run()
+				{
+					runWriter();
+				}
+			}, "TestEventLog" );
+			writerThread.setDaemon( true );
+			writerThread.start();
+		}
+	}
+
+	private synchronized LevelLog getLevel( int interpolationLevel )
+	{
+		return levels.get( interpolationLevel );
+	}
+
+	private synchronized LevelLog getOrCreateLevel( int interpolationLevel ) throws IOException
+	{
+		LevelLog levelLog = levels.get( interpolationLevel );
+		if( levelLog == null && !closed )
+		{
+			levelLog = new LevelLog( new File( directory, String.valueOf( interpolationLevel ) ) );
+			levels.put( interpolationLevel, levelLog );
+		}
+
+		return levelLog;
+	}
+
+	private void runWriter()
+	{
+		List<PendingEvent> batch = new ArrayList<>();
+		while( !released || !queue.isEmpty() )
+		{
+			try
+			{
+				PendingEvent first = queue.poll( 1, TimeUnit.SECONDS );
+				if( first == null )
+					continue;
+
+				batch.add( first );
+				queue.drainTo( batch, MAX_BATCH_SIZE - 1 );
+				writeBatch( batch );
+			}
+			catch( InterruptedException e )
+			{
+				log.warn( "TestEventLog writer interrupted while waiting for events" );
+			}
+			catch( IOException | RuntimeException e )
+			{
+				log.error( "Unable to write test events to " + directory, e );
+			}
+			finally
+			{
+				for( PendingEvent event : batch )
+				{
+					if( event.isFlush() )
+						event.flushed.countDown();
+					else
+						pendingEvents.decrementAndGet();
+				}
+				batch.clear();
+			}
+		}
+	}
+
+	private void writeBatch( List<PendingEvent> batch ) throws IOException
+	{
+		Map<Integer, List<PendingEvent>> eventsByLevel = new HashMap<>();
+		for( PendingEvent event : batch )
+		{
+			if( !event.isFlush() )
+			{
+				List<PendingEvent> events = eventsByLevel.get( event.level );
+				if( events == null )
+				{
+					events = new ArrayList<>();
+					eventsByLevel.put( event.level, events );
+				}
+				events.add( event );
+			}
+		}
+
+		for( Map.Entry<Integer, List<PendingEvent>> entry : eventsByLevel.entrySet() )
+		{
+			LevelLog levelLog = getOrCreateLevel( entry.getKey() );
+			if( levelLog != null )
+			{
+				levelLog.write( entry.getValue() );
+			}
+		}
+	}
+
+	private static class PendingEvent
+	{
+		private final int level;
+		private final long timestamp;
+		private final long sourceId;
+		private final byte[] data;
+		private final CountDownLatch flushed;
+
+		public PendingEvent( int level, long timestamp, long sourceId, byte[] data, CountDownLatch flushed )
+		{
+			this.level = level;
+			this.timestamp = timestamp;
+			this.sourceId = sourceId;
+			this.data = data;
+			this.flushed = flushed;
+		}
+
+		public boolean isFlush()
+		{
+			return flushed != null;
+		}
+	}
+
+	/**
+	 * The segments and index of a single interpolation level.
+	 */
+	private static class LevelLog implements Releasable
+	{
+		private final File directory;
+		private final List<Segment> segments = new ArrayList<>();
+		private final Map<Long, RecordList> recordsBySource = new HashMap<>();
+		private final ByteBuffer writeBuffer = ByteBuffer.allocateDirect( WRITE_BUFFER_SIZE );
+		private final ByteBuffer header = ByteBuffer.allocate( HEADER_SIZE );
+
+		// the records in the writeBuffer, which are indexed once they are written
+		private final List<PendingEvent> bufferedEvents = new ArrayList<>();
+		private final List<Long> bufferedOffsets = new ArrayList<>();
+
+		private int size = 0;
+
+		// one entry per INDEX_INTERVAL records
+		private int[] chunkSegments = new int[16];
+		private long[] chunkOffsets = new long[16];
+		private long[] chunkMinTimes = new long[16];
+		private long[] chunkMaxTimes = new long[16];
+
+		public LevelLog( File directory ) throws IOException
+		{
+			this.directory = directory;
+			if( !directory.isDirectory() && !directory.mkdirs() )
+			{
+				throw new IOException( "Unable to create directory: " + directory );
+			}
+
+			File[] files = directory.listFiles( new FileFilter()
+			{
+				@Override
+				public boolean accept( File file )
+				{
+					return file.getName().endsWith( SEGMENT_EXTENSION );
+				}
+			} );
+			Arrays.sort( files );
+			for( File file : files )
+			{
+				Segment segment = new Segment( file );
+				segments.add( segment );
+				if( segment.channel.size() < 4 )
+				{
+					// the log was closed while the segment was being created
+					log.warn( "Rewriting the incomplete header of test event log segment {}", file );
+					segment.channel.truncate( 0 );
+					writeMagic( segment );
+				}
+				else
+				{
+					segment.length = scan( segment, segments.size() - 1 );
+					segment.channel.truncate( segment.length );
+				}
+			}
+		}
+
+		public synchronized int count( Collection<Long> sourceIds )
+		{
+			int count = 0;
+			for( Long sourceId : new HashSet<>( sourceIds ) )
+			{
+				RecordList records = recordsBySource.get( sourceId );
+				if( records != null )
+					count += records.size;
+			}
+
+			return count;
+		}
+
+		public synchronized List<Map<String, Object>> read( int offset, int limit, Collection<Long> sourceIds )
+				throws IOException
+		{
+			List<RecordList> lists = new ArrayList<>();
+			for( Long sourceId : new HashSet<>( sourceIds ) )
+			{
+				RecordList records = recordsBySource.get( sourceId );
+				if( records != null )
+					lists.add( records );
+			}
+
+			List<Map<String, Object>> result = new ArrayList<>();
+			if( lists.isEmpty() || offset < 0 || limit <= 0 )
+			{
+				return result;
+			}
+
+			// find the record number of the event at the offset, by its rank among all the records
+			int low = 0;
+			int high = size;
+			while( low < high )
+			{
+				int mid = ( low + high ) >>> 1;
+				int rank = 0;
+				for( RecordList records : lists )
+				{
+					rank += records.countBelow( mid + 1 );
+				}
+				if( rank <= offset )
+					low = mid + 1;
+				else
+					high = mid;
+			}
+
+			int[] positions = new int[lists.size()];
+			for( int i = 0; i < positions.length; i++ )
+			{
+				positions[i] = lists.get( i ).countBelow( low );
+			}
+
+			Cursor cursor = new Cursor();
+			while( result.size() < limit )
+			{
+				int next = -1;
+				int nextRecord = Integer.MAX_VALUE;
+				for( int i = 0; i < positions.length; i++ )
+				{
+					RecordList records = lists.get( i );
+					if( positions[i] < records.size && records.values[positions[i]] < nextRecord )
+					{
+						next = i;
+						nextRecord = records.values[positions[i]];
+					}
+				}
+				if( next < 0 )
+					break;
+
+				positions[next]++ ;
+				cursor.seek( nextRecord );
+				result.add( cursor.readRow( nextRecord ) );
+			}
+
+			return result;
+		}
+
+		public synchronized List<Map<String, Object>> readRange( long startTime, long endTime,
+				Collection<Long> sourceIds ) throws IOException
+		{
+			Set<Long> sources = new HashSet<>( sourceIds );
+			List<Map<String, Object>> result = new ArrayList<>();
+			Cursor cursor = new Cursor();
+
+			int chunks = ( size + INDEX_INTERVAL - 1 ) / INDEX_INTERVAL;
+			for( int chunk = 0; chunk < chunks; chunk++ )
+			{
+				if( chunkMaxTimes[chunk] < startTime || chunkMinTimes[chunk] > endTime )
+					continue;
+
+				int first = chunk * INDEX_INTERVAL;
+				int last = Math.min( size, first + INDEX_INTERVAL );
+				cursor.seek( first );
+				for( int record = first; record < last; record++ )
+				{
+					long timestamp = cursor.readHeader();
+					long sourceId = header.getLong( 8 );
+					if( timestamp >= startTime && timestamp <= endTime && sources.contains( sourceId ) )
+						result.add( cursor.readData( record, timestamp, sourceId ) );
+					else
+						cursor.skipData();
+				}
+			}
+
+			Collections.sort( result, new Comparator<Map<String, Object>>()
+			{
+				@Override
+				public int compare( Map<String, Object> a, Map<String, Object> b )
+				{
+					return Long.compare( ( Long )a.get( TestEventTable.STATIC_FIELD_TIMESTAMP ),
+							( Long )b.get( TestEventTable.STATIC_FIELD_TIMESTAMP ) );
+				}
+			} );
+
+			return result;
+		}
+
+		/**
+		 * Writes the given events, indexing each one only once it has been
+		 * written, so that a failed write leaves no index entries pointing past
+		 * the end of the log.
+		 */
+		public synchronized void write( List<PendingEvent> events ) throws IOException
+		{
+			Segment segment = segments.isEmpty() ? null : segments.get( segments.size() - 1 );
+			try
+			{
+				for( PendingEvent event : events )
+				{
+					int recordSize = HEADER_SIZE + event.data.length;
+					if( segment == null || segment.length + writeBuffer.position() + recordSize > SEGMENT_SIZE
+							&& segment.length + writeBuffer.position() > 4 )
+					{
+						flushBuffer( segment );
+						segment = newSegment();
+					}
+
+					if( writeBuffer.remaining() < recordSize )
+					{
+						flushBuffer( segment );
+					}
+					if( writeBuffer.remaining() < recordSize )
+					{
+						// larger than the buffer, write it directly
+						long offset = segment.length;
+						ByteBuffer record = ByteBuffer.allocate( recordSize );
+						record.putLong( event.timestamp ).putLong( event.sourceId ).putInt( event.data.length )
+								.put( event.data );
+						record.flip();
+						writeFully( segment, record );
+						index( segments.size() - 1, offset, event.timestamp, event.sourceId );
+					}
+					else
+					{
+						bufferedEvents.add( event );
+						bufferedOffsets.add( segment.length + writeBuffer.position() );
+						writeBuffer.putLong( event.timestamp ).putLong( event.sourceId ).putInt( event.data.length )
+								.put( event.data );
+					}
+				}
+				flushBuffer( segment );
+			}
+			finally
+			{
+				writeBuffer.clear();
+				bufferedEvents.clear();
+				bufferedOffsets.clear();
+			}
+		}
+
+		@Override
+		public synchronized void release()
+		{
+			for( Segment segment : segments )
+			{
+				Closeables.closeQuietly( segment.randomAccessFile );
+			}
+			segments.clear();
+		}
+
+		private Segment newSegment() throws IOException
+		{
+			Segment segment = new Segment( new File( directory, String.format( "%08d", segments.size() )
+					+ SEGMENT_EXTENSION ) );
+			try
+			{
+				segment.channel.truncate( 0 );
+				writeMagic( segment );
+			}
+			catch( IOException e )
+			{
+				Closeables.closeQuietly( segment.randomAccessFile );
+				throw e;
+			}
+			segments.add( segment );
+
+			return segment;
+		}
+
+		private static void writeMagic( Segment segment ) throws IOException
+		{
+			ByteBuffer magic = ByteBuffer.allocate( 4 );
+			magic.putInt( MAGIC ).flip();
+			writeFully( segment, magic );
+		}
+
+		private void flushBuffer( Segment segment ) throws IOException
+		{
+			if( segment == null || writeBuffer.position() == 0 )
+				return;
+
+			writeBuffer.flip();
+			writeFully( segment, writeBuffer );
+			writeBuffer.clear();
+
+			for( int i = 0; i < bufferedEvents.size(); i++ )
+			{
+				PendingEvent event = bufferedEvents.get( i );
+				index( segments.size() - 1, bufferedOffsets.get( i ), event.timestamp, event.sourceId );
+			}
+			bufferedEvents.clear();
+			bufferedOffsets.clear();
+		}
+
+		/**
+		 * Writes the buffer at the end of the segment. If the write fails, the
+		 * segment is truncated back to where it was so that the next write
+		 * overwrites whatever part of the buffer was written.
+		 */
+		private static void writeFully( Segment segment, ByteBuffer buffer ) throws IOException
+		{
+			long start = segment.length;
+			try
+			{
+				while( buffer.hasRemaining() )
+				{
+					segment.length += segment.channel.write( buffer, segment.length );
+				}
+			}
+			catch( IOException e )
+			{
+				segment.length = start;
+				try
+				{
+					segment.channel.truncate( start );
+				}
+				catch( IOException truncateError )
+				{
+					log.debug( "Unable to truncate " + segment.file + " after a failed write", truncateError );
+				}
+				throw e;
+			}
+		}
+
+		/**
+		 * Indexes the records of a segment, returning the length of the segment
+		 * up to the end of the last complete record.
+		 */
+		private long scan( Segment segment, int segmentIndex ) throws IOException
+		{
+			long length = segment.channel.size();
+			ByteBuffer magic = ByteBuffer.allocate( 4 );
+			if( segment.channel.read( magic, 0 ) < 4 || magic.getInt( 0 ) != MAGIC )
+			{
+				throw new IOException( "Not a test event log segment: " + segment.file );
+			}
+
+			long offset = 4;
+			while( offset + HEADER_SIZE <= length )
+			{
+				header.clear();
+				readFully( segment.channel, header, offset );
+				long recordEnd = offset + HEADER_SIZE + header.getInt( 16 );
+				if( header.getInt( 16 ) < 0 || recordEnd > length )
+				{
+					break;
+				}
+
+				index( segmentIndex, offset, header.getLong( 0 ), header.getLong( 8 ) );
+				offset = recordEnd;
+			}
+
+			if( offset < length )
+			{
+				log.warn( "Discarding partially written test event in {}", segment.file );
+			}
+
+			return offset;
+		}
+
+		private void index( int segmentIndex, long offset, long timestamp, long sourceId )
+		{
+			int chunk = size / INDEX_INTERVAL;
+			if( size % INDEX_INTERVAL == 0 )
+			{
+				if( chunk == chunkSegments.length )
+				{
+					chunkSegments = Arrays.copyOf( chunkSegments, chunk * 2 );
+					chunkOffsets = Arrays.copyOf( chunkOffsets, chunk * 2 );
+					chunkMinTimes = Arrays.copyOf( chunkMinTimes, chunk * 2 );
+					chunkMaxTimes = Arrays.copyOf( chunkMaxTimes, chunk * 2 );
+				}
+				chunkSegments[chunk] = segmentIndex;
+				chunkOffsets[chunk] = offset;
+				chunkMinTimes[chunk] = timestamp;
+				chunkMaxTimes[chunk] = timestamp;
+			}
+			else
+			{
+				chunkMinTimes[chunk] = Math.min( chunkMinTimes[chunk], timestamp );
+				chunkMaxTimes[chunk] = Math.max( chunkMaxTimes[chunk], timestamp );
+			}
+
+			RecordList records = recordsBySource.get( sourceId );
+			if( records == null )
+			{
+				records = new RecordList();
+				recordsBySource.put( sourceId, records );
+			}
+			records.add( size++ );
+		}
+
+		private static void readFully( FileChannel channel, ByteBuffer buffer, long position ) throws IOException
+		{
+			while( buffer.hasRemaining() )
+			{
+				int read = channel.read( buffer, position );
+				if( read < 0 )
+				{
+					throw new IOException( "Unexpected end of test event log" );
+				}
+				position += read;
+			}
+		}
+
+		/**
+		 * Reads records sequentially, moving on to the next segment at the end of
+		 * each one.
+		 */
+		private class Cursor
+		{
+			private int record = -1;
+			private int segmentIndex;
+			private long offset;
+
+			/**
+			 * Moves to the given record, skipping forward from the current one if
+			 * it is in the same chunk, or starting from the indexed record of its
+			 * chunk otherwise.
+			 */
+			public void seek( int target ) throws IOException
+			{
+				if( record < 0 || target < record || target / INDEX_INTERVAL != record / INDEX_INTERVAL )
+				{
+					int chunk = target / INDEX_INTERVAL;
+					record = chunk * INDEX_INTERVAL;
+					segmentIndex = chunkSegments[chunk];
+					offset = chunkOffsets[chunk];
+				}
+				while( record < target )
+				{
+					readHeader();
+					skipData();
+				}
+			}
+
+			public long readHeader() throws IOException
+			{
+				while( offset >= segments.get( segmentIndex ).length )
+				{
+					segmentIndex++ ;
+					offset = 4;
+				}
+				header.clear();
+				readFully( segments.get( segmentIndex ).channel, header, offset );
+				offset += HEADER_SIZE;
+
+				return header.getLong( 0 );
+			}
+
+			public void skipData()
+			{
+				offset += header.getInt( 16 );
+				record++ ;
+			}
+
+			public Map<String, Object> readData( int recordNumber, long timestamp, long sourceId ) throws IOException
+			{
+				ByteBuffer data = ByteBuffer.allocate( header.getInt( 16 ) );
+				readFully( segments.get( segmentIndex ).channel, data, offset );
+				offset += data.capacity();
+				record++ ;
+
+				Map<String, Object> row = new HashMap<>();
+				row.put( TestEventTable.STATIC_FIELD_ID, ( long )recordNumber + 1 );
+				row.put( TestEventTable.STATIC_FIELD_TIMESTAMP, timestamp );
+				row.put( TestEventTable.STATIC_FIELD_SOURCEID, sourceId );
+				row.put( TestEventTable.STATIC_FIELD_DATA, data.array() );
+
+				return row;
+			}
+
+			public Map<String, Object> readRow( int recordNumber ) throws IOException
+			{
+				long timestamp = readHeader();
+				return readData( recordNumber, timestamp, header.getLong( 8 ) );
+			}
+		}
+	}
+
+	private static class Segment
+	{
+		private final File file;
+		private final RandomAccessFile randomAccessFile;
+		private final FileChannel channel;
+		private long length;
+
+		public Segment( File file ) throws IOException
+		{
+			this.file = file;
+			randomAccessFile = new RandomAccessFile( file, "rw" );
+			channel = randomAccessFile.getChannel();
+		}
+	}
+
+	/**
+	 * A growable, ascending list of record numbers.
+	 */
+	private static class RecordList
+	{
+		private int[] values = new int[16];
+		private int size = 0;
+
+		public void add( int value )
+		{
+			if( size == values.length )
+				values = Arrays.copyOf( values, size * 2 );
+			values[size++ ] = value;
+		}
+
+		/**
+		 * Returns the number of record numbers lower than the given one.
+		 */
+		public int countBelow( int value )
+		{
+			int low = 0;
+			int high = size;
+			while( low < high )
+			{
+				int mid = ( low + high ) >>> 1;
+				if( values[mid] < value )
+					low = mid + 1;
+				else
+					high = mid;
+			}
+
+			return low;
+		}
+	}
+}
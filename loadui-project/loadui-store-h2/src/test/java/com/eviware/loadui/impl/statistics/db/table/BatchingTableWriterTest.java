@@ -0,0 +1,135 @@
+/*
+ * Copyright 2013 SmartBear Software
+ * 
+ * Licensed under the EUPL, Version 1.1 or - as soon they will be approved by the European Commission - subsequent
+ * versions of the EUPL (the "Licence");
+ * You may not use this work except in compliance with the Licence.
+ * You may obtain a copy of the Licence at:
+ * 
+ * http://ec.europa.eu/idabc/eupl
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the Licence is
+ * distributed on an "AS IS" basis, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the Licence for the specific language governing permissions and limitations
+ * under the Licence.
+ */
+package com.eviware.loadui.impl.statistics.db.table;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.sql.Connection;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import com.eviware.loadui.impl.statistics.db.table.model.DataTable;
+
+public class BatchingTableWriterTest
+{
+	private Connection connection;
+	private TableBase table1;
+	private TableBase table2;
+
+	@Before
+	public void setup()
+	{
+		connection = mock( Connection.class );
+		table1 = mock( DataTable.class );
+		table2 = mock( DataTable.class );
+		when( table1.getConnection() ).thenReturn( connection );
+		when( table2.getConnection() ).thenReturn( connection );
+	}
+
+	@Test
+	@SuppressWarnings( { "unchecked", "rawtypes" } )
+	public void shouldBatchRowsPerTableAndCommitOnce() throws Exception
+	{
+		BatchingTableWriter writer = new BatchingTableWriter( 100, 100, 10, TimeUnit.SECONDS );
+		writer.write( table1, row( 1 ) );
+		writer.write( table2, row( 2 ) );
+		writer.write( table1, row( 3 ) );
+		writer.write( table1, row( 4 ) );
+
+		writer.flush();
+
+		ArgumentCaptor<Collection> rows = ArgumentCaptor.forClass( Collection.class );
+		verify( table1 ).insertBatch( rows.capture() );
+		assertThat( rows.getValue().size(), is( 3 ) );
+		verify( table2 ).insertBatch( rows.capture() );
+		assertThat( rows.getValue().size(), is( 1 ) );
+		verify( connection, times( 1 ) ).commit();
+	}
+
+	@Test
+	@SuppressWarnings( "unchecked" )
+	public void shouldCommitWhenBatchIsFull() throws Exception
+	{
+		BatchingTableWriter writer = new BatchingTableWriter( 100, 2, 10, TimeUnit.SECONDS );
+		for( int i = 0; i < 4; i++ )
+		{
+			writer.write( table1, row( i ) );
+		}
+
+		verify( table1, timeout( 5000 ).times( 2 ) ).insertBatch( any( Collection.class ) );
+		verify( connection, timeout( 5000 ).times( 2 ) ).commit();
+	}
+
+	@Test
+	public void shouldCommitWhenIntervalHasPassed() throws Exception
+	{
+		BatchingTableWriter writer = new BatchingTableWriter( 100, 100, 50, TimeUnit.MILLISECONDS );
+		writer.write( table1, row( 1 ) );
+
+		verify( connection, timeout( 5000 ) ).commit();
+		assertThat( writer.getQueueDepth(), is( 0 ) );
+	}
+
+	@Test
+	@SuppressWarnings( "unchecked" )
+	public void flushingOneTableShouldNotWaitForOtherTables() throws Exception
+	{
+		final CountDownLatch inserting = new CountDownLatch( 1 );
+		final CountDownLatch release = new CountDownLatch( 1 );
+		doAnswer( new Answer<Void>()
+		{
+			@Override
+			public Void answer( InvocationOnMock invocation ) throws Throwable
+			{
+				inserting.countDown();
+				release.await();
+				return null;
+			}
+		} ).when( table2 ).insertBatch( any( Collection.class ) );
+
+		BatchingTableWriter writer = new BatchingTableWriter( 100, 100, 10, TimeUnit.MILLISECONDS );
+		writer.write( table2, row( 1 ) );
+		assertThat( inserting.await( 5, TimeUnit.SECONDS ), is( true ) );
+
+		writer.flush( table1 );
+
+		release.countDown();
+		writer.flush( table2 );
+		verify( connection ).commit();
+	}
+
+	private static Map<String, Object> row( long timestamp )
+	{
+		return Collections.<String, Object> singletonMap( DataTable.STATIC_FIELD_TIMESTAMP, timestamp );
+	}
+}
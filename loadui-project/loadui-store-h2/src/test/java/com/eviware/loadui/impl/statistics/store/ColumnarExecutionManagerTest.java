@@ -0,0 +1,170 @@
+/*
+ * Copyright 2013 SmartBear Software
+ * 
+ * Licensed under the EUPL, Version 1.1 or - as soon they will be approved by the European Commission - subsequent
+ * versions of the EUPL (the "Licence");
+ * You may not use this work except in compliance with the Licence.
+ * You may obtain a copy of the Licence at:
+ * 
+ * http://ec.europa.eu/idabc/eupl
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the Licence is
+ * distributed on an "AS IS" basis, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the Licence for the specific language governing permissions and limitations
+ * under the Licence.
+ */
+package com.eviware.loadui.impl.statistics.store;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.eviware.loadui.LoadUI;
+import com.eviware.loadui.api.statistics.store.Entry;
+import com.eviware.loadui.api.statistics.store.Execution;
+import com.eviware.loadui.api.statistics.store.Track;
+import com.eviware.loadui.api.testevents.TestEvent;
+import com.eviware.loadui.api.testevents.TestEvent.Source;
+import com.eviware.loadui.api.testevents.TestEventRegistry;
+import com.eviware.loadui.impl.statistics.store.columnar.ColumnarStore;
+import com.eviware.loadui.impl.statistics.store.columnar.TestEventLog;
+import com.eviware.loadui.impl.statistics.store.testevents.TestEventData;
+import com.eviware.loadui.impl.statistics.store.testevents.TestEventSourceConfig;
+import com.eviware.loadui.util.statistics.store.EntryImpl;
+import com.eviware.loadui.util.statistics.store.TrackDescriptorImpl;
+import com.eviware.loadui.util.test.BeanInjectorMocker;
+import com.google.common.collect.Lists;
+
+public class ColumnarExecutionManagerTest
+{
+	H2ExecutionManager h2;
+
+	long now = System.currentTimeMillis();
+
+	@Before
+	public void initialize()
+	{
+		new BeanInjectorMocker();
+		System.setProperty( LoadUI.LOADUI_HOME, "target" );
+
+		h2 = new H2ExecutionManager( mock( TestEventRegistry.class ) );
+
+		Map<String, Class<? extends Number>> types = new HashMap<>();
+		types.put( "a", Long.class );
+		types.put( "b", Double.class );
+		h2.registerTrackDescriptor( new TrackDescriptorImpl( "testTrack", types, null ) );
+	}
+
+	@Test
+	public void shouldStoreNewExecutionsInColumnFilesWhenEnabled()
+	{
+		System.setProperty( ColumnarStore.STORE_PROPERTY, ColumnarStore.STORE_COLUMNAR );
+		Execution execution;
+		try
+		{
+			execution = h2.startExecution( "columnarTestExecution", now );
+		}
+		finally
+		{
+			System.clearProperty( ColumnarStore.STORE_PROPERTY );
+		}
+		writeEntries();
+
+		assertTrue( ColumnarStore.exists( ( ( ExecutionImpl )execution ).getExecutionDir() ) );
+		assertEntries( h2.getTrack( "testTrack" ) );
+
+		h2.stopExecution();
+		h2.release( execution.getId() );
+		assertEntries( execution.getTrack( "testTrack" ) );
+
+		execution.getTrack( "testTrack" ).delete();
+		assertEquals( 0, Lists.newArrayList( execution.getTrack( "testTrack" ).getRange( "local1", 0, 100, 0 ) )
+				.size() );
+	}
+
+	@Test
+	public void shouldStoreTestEventsInEventLogWhenEnabled()
+	{
+		System.setProperty( ColumnarStore.STORE_PROPERTY, ColumnarStore.STORE_COLUMNAR );
+		Execution execution;
+		try
+		{
+			execution = h2.startExecution( "columnarTestExecution", now );
+		}
+		finally
+		{
+			System.clearProperty( ColumnarStore.STORE_PROPERTY );
+		}
+
+		@SuppressWarnings( "unchecked" )
+		Source<TestEvent> source = mock( TestEvent.Source.class );
+		when( source.getLabel() ).thenReturn( "source-label" );
+		when( source.getHash() ).thenReturn( "-source-hash" );
+		when( source.getData() ).thenReturn( new byte[0] );
+		when( source.getType() ).thenReturn( TestEvent.class );
+
+		for( int i = 0; i < 100; i++ )
+		{
+			h2.writeTestEvent( "type-label", source, now + i, new byte[] { ( byte )i }, 0 );
+		}
+		h2.stopExecution();
+		h2.release( execution.getId() );
+
+		assertTrue( TestEventLog.exists( ( ( ExecutionImpl )execution ).getExecutionDir() ) );
+		assertEquals( 100, h2.getTestEventCount( execution.getId(), new ArrayList<TestEventSourceConfig>() ) );
+
+		List<TestEventData> events = Lists.newArrayList( h2.readTestEvents( execution.getId(), 90, 20,
+				new ArrayList<TestEventSourceConfig>() ) );
+		assertEquals( 10, events.size() );
+		assertEquals( 90, events.get( 0 ).getTimestamp() );
+		assertEquals( "source-label", events.get( 0 ).getTestEventSourceConfig().getLabel() );
+
+		assertEquals( 11, Lists.newArrayList(
+				h2.readTestEventRange( execution.getId(), 10, 20, 0, new ArrayList<TestEventSourceConfig>() ) ).size() );
+	}
+
+	private void writeEntries()
+	{
+		Map<String, Number> values = new HashMap<>();
+		values.put( "a", 1 );
+		values.put( "b", 2.5 );
+
+		h2.writeEntry( "testTrack", new EntryImpl( now + 10, values ), "local1", 0 );
+		h2.writeEntry( "testTrack", new EntryImpl( now + 20, values ), "local1", 0 );
+		h2.writeEntry( "testTrack", new EntryImpl( now + 30, values ), "local1", 0 );
+		h2.writeEntry( "testTrack", new EntryImpl( now + 30, values ), "local2", 1 );
+	}
+
+	private static void assertEntries( Track track )
+	{
+		List<Entry> entries = Lists.newArrayList( track.getRange( "local1", 15, 30, 0 ) );
+		assertEquals( 2, entries.size() );
+		assertEquals( 20, entries.get( 0 ).getTimestamp() );
+		assertEquals( 1L, entries.get( 0 ).getValue( "a" ) );
+		assertEquals( 2.5, entries.get( 0 ).getValue( "b" ) );
+
+		assertEquals( 1, Lists.newArrayList( track.getRange( "local2", 0, 100, 1 ) ).size() );
+		assertEquals( 0, Lists.newArrayList( track.getRange( "local2", 0, 100, 0 ) ).size() );
+
+		assertEquals( 10, track.getNextEntry( "local1", 5, 0 ).getTimestamp() );
+		assertNull( track.getNextEntry( "local1", 31, 0 ) );
+	}
+
+	@After
+	public void release()
+	{
+		h2.delete( "columnarTestExecution" );
+		h2.release();
+	}
+}
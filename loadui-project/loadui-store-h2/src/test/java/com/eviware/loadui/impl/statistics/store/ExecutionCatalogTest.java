@@ -0,0 +1,86 @@
+/*
+ * Copyright 2013 SmartBear Software
+ * 
+ * Licensed under the EUPL, Version 1.1 or - as soon they will be approved by the European Commission - subsequent
+ * versions of the EUPL (the "Licence");
+ * You may not use this work except in compliance with the Licence.
+ * You may obtain a copy of the Licence at:
+ * 
+ * http://ec.europa.eu/idabc/eupl
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the Licence is
+ * distributed on an "AS IS" basis, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the Licence for the specific language governing permissions and limitations
+ * under the Licence.
+ */
+package com.eviware.loadui.impl.statistics.store;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.junit.Assert.assertThat;
+
+import java.io.File;
+import java.util.Arrays;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class ExecutionCatalogTest
+{
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private File executionDir;
+
+	@Before
+	public void setup() throws Exception
+	{
+		executionDir = folder.newFolder( "Execution_1" );
+		ExecutionCatalog.getPropertiesFile( executionDir ).createNewFile();
+	}
+
+	private ExecutionCatalog.Entry createEntry( String label )
+	{
+		return new ExecutionCatalog.Entry( executionDir.getName(), "exec1", label, 1000, 5000, false, 1234,
+				ExecutionCatalog.getPropertiesFile( executionDir ).lastModified() );
+	}
+
+	@Test
+	public void shouldPersistEntriesOnFlush()
+	{
+		ExecutionCatalog catalog = new ExecutionCatalog( folder.getRoot() );
+		catalog.update( createEntry( "My execution" ) );
+
+		assertThat( new ExecutionCatalog( folder.getRoot() ).get( executionDir ), is( nullValue() ) );
+
+		catalog.flush();
+
+		ExecutionCatalog.Entry entry = new ExecutionCatalog( folder.getRoot() ).get( executionDir );
+		assertThat( entry, is( createEntry( "My execution" ) ) );
+		assertThat( entry.getLabel(), is( "My execution" ) );
+		assertThat( entry.getSizeOnDisk(), is( 1234L ) );
+	}
+
+	@Test
+	public void shouldIgnoreEntriesOfModifiedExecutions()
+	{
+		ExecutionCatalog catalog = new ExecutionCatalog( folder.getRoot() );
+		catalog.update( createEntry( "My execution" ) );
+
+		ExecutionCatalog.getPropertiesFile( executionDir ).setLastModified( 0 );
+
+		assertThat( catalog.get( executionDir ), is( nullValue() ) );
+	}
+
+	@Test
+	public void shouldRemoveEntries()
+	{
+		ExecutionCatalog catalog = new ExecutionCatalog( folder.getRoot() );
+		catalog.update( createEntry( "My execution" ) );
+		catalog.replaceAll( Arrays.<ExecutionCatalog.Entry> asList() );
+
+		assertThat( new ExecutionCatalog( folder.getRoot() ).get( executionDir ), is( nullValue() ) );
+	}
+}
@@ -18,6 +18,8 @@ package com.eviware.loadui.impl.statistics.store;
 import static junit.framework.Assert.assertTrue;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.fail;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
@@ -31,8 +33,10 @@ import org.junit.Before;
 import org.junit.Test;
 
 import com.eviware.loadui.LoadUI;
+import com.eviware.loadui.api.statistics.store.Entry;
 import com.eviware.loadui.api.statistics.store.Execution;
 import com.eviware.loadui.api.statistics.store.Track;
+import com.eviware.loadui.api.statistics.store.TrackWriter;
 import com.eviware.loadui.api.testevents.TestEvent;
 import com.eviware.loadui.api.testevents.TestEvent.Source;
 import com.eviware.loadui.api.testevents.TestEventRegistry;
@@ -168,6 +172,32 @@ public class H2ExecutionManagerTest
 		h2.delete( "test1" );
 	}
 
+	@Test
+	public void testOpenWriter()
+	{
+		h2.startExecution( "test1", 10 );
+
+		Map<String, Class<? extends Number>> types = new HashMap<>();
+		types.put( COLUMN_1, Long.class );
+
+		Map<String, Number> values = new HashMap<>();
+		values.put( COLUMN_1, 1L );
+
+		h2.registerTrackDescriptor( new TrackDescriptorImpl( "t1", types, null ) );
+		TrackWriter writer = h2.openWriter( "t1", "local1", 0 );
+		assertSame( writer, h2.openWriter( "t1", "local1", 0 ) );
+
+		writer.write( new EntryImpl( 110, values ) );
+		assertEquals( 100, writer.getLastEntry().getTimestamp() );
+		assertSame( writer.getLastEntry(), h2.getLastEntry( "t1", "local1" ) );
+
+		h2.writeEntry( "t1", new EntryImpl( 210, values ), "local1" );
+		assertEquals( 200, writer.getLastEntry().getTimestamp() );
+		assertEquals( 1, Iterables.size( h2.getTrack( "t1" ).getRange( "local1", 0, 150 ) ) );
+
+		h2.delete( "test1" );
+	}
+
 	@Test
 	public void testWriteTestEvent()
 	{
@@ -292,4 +322,63 @@ public class H2ExecutionManagerTest
 		h2.delete( "test1" );
 	}
 
+	@Test
+	public void shouldSeeRowsWrittenToCachedBlocks()
+	{
+		Execution e = h2.startExecution( "test1", 0 );
+		try
+		{
+			Map<String, Class<? extends Number>> types = new HashMap<>();
+			types.put( COLUMN_1, Long.class );
+			h2.registerTrackDescriptor( new TrackDescriptorImpl( "t1", types, null ) );
+			TrackWriter local1 = h2.openWriter( "t1", "local1", 0 );
+			TrackWriter local2 = h2.openWriter( "t1", "local2", 0 );
+
+			local1.write( newEntry( 1000, 1L ) );
+			local2.write( newEntry( 20 * 60 * 1000, 2L ) );
+			Track track = e.getTrack( "t1" );
+			assertEquals( 1, Iterables.size( track.getRange( "local1", 0, 10 * 60 * 1000 ) ) );
+			assertEquals( 1, Iterables.size( track.getRange( "local1", 0, 10 * 60 * 1000 ) ) );
+			assertTrue( h2.getRangeCacheStats().hitCount() > 0 );
+
+			local1.write( newEntry( 2000, 3L ) );
+			assertEquals( 2, Iterables.size( track.getRange( "local1", 0, 10 * 60 * 1000 ) ) );
+		}
+		finally
+		{
+			h2.delete( e.getId() );
+		}
+	}
+
+	private static Entry newEntry( long timestamp, long value )
+	{
+		Map<String, Number> values = new HashMap<>();
+		values.put( COLUMN_1, value );
+		return new EntryImpl( timestamp, values );
+	}
+
+	@Test
+	public void testSummaryEntry()
+	{
+		Execution e = h2.startExecution( "test1", 10 );
+		try
+		{
+			Map<String, Number> values = new HashMap<>();
+			values.put( COLUMN_1, 1L );
+			values.put( COLUMN_4, 4.5 );
+			h2.writeSummaryEntry( "t1", "local1", new EntryImpl( 100, values ) );
+			h2.stopExecution();
+			h2.release();
+
+			Entry summary = h2.getExecution( "test1" ).getSummaryEntry( "t1", "local1" );
+			assertEquals( 100, summary.getTimestamp() );
+			assertEquals( 1L, summary.getValue( COLUMN_1 ) );
+			assertEquals( 4.5, summary.getValue( COLUMN_4 ) );
+			assertNull( h2.getExecution( "test1" ).getSummaryEntry( "t1", "local2" ) );
+		}
+		finally
+		{
+			h2.delete( e.getId() );
+		}
+	}
 }
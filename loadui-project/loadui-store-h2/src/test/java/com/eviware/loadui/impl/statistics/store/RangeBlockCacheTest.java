@@ -0,0 +1,233 @@
+/*
+ * Copyright 2013 SmartBear Software
+ * 
+ * Licensed under the EUPL, Version 1.1 or - as soon they will be approved by the European Commission - subsequent
+ * versions of the EUPL (the "Licence");
+ * You may not use this work except in compliance with the Licence.
+ * You may obtain a copy of the Licence at:
+ * 
+ * http://ec.europa.eu/idabc/eupl
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the Licence is
+ * distributed on an "AS IS" basis, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the Licence for the specific language governing permissions and limitations
+ * under the Licence.
+ */
+package com.eviware.loadui.impl.statistics.store;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.eviware.loadui.api.statistics.store.RangeCursor;
+
+public class RangeBlockCacheTest
+{
+	private static final long MINUTE = 60 * 1000;
+
+	private final List<String> names = Arrays.asList( "a", "b" );
+
+	private RangeBlockCache cache;
+	private CountingLoader loader;
+
+	@Before
+	public void setup()
+	{
+		cache = new RangeBlockCache( 1024 * 1024 );
+		loader = new CountingLoader();
+		for( long t = 0; t < 20 * MINUTE; t += 1000 )
+		{
+			loader.timestamps.add( t );
+		}
+	}
+
+	@Test
+	public void shouldServeOverlappingRangesFromCache() throws SQLException
+	{
+		assertEquals( 61, count( open( 2 * MINUTE, 3 * MINUTE, names ) ) );
+		assertEquals( 1, loader.opens );
+
+		assertEquals( 121, count( open( 3 * MINUTE, 5 * MINUTE, names ) ) );
+		assertEquals( 2, loader.opens );
+
+		assertEquals( 2, cache.getStats().missCount() );
+		assertEquals( 1, cache.getStats().hitCount() );
+	}
+
+	@Test
+	public void shouldMapValueNamesToBlockColumns() throws SQLException
+	{
+		RangeCursor cursor = open( 1000, 2000, Arrays.asList( "b", "missing" ) );
+
+		assertTrue( cursor.next() );
+		assertEquals( 1000, cursor.getTimestamp() );
+		assertEquals( 2000.0, cursor.getValue( 0 ), 0.0 );
+		assertTrue( Double.isNaN( cursor.getValue( 1 ) ) );
+		assertTrue( cursor.next() );
+		assertEquals( 2000, cursor.getTimestamp() );
+		assertFalse( cursor.next() );
+	}
+
+	@Test
+	public void shouldReadPastLengthFromLoader() throws SQLException
+	{
+		RangeCursor cursor = cache.openRange( "e", "t", "s", 0, 0, 10 * MINUTE, 7 * MINUTE, names, names, loader );
+		assertEquals( 601, count( cursor ) );
+
+		// the complete block up to 5 minutes and the rest of the range
+		assertEquals( 2, loader.opens );
+		assertEquals( 1, cache.size() );
+	}
+
+	@Test
+	public void shouldInvalidateWrittenBlock() throws SQLException
+	{
+		count( open( 0, MINUTE, names ) );
+		cache.invalidate( "e", "t", "s", 0, 30000, 20 * MINUTE );
+		count( open( 0, MINUTE, names ) );
+
+		assertEquals( 2, loader.opens );
+
+		// rows written to the block being written to leave complete blocks be
+		cache.invalidate( "e", "t", "s", 0, 20 * MINUTE, 20 * MINUTE );
+		count( open( 0, MINUTE, names ) );
+
+		assertEquals( 2, loader.opens );
+
+		cache.invalidateTrack( "e", null );
+		assertEquals( 0, cache.size() );
+	}
+
+	@Test
+	public void shouldNotCacheBlocksLoadedDuringInvalidation() throws SQLException
+	{
+		RangeBlockCache.Loader invalidatingLoader = new RangeBlockCache.Loader()
+		{
+			@Override
+			public RangeCursor open( long startTime, long endTime, List<String> valueNames )
+			{
+				cache.invalidateTrack( "e", "t" );
+				return loader.open( startTime, endTime, valueNames );
+			}
+		};
+
+		RangeCursor cursor = cache.openRange( "e", "t", "s", 0, 0, MINUTE, 20 * MINUTE, names, names,
+				invalidatingLoader );
+
+		assertEquals( 61, count( cursor ) );
+		assertEquals( 0, cache.size() );
+	}
+
+	@Test
+	public void shouldNotCacheBlockInvalidatedDuringLoad() throws SQLException
+	{
+		RangeBlockCache.Loader invalidatingLoader = new RangeBlockCache.Loader()
+		{
+			@Override
+			public RangeCursor open( long startTime, long endTime, List<String> valueNames )
+			{
+				cache.invalidate( "e", "t", "s", 0, startTime, 20 * MINUTE );
+				return loader.open( startTime, endTime, valueNames );
+			}
+		};
+
+		assertEquals( 61, count( cache.openRange( "e", "t", "s", 0, 0, MINUTE, 20 * MINUTE, names, names,
+				invalidatingLoader ) ) );
+		assertEquals( 0, cache.size() );
+	}
+
+	@Test
+	public void shouldKeepBlocksLoadedWhileOtherTracksAreWritten() throws SQLException
+	{
+		RangeBlockCache.Loader invalidatingLoader = new RangeBlockCache.Loader()
+		{
+			@Override
+			public RangeCursor open( long startTime, long endTime, List<String> valueNames )
+			{
+				cache.invalidate( "e", "other", "s", 0, startTime, 20 * MINUTE );
+				return loader.open( startTime, endTime, valueNames );
+			}
+		};
+
+		assertEquals( 61, count( cache.openRange( "e", "t", "s", 0, 0, MINUTE, 20 * MINUTE, names, names,
+				invalidatingLoader ) ) );
+		assertEquals( 1, cache.size() );
+	}
+
+	private RangeCursor open( long startTime, long endTime, List<String> valueNames ) throws SQLException
+	{
+		return cache.openRange( "e", "t", "s", 0, startTime, endTime, 20 * MINUTE, names, valueNames, loader );
+	}
+
+	private static int count( RangeCursor cursor )
+	{
+		int count = 0;
+		while( cursor.next() )
+		{
+			count++ ;
+		}
+		cursor.close();
+
+		return count;
+	}
+
+	private class CountingLoader implements RangeBlockCache.Loader
+	{
+		private final List<Long> timestamps = new ArrayList<>();
+		private int opens = 0;
+
+		@Override
+		public RangeCursor open( final long startTime, final long endTime, final List<String> valueNames )
+		{
+			opens++ ;
+			return new RangeCursor()
+			{
+				private int index = -1;
+
+				@Override
+				public List<String> getValueNames()
+				{
+					return valueNames;
+				}
+
+				@Override
+				public boolean next()
+				{
+					do
+					{
+						index++ ;
+					}
+					while( index < timestamps.size() && timestamps.get( index ) < startTime );
+
+					return index < timestamps.size() && timestamps.get( index ) <= endTime;
+				}
+
+				@Override
+				public long getTimestamp()
+				{
+					return timestamps.get( index );
+				}
+
+				@Override
+				public double getValue( int i )
+				{
+					return names.indexOf( valueNames.get( i ) ) < 0 ? Double.NaN : timestamps.get( index )
+							* ( names.indexOf( valueNames.get( i ) ) + 1 );
+				}
+
+				@Override
+				public void close()
+				{
+				}
+			};
+		}
+	}
+}
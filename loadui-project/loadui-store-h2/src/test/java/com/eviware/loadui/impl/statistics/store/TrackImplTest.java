@@ -16,9 +16,12 @@
 package com.eviware.loadui.impl.statistics.store;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
 import static org.mockito.Mockito.mock;
 
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -29,6 +32,7 @@ import org.junit.Test;
 
 import com.eviware.loadui.LoadUI;
 import com.eviware.loadui.api.statistics.store.Entry;
+import com.eviware.loadui.api.statistics.store.RangeCursor;
 import com.eviware.loadui.api.statistics.store.Track;
 import com.eviware.loadui.api.testevents.TestEventRegistry;
 import com.eviware.loadui.util.statistics.store.EntryImpl;
@@ -148,6 +152,28 @@ public class TrackImplTest
 		assertEquals( e.size(), 1 );
 	}
 
+	@Test
+	public void testOpenRange()
+	{
+		RangeCursor cursor = track.openRange( "local2", 0, 100, 0, "d", "a", "unknown" );
+		assertEquals( Arrays.asList( "d", "a", "unknown" ), cursor.getValueNames() );
+
+		assertTrue( cursor.next() );
+		assertEquals( 20, cursor.getTimestamp() );
+		assertEquals( 4.0, cursor.getValue( 0 ), 0 );
+		assertEquals( 1.0, cursor.getValue( 1 ), 0 );
+		assertTrue( Double.isNaN( cursor.getValue( 2 ) ) );
+
+		assertTrue( cursor.next() );
+		assertEquals( 30, cursor.getTimestamp() );
+		assertFalse( cursor.next() );
+		cursor.close();
+
+		cursor = track.openRange( "local4", 0, 100, 0 );
+		assertFalse( cursor.next() );
+		cursor.close();
+	}
+
 	@Test
 	public void testDelete()
 	{
@@ -0,0 +1,258 @@
+/*
+ * Copyright 2013 SmartBear Software
+ * 
+ * Licensed under the EUPL, Version 1.1 or - as soon they will be approved by the European Commission - subsequent
+ * versions of the EUPL (the "Licence");
+ * You may not use this work except in compliance with the Licence.
+ * You may obtain a copy of the Licence at:
+ * 
+ * http://ec.europa.eu/idabc/eupl
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the Licence is
+ * distributed on an "AS IS" basis, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the Licence for the specific language governing permissions and limitations
+ * under the Licence.
+ */
+package com.eviware.loadui.impl.statistics.store.columnar;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.eviware.loadui.api.statistics.store.RangeCursor;
+import com.eviware.loadui.impl.statistics.db.table.model.DataTable;
+import com.google.common.collect.ImmutableMap;
+
+public class ColumnFileTest
+{
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private File file;
+	private ColumnFile columnFile;
+
+	@Before
+	public void setup() throws Exception
+	{
+		file = new File( folder.getRoot(), "track.col" );
+		columnFile = ColumnFile.create( file, ImmutableMap.of( "count", Long.class, "avg", Double.class ) );
+	}
+
+	@After
+	public void tearDown()
+	{
+		columnFile.release();
+	}
+
+	@Test
+	public void shouldReadRowsInRange() throws Exception
+	{
+		for( int i = 0; i < 10; i++ )
+		{
+			assertTrue( columnFile.append( row( i * 10, i, i / 2.0 ) ) );
+		}
+
+		RangeCursor cursor = openRange( 15, 50 );
+		assertTrue( cursor.next() );
+		assertThat( cursor.getTimestamp(), is( 20L ) );
+		assertThat( cursor.getValue( 0 ), is( 1.0 ) );
+		assertThat( cursor.getValue( 1 ), is( 2.0 ) );
+		assertThat( cursor.getValue( 2 ), is( Double.NaN ) );
+		assertThat( count( cursor ), is( 3 ) );
+
+		assertThat( count( openRange( 91, 200 ) ), is( 0 ) );
+		assertThat( count( openRange( 50, 40 ) ), is( 0 ) );
+		assertThat( count( openRange( Long.MIN_VALUE, Long.MAX_VALUE ) ), is( 10 ) );
+	}
+
+	@Test
+	public void shouldReadFirstRowInRange() throws Exception
+	{
+		columnFile.append( row( 10, 1, 1 ) );
+		columnFile.append( row( 20, 2, 2 ) );
+
+		assertThat( columnFile.readFirst( 11, 100 ).get( DataTable.STATIC_FIELD_TIMESTAMP ), is( ( Object )20L ) );
+		assertThat( columnFile.readFirst( 10, 100 ).get( DataTable.STATIC_FIELD_TIMESTAMP ), is( ( Object )10L ) );
+		assertTrue( columnFile.readFirst( 21, 100 ).isEmpty() );
+		assertTrue( columnFile.readFirst( 11, 19 ).isEmpty() );
+	}
+
+	@Test
+	public void shouldIgnoreRowsWhichAreNotNewer() throws Exception
+	{
+		columnFile.append( row( 10, 1, 1 ) );
+
+		assertThat( columnFile.append( row( 10, 2, 2 ) ), is( false ) );
+		assertThat( columnFile.append( row( 5, 3, 3 ) ), is( false ) );
+		assertThat( columnFile.size(), is( 1L ) );
+	}
+
+	@Test
+	public void shouldIgnoreRowsAppendedAfterRelease() throws Exception
+	{
+		columnFile.append( row( 10, 1, 1 ) );
+		columnFile.release();
+
+		assertThat( columnFile.append( row( 20, 2, 2 ) ), is( false ) );
+		columnFile.flush();
+
+		columnFile = ColumnFile.open( file );
+		assertThat( columnFile.size(), is( 1L ) );
+	}
+
+	@Test
+	public void shouldNotSeeRowsAppendedAfterOpeningCursor() throws Exception
+	{
+		columnFile.append( row( 10, 1, 1 ) );
+		RangeCursor cursor = openRange( 0, 100 );
+
+		columnFile.append( row( 20, 2, 2 ) );
+		assertThat( count( cursor ), is( 1 ) );
+		assertThat( count( openRange( 0, 100 ) ), is( 2 ) );
+	}
+
+	@Test
+	public void shouldKeepLongsExactAndMissingValuesDistinct() throws Exception
+	{
+		long large = ( 1L << 53 ) + 1;
+		columnFile.append( row( 10, large, 1 ) );
+		Map<String, Object> missing = new HashMap<>();
+		missing.put( DataTable.STATIC_FIELD_TIMESTAMP, 20L );
+		columnFile.append( missing );
+
+		assertThat( columnFile.readFirst( 10, 10 ).get( "count" ), is( ( Object )large ) );
+		Map<String, Object> row = columnFile.readFirst( 20, 20 );
+		assertThat( row.get( "count" ), is( nullValue() ) );
+		assertThat( row.get( "avg" ), is( nullValue() ) );
+
+		RangeCursor cursor = openRange( 20, 20 );
+		assertTrue( cursor.next() );
+		assertThat( cursor.getValue( 0 ), is( Double.NaN ) );
+		assertThat( cursor.getValue( 1 ), is( Double.NaN ) );
+	}
+
+	@Test
+	public void shouldKeepRowsWhenReopened() throws Exception
+	{
+		for( int i = 0; i < 10000; i++ )
+		{
+			columnFile.append( row( i, i, i ) );
+		}
+		columnFile.release();
+
+		columnFile = ColumnFile.open( file );
+		assertThat( columnFile.size(), is( 10000L ) );
+		assertThat( columnFile.getColumns().get( "count" ), is( ( Object )Long.class ) );
+		assertThat( columnFile.append( row( 9999, 0, 0 ) ), is( false ) );
+
+		RangeCursor cursor = openRange( 4999, 4999 );
+		assertTrue( cursor.next() );
+		assertThat( cursor.getValue( 1 ), is( 4999.0 ) );
+		assertThat( count( openRange( 4000, 4999 ) ), is( 1000 ) );
+	}
+
+	@Test
+	public void shouldReadLargeRanges() throws Exception
+	{
+		for( int i = 0; i < 50000; i++ )
+		{
+			columnFile.append( row( i, i, i ) );
+		}
+
+		RangeCursor cursor = openRange( 100, 49999 );
+		assertTrue( cursor.next() );
+		assertThat( cursor.getTimestamp(), is( 100L ) );
+		assertThat( cursor.getValue( 1 ), is( 100.0 ) );
+		assertThat( count( cursor ), is( 49899 ) );
+	}
+
+	@Test
+	public void shouldReadAcrossReadWindows() throws Exception
+	{
+		int rows = ColumnFile.READ_RECORDS * 2 + 5;
+		for( int i = 0; i < rows; i++ )
+		{
+			columnFile.append( row( i, i, i ) );
+		}
+
+		RangeCursor cursor = openRange( 1, rows );
+		for( long expected = 1; expected < rows; expected++ )
+		{
+			assertTrue( cursor.next() );
+			assertThat( cursor.getTimestamp(), is( expected ) );
+			assertThat( cursor.getValue( 0 ), is( ( double )expected ) );
+		}
+		assertThat( cursor.next(), is( false ) );
+	}
+
+	@Test
+	public void shouldReopenFilesClosedByOpenFileLimit() throws Exception
+	{
+		OpenColumnFiles openFiles = new OpenColumnFiles( 2 );
+		List<ColumnFile> files = new ArrayList<>();
+		for( int i = 0; i < 4; i++ )
+		{
+			ColumnFile limited = ColumnFile.create( new File( folder.getRoot(), i + ".col" ),
+					ImmutableMap.of( "count", Long.class, "avg", Double.class ), openFiles );
+			limited.append( row( 10, i, i ) );
+			limited.flush();
+			files.add( limited );
+			assertTrue( openFiles.size() <= 2 );
+		}
+
+		for( int i = 0; i < 4; i++ )
+		{
+			ColumnFile limited = files.get( i );
+			assertThat( limited.readFirst( 0, 100 ).get( "count" ), is( ( Object )( long )i ) );
+			limited.append( row( 20, i, i ) );
+			limited.flush();
+			assertThat( limited.size(), is( 2L ) );
+		}
+
+		for( ColumnFile limited : files )
+		{
+			limited.release();
+		}
+		assertThat( openFiles.size(), is( 0 ) );
+	}
+
+	private RangeCursor openRange( long startTime, long endTime ) throws Exception
+	{
+		return columnFile.openRange( startTime, endTime, Arrays.asList( "avg", "count", "missing" ),
+				Arrays.asList( "avg", "count", null ) );
+	}
+
+	private static int count( RangeCursor cursor )
+	{
+		int count = 0;
+		while( cursor.next() )
+		{
+			count++;
+		}
+		cursor.close();
+		return count;
+	}
+
+	private static Map<String, Object> row( long timestamp, long count, double avg )
+	{
+		Map<String, Object> row = new HashMap<>();
+		row.put( DataTable.STATIC_FIELD_TIMESTAMP, timestamp );
+		row.put( "count", count );
+		row.put( "avg", avg );
+		return row;
+	}
+}
@@ -0,0 +1,144 @@
+/*
+ * Copyright 2013 SmartBear Software
+ * 
+ * Licensed under the EUPL, Version 1.1 or - as soon they will be approved by the European Commission - subsequent
+ * versions of the EUPL (the "Licence");
+ * You may not use this work except in compliance with the Licence.
+ * You may obtain a copy of the Licence at:
+ * 
+ * http://ec.europa.eu/idabc/eupl
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the Licence is
+ * distributed on an "AS IS" basis, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the Licence for the specific language governing permissions and limitations
+ * under the Licence.
+ */
+package com.eviware.loadui.impl.statistics.store.columnar;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.eviware.loadui.impl.statistics.db.table.model.TestEventTable;
+import com.google.common.io.Files;
+
+public class TestEventLogTest
+{
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private File executionDir;
+	private TestEventLog eventLog;
+
+	@Before
+	public void setup() throws Exception
+	{
+		executionDir = folder.getRoot();
+		eventLog = TestEventLog.create( executionDir );
+
+		// source 1 on even timestamps, source 2 on odd ones
+		for( int i = 0; i < 1000; i++ )
+		{
+			eventLog.append( 0, i, i % 2 + 1, new byte[] { ( byte )i } );
+		}
+	}
+
+	@After
+	public void tearDown()
+	{
+		eventLog.release();
+	}
+
+	@Test
+	public void shouldCountEventsPerSource() throws Exception
+	{
+		assertTrue( TestEventLog.exists( executionDir ) );
+		assertThat( eventLog.count( 0, Arrays.asList( 1L ) ), is( 500 ) );
+		assertThat( eventLog.count( 0, Arrays.asList( 1L, 2L, 3L ) ), is( 1000 ) );
+		assertThat( eventLog.count( 1, Arrays.asList( 1L ) ), is( 0 ) );
+	}
+
+	@Test
+	public void shouldReadByIndexAmongSources() throws Exception
+	{
+		List<Map<String, Object>> events = eventLog.read( 0, 100, 3, Arrays.asList( 2L ) );
+		assertThat( events.size(), is( 3 ) );
+		assertThat( timestampOf( events.get( 0 ) ), is( 201L ) );
+		assertThat( timestampOf( events.get( 2 ) ), is( 205L ) );
+		assertThat( ( Long )events.get( 0 ).get( TestEventTable.STATIC_FIELD_SOURCEID ), is( 2L ) );
+		assertThat( ( ( byte[] )events.get( 0 ).get( TestEventTable.STATIC_FIELD_DATA ) )[0], is( ( byte )201 ) );
+
+		events = eventLog.read( 0, 998, 10, Arrays.asList( 1L, 2L ) );
+		assertThat( events.size(), is( 2 ) );
+		assertThat( timestampOf( events.get( 0 ) ), is( 998L ) );
+		assertThat( timestampOf( events.get( 1 ) ), is( 999L ) );
+
+		assertThat( eventLog.read( 0, 500, 10, Arrays.asList( 1L ) ).size(), is( 0 ) );
+	}
+
+	@Test
+	public void shouldWaitForRoomInsteadOfDroppingBursts() throws Exception
+	{
+		for( int i = 0; i < 50000; i++ )
+		{
+			eventLog.append( 1, i, 1, new byte[] { ( byte )i } );
+		}
+
+		assertThat( eventLog.count( 1, Arrays.asList( 1L ) ), is( 50000 ) );
+		assertThat( eventLog.getDroppedCount(), is( 0L ) );
+	}
+
+	@Test
+	public void shouldReadTimeRange() throws Exception
+	{
+		List<Map<String, Object>> events = eventLog.readRange( 0, 100, 199, Arrays.asList( 1L ) );
+		assertThat( events.size(), is( 50 ) );
+		assertThat( timestampOf( events.get( 0 ) ), is( 100L ) );
+		assertThat( timestampOf( events.get( 49 ) ), is( 198L ) );
+	}
+
+	@Test
+	public void shouldReopenWrittenLog() throws Exception
+	{
+		eventLog.release();
+		eventLog = TestEventLog.create( executionDir );
+
+		assertThat( eventLog.count( 0, Arrays.asList( 1L, 2L ) ), is( 1000 ) );
+		assertThat( timestampOf( eventLog.read( 0, 640, 1, Arrays.asList( 1L, 2L ) ).get( 0 ) ), is( 640L ) );
+
+		eventLog.append( 0, 1000, 1, new byte[0] );
+		assertThat( eventLog.count( 0, Arrays.asList( 1L ) ), is( 501 ) );
+		assertThat( eventLog.readRange( 0, 1000, 2000, Arrays.asList( 1L ) ).size(), is( 1 ) );
+	}
+
+	@Test
+	public void shouldReopenLogWithIncompleteSegmentHeader() throws Exception
+	{
+		eventLog.release();
+		Files.write( new byte[] { 0x4C, 0x55 }, new File( executionDir, TestEventLog.DIRECTORY_NAME + "/0/00000001.seg" ) );
+		eventLog = TestEventLog.create( executionDir );
+
+		assertThat( eventLog.count( 0, Arrays.asList( 1L, 2L ) ), is( 1000 ) );
+
+		eventLog.append( 0, 1000, 1, new byte[0] );
+		List<Map<String, Object>> events = eventLog.read( 0, 999, 10, Arrays.asList( 1L, 2L ) );
+		assertThat( events.size(), is( 2 ) );
+		assertThat( timestampOf( events.get( 1 ) ), is( 1000L ) );
+	}
+
+	private static long timestampOf( Map<String, Object> event )
+	{
+		return ( Long )event.get( TestEventTable.STATIC_FIELD_TIMESTAMP );
+	}
+}
@@ -0,0 +1,471 @@
+/*
+ * Copyright 2013 SmartBear Software
+ * 
+ * Licensed under the EUPL, Version 1.1 or - as soon they will be approved by the European Commission - subsequent
+ * versions of the EUPL (the "Licence");
+ * You may not use this work except in compliance with the Licence.
+ * You may obtain a copy of the Licence at:
+ * 
+ * http://ec.europa.eu/idabc/eupl
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the Licence is
+ * distributed on an "AS IS" basis, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the Licence for the specific language governing permissions and limitations
+ * under the Licence.
+ */
+package com.eviware.loadui.util;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.eviware.loadui.api.component.TriggerScheduler;
+import com.google.common.base.Preconditions;
+
+/**
+ * A hashed timing wheel, running scheduled tasks on a single daemon Thread
+ * with a resolution of one tick. Tasks are placed in one of a fixed number of
+ * buckets, so scheduling and cancelling are constant time operations no matter
+ * how many tasks are scheduled. Between ticks with something to run, the
+ * Thread sleeps until the next non-empty bucket is due, so an idle or lightly
+ * used TimingWheel does not wake up once per tick.
+ * 
+ * Recurring tasks are paced from their previous deadline. All deadlines which
+ * have passed when a tick is processed are fired in a batch, so a late tick
+ * does not lower the rate of a task. A task which throws a RuntimeException
+ * is logged and keeps being run.
+ * 
+ * Tasks are scheduled through the TriggerSchedulers returned by newScheduler(),
+ * each of which can cancel all of its own tasks at once. A TriggerScheduler
+ * created with an Executor hands its tasks to it instead of running them on
+ * the timer Thread, so that a slow task doesn't delay any other timers. Each
+ * task is still run one call at a time, and calls which are due while it is
+ * running are made right after it returns.
+ */
+public final class TimingWheel
+{
+	public static final TimingWheel instance = new TimingWheel( 100, TimeUnit.MICROSECONDS, 4096,
+			"loadUI TimingWheel" );
+
+	private static final Logger log = LoggerFactory.getLogger( TimingWheel.class );
+
+	private static final int SCHEDULED = 0;
+	private static final int CANCELLED = 1;
+	private static final int DONE = 2;
+
+	private final long tickNanos;
+	private final int mask;
+	private final List<Timeout>[] buckets;
+	private final Queue<Timeout> pending = new ConcurrentLinkedQueue<>();
+	private final AtomicInteger timeoutCount = new AtomicInteger();
+	private final AtomicBoolean started = new AtomicBoolean();
+	private final Thread worker;
+
+	private volatile boolean stopped = false;
+	private volatile long lagNanos = 0;
+	private volatile long wakeNanos = Long.MAX_VALUE;
+
+	private long startNanos;
+	private long tick = 0;
+
+	@SuppressWarnings( "unchecked" )
+	public TimingWheel( long tickDuration, TimeUnit unit, int ticksPerWheel, String threadName )
+	{
+		Preconditions.checkArgument( tickDuration > 0, "tickDuration must be positive" );
+		Preconditions.checkArgument( ticksPerWheel > 0 && Integer.bitCount( ticksPerWheel ) == 1,
+				"ticksPerWheel must be a power of two" );
+
+		tickNanos = unit.toNanos( tickDuration );
+		mask = ticksPerWheel - 1;
+		buckets = new List[ticksPerWheel];
+		for( int i = 0; i < ticksPerWheel; i++ )
+			buckets[i] = new ArrayList<>();
+
+		worker = new Thread( new Worker(), threadName );
+		worker.setDaemon( true );
+	}
+
+	/**
+	 * Creates a new TriggerScheduler which schedules its tasks on this
+	 * TimingWheel, and runs them on the timer Thread.
+	 */
+	public TriggerScheduler newScheduler()
+	{
+		return new Scheduler( null );
+	}
+
+	/**
+	 * Creates a new TriggerScheduler which schedules its tasks on this
+	 * TimingWheel, and runs them using the given Executor.
+	 */
+	public TriggerScheduler newScheduler( Executor executor )
+	{
+		return new Scheduler( Preconditions.checkNotNull( executor ) );
+	}
+
+	/**
+	 * Gets how late the last processed tick was.
+	 */
+	public long getLag( TimeUnit unit )
+	{
+		return unit.convert( lagNanos, TimeUnit.NANOSECONDS );
+	}
+
+	public long getTickDuration( TimeUnit unit )
+	{
+		return unit.convert( tickNanos, TimeUnit.NANOSECONDS );
+	}
+
+	/**
+	 * Gets the number of tasks currently held by the TimingWheel. Cancelled
+	 * tasks are counted until their bucket is next processed.
+	 */
+	public int getTaskCount()
+	{
+		return timeoutCount.get();
+	}
+
+	/**
+	 * Stops the TimingWheel. Any scheduled tasks will not be run.
+	 */
+	public void stop()
+	{
+		stopped = true;
+		LockSupport.unpark( worker );
+	}
+
+	private Timeout add( Scheduler scheduler, Runnable task, long delay, TriggerScheduler.Delays delays, TimeUnit unit )
+	{
+		Preconditions.checkNotNull( task );
+		Preconditions.checkState( !stopped, "TimingWheel has been stopped" );
+
+		Timeout timeout = new Timeout( scheduler, task, delays, unit, System.nanoTime()
+				+ unit.toNanos( Math.max( 0, delay ) ) );
+		boolean wasIdle = timeoutCount.getAndIncrement() == 0;
+		pending.add( timeout );
+		if( started.compareAndSet( false, true ) )
+			worker.start();
+		else if( wasIdle || timeout.deadline - wakeNanos < 0 )
+			LockSupport.unpark( worker );
+
+		return timeout;
+	}
+
+	/**
+	 * Puts a Timeout in the bucket of its deadline, no earlier than the given
+	 * tick. Buckets before earliestTick will not be visited again this round.
+	 */
+	private void place( Timeout timeout, long earliestTick )
+	{
+		long ticks = Math.max( ( timeout.deadline - startNanos ) / tickNanos, earliestTick );
+		timeout.remainingRounds = ( ticks - earliestTick ) / buckets.length;
+		buckets[( int )( ticks & mask )].add( timeout );
+	}
+
+	private void placePending()
+	{
+		Timeout timeout;
+		while( ( timeout = pending.poll() ) != null )
+		{
+			if( timeout.isCancelled() )
+				timeoutCount.decrementAndGet();
+			else
+				place( timeout, tick );
+		}
+	}
+
+	/**
+	 * Returns the number of ticks from the current one to the next one with a
+	 * non-empty bucket, or the length of the wheel if all buckets are empty.
+	 */
+	private int ticksToNextBucket()
+	{
+		for( int i = 0; i < buckets.length; i++ )
+		{
+			if( !buckets[( int )( ( tick + i ) & mask )].isEmpty() )
+				return i;
+		}
+
+		return buckets.length;
+	}
+
+	private void processTick( long now, long tickDeadline )
+	{
+		placePending();
+
+		List<Timeout> bucket = buckets[( int )( tick & mask )];
+		if( bucket.isEmpty() )
+			return;
+
+		lagNanos = now - tickDeadline;
+		Timeout timeout;
+		List<Timeout> recurring = null;
+		int kept = 0;
+		for( int i = 0; i < bucket.size(); i++ )
+		{
+			timeout = bucket.get( i );
+			if( timeout.isCancelled() )
+			{
+				timeoutCount.decrementAndGet();
+			}
+			else if( timeout.remainingRounds > 0 )
+			{
+				timeout.remainingRounds-- ;
+				bucket.set( kept++ , timeout );
+			}
+			else if( timeout.fire( now ) )
+			{
+				if( recurring == null )
+					recurring = new ArrayList<>();
+				recurring.add( timeout );
+			}
+			else
+			{
+				timeoutCount.decrementAndGet();
+			}
+		}
+		bucket.subList( kept, bucket.size() ).clear();
+
+		if( recurring != null )
+			for( Timeout t : recurring )
+				place( t, tick + 1 );
+	}
+
+	private class Worker implements Runnable
+	{
+		@Override
+		public void run()
+		{
+			startNanos = System.nanoTime();
+			while( !stopped )
+			{
+				if( timeoutCount.get() == 0 )
+				{
+					lagNanos = 0;
+					LockSupport.park( this );
+					// Nothing is scheduled, so any ticks passed while idle can be skipped.
+					tick = Math.max( tick, ( System.nanoTime() - startNanos ) / tickNanos );
+					continue;
+				}
+
+				long tickDeadline = startNanos + ( tick + 1 ) * tickNanos;
+				long now = System.nanoTime();
+				if( now < tickDeadline )
+				{
+					// Sleep until the next tick with something to run. Ticks passed
+					// in the meantime are processed on waking, but are empty.
+					placePending();
+					long wake = tickDeadline + ticksToNextBucket() * tickNanos;
+					wakeNanos = wake;
+					if( pending.isEmpty() && now < wake )
+						LockSupport.parkNanos( this, wake - now );
+					continue;
+				}
+
+				processTick( now, tickDeadline );
+				tick++ ;
+			}
+		}
+	}
+
+	private class Scheduler implements TriggerScheduler
+	{
+		private final Executor executor;
+		private volatile int epoch = 0;
+
+		private Scheduler( Executor executor )
+		{
+			this.executor = executor;
+		}
+
+		@Override
+		public Handle schedule( Runnable task, long delay, TimeUnit unit )
+		{
+			return add( this, task, delay, null, unit );
+		}
+
+		@Override
+		public Handle scheduleAtFixedRate( Runnable task, long initialDelay, final long period, TimeUnit unit )
+		{
+			Preconditions.checkArgument( period > 0, "period must be positive" );
+
+			return add( this, task, initialDelay, new Delays()
+			{
+				@Override
+				public long next()
+				{
+					return period;
+				}
+			}, unit );
+		}
+
+		@Override
+		public Handle scheduleWithDelays( Runnable task, long initialDelay, Delays delays, TimeUnit unit )
+		{
+			return add( this, task, initialDelay, Preconditions.checkNotNull( delays ), unit );
+		}
+
+		@Override
+		public synchronized void cancelAll()
+		{
+			epoch++ ;
+		}
+
+		@Override
+		public long getLag( TimeUnit unit )
+		{
+			return TimingWheel.this.getLag( unit );
+		}
+
+		@Override
+		public long getTickDuration( TimeUnit unit )
+		{
+			return TimingWheel.this.getTickDuration( unit );
+		}
+	}
+
+	private static class Timeout implements TriggerScheduler.Handle
+	{
+		private final AtomicInteger state = new AtomicInteger( SCHEDULED );
+		private final AtomicInteger dueRuns = new AtomicInteger();
+		private final Runnable drain = new Runnable()
+		{
+			@Override
+			public void run()
+			{
+				do
+				{
+					if( isCancelled() )
+					{
+						dueRuns.set( 0 );
+						return;
+					}
+					runTask();
+				}
+				while( dueRuns.decrementAndGet() > 0 );
+			}
+		};
+		private final Scheduler scheduler;
+		private final int epoch;
+		private final Runnable task;
+		private final TriggerScheduler.Delays delays;
+		private final TimeUnit unit;
+
+		private long deadline;
+		private long remainingRounds;
+		private long failures = 0;
+
+		private Timeout( Scheduler scheduler, Runnable task, TriggerScheduler.Delays delays, TimeUnit unit,
+				long deadline )
+		{
+			this.scheduler = scheduler;
+			this.epoch = scheduler.epoch;
+			this.task = task;
+			this.delays = delays;
+			this.unit = unit;
+			this.deadline = deadline;
+		}
+
+		/**
+		 * Runs the task once for each deadline which has passed. Returns true if
+		 * the task should be scheduled again.
+		 */
+		private boolean fire( long now )
+		{
+			while( deadline - now <= 0 )
+			{
+				if( isCancelled() )
+					return false;
+
+				dispatch();
+
+				long delay;
+				try
+				{
+					delay = delays == null ? -1 : delays.next();
+				}
+				catch( RuntimeException e )
+				{
+					log.error( "Unable to get the next delay of a scheduled task, it will not be run again", e );
+					delay = -1;
+				}
+				if( delay < 0 )
+				{
+					state.compareAndSet( SCHEDULED, DONE );
+					return false;
+				}
+				deadline += Math.max( 1, unit.toNanos( delay ) );
+			}
+
+			return !isCancelled();
+		}
+
+		/**
+		 * Runs the task on the timer Thread, or hands it to the Executor of the
+		 * Scheduler unless a call is already queued or running there.
+		 */
+		private void dispatch()
+		{
+			Executor executor = scheduler.executor;
+			if( executor == null )
+			{
+				runTask();
+			}
+			else if( dueRuns.getAndIncrement() == 0 )
+			{
+				try
+				{
+					executor.execute( drain );
+				}
+				catch( RejectedExecutionException e )
+				{
+					log.debug( "Executor rejected a scheduled task, skipping this run", e );
+					dueRuns.set( 0 );
+				}
+			}
+		}
+
+		private void runTask()
+		{
+			try
+			{
+				task.run();
+			}
+			catch( RuntimeException e )
+			{
+				if( failures++ == 0 )
+					log.error( "Scheduled task threw an exception, it will keep being run", e );
+				else
+					log.debug( "Scheduled task threw an exception ({} times so far)", failures, e );
+			}
+		}
+
+		@Override
+		public boolean cancel()
+		{
+			return scheduler.epoch == epoch && state.compareAndSet( SCHEDULED, CANCELLED );
+		}
+
+		@Override
+		public boolean isCancelled()
+		{
+			return state.get() == CANCELLED || scheduler.epoch != epoch;
+		}
+
+		@Override
+		public boolean isDone()
+		{
+			return state.get() != SCHEDULED || scheduler.epoch != epoch;
+		}
+	}
+}
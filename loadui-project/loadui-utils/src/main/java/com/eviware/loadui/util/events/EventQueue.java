@@ -15,9 +15,13 @@
  */
 package com.eviware.loadui.util.events;
 
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -25,71 +29,249 @@ import org.slf4j.LoggerFactory;
 /**
  * Singleton event queue which is shared between all LoadUI {@link EventSupport} instances.
  * This centralizes the management of events in LoadUI.
+ * <p/>
+ * Events are dispatched by a number of worker lanes, each backed by its own queue and thread. Every action offered
+ * with a key is run on the lane that key hashes to, so actions for the same key are run in the order they were
+ * offered, while actions for different keys may run in parallel. The number of lanes can be set using the
+ * {@value #LANES_PROPERTY} system property.
+ * <p/>
+ * {@link EventSupport} pins each listener to the lane its identity hashes to, so a listener registered on several
+ * owners is still only ever called from one thread at a time.
  * @author renato
  *
  */
 public class EventQueue
 {
+	public static final String LANES_PROPERTY = "loadui.eventqueue.lanes";
 
-	private static final EventQueue instance = new EventQueue();
+	private static final int DEFAULT_LANES = Math.max( 1, Math.min( 4, Runtime.getRuntime().availableProcessors() ) );
 
 	private static final Logger log = LoggerFactory.getLogger( EventQueue.class );
 
-	private final BlockingQueue<Runnable> eventQueue = new LinkedBlockingQueue<Runnable>();
-	protected Thread thread;
+	private static final EventQueue instance = new EventQueue( Integer.getInteger( LANES_PROPERTY, DEFAULT_LANES ) );
+
+	private final Lane[] lanes;
 
 	public static final EventQueue getInstance()
 	{
 		return instance;
 	}
 
-	private EventQueue()
+	EventQueue( int laneCount )
 	{
-		// singleton cannot be instantiated externally
-		spawnEventThread();
+		if( laneCount < 1 )
+		{
+			log.warn( "Invalid number of event lanes: {}, using {}.", laneCount, DEFAULT_LANES );
+			laneCount = DEFAULT_LANES;
+		}
+
+		lanes = new Lane[laneCount];
+		for( int i = 0; i < laneCount; i++ )
+		{
+			lanes[i] = new Lane( i );
+		}
 	}
 
-	private void spawnEventThread()
+	/**
+	 * Offers an action to the first lane. Actions offered this way are run in the order they were offered.
+	 */
+	public boolean offer( Runnable runnable )
 	{
-		thread = new Thread( new Runnable()
+		return lanes[0].offer( runnable );
+	}
+
+	/**
+	 * Offers an action to the lane which the given key is assigned to.
+	 */
+	public boolean offer( Object key, Runnable runnable )
+	{
+		return laneFor( key ).offer( runnable );
+	}
+
+	/**
+	 * Gets the lane which the given key is assigned to. The assignment is based on the identity of the key, and does
+	 * not change over the lifetime of the key.
+	 */
+	public Lane laneFor( Object key )
+	{
+		if( lanes.length == 1 )
+			return lanes[0];
+
+		int hash = System.identityHashCode( key );
+		hash ^= ( hash >>> 16 );
+		return lanes[( hash & Integer.MAX_VALUE ) % lanes.length];
+	}
+
+	public int getLaneCount()
+	{
+		return lanes.length;
+	}
+
+	public List<Lane> getLanes()
+	{
+		return Collections.unmodifiableList( Arrays.asList( lanes ) );
+	}
+
+	/**
+	 * Stops the threads of all lanes. Actions which are still queued are not run.
+	 */
+	void shutdown()
+	{
+		for( Lane lane : lanes )
 		{
-			@Override
-			public void run()
-			{
+			lane.shutdown();
+		}
+	}
+
+	/**
+	 * A single worker of the EventQueue, running its actions in order on a dedicated thread.
+	 */
+	public static final class Lane
+	{
+		private final int index;
+		private final BlockingQueue<QueuedAction> queue = new LinkedBlockingQueue<>();
+		private final AtomicLong dispatchedCount = new AtomicLong();
+		private final AtomicLong totalLatency = new AtomicLong();
+		private volatile long maxLatency = 0;
+		private volatile boolean stopped = false;
+		Thread thread;
 
-				try
+		private Lane( int index )
+		{
+			this.index = index;
+			spawnEventThread();
+		}
+
+		private void spawnEventThread()
+		{
+			thread = new Thread( new Runnable()
+			{
+				@Override
+				public void run()
 				{
-					while( true )
+
+					try
 					{
-						try
+						while( !stopped )
 						{
-							Runnable action = eventQueue.poll( Integer.MAX_VALUE, TimeUnit.MINUTES );
-							if( action != null )
+							try
 							{
-								action.run();
+								QueuedAction queued = queue.poll( Integer.MAX_VALUE, TimeUnit.MINUTES );
+								if( queued != null )
+								{
+									recordLatency( System.nanoTime() - queued.queuedAt );
+									queued.action.run();
+								}
+							}
+							catch( InterruptedException e )
+							{
+								if( !stopped )
+									log.error( "Event thread interrupted", e );
+							}
+							catch( Exception e )
+							{
+								log.error( "Problem running event action", e );
 							}
-						}
-						catch( Exception e )
-						{
-							log.error( "Problem running event action", e );
 						}
 					}
+					finally
+					{
+						if( !stopped )
+							spawnEventThread();
+					}
+
 				}
-				finally
-				{
-					spawnEventThread();
-				}
+			}, "EventQueueThread-" + index );
 
+			thread.setDaemon( true );
+			thread.start();
+		}
+
+		private void recordLatency( long latency )
+		{
+			dispatchedCount.incrementAndGet();
+			totalLatency.addAndGet( latency );
+			if( latency > maxLatency )
+			{
+				maxLatency = latency;
 			}
-		}, "EventQueueThread" );
+		}
+
+		public boolean offer( Runnable runnable )
+		{
+			return queue.offer( new QueuedAction( runnable ) );
+		}
+
+		private void shutdown()
+		{
+			stopped = true;
+			thread.interrupt();
+		}
+
+		public int getIndex()
+		{
+			return index;
+		}
+
+		/**
+		 * Gets the number of actions currently waiting to be run on this lane.
+		 */
+		public int getQueueDepth()
+		{
+			return queue.size();
+		}
+
+		/**
+		 * Gets the number of actions which have been run on this lane since the last reset.
+		 */
+		public long getDispatchedCount()
+		{
+			return dispatchedCount.get();
+		}
+
+		/**
+		 * Gets the average time actions spent waiting in the queue of this lane before being run, since the last
+		 * reset.
+		 */
+		public long getAverageDispatchLatency( TimeUnit unit )
+		{
+			long count = dispatchedCount.get();
+			return count == 0 ? 0 : unit.convert( totalLatency.get() / count, TimeUnit.NANOSECONDS );
+		}
+
+		/**
+		 * Gets the longest time an action spent waiting in the queue of this lane before being run, since the last
+		 * reset.
+		 */
+		public long getMaxDispatchLatency( TimeUnit unit )
+		{
+			return unit.convert( maxLatency, TimeUnit.NANOSECONDS );
+		}
+
+		public void resetStatistics()
+		{
+			dispatchedCount.set( 0 );
+			totalLatency.set( 0 );
+			maxLatency = 0;
+		}
 
-		thread.setDaemon( true );
-		thread.start();
+		@Override
+		public String toString()
+		{
+			return "EventQueue lane " + index + " [depth: " + getQueueDepth() + ", dispatched: " + getDispatchedCount()
+					+ ", avg latency: " + getAverageDispatchLatency( TimeUnit.MICROSECONDS ) + "us, max latency: "
+					+ getMaxDispatchLatency( TimeUnit.MICROSECONDS ) + "us]";
+		}
 	}
 
-	public boolean offer( Runnable runnable )
+	private static final class QueuedAction
 	{
-		return eventQueue.offer( runnable );
-	}
+		private final Runnable action;
+		private final long queuedAt = System.nanoTime();
 
+		private QueuedAction( Runnable action )
+		{
+			this.action = action;
+		}
+	}
 }
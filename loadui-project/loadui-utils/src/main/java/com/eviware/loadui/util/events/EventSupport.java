@@ -33,17 +33,22 @@ public class EventSupport implements EventFirer, Releasable
 
 	private final Set<ListenerEntry<?>> listeners = new HashSet<>();
 
-	private final EventQueue eventQueue = EventQueue.getInstance();
+	/**
+	 * Events and listener changes of this EventSupport run on the same lane, which keeps events in order per owner
+	 * and confines the listeners Set to a single thread. Handlers are invoked on their own lanes.
+	 */
+	private final EventQueue.Lane eventLane;
 
 
 	public EventSupport( Object object )
 	{
 		ownerRef = new WeakReference<>( object );
+		eventLane = EventQueue.getInstance().laneFor( object == null ? this : object );
 	}
 
 	private void offerToEventQueue( Runnable runnable, String errorMsg, Object... itemsToLog )
 	{
-		if( !eventQueue.offer( runnable ) )
+		if( !eventLane.offer( runnable ) )
 		{
 			log.error( errorMsg, Arrays.toString( itemsToLog ) );
 		}
@@ -135,11 +140,18 @@ public class EventSupport implements EventFirer, Releasable
 
 	}
 
+	/**
+	 * Queues the invocation of a handler on the lane of the handler itself rather than that of the owner, so that a
+	 * handler listening to several owners is never called concurrently. Events from one owner still reach a handler
+	 * in the order they were fired, as they are all passed on from the owner's lane to the same handler lane.
+	 */
 	@SuppressWarnings( "unchecked" )
 	private <E extends EventObject> void queuePendingEvent( EventObject event, EventHandler<?> handler )
 	{
-		offerToEventQueue( new PendingEvent<>( ( E )event, ( EventHandler<E> )handler ),
-				"Event queue full! Unable to queue event: {}", event );
+		if( !EventQueue.getInstance().laneFor( handler ).offer( new PendingEvent<>( ( E )event, ( EventHandler<E> )handler ) ) )
+		{
+			log.error( "Event queue full! Unable to queue event: {}", event );
+		}
 	}
 
 	private static class PendingEvent<E extends EventObject> implements Runnable
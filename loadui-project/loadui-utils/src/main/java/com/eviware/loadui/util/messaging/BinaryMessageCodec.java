@@ -0,0 +1,279 @@
+/*
+ * Copyright 2013 SmartBear Software
+ * 
+ * Licensed under the EUPL, Version 1.1 or - as soon they will be approved by the European Commission - subsequent
+ * versions of the EUPL (the "Licence");
+ * You may not use this work except in compliance with the Licence.
+ * You may obtain a copy of the Licence at:
+ * 
+ * http://ec.europa.eu/idabc/eupl
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the Licence is
+ * distributed on an "AS IS" basis, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the Licence for the specific language governing permissions and limitations
+ * under the Licence.
+ */
+package com.eviware.loadui.util.messaging;
+
+import java.io.IOException;
+import java.io.ObjectInput;
+import java.io.ObjectOutput;
+import java.io.ObjectOutputStream;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * MessageCodec using a compact tagged binary format for the types commonly
+ * sent between agents and the controller: Strings, boxed primitives, String[]
+ * and Object[] arrays, Lists and Maps thereof (such as statistics entries,
+ * counter updates and serialized TerminalMessages). Any other Object is written
+ * using Java serialization, and only then is the stream reset.
+ * 
+ * Maps are decoded as HashMaps, and Lists as ArrayLists.
+ */
+public class BinaryMessageCodec implements MessageCodec
+{
+	private static final Charset UTF8 = Charset.forName( "UTF-8" );
+
+	/**
+	 * Longest String which is guaranteed to fit the 65535 byte limit of
+	 * writeUTF.
+	 */
+	private static final int MAX_SHORT_STRING = 65535 / 3;
+
+	private static final byte NULL = 0;
+	private static final byte STRING = 1;
+	private static final byte LONG_STRING = 2;
+	private static final byte INTEGER = 3;
+	private static final byte LONG = 4;
+	private static final byte DOUBLE = 5;
+	private static final byte FLOAT = 6;
+	private static final byte SHORT = 7;
+	private static final byte BYTE = 8;
+	private static final byte TRUE = 9;
+	private static final byte FALSE = 10;
+	private static final byte MAP = 11;
+	private static final byte LIST = 12;
+	private static final byte OBJECT_ARRAY = 13;
+	private static final byte STRING_ARRAY = 14;
+	private static final byte SERIALIZED = 15;
+
+	@Override
+	public void writeData( ObjectOutputStream output, Object data ) throws IOException
+	{
+		if( writeValue( output, data ) )
+			output.reset();
+	}
+
+	@Override
+	public Object readData( ObjectInput input ) throws IOException, ClassNotFoundException
+	{
+		return readValue( input );
+	}
+
+	/**
+	 * Writes a tagged value, returning true if Java serialization had to be
+	 * used for it, or for any value contained within it.
+	 */
+	private boolean writeValue( ObjectOutput output, Object value ) throws IOException
+	{
+		if( value == null )
+		{
+			output.writeByte( NULL );
+		}
+		else if( value instanceof String )
+		{
+			writeString( output, ( String )value );
+		}
+		else if( value instanceof Number )
+		{
+			return writeNumber( output, ( Number )value );
+		}
+		else if( value instanceof Boolean )
+		{
+			output.writeByte( ( Boolean )value ? TRUE : FALSE );
+		}
+		else if( value instanceof Map )
+		{
+			Map<?, ?> map = ( Map<?, ?> )value;
+			output.writeByte( MAP );
+			output.writeInt( map.size() );
+			boolean serialized = false;
+			for( Map.Entry<?, ?> entry : map.entrySet() )
+			{
+				serialized |= writeValue( output, entry.getKey() );
+				serialized |= writeValue( output, entry.getValue() );
+			}
+			return serialized;
+		}
+		else if( value instanceof List )
+		{
+			Collection<?> list = ( Collection<?> )value;
+			output.writeByte( LIST );
+			output.writeInt( list.size() );
+			boolean serialized = false;
+			for( Object item : list )
+				serialized |= writeValue( output, item );
+			return serialized;
+		}
+		else if( value.getClass() == String[].class )
+		{
+			String[] array = ( String[] )value;
+			output.writeByte( STRING_ARRAY );
+			output.writeInt( array.length );
+			for( String item : array )
+				writeValue( output, item );
+		}
+		else if( value.getClass() == Object[].class )
+		{
+			Object[] array = ( Object[] )value;
+			output.writeByte( OBJECT_ARRAY );
+			output.writeInt( array.length );
+			boolean serialized = false;
+			for( Object item : array )
+				serialized |= writeValue( output, item );
+			return serialized;
+		}
+		else
+		{
+			writeSerialized( output, value );
+			return true;
+		}
+
+		return false;
+	}
+
+	private static void writeString( ObjectOutput output, String value ) throws IOException
+	{
+		if( value.length() <= MAX_SHORT_STRING )
+		{
+			output.writeByte( STRING );
+			output.writeUTF( value );
+		}
+		else
+		{
+			byte[] bytes = value.getBytes( UTF8 );
+			output.writeByte( LONG_STRING );
+			output.writeInt( bytes.length );
+			output.write( bytes );
+		}
+	}
+
+	private static boolean writeNumber( ObjectOutput output, Number value ) throws IOException
+	{
+		Class<?> type = value.getClass();
+		if( type == Integer.class )
+		{
+			output.writeByte( INTEGER );
+			output.writeInt( value.intValue() );
+		}
+		else if( type == Long.class )
+		{
+			output.writeByte( LONG );
+			output.writeLong( value.longValue() );
+		}
+		else if( type == Double.class )
+		{
+			output.writeByte( DOUBLE );
+			output.writeDouble( value.doubleValue() );
+		}
+		else if( type == Float.class )
+		{
+			output.writeByte( FLOAT );
+			output.writeFloat( value.floatValue() );
+		}
+		else if( type == Short.class )
+		{
+			output.writeByte( SHORT );
+			output.writeShort( value.shortValue() );
+		}
+		else if( type == Byte.class )
+		{
+			output.writeByte( BYTE );
+			output.writeByte( value.byteValue() );
+		}
+		else
+		{
+			writeSerialized( output, value );
+			return true;
+		}
+
+		return false;
+	}
+
+	private static void writeSerialized( ObjectOutput output, Object value ) throws IOException
+	{
+		output.writeByte( SERIALIZED );
+		output.writeObject( value );
+	}
+
+	private Object readValue( ObjectInput input ) throws IOException, ClassNotFoundException
+	{
+		byte tag = input.readByte();
+		switch( tag )
+		{
+		case NULL :
+			return null;
+		case STRING :
+			return input.readUTF();
+		case LONG_STRING :
+			byte[] bytes = new byte[input.readInt()];
+			input.readFully( bytes );
+			return new String( bytes, UTF8 );
+		case INTEGER :
+			return input.readInt();
+		case LONG :
+			return input.readLong();
+		case DOUBLE :
+			return input.readDouble();
+		case FLOAT :
+			return input.readFloat();
+		case SHORT :
+			return input.readShort();
+		case BYTE :
+			return input.readByte();
+		case TRUE :
+			return Boolean.TRUE;
+		case FALSE :
+			return Boolean.FALSE;
+		case MAP :
+		{
+			int size = input.readInt();
+			Map<Object, Object> map = new HashMap<>( Math.max( 4, size * 4 / 3 + 1 ) );
+			for( int i = 0; i < size; i++ )
+				map.put( readValue( input ), readValue( input ) );
+			return map;
+		}
+		case LIST :
+		{
+			int size = input.readInt();
+			List<Object> list = new ArrayList<>( size );
+			for( int i = 0; i < size; i++ )
+				list.add( readValue( input ) );
+			return list;
+		}
+		case STRING_ARRAY :
+		{
+			String[] array = new String[input.readInt()];
+			for( int i = 0; i < array.length; i++ )
+				array[i] = ( String )readValue( input );
+			return array;
+		}
+		case OBJECT_ARRAY :
+		{
+			Object[] array = new Object[input.readInt()];
+			for( int i = 0; i < array.length; i++ )
+				array[i] = readValue( input );
+			return array;
+		}
+		case SERIALIZED :
+			return input.readObject();
+		default :
+			throw new IOException( "Unknown value tag: " + tag );
+		}
+	}
+}
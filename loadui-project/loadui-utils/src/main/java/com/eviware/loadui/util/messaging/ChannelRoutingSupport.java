@@ -15,65 +15,225 @@
  */
 package com.eviware.loadui.util.messaging;
 
-import java.util.Collection;
+import java.util.Arrays;
+import java.util.HashMap;
 import java.util.Map;
-import java.util.regex.Pattern;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.eviware.loadui.api.messaging.MessageEndpoint;
 import com.eviware.loadui.api.messaging.MessageListener;
-import com.google.common.collect.HashMultimap;
-import com.google.common.collect.ImmutableSet;
-import com.google.common.collect.Multimap;
-import com.google.common.collect.Multimaps;
 
+/**
+ * Routes messages to the MessageListeners registered for their channel.
+ * Channels are /-separated, and a registration ending in /* matches any single
+ * further segment while one ending in /** matches any number of further
+ * segments.
+ * 
+ * Registrations are kept in a trie of channel segments. The listeners matching
+ * a channel are resolved once and cached as an array until the registrations
+ * change, so that firing a message does not allocate.
+ */
 public class ChannelRoutingSupport
 {
 	protected static final Logger log = LoggerFactory.getLogger( ChannelRoutingSupport.class );
 
-	private final Multimap<Pattern, MessageListener> listeners = Multimaps.synchronizedSetMultimap( HashMultimap
-			.<Pattern, MessageListener> create() );
+	private static final MessageListener[] NO_LISTENERS = new MessageListener[0];
+	private static final int MAX_CACHED_ROUTES = 4096;
+
+	private final Node root = new Node();
+	private final Map<MessageListener, Registration> registrations = new HashMap<>();
+	private final ConcurrentHashMap<String, MessageListener[]> routes = new ConcurrentHashMap<>();
 
 	public void addMessageListener( String channel, MessageListener listener )
 	{
 		log.debug( "Adding listener: {} for channel: {}", listener, channel );
-		if( !listeners.containsValue( listener ) )
+		synchronized( root )
 		{
-			if( channel.endsWith( "/**" ) )
-				channel = Pattern.quote( channel.substring( 0, channel.length() - 2 ) ) + ".*";
-			else if( channel.endsWith( "/*" ) )
-				channel = Pattern.quote( channel.substring( 0, channel.length() - 1 ) ) + "[^/]*";
-			else
-				channel = Pattern.quote( channel );
-
-			//log.debug( "Pattern is: {}", Pattern.compile( channel ) );
-			listeners.put( Pattern.compile( channel ), listener );
+			if( !registrations.containsKey( listener ) )
+			{
+				Registration registration;
+				if( channel.endsWith( "/**" ) )
+					registration = new Registration( nodeFor( channel.substring( 0, channel.length() - 3 ) ), Match.ANY );
+				else if( channel.endsWith( "/*" ) )
+					registration = new Registration( nodeFor( channel.substring( 0, channel.length() - 2 ) ), Match.SINGLE );
+				else
+					registration = new Registration( nodeFor( channel ), Match.EXACT );
+
+				registration.node.add( registration.match, listener );
+				registrations.put( listener, registration );
+				routes.clear();
+			}
 		}
 	}
 
 	public void removeMessageListener( MessageListener listener )
 	{
-		for( Pattern pattern : ImmutableSet.copyOf( listeners.keySet() ) )
+		synchronized( root )
 		{
-			listeners.remove( pattern, listener );
+			Registration registration = registrations.remove( listener );
+			if( registration != null )
+			{
+				registration.node.remove( registration.match, listener );
+				routes.clear();
+			}
 		}
 	}
 
 	public void fireMessage( String channel, MessageEndpoint endpoint, Object data )
 	{
-		//log.debug( "Handling broadcast to: {}", channel );
-		for( Map.Entry<Pattern, Collection<MessageListener>> entry : ImmutableSet.copyOf( listeners.asMap().entrySet() ) )
+		MessageListener[] listeners = routes.get( channel );
+		if( listeners == null )
 		{
-			if( entry.getKey().matcher( channel ).matches() )
+			listeners = resolve( channel );
+		}
+
+		for( MessageListener listener : listeners )
+		{
+			listener.handleMessage( channel, endpoint, data );
+		}
+	}
+
+	private MessageListener[] resolve( String channel )
+	{
+		synchronized( root )
+		{
+			String[] segments = channel.split( "/", -1 );
+			MessageListener[] listeners = NO_LISTENERS;
+			Node node = root;
+			for( int i = 0; node != null; i++ )
 			{
-				//log.debug( "MATCH: {}", entry.getKey() );
-				for( MessageListener listener : ImmutableSet.copyOf( entry.getValue() ) )
+				int remaining = segments.length - i;
+				if( remaining == 0 )
 				{
-					//log.debug( "Handler: {} handling...", listener );
-					listener.handleMessage( channel, endpoint, data );
+					listeners = concat( listeners, node.exact );
+					break;
 				}
+				listeners = concat( listeners, node.any );
+				if( remaining == 1 )
+				{
+					listeners = concat( listeners, node.single );
+				}
+				node = node.children.get( segments[i] );
+			}
+
+			if( routes.size() >= MAX_CACHED_ROUTES )
+			{
+				routes.clear();
+			}
+			routes.put( channel, listeners );
+
+			return listeners;
+		}
+	}
+
+	private Node nodeFor( String path )
+	{
+		Node node = root;
+		for( String segment : path.split( "/", -1 ) )
+		{
+			Node child = node.children.get( segment );
+			if( child == null )
+			{
+				child = new Node();
+				node.children.put( segment, child );
+			}
+			node = child;
+		}
+		return node;
+	}
+
+	private static MessageListener[] concat( MessageListener[] first, MessageListener[] second )
+	{
+		if( second.length == 0 )
+			return first;
+		if( first.length == 0 )
+			return second;
+
+		MessageListener[] result = Arrays.copyOf( first, first.length + second.length );
+		System.arraycopy( second, 0, result, first.length, second.length );
+		return result;
+	}
+
+	private enum Match
+	{
+		EXACT, SINGLE, ANY
+	}
+
+	private static class Registration
+	{
+		private final Node node;
+		private final Match match;
+
+		public Registration( Node node, Match match )
+		{
+			this.node = node;
+			this.match = match;
+		}
+	}
+
+	/**
+	 * A segment of a channel. The listener arrays are never modified, only
+	 * replaced, so a resolved route may share them.
+	 */
+	private static class Node
+	{
+		private final Map<String, Node> children = new HashMap<>();
+		private MessageListener[] exact = NO_LISTENERS;
+		private MessageListener[] single = NO_LISTENERS;
+		private MessageListener[] any = NO_LISTENERS;
+
+		public void add( Match match, MessageListener listener )
+		{
+			MessageListener[] listeners = get( match );
+			listeners = Arrays.copyOf( listeners, listeners.length + 1 );
+			listeners[listeners.length - 1] = listener;
+			set( match, listeners );
+		}
+
+		public void remove( Match match, MessageListener listener )
+		{
+			MessageListener[] listeners = get( match );
+			for( int i = 0; i < listeners.length; i++ )
+			{
+				if( listeners[i].equals( listener ) )
+				{
+					MessageListener[] updated = new MessageListener[listeners.length - 1];
+					System.arraycopy( listeners, 0, updated, 0, i );
+					System.arraycopy( listeners, i + 1, updated, i, updated.length - i );
+					set( match, updated );
+					return;
+				}
+			}
+		}
+
+		private MessageListener[] get( Match match )
+		{
+			switch( match )
+			{
+			case SINGLE:
+				return single;
+			case ANY:
+				return any;
+			default:
+				return exact;
+			}
+		}
+
+		private void set( Match match, MessageListener[] listeners )
+		{
+			switch( match )
+			{
+			case SINGLE:
+				single = listeners;
+				break;
+			case ANY:
+				any = listeners;
+				break;
+			default:
+				exact = listeners;
 			}
 		}
 	}
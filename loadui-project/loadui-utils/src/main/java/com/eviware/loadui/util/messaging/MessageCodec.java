@@ -0,0 +1,42 @@
+/*
+ * Copyright 2013 SmartBear Software
+ * 
+ * Licensed under the EUPL, Version 1.1 or - as soon they will be approved by the European Commission - subsequent
+ * versions of the EUPL (the "Licence");
+ * You may not use this work except in compliance with the Licence.
+ * You may obtain a copy of the Licence at:
+ * 
+ * http://ec.europa.eu/idabc/eupl
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the Licence is
+ * distributed on an "AS IS" basis, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the Licence for the specific language governing permissions and limitations
+ * under the Licence.
+ */
+package com.eviware.loadui.util.messaging;
+
+import java.io.IOException;
+import java.io.ObjectInput;
+import java.io.ObjectOutputStream;
+
+/**
+ * Encodes and decodes the data part of messages sent between MessageEndpoints.
+ * Both ends of a connection must use the same MessageCodec.
+ * 
+ * @see BinaryMessageCodec
+ * @see ObjectStreamMessageCodec
+ */
+public interface MessageCodec
+{
+	/**
+	 * Writes the data of a message to the given stream. The stream is flushed
+	 * by the caller.
+	 */
+	public void writeData( ObjectOutputStream output, Object data ) throws IOException;
+
+	/**
+	 * Reads the data of a message, as written by writeData, from the given
+	 * stream.
+	 */
+	public Object readData( ObjectInput input ) throws IOException, ClassNotFoundException;
+}
@@ -3,17 +3,26 @@ package com.eviware.loadui.util.messaging;
 import com.eviware.loadui.api.messaging.ConnectionListener;
 import com.eviware.loadui.api.messaging.MessageEndpoint;
 import com.eviware.loadui.api.messaging.MessageListener;
+import com.eviware.loadui.api.statistics.Statistic;
+import com.google.common.base.Preconditions;
 import com.google.common.collect.Sets;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.BufferedOutputStream;
+import java.io.FilterOutputStream;
 import java.io.IOException;
 import java.io.ObjectInput;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
+import java.io.OutputStream;
 import java.net.Socket;
+import java.util.Iterator;
 import java.util.Set;
 import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * @author renato
@@ -25,23 +34,239 @@ abstract class MessageEndPointBase implements MessageEndpoint
 
 	protected static final Message CLOSE_MESSAGE = new Message( SERVICE_CLOSE, null );
 
-	protected final LinkedBlockingQueue<Message> outMessageQueue = new LinkedBlockingQueue();
+	public static final String QUEUE_CAPACITY_PROPERTY = "loadui.messaging.queueCapacity";
+	public static final String OVERFLOW_POLICY_PROPERTY = "loadui.messaging.overflowPolicy";
+	public static final String BATCH_SIZE_PROPERTY = "loadui.messaging.batchSize";
+	public static final String BATCH_DELAY_PROPERTY = "loadui.messaging.batchDelayMicros";
+
+	private static final String STATISTICS_CHANNEL = "/" + Statistic.class.getName();
+	private static final int SEND_BUFFER_SIZE = 64 * 1024;
+
+	protected final LinkedBlockingQueue<Message> outMessageQueue = new LinkedBlockingQueue<>();
 	private final Set<ConnectionListener> connectionListeners = Sets.newCopyOnWriteArraySet();
 	protected final ChannelRoutingSupport routingSupport;
+	private final MessageCodec codec;
 	private Thread messageReceiverThread;
 	private Thread messageSenderThread;
-	private boolean isInit = false;
+	private volatile boolean isInit = false;
+
+	private volatile int queueCapacity = Integer.getInteger( QUEUE_CAPACITY_PROPERTY, 10000 );
+	private volatile MessageOverflowPolicy overflowPolicy = MessageOverflowPolicy.valueOf( System.getProperty(
+			OVERFLOW_POLICY_PROPERTY, MessageOverflowPolicy.DROP_STATISTICS.name() ) );
+	private volatile int maxBatchSize = Integer.getInteger( BATCH_SIZE_PROPERTY, 256 );
+	private volatile long maxBatchDelayNanos = TimeUnit.MICROSECONDS.toNanos( Integer.getInteger(
+			BATCH_DELAY_PROPERTY, 100 ) );
+
+	private final Object queueSpaceLock = new Object();
+	private final AtomicInteger waitingSenders = new AtomicInteger();
+
+	private final AtomicLong framesSent = new AtomicLong();
+	private final AtomicLong messagesSent = new AtomicLong();
+	private final AtomicLong bytesSent = new AtomicLong();
+	private final AtomicLong droppedMessages = new AtomicLong();
 
 
 	protected MessageEndPointBase( ChannelRoutingSupport routingSupport )
+	{
+		this( routingSupport, new BinaryMessageCodec() );
+	}
+
+	protected MessageEndPointBase( ChannelRoutingSupport routingSupport, MessageCodec codec )
 	{
 		this.routingSupport = routingSupport;
+		this.codec = codec;
 	}
 
 	@Override
 	public void sendMessage( String channel, Object data )
 	{
-		outMessageQueue.add( new Message( channel, data ) );
+		Message message = new Message( channel, data );
+		// checked and queued under one lock, so that concurrent senders can't overshoot the capacity.
+		synchronized( queueSpaceLock )
+		{
+			if( outMessageQueue.size() >= queueCapacity && !makeRoomFor( message ) )
+			{
+				droppedMessages.incrementAndGet();
+				return;
+			}
+			outMessageQueue.add( message );
+		}
+	}
+
+	/**
+	 * Applies the overflow policy to a full queue. Returns false if the given
+	 * message should be dropped rather than queued. Called holding
+	 * queueSpaceLock.
+	 */
+	private boolean makeRoomFor( Message message )
+	{
+		switch( overflowPolicy )
+		{
+		case BLOCK:
+			awaitQueueSpace();
+			return true;
+		case DROP_STATISTICS:
+			if( isDroppable( message.channel ) )
+			{
+				return false;
+			}
+			if( !dropOldestDroppable() )
+			{
+				awaitQueueSpace();
+			}
+			return true;
+		default:
+			dropOldest();
+			return true;
+		}
+	}
+
+	private void awaitQueueSpace()
+	{
+		if( !isInit )
+		{
+			// Nothing is draining the queue, so waiting could block forever.
+			// Discard statistics if there are any, otherwise let the queue grow
+			// rather than lose a message which has to be delivered.
+			dropOldestDroppable();
+			return;
+		}
+
+		waitingSenders.incrementAndGet();
+		try
+		{
+			synchronized( queueSpaceLock )
+			{
+				while( isInit && outMessageQueue.size() >= queueCapacity )
+				{
+					queueSpaceLock.wait( 10 );
+				}
+			}
+		}
+		catch( InterruptedException e )
+		{
+			log.warn( "Interrupted while waiting for room in the outgoing message queue, queueing anyway" );
+			Thread.currentThread().interrupt();
+		}
+		finally
+		{
+			waitingSenders.decrementAndGet();
+		}
+	}
+
+	private void signalQueueSpace()
+	{
+		if( waitingSenders.get() > 0 )
+		{
+			synchronized( queueSpaceLock )
+			{
+				queueSpaceLock.notifyAll();
+			}
+		}
+	}
+
+	private void dropOldest()
+	{
+		Message oldest = outMessageQueue.peek();
+		if( oldest != null && oldest != CLOSE_MESSAGE && outMessageQueue.remove( oldest ) )
+		{
+			droppedMessages.incrementAndGet();
+		}
+	}
+
+	private boolean dropOldestDroppable()
+	{
+		for( Iterator<Message> it = outMessageQueue.iterator(); it.hasNext(); )
+		{
+			if( isDroppable( it.next().channel ) )
+			{
+				it.remove();
+				droppedMessages.incrementAndGet();
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Returns true if messages on the given channel may be discarded by the
+	 * DROP_STATISTICS overflow policy. By default only statistics data is.
+	 */
+	protected boolean isDroppable( String channel )
+	{
+		return STATISTICS_CHANNEL.equals( channel );
+	}
+
+	public void setQueueCapacity( int queueCapacity )
+	{
+		Preconditions.checkArgument( queueCapacity > 0, "queueCapacity must be positive" );
+		this.queueCapacity = queueCapacity;
+	}
+
+	public int getQueueCapacity()
+	{
+		return queueCapacity;
+	}
+
+	public void setOverflowPolicy( MessageOverflowPolicy overflowPolicy )
+	{
+		this.overflowPolicy = Preconditions.checkNotNull( overflowPolicy );
+	}
+
+	public MessageOverflowPolicy getOverflowPolicy()
+	{
+		return overflowPolicy;
+	}
+
+	/**
+	 * Sets the maximum number of messages written between two flushes of the
+	 * underlying stream.
+	 */
+	public void setMaxBatchSize( int maxBatchSize )
+	{
+		Preconditions.checkArgument( maxBatchSize > 0, "maxBatchSize must be positive" );
+		this.maxBatchSize = maxBatchSize;
+	}
+
+	/**
+	 * Sets for how long the sender waits for further messages before flushing a
+	 * batch which is not yet full. Zero flushes as soon as the queue is empty.
+	 */
+	public void setMaxBatchDelay( long delay, TimeUnit unit )
+	{
+		Preconditions.checkArgument( delay >= 0, "delay must not be negative" );
+		this.maxBatchDelayNanos = unit.toNanos( delay );
+	}
+
+	public int getQueueDepth()
+	{
+		return outMessageQueue.size();
+	}
+
+	public long getFramesSent()
+	{
+		return framesSent.get();
+	}
+
+	public long getMessagesSent()
+	{
+		return messagesSent.get();
+	}
+
+	public double getAverageMessagesPerFrame()
+	{
+		long frames = framesSent.get();
+		return frames == 0 ? 0 : ( double )messagesSent.get() / frames;
+	}
+
+	public long getBytesSent()
+	{
+		return bytesSent.get();
+	}
+
+	public long getDroppedMessages()
+	{
+		return droppedMessages.get();
 	}
 
 	@Override
@@ -72,7 +297,11 @@ abstract class MessageEndPointBase implements MessageEndpoint
 	{
 		try
 		{
-			return new ObjectOutputStream( socket.getOutputStream() );
+			ObjectOutputStream oo = new ObjectOutputStream( new BufferedOutputStream( new CountingOutputStream(
+					socket.getOutputStream() ), SEND_BUFFER_SIZE ) );
+			// The peer's ObjectInputStream blocks until it has read the stream header.
+			oo.flush();
+			return oo;
 		}
 		catch( IOException e )
 		{
@@ -113,17 +342,21 @@ abstract class MessageEndPointBase implements MessageEndpoint
 	public Message readMessageFrom( ObjectInput objectInput )
 			throws IOException, ClassNotFoundException, InterruptedException
 	{
-		return new Message( objectInput.readUTF(), objectInput.readObject() );
+		return new Message( objectInput.readUTF(), codec.readData( objectInput ) );
 	}
 
 	public void writeMessage( ObjectOutputStream oo, Message message )
+	{
+		encodeMessage( oo, message );
+		flush( oo );
+	}
+
+	private void encodeMessage( ObjectOutputStream oo, Message message )
 	{
 		try
 		{
 			oo.writeUTF( message.channel );
-			oo.writeObject( message.data );
-			oo.flush();
-			oo.reset();
+			codec.writeData( oo, message.data );
 		}
 		catch( IOException e )
 		{
@@ -131,6 +364,57 @@ abstract class MessageEndPointBase implements MessageEndpoint
 		}
 	}
 
+	private void flush( ObjectOutputStream oo )
+	{
+		try
+		{
+			oo.flush();
+		}
+		catch( IOException e )
+		{
+			log.error( "Flushing of outgoing messages failed due to {}", e );
+		}
+	}
+
+	/**
+	 * Writes the given message followed by as many queued messages as are
+	 * available within the batch limits, then flushes them as one frame. Returns
+	 * the last message written.
+	 */
+	private Message writeFrame( ObjectOutputStream oo, Message first ) throws InterruptedException
+	{
+		long deadline = System.nanoTime() + maxBatchDelayNanos;
+		int batchSize = maxBatchSize;
+		int count = 0;
+		Message message = first;
+		while( true )
+		{
+			encodeMessage( oo, message );
+			count++;
+			if( message == CLOSE_MESSAGE || count >= batchSize )
+			{
+				break;
+			}
+			Message next = outMessageQueue.poll();
+			if( next == null )
+			{
+				long remaining = deadline - System.nanoTime();
+				if( remaining <= 0 || ( next = outMessageQueue.poll( remaining, TimeUnit.NANOSECONDS ) ) == null )
+				{
+					break;
+				}
+			}
+			message = next;
+		}
+		flush( oo );
+
+		framesSent.incrementAndGet();
+		messagesSent.addAndGet( count );
+		signalQueueSpace();
+
+		return message;
+	}
+
 	protected boolean shouldContinueListening( Message message )
 	{
 		return message != null && !CLOSE_MESSAGE.channel.equals( message.channel );
@@ -270,8 +554,7 @@ abstract class MessageEndPointBase implements MessageEndpoint
 				log.debug( "Starting MessageSender loop" );
 				do
 				{
-					message = outMessageQueue.take();
-					writeMessage( oo, message );
+					message = writeFrame( oo, outMessageQueue.take() );
 				}
 				while( message != CLOSE_MESSAGE );
 			}
@@ -296,6 +579,28 @@ abstract class MessageEndPointBase implements MessageEndpoint
 
 	}
 
+	private class CountingOutputStream extends FilterOutputStream
+	{
+		public CountingOutputStream( OutputStream out )
+		{
+			super( out );
+		}
+
+		@Override
+		public void write( int b ) throws IOException
+		{
+			out.write( b );
+			bytesSent.incrementAndGet();
+		}
+
+		@Override
+		public void write( byte[] b, int off, int len ) throws IOException
+		{
+			out.write( b, off, len );
+			bytesSent.addAndGet( len );
+		}
+	}
+
 	protected static class Message
 	{
 		public final String channel;
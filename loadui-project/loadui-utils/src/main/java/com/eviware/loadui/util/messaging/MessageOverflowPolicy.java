@@ -0,0 +1,44 @@
+/*
+ * Copyright 2013 SmartBear Software
+ * 
+ * Licensed under the EUPL, Version 1.1 or - as soon they will be approved by the European Commission - subsequent
+ * versions of the EUPL (the "Licence");
+ * You may not use this work except in compliance with the Licence.
+ * You may obtain a copy of the Licence at:
+ * 
+ * http://ec.europa.eu/idabc/eupl
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the Licence is
+ * distributed on an "AS IS" basis, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the Licence for the specific language governing permissions and limitations
+ * under the Licence.
+ */
+package com.eviware.loadui.util.messaging;
+
+/**
+ * Decides what a MessageEndpoint does when its outgoing message queue is full.
+ */
+public enum MessageOverflowPolicy
+{
+	/**
+	 * The sending Thread waits until the queue has room. When the endpoint is
+	 * not connected nothing drains the queue, so instead of waiting the oldest
+	 * queued statistics message is dropped, and if there is none the queue is
+	 * allowed to grow past its capacity. A sender which is interrupted while
+	 * waiting queues its message anyway.
+	 */
+	BLOCK,
+
+	/**
+	 * The oldest queued message is dropped to make room for the new one.
+	 */
+	DROP_OLDEST,
+
+	/**
+	 * When the queue is full a new statistics message is dropped, while any
+	 * other message makes room by dropping the oldest queued statistics
+	 * message. Other messages are never dropped: when the queue holds no
+	 * statistics, the sending Thread waits as with BLOCK.
+	 */
+	DROP_STATISTICS;
+}
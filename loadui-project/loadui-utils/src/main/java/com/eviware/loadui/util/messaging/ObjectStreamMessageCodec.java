@@ -0,0 +1,40 @@
+/*
+ * Copyright 2013 SmartBear Software
+ * 
+ * Licensed under the EUPL, Version 1.1 or - as soon they will be approved by the European Commission - subsequent
+ * versions of the EUPL (the "Licence");
+ * You may not use this work except in compliance with the Licence.
+ * You may obtain a copy of the Licence at:
+ * 
+ * http://ec.europa.eu/idabc/eupl
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the Licence is
+ * distributed on an "AS IS" basis, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the Licence for the specific language governing permissions and limitations
+ * under the Licence.
+ */
+package com.eviware.loadui.util.messaging;
+
+import java.io.IOException;
+import java.io.ObjectInput;
+import java.io.ObjectOutputStream;
+
+/**
+ * MessageCodec which writes message data using standard Java serialization,
+ * resetting the stream after each message.
+ */
+public class ObjectStreamMessageCodec implements MessageCodec
+{
+	@Override
+	public void writeData( ObjectOutputStream output, Object data ) throws IOException
+	{
+		output.writeObject( data );
+		output.reset();
+	}
+
+	@Override
+	public Object readData( ObjectInput input ) throws IOException, ClassNotFoundException
+	{
+		return input.readObject();
+	}
+}
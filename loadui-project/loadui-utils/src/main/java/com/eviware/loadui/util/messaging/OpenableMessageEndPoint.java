@@ -33,6 +33,11 @@ public abstract class OpenableMessageEndPoint extends MessageEndPointBase
 		super( routingSupport );
 	}
 
+	protected OpenableMessageEndPoint( ChannelRoutingSupport routingSupport, MessageCodec codec )
+	{
+		super( routingSupport, codec );
+	}
+
 	@Override
 	public void open()
 	{
@@ -0,0 +1,174 @@
+/*
+ * Copyright 2013 SmartBear Software
+ * 
+ * Licensed under the EUPL, Version 1.1 or - as soon they will be approved by the European Commission - subsequent
+ * versions of the EUPL (the "Licence");
+ * You may not use this work except in compliance with the Licence.
+ * You may obtain a copy of the Licence at:
+ * 
+ * http://ec.europa.eu/idabc/eupl
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the Licence is
+ * distributed on an "AS IS" basis, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the Licence for the specific language governing permissions and limitations
+ * under the Licence.
+ */
+package com.eviware.loadui.util.statistics;
+
+import java.util.Arrays;
+
+/**
+ * Growable buffer of (timestamp, value) points held in primitive arrays, which
+ * can be downsampled to a given number of points using the
+ * Largest-Triangle-Three-Buckets algorithm. Points are expected in ascending
+ * timestamp order; older points are ignored and a point with the same timestamp
+ * as the last one replaces it.
+ */
+public final class DataPointBuffer
+{
+	private static final int INITIAL_CAPACITY = 256;
+
+	private long[] timestamps = new long[INITIAL_CAPACITY];
+	private double[] values = new double[INITIAL_CAPACITY];
+	private int start = 0;
+	private int end = 0;
+
+	public void add( long timestamp, double value )
+	{
+		if( end > start )
+		{
+			long last = timestamps[end - 1];
+			if( timestamp < last )
+				return;
+			if( timestamp == last )
+			{
+				values[end - 1] = value;
+				return;
+			}
+		}
+
+		if( end == timestamps.length )
+			makeRoom();
+
+		timestamps[end] = timestamp;
+		values[end++ ] = value;
+	}
+
+	/**
+	 * Discards all points with a timestamp before the given one.
+	 */
+	public void removeBefore( long timestamp )
+	{
+		while( start < end && timestamps[start] < timestamp )
+		{
+			start++ ;
+		}
+		if( start == end )
+			clear();
+	}
+
+	public void clear()
+	{
+		start = 0;
+		end = 0;
+	}
+
+	public int size()
+	{
+		return end - start;
+	}
+
+	public long getTimestamp( int index )
+	{
+		return timestamps[start + index];
+	}
+
+	public double getValue( int index )
+	{
+		return values[start + index];
+	}
+
+	/**
+	 * Selects at most threshold points representing the shape of the buffered
+	 * line, always including the first and the last point. Returns the indexes
+	 * of the selected points in ascending order.
+	 */
+	public int[] downsample( int threshold )
+	{
+		int size = size();
+		if( threshold >= size || threshold < 3 )
+		{
+			int[] all = new int[size];
+			for( int i = 0; i < size; i++ )
+			{
+				all[i] = i;
+			}
+			return all;
+		}
+
+		int[] sampled = new int[threshold];
+		double bucketSize = ( double )( size - 2 ) / ( threshold - 2 );
+		int selected = 0;
+
+		for( int bucket = 0; bucket < threshold - 2; bucket++ )
+		{
+			// the average of the next bucket is the third point of the triangle.
+			int nextStart = ( int )( ( bucket + 1 ) * bucketSize ) + 1;
+			int nextEnd = Math.min( ( int )( ( bucket + 2 ) * bucketSize ) + 1, size );
+			double averageX = 0;
+			double averageY = 0;
+			for( int i = nextStart; i < nextEnd; i++ )
+			{
+				averageX += timestamps[start + i];
+				averageY += values[start + i];
+			}
+			int nextLength = nextEnd - nextStart;
+			averageX /= nextLength;
+			averageY /= nextLength;
+
+			double selectedX = timestamps[start + selected];
+			double selectedY = values[start + selected];
+			int rangeStart = ( int )( bucket * bucketSize ) + 1;
+			int rangeEnd = ( int )( ( bucket + 1 ) * bucketSize ) + 1;
+			double maxArea = -1;
+			int maxIndex = rangeStart;
+			for( int i = rangeStart; i < rangeEnd; i++ )
+			{
+				double area = Math.abs( ( selectedX - averageX ) * ( values[start + i] - selectedY )
+						- ( selectedX - timestamps[start + i] ) * ( averageY - selectedY ) );
+				if( area > maxArea )
+				{
+					maxArea = area;
+					maxIndex = i;
+				}
+			}
+
+			sampled[bucket + 1] = maxIndex;
+			selected = maxIndex;
+		}
+		sampled[threshold - 1] = size - 1;
+
+		return sampled;
+	}
+
+	private void makeRoom()
+	{
+		int size = size();
+		if( start > 0 && size <= timestamps.length / 2 )
+		{
+			System.arraycopy( timestamps, start, timestamps, 0, size );
+			System.arraycopy( values, start, values, 0, size );
+		}
+		else
+		{
+			long[] newTimestamps = Arrays.copyOf( timestamps, timestamps.length * 2 );
+			double[] newValues = Arrays.copyOf( values, values.length * 2 );
+			System.arraycopy( newTimestamps, start, newTimestamps, 0, size );
+			System.arraycopy( newValues, start, newValues, 0, size );
+			timestamps = newTimestamps;
+			values = newValues;
+		}
+		start = 0;
+		end = size;
+	}
+}
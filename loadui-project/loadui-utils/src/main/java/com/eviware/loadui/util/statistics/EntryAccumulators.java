@@ -0,0 +1,97 @@
+/*
+ * Copyright 2013 SmartBear Software
+ * 
+ * Licensed under the EUPL, Version 1.1 or - as soon they will be approved by the European Commission - subsequent
+ * versions of the EUPL (the "Licence");
+ * You may not use this work except in compliance with the Licence.
+ * You may obtain a copy of the Licence at:
+ * 
+ * http://ec.europa.eu/idabc/eupl
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the Licence is
+ * distributed on an "AS IS" basis, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the Licence for the specific language governing permissions and limitations
+ * under the Licence.
+ */
+package com.eviware.loadui.util.statistics;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import com.eviware.loadui.api.statistics.EntryAccumulator;
+import com.eviware.loadui.api.statistics.EntryAggregator;
+import com.eviware.loadui.api.statistics.IncrementalEntryAggregator;
+import com.eviware.loadui.api.statistics.store.Entry;
+
+/**
+ * Utility methods for adapting between EntryAggregators and EntryAccumulators.
+ */
+public class EntryAccumulators
+{
+	/**
+	 * Creates an EntryAccumulator for the given EntryAggregator. EntryAggregators
+	 * which aren't incremental get an EntryAccumulator which buffers the Entries
+	 * and passes them to aggregate( Set, boolean ) once the result is requested.
+	 */
+	public static EntryAccumulator create( EntryAggregator aggregator, boolean parallel )
+	{
+		if( aggregator instanceof IncrementalEntryAggregator )
+		{
+			return ( ( IncrementalEntryAggregator )aggregator ).createAccumulator( parallel );
+		}
+
+		return new BufferingAccumulator( aggregator, parallel );
+	}
+
+	/**
+	 * Aggregates a Set of Entries using a new EntryAccumulator, for implementing
+	 * EntryAggregator.aggregate( Set, boolean ) in an IncrementalEntryAggregator.
+	 */
+	public static Entry aggregate( IncrementalEntryAggregator aggregator, Set<Entry> entries, boolean parallel )
+	{
+		EntryAccumulator accumulator = aggregator.createAccumulator( parallel );
+		for( Entry entry : entries )
+		{
+			accumulator.add( entry );
+		}
+
+		return accumulator.getResult();
+	}
+
+	private static class BufferingAccumulator implements EntryAccumulator
+	{
+		private final EntryAggregator aggregator;
+		private final boolean parallel;
+		private final Set<Entry> entries = new HashSet<>();
+
+		public BufferingAccumulator( EntryAggregator aggregator, boolean parallel )
+		{
+			this.aggregator = aggregator;
+			this.parallel = parallel;
+		}
+
+		@Override
+		public void add( Entry entry )
+		{
+			entries.add( entry );
+		}
+
+		@Override
+		public void merge( EntryAccumulator other )
+		{
+			entries.addAll( ( ( BufferingAccumulator )other ).entries );
+		}
+
+		@Override
+		public boolean isEmpty()
+		{
+			return entries.isEmpty();
+		}
+
+		@Override
+		public Entry getResult()
+		{
+			return entries.isEmpty() ? null : aggregator.aggregate( entries, parallel );
+		}
+	}
+}
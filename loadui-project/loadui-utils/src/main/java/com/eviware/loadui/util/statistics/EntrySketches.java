@@ -0,0 +1,82 @@
+/*
+ * Copyright 2013 SmartBear Software
+ * 
+ * Licensed under the EUPL, Version 1.1 or - as soon they will be approved by the European Commission - subsequent
+ * versions of the EUPL (the "Licence");
+ * You may not use this work except in compliance with the Licence.
+ * You may obtain a copy of the Licence at:
+ * 
+ * http://ec.europa.eu/idabc/eupl
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the Licence is
+ * distributed on an "AS IS" basis, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the Licence for the specific language governing permissions and limitations
+ * under the Licence.
+ */
+package com.eviware.loadui.util.statistics;
+
+import java.util.Map;
+
+import com.eviware.loadui.api.statistics.store.Entry;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
+/**
+ * Keeps the QuantileSketch of each Entry that was summarized from one, for as
+ * long as the Entry itself is referenced. The sketch isn't a value of the
+ * Entry, so it is neither stored nor returned by Entry.getValue.
+ * 
+ * Entries sent from an agent to the controller carry their sketch alongside
+ * their values, so that percentiles aggregated over several agents are merged
+ * from the sketches of each agent.
+ */
+public final class EntrySketches
+{
+	/**
+	 * The key of the sketch in a message carrying the values of an Entry.
+	 */
+	public static final String SKETCH_KEY = "_SKETCH";
+
+	private static final Cache<Entry, QuantileSketch> sketches = CacheBuilder.newBuilder().weakKeys().build();
+
+	private EntrySketches()
+	{
+	}
+
+	/**
+	 * Sets the sketch of an Entry. The sketch must not be modified afterwards.
+	 */
+	public static void attach( Entry entry, QuantileSketch sketch )
+	{
+		sketches.put( entry, sketch );
+	}
+
+	/**
+	 * Gets the sketch of an Entry, or null if it has none.
+	 */
+	public static QuantileSketch get( Entry entry )
+	{
+		return sketches.getIfPresent( entry );
+	}
+
+	/**
+	 * Adds the sketch of an Entry, if it has one, to a message carrying the
+	 * values of the Entry.
+	 */
+	public static void write( Entry entry, Map<String, Object> message )
+	{
+		QuantileSketch sketch = get( entry );
+		if( sketch != null )
+			message.put( SKETCH_KEY, sketch );
+	}
+
+	/**
+	 * Removes the sketch from a received message, returning it, or null if the
+	 * message carried none.
+	 */
+	public static QuantileSketch read( Map<String, ?> message )
+	{
+		Object sketch = message.remove( SKETCH_KEY );
+		return sketch instanceof QuantileSketch ? ( QuantileSketch )sketch : null;
+	}
+}
@@ -0,0 +1,383 @@
+/*
+ * Copyright 2013 SmartBear Software
+ * 
+ * Licensed under the EUPL, Version 1.1 or - as soon they will be approved by the European Commission - subsequent
+ * versions of the EUPL (the "Licence");
+ * You may not use this work except in compliance with the Licence.
+ * You may obtain a copy of the Licence at:
+ * 
+ * http://ec.europa.eu/idabc/eupl
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the Licence is
+ * distributed on an "AS IS" basis, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the Licence for the specific language governing permissions and limitations
+ * under the Licence.
+ */
+package com.eviware.loadui.util.statistics;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.util.Arrays;
+
+/**
+ * A mergeable summary of a stream of values from which quantiles can be
+ * estimated. Up to EXACT_CAPACITY values are kept as they are, giving exact
+ * (linearly interpolated) quantiles. Beyond that values are counted in
+ * logarithmically sized buckets, giving quantiles within RELATIVE_ACCURACY of
+ * the true value regardless of the number of values added.
+ * 
+ * Sketches of different time spans can be merged, so that quantiles of the
+ * combined span are computed over all of its values.
+ * 
+ * Instances are not thread safe.
+ */
+public final class QuantileSketch implements Serializable
+{
+	private static final long serialVersionUID = 4260581372614003325L;
+
+	public static final double RELATIVE_ACCURACY = 0.01;
+	public static final int EXACT_CAPACITY = 1024;
+
+	private static final double GAMMA = ( 1 + RELATIVE_ACCURACY ) / ( 1 - RELATIVE_ACCURACY );
+	private static final double LOG_GAMMA = Math.log( GAMMA );
+	private static final double MIN_INDEXABLE = 1e-9;
+	private static final int INITIAL_EXACT_SIZE = 16;
+
+	private transient long count;
+	private transient double min = Double.POSITIVE_INFINITY;
+	private transient double max = Double.NEGATIVE_INFINITY;
+
+	private transient double[] exact = new double[INITIAL_EXACT_SIZE];
+	private transient boolean sorted = true;
+
+	private transient long zeroCount;
+	private transient Buckets positive;
+	private transient Buckets negative;
+
+	/**
+	 * Creates a new QuantileSketch containing all the values of the given
+	 * sketches, which are left unmodified.
+	 */
+	public static QuantileSketch merge( Iterable<QuantileSketch> sketches )
+	{
+		QuantileSketch merged = new QuantileSketch();
+		for( QuantileSketch sketch : sketches )
+		{
+			merged.addAll( sketch );
+		}
+		return merged;
+	}
+
+	public void add( double value )
+	{
+		min = Math.min( min, value );
+		max = Math.max( max, value );
+		if( exact != null )
+		{
+			if( count < EXACT_CAPACITY )
+			{
+				int size = ( int )count;
+				if( size == exact.length )
+					exact = Arrays.copyOf( exact, Math.min( size * 2, EXACT_CAPACITY ) );
+				exact[size] = value;
+				sorted = sorted && ( size == 0 || exact[size - 1] <= value );
+				count++;
+				return;
+			}
+			toBuckets();
+		}
+		count++;
+		addToBuckets( value, 1 );
+	}
+
+	/**
+	 * Adds all the values of the given sketch to this one.
+	 */
+	public void addAll( QuantileSketch other )
+	{
+		if( other.count == 0 )
+			return;
+
+		if( exact != null && other.exact != null && count + other.count <= EXACT_CAPACITY )
+		{
+			for( int i = 0; i < other.count; i++ )
+			{
+				add( other.exact[i] );
+			}
+			return;
+		}
+
+		if( exact != null )
+			toBuckets();
+
+		min = Math.min( min, other.min );
+		max = Math.max( max, other.max );
+		count += other.count;
+		if( other.exact != null )
+		{
+			for( int i = 0; i < other.count; i++ )
+			{
+				addToBuckets( other.exact[i], 1 );
+			}
+		}
+		else
+		{
+			zeroCount += other.zeroCount;
+			if( other.positive != null )
+				positiveBuckets().addAll( other.positive );
+			if( other.negative != null )
+				negativeBuckets().addAll( other.negative );
+		}
+	}
+
+	public long getCount()
+	{
+		return count;
+	}
+
+	public double getMin()
+	{
+		return count == 0 ? Double.NaN : min;
+	}
+
+	public double getMax()
+	{
+		return count == 0 ? Double.NaN : max;
+	}
+
+	/**
+	 * Returns true as long as the sketch holds its values exactly.
+	 */
+	public boolean isExact()
+	{
+		return exact != null;
+	}
+
+	/**
+	 * Estimates the value at the given quantile, where 0.5 is the median.
+	 * Returns NaN for an empty sketch.
+	 */
+	public double getQuantile( double quantile )
+	{
+		if( quantile < 0 || quantile > 1 )
+			throw new IllegalArgumentException( "Quantile must be between 0 and 1, got " + quantile );
+		if( count == 0 )
+			return Double.NaN;
+
+		double position = quantile * ( count - 1 );
+		if( exact != null )
+		{
+			if( !sorted )
+			{
+				Arrays.sort( exact, 0, ( int )count );
+				sorted = true;
+			}
+			int lower = ( int )position;
+			int upper = Math.min( lower + 1, ( int )count - 1 );
+			return exact[lower] + ( position - lower ) * ( exact[upper] - exact[lower] );
+		}
+
+		long rank = ( long )Math.floor( position );
+		double value;
+		if( negative != null && rank < negative.total )
+		{
+			value = -negative.valueAt( negative.total - 1 - rank );
+		}
+		else
+		{
+			rank -= negative == null ? 0 : negative.total;
+			value = rank < zeroCount ? 0 : positive.valueAt( rank - zeroCount );
+		}
+		return Math.max( min, Math.min( max, value ) );
+	}
+
+	@Override
+	public String toString()
+	{
+		return "QuantileSketch[count=" + count + ", median=" + getQuantile( 0.5 ) + "]";
+	}
+
+	private void toBuckets()
+	{
+		double[] values = exact;
+		exact = null;
+		for( int i = 0; i < count; i++ )
+		{
+			addToBuckets( values[i], 1 );
+		}
+	}
+
+	private void addToBuckets( double value, long n )
+	{
+		if( value >= MIN_INDEXABLE )
+			positiveBuckets().add( indexOf( value ), n );
+		else if( value <= -MIN_INDEXABLE )
+			negativeBuckets().add( indexOf( -value ), n );
+		else
+			zeroCount += n;
+	}
+
+	private Buckets positiveBuckets()
+	{
+		if( positive == null )
+			positive = new Buckets();
+		return positive;
+	}
+
+	private Buckets negativeBuckets()
+	{
+		if( negative == null )
+			negative = new Buckets();
+		return negative;
+	}
+
+	private static int indexOf( double value )
+	{
+		return ( int )Math.ceil( Math.log( value ) / LOG_GAMMA );
+	}
+
+	private void writeObject( ObjectOutputStream out ) throws IOException
+	{
+		out.defaultWriteObject();
+		out.writeLong( count );
+		out.writeDouble( min );
+		out.writeDouble( max );
+		out.writeBoolean( exact != null );
+		if( exact != null )
+		{
+			for( int i = 0; i < count; i++ )
+			{
+				out.writeDouble( exact[i] );
+			}
+		}
+		else
+		{
+			out.writeLong( zeroCount );
+			Buckets.write( out, positive );
+			Buckets.write( out, negative );
+		}
+	}
+
+	private void readObject( ObjectInputStream in ) throws IOException, ClassNotFoundException
+	{
+		in.defaultReadObject();
+		count = in.readLong();
+		min = in.readDouble();
+		max = in.readDouble();
+		if( in.readBoolean() )
+		{
+			exact = new double[Math.max( ( int )count, INITIAL_EXACT_SIZE )];
+			for( int i = 0; i < count; i++ )
+			{
+				exact[i] = in.readDouble();
+			}
+			sorted = false;
+		}
+		else
+		{
+			zeroCount = in.readLong();
+			positive = Buckets.read( in );
+			negative = Buckets.read( in );
+		}
+	}
+
+	/**
+	 * Counts of values per logarithmic bucket, for a contiguous range of bucket
+	 * indices.
+	 */
+	private static final class Buckets
+	{
+		private long[] counts = new long[0];
+		private int offset;
+		private long total;
+
+		public void add( int index, long n )
+		{
+			if( counts.length == 0 )
+			{
+				counts = new long[16];
+				offset = index - 8;
+			}
+			else if( index < offset )
+			{
+				int grow = Math.max( offset - index, counts.length / 2 );
+				long[] grown = new long[counts.length + grow];
+				System.arraycopy( counts, 0, grown, grow, counts.length );
+				counts = grown;
+				offset -= grow;
+			}
+			else if( index >= offset + counts.length )
+			{
+				counts = Arrays.copyOf( counts, Math.max( index - offset + 1, counts.length + counts.length / 2 ) );
+			}
+			counts[index - offset] += n;
+			total += n;
+		}
+
+		public void addAll( Buckets other )
+		{
+			for( int i = 0; i < other.counts.length; i++ )
+			{
+				if( other.counts[i] != 0 )
+					add( other.offset + i, other.counts[i] );
+			}
+		}
+
+		/**
+		 * Returns the representative value of the bucket holding the value of the
+		 * given rank, counting from the smallest value.
+		 */
+		public double valueAt( long rank )
+		{
+			long seen = 0;
+			for( int i = 0; i < counts.length; i++ )
+			{
+				seen += counts[i];
+				if( seen > rank )
+					return 2 * Math.pow( GAMMA, offset + i ) / ( GAMMA + 1 );
+			}
+			return 2 * Math.pow( GAMMA, offset + counts.length - 1 ) / ( GAMMA + 1 );
+		}
+
+		private static void write( ObjectOutputStream out, Buckets buckets ) throws IOException
+		{
+			if( buckets == null )
+			{
+				out.writeInt( 0 );
+				return;
+			}
+
+			int first = 0;
+			int last = buckets.counts.length - 1;
+			while( first <= last && buckets.counts[first] == 0 )
+				first++;
+			while( last >= first && buckets.counts[last] == 0 )
+				last--;
+			out.writeInt( last - first + 1 );
+			out.writeInt( buckets.offset + first );
+			for( int i = first; i <= last; i++ )
+			{
+				out.writeLong( buckets.counts[i] );
+			}
+		}
+
+		private static Buckets read( ObjectInputStream in ) throws IOException
+		{
+			int length = in.readInt();
+			if( length == 0 )
+				return null;
+
+			Buckets buckets = new Buckets();
+			buckets.offset = in.readInt();
+			buckets.counts = new long[length];
+			for( int i = 0; i < length; i++ )
+			{
+				buckets.counts[i] = in.readLong();
+				buckets.total += buckets.counts[i];
+			}
+			return buckets;
+		}
+	}
+}
@@ -24,11 +24,12 @@ import com.eviware.loadui.api.statistics.StatisticVariable;
 import com.eviware.loadui.api.statistics.store.Entry;
 import com.eviware.loadui.api.statistics.store.Execution;
 import com.eviware.loadui.api.statistics.store.ExecutionManager;
+import com.eviware.loadui.api.statistics.store.RangeCursor;
 import com.eviware.loadui.api.statistics.store.Track;
 import com.eviware.loadui.util.StringUtils;
 import com.eviware.loadui.util.serialization.ListenableValueSupport;
+import com.eviware.loadui.util.statistics.store.RangeCursors;
 import com.google.common.base.Function;
-import com.google.common.collect.Iterables;
 
 public class StatisticImpl<T extends Number> implements Statistic<T>
 {
@@ -93,25 +94,35 @@ public class StatisticImpl<T extends Number> implements Statistic<T>
 	}
 
 	@Override
-	public Iterable<DataPoint<T>> getPeriod( long start, long end, int interpolationLevel, Execution execution )
+	public Iterable<DataPoint<T>> getPeriod( final long start, final long end, final int interpolationLevel,
+			Execution execution )
 	{
 		if( execution == null )
 			return Collections.emptyList();
 
-		Track track = execution.getTrack( trackId );
+		final Track track = execution.getTrack( trackId );
 		if( track == null )
 			return Collections.emptyList();
 
-		return Iterables.transform( track.getRange( source, start, end, interpolationLevel ),
-				new Function<Entry, DataPoint<T>>()
-				{
-					@Override
-					@SuppressWarnings( "unchecked" )
-					public DataPoint<T> apply( Entry entry )
-					{
-						return new DataPointImpl<>( entry.getTimestamp(), ( T )entry.getValue( name ) );
-					}
-				} );
+		return RangeCursors.asIterable( start, end, new RangeCursors.Opener()
+		{
+			@Override
+			public RangeCursor open( long chunkStart, long chunkEnd )
+			{
+				return track.openRange( source, chunkStart, chunkEnd, interpolationLevel, name );
+			}
+		}, new Function<RangeCursor, DataPoint<T>>()
+		{
+			@Override
+			@SuppressWarnings( "unchecked" )
+			public DataPoint<T> apply( RangeCursor cursor )
+			{
+				// missing values are read as NaN, but are null in a DataPoint
+				double value = cursor.getValue( 0 );
+				return new DataPointImpl<>( cursor.getTimestamp(), Double.isNaN( value ) ? null
+						: ( T )RangeCursors.toNumber( value, type ) );
+			}
+		} );
 	}
 
 	@Override
@@ -126,6 +137,27 @@ public class StatisticImpl<T extends Number> implements Statistic<T>
 		return getPeriod( start, end, 0, manager.getCurrentExecution() );
 	}
 
+	@Override
+	@SuppressWarnings( "unchecked" )
+	public T getSummaryValue( Execution execution )
+	{
+		if( execution == null )
+			return null;
+
+		Entry summary = execution.getSummaryEntry( trackId, source );
+		Number value = summary == null ? null : summary.getValue( name );
+		if( value == null || Double.isNaN( value.doubleValue() ) )
+			return null;
+
+		return ( T )RangeCursors.toNumber( value.doubleValue(), type );
+	}
+
+	@Override
+	public T getSummaryValue()
+	{
+		return getSummaryValue( manager.getCurrentExecution() );
+	}
+
 	@Override
 	public long getTimestamp()
 	{
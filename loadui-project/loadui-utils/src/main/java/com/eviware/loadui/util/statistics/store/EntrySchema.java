@@ -0,0 +1,155 @@
+/*
+ * Copyright 2013 SmartBear Software
+ * 
+ * Licensed under the EUPL, Version 1.1 or - as soon they will be approved by the European Commission - subsequent
+ * versions of the EUPL (the "Licence");
+ * You may not use this work except in compliance with the Licence.
+ * You may obtain a copy of the Licence at:
+ * 
+ * http://ec.europa.eu/idabc/eupl
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the Licence is
+ * distributed on an "AS IS" basis, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the Licence for the specific language governing permissions and limitations
+ * under the Licence.
+ */
+package com.eviware.loadui.util.statistics.store;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import net.jcip.annotations.Immutable;
+
+import com.eviware.loadui.api.statistics.store.TrackDescriptor;
+import com.google.common.base.Objects;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+
+/**
+ * Assigns each value name of a Track a slot, allowing SchemaEntries to store
+ * their values in an array shared by name through the schema. Only the first
+ * {@link #MAX_SIZE} values get a slot, any values beyond that are stored by
+ * name in the SchemaEntries themselves.
+ */
+@Immutable
+public final class EntrySchema
+{
+	/**
+	 * The maximum number of slots in an EntrySchema.
+	 */
+	public static final int MAX_SIZE = 64;
+
+	private final ImmutableMap<String, Integer> indexes;
+	private final ImmutableSet<String> nameSet;
+	private final ImmutableList<String> names;
+	private final ImmutableList<Class<? extends Number>> types;
+
+	public EntrySchema( Map<String, ? extends Class<? extends Number>> values )
+	{
+		ImmutableMap.Builder<String, Integer> indexBuilder = ImmutableMap.builder();
+		ImmutableList.Builder<Class<? extends Number>> typeBuilder = ImmutableList.builder();
+		int index = 0;
+		for( Map.Entry<String, ? extends Class<? extends Number>> entry : values.entrySet() )
+		{
+			if( index < MAX_SIZE )
+			{
+				indexBuilder.put( entry.getKey(), index++ );
+			}
+			typeBuilder.add( entry.getValue() );
+		}
+		indexes = indexBuilder.build();
+		nameSet = ImmutableSet.copyOf( values.keySet() );
+		names = nameSet.asList();
+		types = typeBuilder.build();
+	}
+
+	/**
+	 * Gets the EntrySchema of the given TrackDescriptor.
+	 */
+	public static EntrySchema of( TrackDescriptor descriptor )
+	{
+		if( descriptor instanceof TrackDescriptorImpl )
+		{
+			return ( ( TrackDescriptorImpl )descriptor ).getEntrySchema();
+		}
+
+		return new EntrySchema( descriptor.getValueNames() );
+	}
+
+	/**
+	 * Returns a new EntrySchema with an additional slot, for values which are
+	 * passed along with Entries without being part of the TrackDescriptor.
+	 */
+	public EntrySchema extend( String name, Class<? extends Number> type )
+	{
+		Map<String, Class<? extends Number>> values = new LinkedHashMap<>();
+		for( int i = 0; i < names.size(); i++ )
+		{
+			values.put( names.get( i ), types.get( i ) );
+		}
+		values.put( name, type );
+
+		return new EntrySchema( values );
+	}
+
+	/**
+	 * Gets the number of slots, which is less than the number of names when the
+	 * schema holds more than {@link #MAX_SIZE} values.
+	 */
+	public int size()
+	{
+		return indexes.size();
+	}
+
+	/**
+	 * Gets the slot of the given name, or -1 if it isn't part of the schema.
+	 */
+	public int indexOf( String name )
+	{
+		Integer index = indexes.get( name );
+		return index == null ? -1 : index;
+	}
+
+	/**
+	 * Gets all value names of the schema, including those without a slot.
+	 */
+	public ImmutableSet<String> getNames()
+	{
+		return nameSet;
+	}
+
+	public String getName( int index )
+	{
+		return names.get( index );
+	}
+
+	public Class<? extends Number> getType( int index )
+	{
+		return types.get( index );
+	}
+
+	@Override
+	public int hashCode()
+	{
+		return Objects.hashCode( names, types );
+	}
+
+	@Override
+	public boolean equals( Object obj )
+	{
+		if( this == obj )
+			return true;
+		if( !( obj instanceof EntrySchema ) )
+			return false;
+
+		EntrySchema other = ( EntrySchema )obj;
+		return names.equals( other.names ) && types.equals( other.types );
+	}
+
+	@Override
+	public String toString()
+	{
+		return Objects.toStringHelper( this ).add( "names", nameSet ).toString();
+	}
+}
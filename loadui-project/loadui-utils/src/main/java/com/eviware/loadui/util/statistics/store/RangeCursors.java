@@ -0,0 +1,189 @@
+/*
+ * Copyright 2013 SmartBear Software
+ * 
+ * Licensed under the EUPL, Version 1.1 or - as soon they will be approved by the European Commission - subsequent
+ * versions of the EUPL (the "Licence");
+ * You may not use this work except in compliance with the Licence.
+ * You may obtain a copy of the Licence at:
+ * 
+ * http://ec.europa.eu/idabc/eupl
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the Licence is
+ * distributed on an "AS IS" basis, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the Licence for the specific language governing permissions and limitations
+ * under the Licence.
+ */
+package com.eviware.loadui.util.statistics.store;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+import com.eviware.loadui.api.statistics.store.RangeCursor;
+import com.google.common.base.Function;
+import com.google.common.collect.AbstractIterator;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Iterators;
+
+/**
+ * Static utility methods for working with RangeCursors.
+ */
+public final class RangeCursors
+{
+	/**
+	 * The number of rows read from each RangeCursor opened by asIterable.
+	 */
+	public static final int CHUNK_SIZE = 1000;
+
+	private RangeCursors()
+	{
+	}
+
+	/**
+	 * Returns a RangeCursor without any rows.
+	 */
+	public static RangeCursor empty( List<String> valueNames )
+	{
+		final List<String> names = ImmutableList.copyOf( valueNames );
+		return new RangeCursor()
+		{
+			@Override
+			public List<String> getValueNames()
+			{
+				return names;
+			}
+
+			@Override
+			public boolean next()
+			{
+				return false;
+			}
+
+			@Override
+			public long getTimestamp()
+			{
+				throw new NoSuchElementException();
+			}
+
+			@Override
+			public double getValue( int index )
+			{
+				throw new NoSuchElementException();
+			}
+
+			@Override
+			public void close()
+			{
+			}
+		};
+	}
+
+	/**
+	 * Opens RangeCursors over parts of a range.
+	 */
+	public interface Opener
+	{
+		/**
+		 * Opens a RangeCursor over the rows with startTime <= timestamp <=
+		 * endTime.
+		 */
+		public RangeCursor open( long startTime, long endTime );
+	}
+
+	/**
+	 * Returns an Iterable over the rows with startTime <= timestamp <= endTime,
+	 * applying the given Function to each row. The rows are read in chunks of
+	 * at most CHUNK_SIZE rows, each from its own RangeCursor which is closed as
+	 * soon as the chunk has been read. An Iterator which is abandoned early, or
+	 * whose Function throws, therefore never leaves a RangeCursor open. The
+	 * timestamps of the rows must be increasing, as for a Track.
+	 */
+	public static <T> Iterable<T> asIterable( final long startTime, final long endTime, final Opener opener,
+			final Function<? super RangeCursor, T> rowFunction )
+	{
+		return new Iterable<T>()
+		{
+			@Override
+			public Iterator<T> iterator()
+			{
+				return new ChunkIterator<>( startTime, endTime, opener, rowFunction );
+			}
+		};
+	}
+
+	/**
+	 * Converts a value read from a RangeCursor to the given type. NaN is
+	 * converted to null for integral types.
+	 */
+	public static Number toNumber( double value, Class<? extends Number> type )
+	{
+		if( type == Long.class )
+			return Double.isNaN( value ) ? null : ( Number )( long )value;
+		if( type == Integer.class )
+			return Double.isNaN( value ) ? null : ( Number )( int )value;
+		if( type == Float.class )
+			return ( float )value;
+		return value;
+	}
+
+	private static class ChunkIterator<T> extends AbstractIterator<T>
+	{
+		private final long endTime;
+		private final Opener opener;
+		private final Function<? super RangeCursor, T> rowFunction;
+		private final List<T> chunk = new ArrayList<>();
+		private Iterator<T> chunkIterator = Iterators.emptyIterator();
+		private long nextStartTime;
+		private boolean exhausted = false;
+
+		public ChunkIterator( long startTime, long endTime, Opener opener, Function<? super RangeCursor, T> rowFunction )
+		{
+			this.endTime = endTime;
+			this.opener = opener;
+			this.rowFunction = rowFunction;
+			nextStartTime = startTime;
+		}
+
+		@Override
+		protected T computeNext()
+		{
+			if( !chunkIterator.hasNext() )
+			{
+				if( exhausted || nextStartTime > endTime )
+				{
+					return endOfData();
+				}
+				readChunk();
+				if( !chunkIterator.hasNext() )
+				{
+					return endOfData();
+				}
+			}
+
+			return chunkIterator.next();
+		}
+
+		private void readChunk()
+		{
+			chunk.clear();
+			RangeCursor cursor = opener.open( nextStartTime, endTime );
+			try
+			{
+				long lastTimestamp = nextStartTime;
+				while( chunk.size() < CHUNK_SIZE && cursor.next() )
+				{
+					lastTimestamp = cursor.getTimestamp();
+					chunk.add( rowFunction.apply( cursor ) );
+				}
+				exhausted = chunk.size() < CHUNK_SIZE || lastTimestamp == Long.MAX_VALUE;
+				nextStartTime = lastTimestamp + 1;
+			}
+			finally
+			{
+				cursor.close();
+			}
+			chunkIterator = chunk.iterator();
+		}
+	}
+}
@@ -0,0 +1,241 @@
+/*
+ * Copyright 2013 SmartBear Software
+ * 
+ * Licensed under the EUPL, Version 1.1 or - as soon they will be approved by the European Commission - subsequent
+ * versions of the EUPL (the "Licence");
+ * You may not use this work except in compliance with the Licence.
+ * You may obtain a copy of the Licence at:
+ * 
+ * http://ec.europa.eu/idabc/eupl
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the Licence is
+ * distributed on an "AS IS" basis, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the Licence for the specific language governing permissions and limitations
+ * under the Licence.
+ */
+package com.eviware.loadui.util.statistics.store;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Set;
+
+import net.jcip.annotations.Immutable;
+
+import com.eviware.loadui.api.statistics.store.Entry;
+import com.google.common.base.Objects;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+
+/**
+ * Immutable implementation of Entry which stores its values as primitives in
+ * the slots of an EntrySchema, rather than in a Map. Values which aren't part
+ * of the schema are kept in a separate Map.
+ */
+@Immutable
+public final class SchemaEntry implements Entry
+{
+	private final EntrySchema schema;
+	private final long timestamp;
+	private final double[] values;
+	private final long present;
+	private final ImmutableMap<String, Number> extras;
+
+	/**
+	 * Creates a SchemaEntry, taking ownership of the values array. Only the
+	 * slots which have their bit set in present are considered to hold values.
+	 */
+	SchemaEntry( EntrySchema schema, long timestamp, double[] values, long present, ImmutableMap<String, Number> extras )
+	{
+		this.schema = schema;
+		this.timestamp = timestamp;
+		this.values = values;
+		this.present = present;
+		this.extras = extras;
+	}
+
+	/**
+	 * Creates a SchemaEntry holding the values of the given Map.
+	 */
+	public static SchemaEntry fromMap( EntrySchema schema, long timestamp, Map<String, ? extends Number> values )
+	{
+		Builder builder = new Builder( schema, timestamp );
+		for( Map.Entry<String, ? extends Number> entry : values.entrySet() )
+		{
+			builder.put( entry.getKey(), entry.getValue() );
+		}
+
+		return builder.build();
+	}
+
+	/**
+	 * Gets the EntrySchema of the given Entry, or null if it isn't a
+	 * SchemaEntry.
+	 */
+	public static EntrySchema schemaOf( Entry entry )
+	{
+		return entry instanceof SchemaEntry ? ( ( SchemaEntry )entry ).schema : null;
+	}
+
+	public EntrySchema getSchema()
+	{
+		return schema;
+	}
+
+	@Override
+	public long getTimestamp()
+	{
+		return timestamp;
+	}
+
+	/**
+	 * Returns a copy of this SchemaEntry with a different timestamp, sharing the
+	 * values.
+	 */
+	public SchemaEntry withTimestamp( long newTimestamp )
+	{
+		return new SchemaEntry( schema, newTimestamp, values, present, extras );
+	}
+
+	@Override
+	public Set<String> getNames()
+	{
+		if( present == fullMask( schema.size() ) && extras.isEmpty() && schema.getNames().size() == schema.size() )
+		{
+			return schema.getNames();
+		}
+
+		ImmutableSet.Builder<String> names = ImmutableSet.builder();
+		for( int i = 0; i < schema.size(); i++ )
+		{
+			if( isPresent( i ) )
+			{
+				names.add( schema.getName( i ) );
+			}
+		}
+
+		return names.addAll( extras.keySet() ).build();
+	}
+
+	@Override
+	public Number getValue( String name )
+	{
+		int index = schema.indexOf( name );
+		if( index >= 0 )
+		{
+			return isPresent( index ) ? RangeCursors.toNumber( values[index], schema.getType( index ) ) : null;
+		}
+
+		return extras.get( name );
+	}
+
+	/**
+	 * Gets the value in the given slot of the schema, or NaN if there is none.
+	 */
+	public double getValue( int index )
+	{
+		return isPresent( index ) ? values[index] : Double.NaN;
+	}
+
+	private boolean isPresent( int index )
+	{
+		return ( present & ( 1L << index ) ) != 0;
+	}
+
+	private static long fullMask( int size )
+	{
+		return size == EntrySchema.MAX_SIZE ? -1L : ( 1L << size ) - 1;
+	}
+
+	@Override
+	public String toString()
+	{
+		ImmutableMap.Builder<String, Number> all = ImmutableMap.builder();
+		for( String name : getNames() )
+		{
+			all.put( name, getValue( name ) );
+		}
+
+		return Objects.toStringHelper( this ).add( "timestamp", timestamp ).add( "values", all.build() ).toString();
+	}
+
+	@Override
+	public int hashCode()
+	{
+		return Objects.hashCode( timestamp, present, Arrays.hashCode( values ), extras );
+	}
+
+	@Override
+	public boolean equals( Object obj )
+	{
+		if( this == obj )
+			return true;
+		if( !( obj instanceof SchemaEntry ) )
+			return false;
+
+		SchemaEntry other = ( SchemaEntry )obj;
+		return timestamp == other.timestamp && present == other.present && schema.equals( other.schema )
+				&& Arrays.equals( values, other.values ) && extras.equals( other.extras );
+	}
+
+	/**
+	 * Builds a SchemaEntry one value at a time.
+	 */
+	public static class Builder
+	{
+		private final EntrySchema schema;
+		private final long timestamp;
+		private final double[] values;
+		private long present = 0;
+		private ImmutableMap.Builder<String, Number> extras;
+
+		/**
+		 * Creates a Builder for the given schema, which may be null, in which case
+		 * all values are stored by name.
+		 */
+		public Builder( EntrySchema schema, long timestamp )
+		{
+			this.schema = schema == null ? EMPTY_SCHEMA : schema;
+			this.timestamp = timestamp;
+			values = new double[this.schema.size()];
+		}
+
+		public long getTimestamp()
+		{
+			return timestamp;
+		}
+
+		public Builder put( String name, Number value )
+		{
+			int index = schema.indexOf( name );
+			if( index >= 0 && !isNonPrimitive( value ) )
+			{
+				values[index] = value.doubleValue();
+				present |= 1L << index;
+			}
+			else
+			{
+				if( extras == null )
+				{
+					extras = ImmutableMap.builder();
+				}
+				extras.put( name, value );
+			}
+
+			return this;
+		}
+
+		public SchemaEntry build()
+		{
+			return new SchemaEntry( schema, timestamp, values, present, extras == null ? ImmutableMap
+					.<String, Number> of() : extras.build() );
+		}
+
+		private static boolean isNonPrimitive( Number value )
+		{
+			return !( value instanceof Double || value instanceof Long || value instanceof Integer
+					|| value instanceof Float || value instanceof Short || value instanceof Byte );
+		}
+	}
+
+	private static final EntrySchema EMPTY_SCHEMA = new EntrySchema( ImmutableMap.<String, Class<? extends Number>> of() );
+}
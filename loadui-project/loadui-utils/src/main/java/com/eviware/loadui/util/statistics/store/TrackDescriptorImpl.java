@@ -37,6 +37,7 @@ public class TrackDescriptorImpl implements TrackDescriptor
 	private final String id;
 	private final Map<String, Class<? extends Number>> structure;
 	private final EntryAggregator aggregator;
+	private final EntrySchema schema;
 
 	public TrackDescriptorImpl( String trackId, Map<String, Class<? extends Number>> structure,
 			EntryAggregator aggregator )
@@ -44,6 +45,7 @@ public class TrackDescriptorImpl implements TrackDescriptor
 		id = trackId;
 		this.structure = ImmutableMap.copyOf( structure );
 		this.aggregator = aggregator;
+		schema = new EntrySchema( this.structure );
 	}
 
 	@Override
@@ -58,6 +60,11 @@ public class TrackDescriptorImpl implements TrackDescriptor
 		return structure;
 	}
 
+	public EntrySchema getEntrySchema()
+	{
+		return schema;
+	}
+
 	@Override
 	public String toString()
 	{
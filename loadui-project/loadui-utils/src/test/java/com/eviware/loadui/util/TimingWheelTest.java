@@ -0,0 +1,293 @@
+/*
+ * Copyright 2013 SmartBear Software
+ * 
+ * Licensed under the EUPL, Version 1.1 or - as soon they will be approved by the European Commission - subsequent
+ * versions of the EUPL (the "Licence");
+ * You may not use this work except in compliance with the Licence.
+ * You may obtain a copy of the Licence at:
+ * 
+ * http://ec.europa.eu/idabc/eupl
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the Licence is
+ * distributed on an "AS IS" basis, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the Licence for the specific language governing permissions and limitations
+ * under the Licence.
+ */
+package com.eviware.loadui.util;
+
+import static org.hamcrest.CoreMatchers.*;
+import static org.hamcrest.Matchers.greaterThanOrEqualTo;
+import static org.junit.Assert.*;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.eviware.loadui.api.component.TriggerScheduler;
+import com.eviware.loadui.api.component.TriggerScheduler.Handle;
+
+public class TimingWheelTest
+{
+	private TimingWheel wheel;
+	private TriggerScheduler scheduler;
+
+	@Before
+	public void setup()
+	{
+		wheel = new TimingWheel( 100, TimeUnit.MICROSECONDS, 64, "TimingWheelTest" );
+		scheduler = wheel.newScheduler();
+	}
+
+	@After
+	public void tearDown()
+	{
+		wheel.stop();
+	}
+
+	@Test
+	public void shouldRunDelayedTaskOnce() throws InterruptedException
+	{
+		final CountDownLatch latch = new CountDownLatch( 1 );
+		long start = System.nanoTime();
+		Handle handle = scheduler.schedule( new Runnable()
+		{
+			@Override
+			public void run()
+			{
+				latch.countDown();
+			}
+		}, 20, TimeUnit.MILLISECONDS );
+
+		assertTrue( latch.await( 1, TimeUnit.SECONDS ) );
+		assertThat( System.nanoTime() - start, greaterThanOrEqualTo( TimeUnit.MILLISECONDS.toNanos( 20 ) ) );
+		Thread.sleep( 10 );
+		assertThat( handle.isDone(), is( true ) );
+		assertThat( handle.isCancelled(), is( false ) );
+		assertThat( wheel.getTaskCount(), is( 0 ) );
+	}
+
+	@Test
+	public void shouldCatchUpOnMissedDeadlines() throws InterruptedException
+	{
+		final AtomicInteger count = new AtomicInteger();
+		final AtomicLong maxLag = new AtomicLong();
+		// A rotation of the wheel is 6.4 ms, so the stall spans several rotations.
+		scheduler.scheduleAtFixedRate( new Runnable()
+		{
+			@Override
+			public void run()
+			{
+				maxLag.set( Math.max( maxLag.get(), wheel.getLag( TimeUnit.MILLISECONDS ) ) );
+				if( count.incrementAndGet() == 1 )
+					sleep( 50 );
+			}
+		}, 0, 1, TimeUnit.MILLISECONDS );
+
+		Thread.sleep( 200 );
+		int runs = count.get();
+
+		assertThat( runs, greaterThanOrEqualTo( 150 ) );
+		assertThat( runs, is( not( greaterThanOrEqualTo( 250 ) ) ) );
+		assertThat( maxLag.get(), greaterThanOrEqualTo( 20L ) );
+	}
+
+	@Test
+	public void shouldPaceTasksUsingDelays() throws InterruptedException
+	{
+		final AtomicInteger count = new AtomicInteger();
+		scheduler.scheduleWithDelays( new Runnable()
+		{
+			@Override
+			public void run()
+			{
+				count.incrementAndGet();
+			}
+		}, 0, new TriggerScheduler.Delays()
+		{
+			private int remaining = 4;
+
+			@Override
+			public long next()
+			{
+				return remaining-- > 0 ? 2 : -1;
+			}
+		}, TimeUnit.MILLISECONDS );
+
+		Thread.sleep( 100 );
+
+		assertThat( count.get(), is( 5 ) );
+		assertThat( wheel.getTaskCount(), is( 0 ) );
+	}
+
+	@Test
+	public void shouldKeepRunningTasksWhichThrow() throws InterruptedException
+	{
+		final AtomicInteger count = new AtomicInteger();
+		Handle handle = scheduler.scheduleAtFixedRate( new Runnable()
+		{
+			@Override
+			public void run()
+			{
+				if( count.incrementAndGet() % 2 == 1 )
+					throw new IllegalStateException( "Expected" );
+			}
+		}, 0, 2, TimeUnit.MILLISECONDS );
+
+		Thread.sleep( 50 );
+
+		assertThat( count.get(), greaterThanOrEqualTo( 10 ) );
+		assertThat( handle.isDone(), is( false ) );
+		handle.cancel();
+	}
+
+	@Test
+	public void shouldRunSparseTasksOnTime() throws InterruptedException
+	{
+		final CountDownLatch latch = new CountDownLatch( 1 );
+		// The deadline is several rotations of the wheel away.
+		scheduler.schedule( new Runnable()
+		{
+			@Override
+			public void run()
+			{
+				latch.countDown();
+			}
+		}, 30, TimeUnit.MILLISECONDS );
+		long start = System.nanoTime();
+		final CountDownLatch earlier = new CountDownLatch( 1 );
+		scheduler.schedule( new Runnable()
+		{
+			@Override
+			public void run()
+			{
+				earlier.countDown();
+			}
+		}, 5, TimeUnit.MILLISECONDS );
+
+		assertTrue( earlier.await( 1, TimeUnit.SECONDS ) );
+		assertThat( TimeUnit.NANOSECONDS.toMillis( System.nanoTime() - start ), is( not( greaterThanOrEqualTo( 25L ) ) ) );
+		assertTrue( latch.await( 1, TimeUnit.SECONDS ) );
+		Thread.sleep( 10 );
+		assertThat( wheel.getTaskCount(), is( 0 ) );
+	}
+
+	@Test
+	public void shouldCancelAllTasksOfAScheduler() throws InterruptedException
+	{
+		final AtomicInteger cancelledRuns = new AtomicInteger();
+		final AtomicInteger otherRuns = new AtomicInteger();
+		Runnable cancelledTask = new Runnable()
+		{
+			@Override
+			public void run()
+			{
+				cancelledRuns.incrementAndGet();
+			}
+		};
+
+		Handle periodic = scheduler.scheduleAtFixedRate( cancelledTask, 10, 1, TimeUnit.MILLISECONDS );
+		Handle delayed = scheduler.schedule( cancelledTask, 10, TimeUnit.MILLISECONDS );
+		wheel.newScheduler().schedule( new Runnable()
+		{
+			@Override
+			public void run()
+			{
+				otherRuns.incrementAndGet();
+			}
+		}, 10, TimeUnit.MILLISECONDS );
+
+		scheduler.cancelAll();
+		Thread.sleep( 50 );
+
+		assertThat( cancelledRuns.get(), is( 0 ) );
+		assertThat( otherRuns.get(), is( 1 ) );
+		assertThat( periodic.isCancelled(), is( true ) );
+		assertThat( delayed.isCancelled(), is( true ) );
+		assertThat( delayed.cancel(), is( false ) );
+
+		Handle handle = scheduler.schedule( cancelledTask, 1, TimeUnit.MILLISECONDS );
+		assertThat( handle.cancel(), is( true ) );
+		assertThat( handle.cancel(), is( false ) );
+	}
+
+	@Test
+	public void shouldNotDelayOtherTimersWhileATaskBlocks() throws InterruptedException
+	{
+		ExecutorService executor = Executors.newFixedThreadPool( 2 );
+		try
+		{
+			TriggerScheduler dispatching = wheel.newScheduler( executor );
+			final CountDownLatch unblock = new CountDownLatch( 1 );
+			final AtomicInteger blockedRuns = new AtomicInteger();
+			final AtomicInteger running = new AtomicInteger();
+			final AtomicInteger maxRunning = new AtomicInteger();
+			dispatching.scheduleAtFixedRate( new Runnable()
+			{
+				@Override
+				public void run()
+				{
+					maxRunning.set( Math.max( maxRunning.get(), running.incrementAndGet() ) );
+					if( blockedRuns.incrementAndGet() == 1 )
+						awaitQuietly( unblock );
+					running.decrementAndGet();
+				}
+			}, 0, 1, TimeUnit.MILLISECONDS );
+
+			final AtomicInteger otherRuns = new AtomicInteger();
+			dispatching.scheduleAtFixedRate( new Runnable()
+			{
+				@Override
+				public void run()
+				{
+					otherRuns.incrementAndGet();
+				}
+			}, 0, 1, TimeUnit.MILLISECONDS );
+
+			Thread.sleep( 100 );
+			assertThat( blockedRuns.get(), is( 1 ) );
+			assertThat( otherRuns.get(), greaterThanOrEqualTo( 50 ) );
+
+			// The calls which became due while blocked are made afterwards, one
+			// at a time.
+			unblock.countDown();
+			Thread.sleep( 100 );
+			assertThat( blockedRuns.get(), greaterThanOrEqualTo( 150 ) );
+			assertThat( maxRunning.get(), is( 1 ) );
+		}
+		finally
+		{
+			executor.shutdownNow();
+		}
+	}
+
+	private static void awaitQuietly( CountDownLatch latch )
+	{
+		try
+		{
+			latch.await();
+		}
+		catch( InterruptedException e )
+		{
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	private static void sleep( long millis )
+	{
+		try
+		{
+			Thread.sleep( millis );
+		}
+		catch( InterruptedException e )
+		{
+			Thread.currentThread().interrupt();
+		}
+	}
+}
@@ -15,25 +15,126 @@
  */
 package com.eviware.loadui.util.events;
 
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 
+import org.junit.After;
 import org.junit.Test;
 
 public class EventQueueTest
 {
+	private final List<EventQueue> queues = new ArrayList<>();
+
+	@After
+	public void tearDown()
+	{
+		for( EventQueue queue : queues )
+		{
+			queue.shutdown();
+		}
+	}
+
+	private EventQueue newQueue( int laneCount )
+	{
+		EventQueue queue = new EventQueue( laneCount );
+		queues.add( queue );
+		return queue;
+	}
 
 	@Test
 	public void testQueueThreadStarts() throws InterruptedException
 	{
 		EventQueue queue = EventQueue.getInstance();
 		Thread.sleep( 100 );
-		assertTrue( queue.thread.isAlive() );
+		for( EventQueue.Lane lane : queue.getLanes() )
+		{
+			assertTrue( lane.thread.isAlive() );
+		}
+	}
+
+	@Test
+	public void keysShouldAlwaysMapToTheSameLane()
+	{
+		EventQueue queue = newQueue( 4 );
+		Object key = new Object();
+
+		assertEquals( 4, queue.getLaneCount() );
+		assertSame( queue.laneFor( key ), queue.laneFor( key ) );
+	}
+
+	@Test
+	public void actionsShouldRunInOrderPerKey() throws InterruptedException
+	{
+		EventQueue queue = newQueue( 4 );
+		final int keys = 8;
+		final int actionsPerKey = 500;
+		final CountDownLatch latch = new CountDownLatch( keys * actionsPerKey );
+		final List<List<Integer>> results = new ArrayList<>();
+
+		for( int k = 0; k < keys; k++ )
+		{
+			results.add( Collections.synchronizedList( new ArrayList<Integer>() ) );
+		}
+
+		for( int i = 0; i < actionsPerKey; i++ )
+		{
+			for( int k = 0; k < keys; k++ )
+			{
+				final List<Integer> result = results.get( k );
+				final int n = i;
+				assertTrue( queue.offer( result, new Runnable()
+				{
+					@Override
+					public void run()
+					{
+						result.add( n );
+						latch.countDown();
+					}
+				} ) );
+			}
+		}
+
+		assertTrue( latch.await( 5, TimeUnit.SECONDS ) );
+		for( List<Integer> result : results )
+		{
+			for( int i = 0; i < actionsPerKey; i++ )
+			{
+				assertEquals( i, result.get( i ).intValue() );
+			}
+		}
+
+		long dispatched = 0;
+		for( EventQueue.Lane lane : queue.getLanes() )
+		{
+			dispatched += lane.getDispatchedCount();
+			assertEquals( 0, lane.getQueueDepth() );
+		}
+		assertEquals( keys * actionsPerKey, dispatched );
+	}
+
+	@Test
+	public void lanesShouldStopOnShutdown() throws InterruptedException
+	{
+		EventQueue queue = newQueue( 2 );
+		queue.shutdown();
+
+		for( EventQueue.Lane lane : queue.getLanes() )
+		{
+			lane.thread.join( 1000 );
+			assertFalse( lane.thread.isAlive() );
+		}
 	}
 
 	@Test
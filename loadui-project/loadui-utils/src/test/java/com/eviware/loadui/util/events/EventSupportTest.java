@@ -0,0 +1,80 @@
+/*
+ * Copyright 2013 SmartBear Software
+ * 
+ * Licensed under the EUPL, Version 1.1 or - as soon they will be approved by the European Commission - subsequent
+ * versions of the EUPL (the "Licence");
+ * You may not use this work except in compliance with the Licence.
+ * You may obtain a copy of the Licence at:
+ * 
+ * http://ec.europa.eu/idabc/eupl
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the Licence is
+ * distributed on an "AS IS" basis, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the Licence for the specific language governing permissions and limitations
+ * under the Licence.
+ */
+package com.eviware.loadui.util.events;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.EventObject;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import com.eviware.loadui.api.events.EventHandler;
+
+public class EventSupportTest
+{
+	@Test
+	public void handlersOfSeveralOwnersShouldNotBeCalledConcurrently() throws InterruptedException
+	{
+		final int owners = 8;
+		final int eventsPerOwner = 50;
+		final CountDownLatch latch = new CountDownLatch( owners * eventsPerOwner );
+		final AtomicInteger running = new AtomicInteger();
+		final AtomicInteger overlaps = new AtomicInteger();
+
+		EventHandler<EventObject> handler = new EventHandler<EventObject>()
+		{
+			@Override
+			public void handleEvent( EventObject event )
+			{
+				if( running.incrementAndGet() > 1 )
+					overlaps.incrementAndGet();
+				Thread.yield();
+				running.decrementAndGet();
+				latch.countDown();
+			}
+		};
+
+		List<EventSupport> supports = new ArrayList<>();
+		for( int i = 0; i < owners; i++ )
+		{
+			EventSupport support = new EventSupport( new Object() );
+			support.addEventListener( EventObject.class, handler );
+			supports.add( support );
+		}
+
+		for( int i = 0; i < eventsPerOwner; i++ )
+		{
+			for( EventSupport support : supports )
+			{
+				support.fireEvent( new EventObject( support ) );
+			}
+		}
+
+		assertTrue( latch.await( 5, TimeUnit.SECONDS ) );
+		assertEquals( 0, overlaps.get() );
+
+		for( EventSupport support : supports )
+		{
+			support.release();
+		}
+	}
+}
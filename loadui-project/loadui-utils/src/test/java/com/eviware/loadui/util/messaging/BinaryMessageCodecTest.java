@@ -0,0 +1,119 @@
+/*
+ * Copyright 2013 SmartBear Software
+ * 
+ * Licensed under the EUPL, Version 1.1 or - as soon they will be approved by the European Commission - subsequent
+ * versions of the EUPL (the "Licence");
+ * You may not use this work except in compliance with the Licence.
+ * You may obtain a copy of the Licence at:
+ * 
+ * http://ec.europa.eu/idabc/eupl
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the Licence is
+ * distributed on an "AS IS" basis, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the Licence for the specific language governing permissions and limitations
+ * under the Licence.
+ */
+package com.eviware.loadui.util.messaging;
+
+import static org.hamcrest.CoreMatchers.instanceOf;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+
+import com.google.common.base.Strings;
+import com.google.common.collect.ImmutableMap;
+
+public class BinaryMessageCodecTest
+{
+	private final MessageCodec codec = new BinaryMessageCodec();
+
+	@Test
+	@SuppressWarnings( "unchecked" )
+	public void shouldRoundTripStatisticsEntries() throws Exception
+	{
+		Map<String, Object> entry = new HashMap<>();
+		entry.put( "_TIMESTAMP", 1234567890123L );
+		entry.put( "_TRACK_ID", "track-1" );
+		entry.put( "Avg", 13.37 );
+		entry.put( "Count", 42 );
+
+		Map<String, Object> decoded = ( Map<String, Object> )roundTrip( codec, entry );
+
+		assertThat( decoded, is( entry ) );
+		assertThat( decoded.get( "_TIMESTAMP" ), instanceOf( Long.class ) );
+		assertThat( decoded.get( "Count" ), instanceOf( Integer.class ) );
+		decoded.remove( "_TRACK_ID" );
+	}
+
+	@Test
+	@SuppressWarnings( "unchecked" )
+	public void shouldRoundTripComponentContextMessages() throws Exception
+	{
+		Map<String, String[]> terminalMessage = ImmutableMap.of( "Status", new String[] { "true", "java.lang.Boolean" } );
+		Object[] data = new Object[] { "component-1", terminalMessage };
+
+		Object[] decoded = ( Object[] )roundTrip( codec, data );
+
+		assertThat( ( String )decoded[0], is( "component-1" ) );
+		assertArrayEquals( new String[] { "true", "java.lang.Boolean" },
+				( ( Map<String, String[]> )decoded[1] ).get( "Status" ) );
+	}
+
+	@Test
+	public void shouldRoundTripOtherValues() throws Exception
+	{
+		Date date = new Date();
+		String longString = Strings.repeat( "åäö", 40000 );
+
+		assertThat( roundTrip( codec, null ), is( nullValue() ) );
+		assertThat( ( Date )roundTrip( codec, date ), is( date ) );
+		assertThat( ( String )roundTrip( codec, longString ), is( longString ) );
+		List<Object> list = Arrays.<Object> asList( 1, "a", false, date );
+		assertThat( roundTrip( codec, list ), is( ( Object )list ) );
+	}
+
+	@Test
+	public void shouldBeSmallerThanJavaSerialization() throws Exception
+	{
+		Map<String, Object> entry = new HashMap<>();
+		entry.put( "_TIMESTAMP", 1234567890123L );
+		entry.put( "_TRACK_ID", "track-1" );
+		entry.put( "Avg", 13.37 );
+		entry.put( "Count", 42 );
+
+		assertTrue( encode( codec, entry ).length < encode( new ObjectStreamMessageCodec(), entry ).length );
+	}
+
+	private static Object roundTrip( MessageCodec codec, Object data ) throws IOException, ClassNotFoundException
+	{
+		try( ObjectInputStream input = new ObjectInputStream( new ByteArrayInputStream( encode( codec, data ) ) ) )
+		{
+			return codec.readData( input );
+		}
+	}
+
+	private static byte[] encode( MessageCodec codec, Object data ) throws IOException
+	{
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		try( ObjectOutputStream output = new ObjectOutputStream( bytes ) )
+		{
+			codec.writeData( output, data );
+		}
+		return bytes.toByteArray();
+	}
+}
@@ -0,0 +1,174 @@
+/*
+ * Copyright 2013 SmartBear Software
+ * 
+ * Licensed under the EUPL, Version 1.1 or - as soon they will be approved by the European Commission - subsequent
+ * versions of the EUPL (the "Licence");
+ * You may not use this work except in compliance with the Licence.
+ * You may obtain a copy of the Licence at:
+ * 
+ * http://ec.europa.eu/idabc/eupl
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the Licence is
+ * distributed on an "AS IS" basis, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the Licence for the specific language governing permissions and limitations
+ * under the Licence.
+ */
+package com.eviware.loadui.util.messaging;
+
+import java.lang.management.ManagementFactory;
+import java.util.Collection;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+import com.eviware.loadui.api.messaging.MessageEndpoint;
+import com.eviware.loadui.api.messaging.MessageListener;
+import com.google.common.collect.HashMultimap;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Multimap;
+import com.google.common.collect.Multimaps;
+
+/**
+ * Compares the time and bytes allocated per fired message of
+ * ChannelRoutingSupport with the former approach of matching a regular
+ * expression per registered channel, using ~200 registered channels. Run from
+ * the command line; requires a HotSpot JVM for allocation accounting.
+ */
+public class ChannelRoutingBenchmark
+{
+	private static final int CHANNELS = 200;
+	private static final int WARMUP = 200000;
+	private static final int ITERATIONS = 2000000;
+
+	private static int delivered;
+
+	public static void main( String[] args )
+	{
+		MessageListener listener = new MessageListener()
+		{
+			@Override
+			public void handleMessage( String channel, MessageEndpoint endpoint, Object data )
+			{
+				delivered++;
+			}
+		};
+
+		ChannelRoutingSupport trie = new ChannelRoutingSupport();
+		RegexRouting regex = new RegexRouting();
+		for( int i = 0; i < CHANNELS; i++ )
+		{
+			String channel = channel( i );
+			if( i % 10 == 0 )
+				channel = channel.substring( 0, channel.lastIndexOf( '/' ) ) + "/*";
+			else if( i % 25 == 0 )
+				channel = channel.substring( 0, channel.lastIndexOf( '/' ) ) + "/**";
+			trie.addMessageListener( channel, new DelegatingListener( listener ) );
+			regex.addMessageListener( channel, new DelegatingListener( listener ) );
+		}
+
+		String[] fired = new String[64];
+		for( int i = 0; i < fired.length; i++ )
+		{
+			fired[i] = channel( i * 3 );
+		}
+
+		runTrie( trie, fired, WARMUP );
+		runRegex( regex, fired, WARMUP );
+
+		delivered = 0;
+		long before = allocatedBytes();
+		long start = System.nanoTime();
+		runTrie( trie, fired, ITERATIONS );
+		long trieTime = System.nanoTime() - start;
+		long trieBytes = allocatedBytes() - before;
+		int trieDelivered = delivered;
+
+		delivered = 0;
+		before = allocatedBytes();
+		start = System.nanoTime();
+		runRegex( regex, fired, ITERATIONS );
+		long regexTime = System.nanoTime() - start;
+		long regexBytes = allocatedBytes() - before;
+
+		System.out.println( "Registered channels: " + CHANNELS + ", deliveries: " + trieDelivered + " / " + delivered );
+		System.out.println( "Trie:  " + trieTime / ITERATIONS + " ns, " + trieBytes / ITERATIONS + " bytes per message" );
+		System.out.println( "Regex: " + regexTime / ITERATIONS + " ns, " + regexBytes / ITERATIONS + " bytes per message" );
+	}
+
+	private static String channel( int i )
+	{
+		return "/com.eviware.loadui.api.statistics.Statistic/agent" + i % 8 + "/track" + i;
+	}
+
+	private static void runTrie( ChannelRoutingSupport trie, String[] channels, int iterations )
+	{
+		for( int i = 0; i < iterations; i++ )
+		{
+			trie.fireMessage( channels[i & 63], null, null );
+		}
+	}
+
+	private static void runRegex( RegexRouting regex, String[] channels, int iterations )
+	{
+		for( int i = 0; i < iterations; i++ )
+		{
+			regex.fireMessage( channels[i & 63], null, null );
+		}
+	}
+
+	private static long allocatedBytes()
+	{
+		com.sun.management.ThreadMXBean threadBean = ( com.sun.management.ThreadMXBean )ManagementFactory
+				.getThreadMXBean();
+		return threadBean.getThreadAllocatedBytes( Thread.currentThread().getId() );
+	}
+
+	private static class DelegatingListener implements MessageListener
+	{
+		private final MessageListener delegate;
+
+		public DelegatingListener( MessageListener delegate )
+		{
+			this.delegate = delegate;
+		}
+
+		@Override
+		public void handleMessage( String channel, MessageEndpoint endpoint, Object data )
+		{
+			delegate.handleMessage( channel, endpoint, data );
+		}
+	}
+
+	/**
+	 * The routing previously done by ChannelRoutingSupport.
+	 */
+	private static class RegexRouting
+	{
+		private final Multimap<Pattern, MessageListener> listeners = Multimaps.synchronizedSetMultimap( HashMultimap
+				.<Pattern, MessageListener> create() );
+
+		public void addMessageListener( String channel, MessageListener listener )
+		{
+			if( channel.endsWith( "/**" ) )
+				channel = Pattern.quote( channel.substring( 0, channel.length() - 2 ) ) + ".*";
+			else if( channel.endsWith( "/*" ) )
+				channel = Pattern.quote( channel.substring( 0, channel.length() - 1 ) ) + "[^/]*";
+			else
+				channel = Pattern.quote( channel );
+			listeners.put( Pattern.compile( channel ), listener );
+		}
+
+		public void fireMessage( String channel, MessageEndpoint endpoint, Object data )
+		{
+			for( Map.Entry<Pattern, Collection<MessageListener>> entry : ImmutableSet.copyOf( listeners.asMap().entrySet() ) )
+			{
+				if( entry.getKey().matcher( channel ).matches() )
+				{
+					for( MessageListener listener : ImmutableSet.copyOf( entry.getValue() ) )
+					{
+						listener.handleMessage( channel, endpoint, data );
+					}
+				}
+			}
+		}
+	}
+}
@@ -0,0 +1,110 @@
+/*
+ * Copyright 2013 SmartBear Software
+ * 
+ * Licensed under the EUPL, Version 1.1 or - as soon they will be approved by the European Commission - subsequent
+ * versions of the EUPL (the "Licence");
+ * You may not use this work except in compliance with the Licence.
+ * You may obtain a copy of the Licence at:
+ * 
+ * http://ec.europa.eu/idabc/eupl
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the Licence is
+ * distributed on an "AS IS" basis, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the Licence for the specific language governing permissions and limitations
+ * under the Licence.
+ */
+package com.eviware.loadui.util.messaging;
+
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+import org.junit.Test;
+
+import com.eviware.loadui.api.messaging.MessageEndpoint;
+import com.eviware.loadui.api.messaging.MessageListener;
+
+public class ChannelRoutingSupportTest
+{
+	private final ChannelRoutingSupport routingSupport = new ChannelRoutingSupport();
+	private final MessageEndpoint endpoint = mock( MessageEndpoint.class );
+
+	@Test
+	public void shouldRouteExactChannels()
+	{
+		MessageListener listener = listenerFor( "/a/b" );
+
+		routingSupport.fireMessage( "/a/b", endpoint, "data" );
+		routingSupport.fireMessage( "/a", endpoint, "data" );
+		routingSupport.fireMessage( "/a/b/c", endpoint, "data" );
+		routingSupport.fireMessage( "/a/bc", endpoint, "data" );
+
+		verify( listener ).handleMessage( "/a/b", endpoint, "data" );
+		verify( listener, times( 1 ) ).handleMessage( anyString(), any( MessageEndpoint.class ), any() );
+	}
+
+	@Test
+	public void singleWildcardShouldMatchOneSegment()
+	{
+		MessageListener listener = listenerFor( "/a/*" );
+
+		routingSupport.fireMessage( "/a/b", endpoint, null );
+		routingSupport.fireMessage( "/a/", endpoint, null );
+		routingSupport.fireMessage( "/a", endpoint, null );
+		routingSupport.fireMessage( "/a/b/c", endpoint, null );
+
+		verify( listener ).handleMessage( "/a/b", endpoint, null );
+		verify( listener ).handleMessage( "/a/", endpoint, null );
+		verify( listener, times( 2 ) ).handleMessage( anyString(), any( MessageEndpoint.class ), any() );
+	}
+
+	@Test
+	public void anyWildcardShouldMatchAllSubChannels()
+	{
+		MessageListener listener = listenerFor( "/a/**" );
+		MessageListener rootListener = listenerFor( "/**" );
+
+		routingSupport.fireMessage( "/a/b", endpoint, null );
+		routingSupport.fireMessage( "/a/b/c", endpoint, null );
+		routingSupport.fireMessage( "/a", endpoint, null );
+		routingSupport.fireMessage( "/ab/c", endpoint, null );
+
+		verify( listener ).handleMessage( "/a/b", endpoint, null );
+		verify( listener ).handleMessage( "/a/b/c", endpoint, null );
+		verify( listener, times( 2 ) ).handleMessage( anyString(), any( MessageEndpoint.class ), any() );
+		verify( rootListener, times( 4 ) ).handleMessage( anyString(), any( MessageEndpoint.class ), any() );
+	}
+
+	@Test
+	public void removedListenersShouldNotReceiveMessages()
+	{
+		MessageListener listener = listenerFor( "/a" );
+		routingSupport.fireMessage( "/a", endpoint, null );
+
+		routingSupport.removeMessageListener( listener );
+		routingSupport.fireMessage( "/a", endpoint, null );
+
+		verify( listener, times( 1 ) ).handleMessage( "/a", endpoint, null );
+	}
+
+	@Test
+	public void listenerShouldOnlyBeRegisteredOnce()
+	{
+		MessageListener listener = listenerFor( "/a" );
+		routingSupport.addMessageListener( "/b", listener );
+
+		routingSupport.fireMessage( "/b", endpoint, null );
+
+		verify( listener, never() ).handleMessage( anyString(), any( MessageEndpoint.class ), any() );
+	}
+
+	private MessageListener listenerFor( String channel )
+	{
+		MessageListener listener = mock( MessageListener.class );
+		routingSupport.addMessageListener( channel, listener );
+		return listener;
+	}
+}
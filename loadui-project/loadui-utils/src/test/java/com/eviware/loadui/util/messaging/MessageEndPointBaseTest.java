@@ -0,0 +1,214 @@
+/*
+ * Copyright 2013 SmartBear Software
+ * 
+ * Licensed under the EUPL, Version 1.1 or - as soon they will be approved by the European Commission - subsequent
+ * versions of the EUPL (the "Licence");
+ * You may not use this work except in compliance with the Licence.
+ * You may obtain a copy of the Licence at:
+ * 
+ * http://ec.europa.eu/idabc/eupl
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the Licence is
+ * distributed on an "AS IS" basis, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the Licence for the specific language governing permissions and limitations
+ * under the Licence.
+ */
+package com.eviware.loadui.util.messaging;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ObjectInput;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+import com.eviware.loadui.api.statistics.Statistic;
+
+public class MessageEndPointBaseTest
+{
+	private static final String STATISTICS_CHANNEL = "/" + Statistic.class.getName();
+
+	@Test
+	public void shouldWriteQueuedMessagesInBatches() throws Exception
+	{
+		final int messageCount = 100;
+		TestEndPoint endpoint = new TestEndPoint( messageCount );
+		endpoint.setMaxBatchSize( 32 );
+
+		try( ServerSocket server = new ServerSocket( 0, 1, InetAddress.getLoopbackAddress() ) )
+		{
+			Socket socket = new Socket( server.getInetAddress(), server.getLocalPort() );
+			try( Socket peer = server.accept() )
+			{
+				new ObjectOutputStream( peer.getOutputStream() ).flush();
+				endpoint.startMessageSenderAndReceiverWith( socket );
+
+				ObjectInputStream in = new ObjectInputStream( peer.getInputStream() );
+				for( int i = 0; i < messageCount; i++ )
+				{
+					Object[] message = readMessage( endpoint, in );
+					assertThat( message[0], is( ( Object )"/test" ) );
+					assertThat( message[1], is( ( Object )i ) );
+				}
+			}
+			endpoint.interruptMessageThreadsAndWaitForThemToDie();
+			socket.close();
+		}
+
+		assertThat( endpoint.getMessagesSent(), is( ( long )messageCount ) );
+		assertThat( endpoint.getFramesSent(), is( 4L ) );
+		assertThat( endpoint.getAverageMessagesPerFrame(), is( 25.0 ) );
+		assertTrue( endpoint.getBytesSent() > 0 );
+	}
+
+	@Test
+	public void dropStatisticsShouldKeepControlMessages()
+	{
+		TestEndPoint endpoint = new TestEndPoint( 0 );
+		endpoint.setQueueCapacity( 2 );
+		endpoint.setOverflowPolicy( MessageOverflowPolicy.DROP_STATISTICS );
+
+		endpoint.sendMessage( STATISTICS_CHANNEL, 1 );
+		endpoint.sendMessage( STATISTICS_CHANNEL, 2 );
+		endpoint.sendMessage( "/control", "a" );
+		endpoint.sendMessage( "/control", "b" );
+		endpoint.sendMessage( STATISTICS_CHANNEL, 3 );
+
+		assertThat( queuedData( endpoint ), is( Arrays.<Object> asList( "a", "b" ) ) );
+		assertThat( endpoint.getDroppedMessages(), is( 3L ) );
+	}
+
+	@Test
+	public void shouldNotDropControlMessagesBeforeConnected()
+	{
+		TestEndPoint endpoint = new TestEndPoint( 0 );
+		endpoint.setQueueCapacity( 2 );
+		endpoint.setOverflowPolicy( MessageOverflowPolicy.DROP_STATISTICS );
+
+		endpoint.sendMessage( "/control", "a" );
+		endpoint.sendMessage( "/control", "b" );
+		endpoint.sendMessage( "/control", "c" );
+
+		assertThat( queuedData( endpoint ), is( Arrays.<Object> asList( "a", "b", "c" ) ) );
+		assertThat( endpoint.getDroppedMessages(), is( 0L ) );
+
+		endpoint.setOverflowPolicy( MessageOverflowPolicy.BLOCK );
+		endpoint.sendMessage( STATISTICS_CHANNEL, 1 );
+		endpoint.sendMessage( "/control", "d" );
+
+		assertThat( queuedData( endpoint ), is( Arrays.<Object> asList( "a", "b", "c", "d" ) ) );
+		assertThat( endpoint.getDroppedMessages(), is( 1L ) );
+	}
+
+	@Test
+	public void dropOldestShouldKeepNewestMessages()
+	{
+		TestEndPoint endpoint = new TestEndPoint( 0 );
+		endpoint.setQueueCapacity( 2 );
+		endpoint.setOverflowPolicy( MessageOverflowPolicy.DROP_OLDEST );
+
+		endpoint.sendMessage( "/control", "a" );
+		endpoint.sendMessage( STATISTICS_CHANNEL, 1 );
+		endpoint.sendMessage( "/control", "b" );
+
+		assertThat( queuedData( endpoint ), is( Arrays.<Object> asList( 1, "b" ) ) );
+		assertThat( endpoint.getDroppedMessages(), is( 1L ) );
+		assertThat( endpoint.getQueueDepth(), is( 2 ) );
+	}
+
+	@Test
+	public void concurrentSendersShouldNotOvershootCapacity() throws Exception
+	{
+		final TestEndPoint endpoint = new TestEndPoint( 0 );
+		endpoint.setQueueCapacity( 100 );
+		endpoint.setOverflowPolicy( MessageOverflowPolicy.DROP_OLDEST );
+
+		List<Thread> senders = new ArrayList<>();
+		for( int t = 0; t < 8; t++ )
+		{
+			senders.add( new Thread( new Runnable()
+			{
+				@Override
+				public void run()
+				{
+					for( int i = 0; i < 5000; i++ )
+					{
+						endpoint.sendMessage( "/control", i );
+					}
+				}
+			} ) );
+		}
+		for( Thread sender : senders )
+		{
+			sender.start();
+		}
+		for( Thread sender : senders )
+		{
+			sender.join();
+		}
+
+		assertThat( endpoint.getQueueDepth(), is( 100 ) );
+		assertThat( endpoint.getDroppedMessages(), is( 8 * 5000L - 100 ) );
+	}
+
+	private static Object[] readMessage( MessageEndPointBase endpoint, ObjectInput in ) throws Exception
+	{
+		MessageEndPointBase.Message message = endpoint.readMessageFrom( in );
+		return new Object[] { message.channel, message.data };
+	}
+
+	private static List<Object> queuedData( MessageEndPointBase endpoint )
+	{
+		List<Object> data = new ArrayList<>();
+		for( MessageEndPointBase.Message message : endpoint.outMessageQueue )
+		{
+			data.add( message.data );
+		}
+		return data;
+	}
+
+	private static class TestEndPoint extends MessageEndPointBase
+	{
+		private final int messagesOnStart;
+
+		public TestEndPoint( int messagesOnStart )
+		{
+			super( new ChannelRoutingSupport() );
+			this.messagesOnStart = messagesOnStart;
+		}
+
+		@Override
+		protected void onMessageSenderLoopStarted()
+		{
+			for( int i = 0; i < messagesOnStart; i++ )
+			{
+				sendMessage( "/test", i );
+			}
+		}
+
+		@Override
+		protected boolean initializeMessageReceiver( ObjectInput objectInput )
+		{
+			return true;
+		}
+
+		@Override
+		public void open()
+		{
+		}
+
+		@Override
+		public void close()
+		{
+		}
+	}
+}
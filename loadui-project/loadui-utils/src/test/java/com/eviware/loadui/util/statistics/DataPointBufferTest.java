@@ -0,0 +1,89 @@
+/*
+ * Copyright 2013 SmartBear Software
+ * 
+ * Licensed under the EUPL, Version 1.1 or - as soon they will be approved by the European Commission - subsequent
+ * versions of the EUPL (the "Licence");
+ * You may not use this work except in compliance with the Licence.
+ * You may obtain a copy of the Licence at:
+ * 
+ * http://ec.europa.eu/idabc/eupl
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the Licence is
+ * distributed on an "AS IS" basis, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the Licence for the specific language governing permissions and limitations
+ * under the Licence.
+ */
+package com.eviware.loadui.util.statistics;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class DataPointBufferTest
+{
+	private DataPointBuffer buffer;
+
+	@Before
+	public void setup()
+	{
+		buffer = new DataPointBuffer();
+	}
+
+	@Test
+	public void shouldKeepAllPointsBelowThreshold()
+	{
+		for( int i = 0; i < 10; i++ )
+			buffer.add( i * 1000, i );
+
+		assertThat( buffer.downsample( 20 ), is( new int[] { 0, 1, 2, 3, 4, 5, 6, 7, 8, 9 } ) );
+	}
+
+	@Test
+	public void shouldKeepEndpointsAndPeaks()
+	{
+		for( int i = 0; i < 1000; i++ )
+			buffer.add( i, i == 500 ? 100 : 0 );
+
+		int[] sampled = buffer.downsample( 50 );
+
+		assertThat( sampled.length, is( 50 ) );
+		assertThat( sampled[0], is( 0 ) );
+		assertThat( sampled[49], is( 999 ) );
+
+		boolean peakKept = false;
+		for( int i = 1; i < sampled.length; i++ )
+		{
+			assertThat( sampled[i] > sampled[i - 1], is( true ) );
+			peakKept |= sampled[i] == 500;
+		}
+		assertThat( peakKept, is( true ) );
+	}
+
+	@Test
+	public void shouldIgnoreOlderAndReplaceEqualTimestamps()
+	{
+		buffer.add( 1000, 1 );
+		buffer.add( 2000, 2 );
+		buffer.add( 1500, 3 );
+		buffer.add( 2000, 4 );
+
+		assertThat( buffer.size(), is( 2 ) );
+		assertThat( buffer.getValue( 1 ), is( 4.0 ) );
+	}
+
+	@Test
+	public void shouldGrowAndRemoveOldPoints()
+	{
+		for( int i = 0; i < 1000; i++ )
+			buffer.add( i, i );
+		buffer.removeBefore( 900 );
+		for( int i = 1000; i < 1500; i++ )
+			buffer.add( i, i );
+
+		assertThat( buffer.size(), is( 600 ) );
+		assertThat( buffer.getTimestamp( 0 ), is( 900L ) );
+		assertThat( buffer.getValue( 599 ), is( 1499.0 ) );
+	}
+}
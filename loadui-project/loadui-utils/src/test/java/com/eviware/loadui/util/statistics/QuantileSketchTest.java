@@ -0,0 +1,119 @@
+/*
+ * Copyright 2013 SmartBear Software
+ * 
+ * Licensed under the EUPL, Version 1.1 or - as soon they will be approved by the European Commission - subsequent
+ * versions of the EUPL (the "Licence");
+ * You may not use this work except in compliance with the Licence.
+ * You may obtain a copy of the Licence at:
+ * 
+ * http://ec.europa.eu/idabc/eupl
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the Licence is
+ * distributed on an "AS IS" basis, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the Licence for the specific language governing permissions and limitations
+ * under the Licence.
+ */
+package com.eviware.loadui.util.statistics;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class QuantileSketchTest
+{
+	@Test
+	public void shouldInterpolateExactlyForFewValues()
+	{
+		QuantileSketch sketch = new QuantileSketch();
+		for( double value : new double[] { 10, 8, 6, 7, 7, 9, 17, 12, 10, 9 } )
+		{
+			sketch.add( value );
+		}
+
+		assertTrue( sketch.isExact() );
+		assertEquals( 7.25, sketch.getQuantile( 0.25 ), 1e-9 );
+		assertEquals( 9.0, sketch.getQuantile( 0.5 ), 1e-9 );
+		assertEquals( 12.5, sketch.getQuantile( 0.9 ), 1e-9 );
+		assertEquals( 6.0, sketch.getMin(), 0 );
+		assertEquals( 17.0, sketch.getMax(), 0 );
+	}
+
+	@Test
+	public void shouldStayWithinRelativeAccuracyForManyValues()
+	{
+		Random random = new Random( 42 );
+		double[] values = new double[100000];
+		QuantileSketch sketch = new QuantileSketch();
+		for( int i = 0; i < values.length; i++ )
+		{
+			values[i] = Math.exp( random.nextGaussian() * 2 + 4 );
+			sketch.add( values[i] );
+		}
+		Arrays.sort( values );
+
+		assertFalse( sketch.isExact() );
+		for( double quantile : new double[] { 0.01, 0.25, 0.5, 0.75, 0.9, 0.99 } )
+		{
+			double expected = values[( int )Math.floor( quantile * ( values.length - 1 ) )];
+			assertEquals( "Quantile " + quantile, expected, sketch.getQuantile( quantile ), expected
+					* QuantileSketch.RELATIVE_ACCURACY );
+		}
+	}
+
+	@Test
+	public void mergedSketchesShouldMatchASingleSketch()
+	{
+		Random random = new Random( 7 );
+		QuantileSketch all = new QuantileSketch();
+		QuantileSketch[] parts = { new QuantileSketch(), new QuantileSketch(), new QuantileSketch() };
+		for( int i = 0; i < 30000; i++ )
+		{
+			double value = random.nextDouble() * 1000 - 100;
+			all.add( value );
+			parts[i % 3].add( value );
+		}
+
+		QuantileSketch merged = QuantileSketch.merge( Arrays.asList( parts ) );
+
+		assertThat( merged.getCount(), is( all.getCount() ) );
+		assertThat( parts[0].getCount(), is( 10000L ) );
+		for( double quantile : new double[] { 0, 0.05, 0.5, 0.9, 1 } )
+		{
+			assertEquals( all.getQuantile( quantile ), merged.getQuantile( quantile ), 0 );
+		}
+	}
+
+	@Test
+	public void shouldSurviveSerialization() throws Exception
+	{
+		QuantileSketch sketch = new QuantileSketch();
+		for( int i = 0; i < 5000; i++ )
+		{
+			sketch.add( i % 7 == 0 ? 0 : i );
+		}
+
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		try( ObjectOutputStream out = new ObjectOutputStream( bytes ) )
+		{
+			out.writeObject( sketch );
+		}
+		QuantileSketch copy = ( QuantileSketch )new ObjectInputStream( new ByteArrayInputStream( bytes.toByteArray() ) )
+				.readObject();
+
+		assertThat( copy.getCount(), is( sketch.getCount() ) );
+		assertEquals( sketch.getQuantile( 0.1 ), copy.getQuantile( 0.1 ), 0 );
+		assertEquals( sketch.getQuantile( 0.9 ), copy.getQuantile( 0.9 ), 0 );
+		assertEquals( sketch.getMax(), copy.getMax(), 0 );
+	}
+}
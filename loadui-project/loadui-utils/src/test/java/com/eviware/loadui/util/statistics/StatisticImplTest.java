@@ -0,0 +1,129 @@
+/*
+ * Copyright 2013 SmartBear Software
+ * 
+ * Licensed under the EUPL, Version 1.1 or - as soon they will be approved by the European Commission - subsequent
+ * versions of the EUPL (the "Licence");
+ * You may not use this work except in compliance with the Licence.
+ * You may obtain a copy of the Licence at:
+ * 
+ * http://ec.europa.eu/idabc/eupl
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the Licence is
+ * distributed on an "AS IS" basis, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the Licence for the specific language governing permissions and limitations
+ * under the Licence.
+ */
+package com.eviware.loadui.util.statistics;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.junit.Assert.assertThat;
+import static org.mockito.Matchers.anyLong;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+
+import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import com.eviware.loadui.api.statistics.DataPoint;
+import com.eviware.loadui.api.statistics.StatisticVariable;
+import com.eviware.loadui.api.statistics.store.Entry;
+import com.eviware.loadui.api.statistics.store.Execution;
+import com.eviware.loadui.api.statistics.store.ExecutionManager;
+import com.eviware.loadui.api.statistics.store.RangeCursor;
+import com.eviware.loadui.api.statistics.store.Track;
+
+public class StatisticImplTest
+{
+	@Test
+	public void shouldGiveNullForMissingValues()
+	{
+		Track track = mock( Track.class );
+		when( track.openRange( eq( "source" ), anyLong(), anyLong(), eq( 0 ), eq( "value" ) ) ).thenAnswer(
+				new Answer<RangeCursor>()
+				{
+					@Override
+					public RangeCursor answer( InvocationOnMock invocation )
+					{
+						return new ArrayCursor( new long[] { 1, 2 }, new double[] { 5.0, Double.NaN } );
+					}
+				} );
+		Execution execution = mock( Execution.class );
+		when( execution.getTrack( "track" ) ).thenReturn( track );
+
+		StatisticImpl<Double> statistic = new StatisticImpl<>( mock( ExecutionManager.class ), "track",
+				mock( StatisticVariable.class ), "value", "source", Double.class );
+
+		Iterator<DataPoint<Double>> points = statistic.getPeriod( 0, 10, 0, execution ).iterator();
+		assertThat( points.next().getValue(), is( 5.0 ) );
+		DataPoint<Double> missing = points.next();
+		assertThat( missing.getTimestamp(), is( 2L ) );
+		assertThat( missing.getValue(), nullValue() );
+		assertThat( points.hasNext(), is( false ) );
+	}
+
+	@Test
+	public void shouldReadSummaryValueOfExecution()
+	{
+		Entry summary = mock( Entry.class );
+		when( summary.getValue( "value" ) ).thenReturn( 12.7 );
+		Execution execution = mock( Execution.class );
+		when( execution.getSummaryEntry( "track", "source" ) ).thenReturn( summary );
+
+		StatisticImpl<Long> statistic = new StatisticImpl<>( mock( ExecutionManager.class ), "track",
+				mock( StatisticVariable.class ), "value", "source", Long.class );
+
+		assertThat( statistic.getSummaryValue( execution ), is( 12L ) );
+		assertThat( statistic.getSummaryValue( mock( Execution.class ) ), nullValue() );
+		assertThat( statistic.getSummaryValue(), nullValue() );
+	}
+
+	private static class ArrayCursor implements RangeCursor
+	{
+		private final long[] timestamps;
+		private final double[] values;
+		private int index = -1;
+
+		public ArrayCursor( long[] timestamps, double[] values )
+		{
+			this.timestamps = timestamps;
+			this.values = values;
+		}
+
+		@Override
+		public List<String> getValueNames()
+		{
+			return Arrays.asList( "value" );
+		}
+
+		@Override
+		public boolean next()
+		{
+			return ++index < timestamps.length;
+		}
+
+		@Override
+		public long getTimestamp()
+		{
+			return timestamps[index];
+		}
+
+		@Override
+		public double getValue( int valueIndex )
+		{
+			return values[index];
+		}
+
+		@Override
+		public void close()
+		{
+			index = timestamps.length;
+		}
+	}
+}
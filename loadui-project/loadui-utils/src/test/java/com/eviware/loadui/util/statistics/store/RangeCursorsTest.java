@@ -0,0 +1,149 @@
+/*
+ * Copyright 2013 SmartBear Software
+ * 
+ * Licensed under the EUPL, Version 1.1 or - as soon they will be approved by the European Commission - subsequent
+ * versions of the EUPL (the "Licence");
+ * You may not use this work except in compliance with the Licence.
+ * You may obtain a copy of the Licence at:
+ * 
+ * http://ec.europa.eu/idabc/eupl
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the Licence is
+ * distributed on an "AS IS" basis, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the Licence for the specific language governing permissions and limitations
+ * under the Licence.
+ */
+package com.eviware.loadui.util.statistics.store;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+import org.junit.Test;
+
+import com.eviware.loadui.api.statistics.store.RangeCursor;
+import com.google.common.base.Function;
+import com.google.common.collect.Iterables;
+
+public class RangeCursorsTest
+{
+	private static final int ROWS = RangeCursors.CHUNK_SIZE * 2 + 10;
+
+	private final CountingOpener opener = new CountingOpener();
+
+	private final Iterable<Long> timestamps = RangeCursors.asIterable( 0, Long.MAX_VALUE, opener,
+			new Function<RangeCursor, Long>()
+			{
+				@Override
+				public Long apply( RangeCursor cursor )
+				{
+					return cursor.getTimestamp();
+				}
+			} );
+
+	@Test
+	public void shouldReadAllRowsInChunks()
+	{
+		long expected = 0;
+		for( long timestamp : timestamps )
+		{
+			assertThat( timestamp, is( expected++ ) );
+		}
+
+		assertThat( expected, is( ( long )ROWS ) );
+		assertThat( opener.opened, is( 3 ) );
+		assertThat( opener.open, is( 0 ) );
+	}
+
+	@Test
+	public void shouldCloseCursorWhenIterationStopsEarly()
+	{
+		Iterator<Long> iterator = timestamps.iterator();
+		iterator.next();
+		iterator.next();
+
+		assertThat( Iterables.getFirst( timestamps, null ), is( 0L ) );
+		assertThat( opener.opened, is( 2 ) );
+		assertThat( opener.open, is( 0 ) );
+	}
+
+	@Test
+	public void shouldHonourRange()
+	{
+		Iterable<Long> range = RangeCursors.asIterable( 5, 9, opener, new Function<RangeCursor, Long>()
+		{
+			@Override
+			public Long apply( RangeCursor cursor )
+			{
+				return cursor.getTimestamp();
+			}
+		} );
+
+		assertThat( Iterables.toString( range ), is( "[5, 6, 7, 8, 9]" ) );
+	}
+
+	/**
+	 * Opens cursors over rows with the timestamps 0 to ROWS - 1, counting how
+	 * many have been opened and how many are still open.
+	 */
+	private static class CountingOpener implements RangeCursors.Opener
+	{
+		private int opened = 0;
+		private int open = 0;
+
+		@Override
+		public RangeCursor open( final long startTime, final long endTime )
+		{
+			opened++;
+			open++;
+			return new RangeCursor()
+			{
+				private long timestamp = startTime - 1;
+				private boolean closed = false;
+
+				@Override
+				public List<String> getValueNames()
+				{
+					return Arrays.asList( "value" );
+				}
+
+				@Override
+				public boolean next()
+				{
+					if( timestamp + 1 > Math.min( endTime, ROWS - 1 ) )
+						return false;
+					timestamp++;
+					return true;
+				}
+
+				@Override
+				public long getTimestamp()
+				{
+					return timestamp;
+				}
+
+				@Override
+				public double getValue( int index )
+				{
+					if( index != 0 )
+						throw new NoSuchElementException();
+					return timestamp;
+				}
+
+				@Override
+				public void close()
+				{
+					if( !closed )
+					{
+						closed = true;
+						open--;
+					}
+				}
+			};
+		}
+	}
+}
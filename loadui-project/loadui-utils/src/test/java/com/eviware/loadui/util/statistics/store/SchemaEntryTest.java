@@ -0,0 +1,117 @@
+/*
+ * Copyright 2013 SmartBear Software
+ * 
+ * Licensed under the EUPL, Version 1.1 or - as soon they will be approved by the European Commission - subsequent
+ * versions of the EUPL (the "Licence");
+ * You may not use this work except in compliance with the Licence.
+ * You may obtain a copy of the Licence at:
+ * 
+ * http://ec.europa.eu/idabc/eupl
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the Licence is
+ * distributed on an "AS IS" basis, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the Licence for the specific language governing permissions and limitations
+ * under the Licence.
+ */
+package com.eviware.loadui.util.statistics.store;
+
+import static org.hamcrest.CoreMatchers.instanceOf;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertThat;
+
+import java.math.BigDecimal;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+
+public class SchemaEntryTest
+{
+	private EntrySchema schema;
+
+	@Before
+	public void setup()
+	{
+		Map<String, Class<? extends Number>> structure = ImmutableMap.<String, Class<? extends Number>> of( "TOTAL",
+				Long.class, "AVERAGE", Double.class );
+		schema = new EntrySchema( structure );
+	}
+
+	@Test
+	public void shouldBoxValuesAccordingToSchema()
+	{
+		SchemaEntry entry = new SchemaEntry.Builder( schema, 10 ).put( "TOTAL", 7 ).put( "AVERAGE", 1.5 ).build();
+
+		assertThat( entry.getTimestamp(), is( 10L ) );
+		assertThat( entry.getValue( "TOTAL" ), instanceOf( Long.class ) );
+		assertThat( entry.getValue( "TOTAL" ).longValue(), is( 7L ) );
+		assertThat( entry.getValue( "AVERAGE" ), is( ( Number )1.5 ) );
+		assertEquals( 7.0, entry.getValue( schema.indexOf( "TOTAL" ) ), 0.0 );
+		assertThat( entry.getNames(), is( ( Object )schema.getNames() ) );
+	}
+
+	@Test
+	public void shouldOnlyExposeSetValues()
+	{
+		SchemaEntry entry = new SchemaEntry.Builder( schema, 0 ).put( "AVERAGE", 2.0 ).build();
+
+		assertThat( entry.getValue( "TOTAL" ), nullValue() );
+		assertThat( Double.isNaN( entry.getValue( schema.indexOf( "TOTAL" ) ) ), is( true ) );
+		assertThat( entry.getNames(), is( ( Object )ImmutableSet.of( "AVERAGE" ) ) );
+	}
+
+	@Test
+	public void shouldKeepValuesOutsideOfSchema()
+	{
+		BigDecimal big = new BigDecimal( "12.5" );
+		SchemaEntry entry = SchemaEntry.fromMap( schema, 5, ImmutableMap.of( "TOTAL", 3L, "OTHER", 4, "BIG", big ) );
+
+		assertThat( entry.getValue( "OTHER" ), is( ( Number )4 ) );
+		assertThat( entry.getValue( "BIG" ), is( ( Number )big ) );
+		assertThat( entry.getNames(), is( ( Object )ImmutableSet.of( "TOTAL", "OTHER", "BIG" ) ) );
+	}
+
+	@Test
+	public void shouldShareValuesWhenChangingTimestamp()
+	{
+		SchemaEntry entry = SchemaEntry.fromMap( schema, 5, ImmutableMap.of( "TOTAL", 3L, "AVERAGE", 1.0 ) );
+		SchemaEntry moved = entry.withTimestamp( 20 );
+
+		assertThat( moved.getTimestamp(), is( 20L ) );
+		assertThat( moved.getValue( "TOTAL" ), is( entry.getValue( "TOTAL" ) ) );
+		assertThat( moved.withTimestamp( 5 ), is( entry ) );
+	}
+
+	@Test
+	public void shouldKeepValuesBeyondMaxSizeByName()
+	{
+		Map<String, Class<? extends Number>> structure = new LinkedHashMap<>();
+		for( int i = 0; i < EntrySchema.MAX_SIZE + 2; i++ )
+		{
+			structure.put( "V" + i, Long.class );
+		}
+		EntrySchema largeSchema = new EntrySchema( structure );
+
+		SchemaEntry.Builder builder = new SchemaEntry.Builder( largeSchema, 0 );
+		for( int i = 0; i < EntrySchema.MAX_SIZE + 2; i++ )
+		{
+			builder.put( "V" + i, i );
+		}
+		SchemaEntry entry = builder.build();
+
+		assertThat( largeSchema.size(), is( EntrySchema.MAX_SIZE ) );
+		assertThat( largeSchema.indexOf( "V" + EntrySchema.MAX_SIZE ), is( -1 ) );
+		assertThat( entry.getValue( "V0" ).longValue(), is( 0L ) );
+		assertThat( entry.getValue( "V" + ( EntrySchema.MAX_SIZE + 1 ) ).longValue(),
+				is( ( long )EntrySchema.MAX_SIZE + 1 ) );
+		assertThat( entry.getNames(), is( ( Object )structure.keySet() ) );
+		assertThat( new SchemaEntry.Builder( largeSchema, 0 ).put( "V0", 1 ).build().getNames(),
+				is( ( Object )ImmutableSet.of( "V0" ) ) );
+	}
+}